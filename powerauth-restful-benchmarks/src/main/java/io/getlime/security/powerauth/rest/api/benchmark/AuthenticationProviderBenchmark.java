@@ -0,0 +1,97 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.benchmark;
+
+import com.google.common.io.BaseEncoding;
+import io.getlime.security.powerauth.crypto.lib.enums.PowerAuthSignatureTypes;
+import io.getlime.security.powerauth.http.PowerAuthSignatureHttpHeader;
+import io.getlime.security.powerauth.http.PowerAuthTokenHttpHeader;
+import io.getlime.security.powerauth.rest.api.base.authentication.PowerAuthApiAuthentication;
+import io.getlime.security.powerauth.rest.api.base.exception.PowerAuthAuthenticationException;
+import io.getlime.security.powerauth.rest.api.spring.provider.PowerAuthAuthenticationProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of PowerAuth HTTP header parsing and validation during signature and token validation. PowerAuth
+ * server calls are answered by {@link StubPowerAuthClient}, so the benchmark measures the integration overhead.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthenticationProviderBenchmark {
+
+    private static final String RESOURCE_ID = "/pa/signature/validate";
+    private static final String TOKEN_ID = "7f3c2a1b-8e4d-4c6a-b5f2-1d0e9a8c7b6a";
+    private static final List<PowerAuthSignatureTypes> SIGNATURE_TYPES = Collections.singletonList(PowerAuthSignatureTypes.POSSESSION_KNOWLEDGE);
+
+    private final byte[] requestBody = "{\"requestObject\":{\"data\":\"benchmark\"}}".getBytes(StandardCharsets.UTF_8);
+
+    private PowerAuthAuthenticationProvider authenticationProvider;
+    private String signatureHeader;
+    private String tokenHeader;
+    private String invalidSignatureHeader;
+
+    @Setup
+    public void setUp() {
+        authenticationProvider = new PowerAuthAuthenticationProvider();
+        authenticationProvider.setPowerAuthClient(StubPowerAuthClient.create());
+
+        final String nonce = BaseEncoding.base64().encode(new byte[16]);
+        final String digest = BaseEncoding.base64().encode(new byte[32]);
+        signatureHeader = new PowerAuthSignatureHttpHeader(StubPowerAuthClient.ACTIVATION_ID, EciesBenchmarkFixture.APPLICATION_KEY,
+                digest, PowerAuthSignatureTypes.POSSESSION_KNOWLEDGE.toString(), nonce, "3.1").buildHttpHeader();
+        tokenHeader = new PowerAuthTokenHttpHeader(TOKEN_ID, digest, nonce, String.valueOf(System.currentTimeMillis()), "3.1").buildHttpHeader();
+        invalidSignatureHeader = new PowerAuthSignatureHttpHeader(StubPowerAuthClient.ACTIVATION_ID, "invalid",
+                digest, PowerAuthSignatureTypes.POSSESSION_KNOWLEDGE.toString(), nonce, "3.1").buildHttpHeader();
+    }
+
+    @Benchmark
+    public PowerAuthApiAuthentication validateRequestSignature() throws Exception {
+        return authenticationProvider.validateRequestSignature("POST", requestBody, RESOURCE_ID, signatureHeader, SIGNATURE_TYPES, null);
+    }
+
+    @Benchmark
+    public PowerAuthApiAuthentication validateToken() throws Exception {
+        return authenticationProvider.validateToken(tokenHeader, SIGNATURE_TYPES);
+    }
+
+    /**
+     * Validate signature with a malformed header, which is rejected before PowerAuth server is called.
+     */
+    @Benchmark
+    public Object rejectInvalidSignatureHeader() {
+        try {
+            return authenticationProvider.validateRequestSignature("POST", requestBody, RESOURCE_ID, invalidSignatureHeader, SIGNATURE_TYPES, null);
+        } catch (PowerAuthAuthenticationException ex) {
+            return ex;
+        }
+    }
+
+}
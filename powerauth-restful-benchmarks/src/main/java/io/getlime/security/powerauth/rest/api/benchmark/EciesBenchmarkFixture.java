@@ -0,0 +1,118 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.BaseEncoding;
+import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.EciesEncryptor;
+import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.EciesFactory;
+import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.model.EciesCryptogram;
+import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.model.EciesSharedInfo1;
+import io.getlime.security.powerauth.crypto.lib.generator.KeyGenerator;
+import io.getlime.security.powerauth.http.PowerAuthEncryptionHttpHeader;
+import io.getlime.security.powerauth.rest.api.base.encryption.PowerAuthEciesDecryptorParameters;
+import io.getlime.security.powerauth.rest.api.model.request.v3.EciesEncryptedRequest;
+import io.getlime.security.powerauth.rest.api.spring.provider.PowerAuthEncryptionProvider;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import java.security.KeyPair;
+import java.security.Security;
+import java.security.interfaces.ECPublicKey;
+
+/**
+ * Fixture with ECIES encrypted request prepared using real cryptography. The encryption provider obtains
+ * the decryptor parameters of the prepared request from {@link StubPowerAuthClient}.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class EciesBenchmarkFixture {
+
+    /**
+     * Application key used in encryption HTTP header.
+     */
+    public static final String APPLICATION_KEY = BaseEncoding.base64().encode(new byte[16]);
+
+    /**
+     * Application secret used for ECIES in application scope.
+     */
+    public static final String APPLICATION_SECRET = BaseEncoding.base64().encode(new byte[16]);
+
+    private final String encryptionHttpHeader;
+    private final byte[] requestBodyBytes;
+    private final PowerAuthEncryptionProvider encryptionProvider;
+
+    /**
+     * Prepare ECIES encrypted request in application scope.
+     *
+     * @param requestData Request data to encrypt.
+     * @throws Exception In case encryption fails.
+     */
+    public EciesBenchmarkFixture(byte[] requestData) throws Exception {
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+        final KeyPair serverKeyPair = new KeyGenerator().generateKeyPair();
+        final EciesEncryptor encryptor = new EciesFactory().getEciesEncryptorForApplication((ECPublicKey) serverKeyPair.getPublic(),
+                APPLICATION_SECRET.getBytes(), EciesSharedInfo1.APPLICATION_SCOPE_GENERIC);
+        final EciesCryptogram cryptogram = encryptor.encryptRequest(requestData, true);
+
+        final EciesEncryptedRequest request = new EciesEncryptedRequest();
+        request.setEphemeralPublicKey(BaseEncoding.base64().encode(cryptogram.getEphemeralPublicKey()));
+        request.setEncryptedData(BaseEncoding.base64().encode(cryptogram.getEncryptedData()));
+        request.setMac(BaseEncoding.base64().encode(cryptogram.getMac()));
+        request.setNonce(BaseEncoding.base64().encode(cryptogram.getNonce()));
+        this.requestBodyBytes = new ObjectMapper().writeValueAsBytes(request);
+        this.encryptionHttpHeader = new PowerAuthEncryptionHttpHeader(APPLICATION_KEY, "3.1").buildHttpHeader();
+
+        final PowerAuthEciesDecryptorParameters decryptorParameters = new PowerAuthEciesDecryptorParameters(
+                BaseEncoding.base64().encode(encryptor.getEnvelopeKey().getSecretKey()),
+                BaseEncoding.base64().encode(encryptor.getSharedInfo2()));
+        this.encryptionProvider = new PowerAuthEncryptionProvider();
+        this.encryptionProvider.setPowerAuthClient(StubPowerAuthClient.create(decryptorParameters));
+    }
+
+    /**
+     * Get value of PowerAuth encryption HTTP header.
+     *
+     * @return Encryption HTTP header.
+     */
+    public String getEncryptionHttpHeader() {
+        return encryptionHttpHeader;
+    }
+
+    /**
+     * Get ECIES encrypted request body.
+     *
+     * @return Request body bytes.
+     */
+    public byte[] getRequestBodyBytes() {
+        return requestBodyBytes;
+    }
+
+    /**
+     * Get encryption provider which obtains decryptor parameters of the prepared request from stub PowerAuth client.
+     *
+     * @return Encryption provider.
+     */
+    public PowerAuthEncryptionProvider getEncryptionProvider() {
+        return encryptionProvider;
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.getlime.core.rest.model.base.request.ObjectRequest;
+import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.model.EciesScope;
+import io.getlime.security.powerauth.rest.api.base.encryption.PowerAuthEciesEncryption;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of decryption of ECIES encrypted request with deserialization of the request object. Compares
+ * deserializing the decrypted data once during decryption with deserializing it again in the argument resolver.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncryptedRequestDeserializationBenchmark {
+
+    private static final Type REQUEST_TYPE = new TypeReference<ObjectRequest<DataRequest>>() {}.getType();
+
+    @Param({"1024", "65536", "1048576"})
+    private int payloadSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private JavaType requestJavaType;
+    private EciesBenchmarkFixture fixture;
+
+    @Setup
+    public void setUp() throws Exception {
+        final char[] data = new char[payloadSize];
+        Arrays.fill(data, 'x');
+        final byte[] requestData = objectMapper.writeValueAsString(new ObjectRequest<>(new DataRequest(new String(data)))).getBytes(StandardCharsets.UTF_8);
+        fixture = new EciesBenchmarkFixture(requestData);
+        requestJavaType = objectMapper.getTypeFactory().constructType(REQUEST_TYPE);
+    }
+
+    /**
+     * Decrypt request and deserialize the decrypted data again, as done by the argument resolver before
+     * the request object was reused.
+     */
+    @Benchmark
+    public Object decryptAndDeserializeTwice() throws Exception {
+        final PowerAuthEciesEncryption<Object> eciesEncryption = decryptRequest();
+        return objectMapper.readValue(eciesEncryption.getDecryptedRequest(), requestJavaType);
+    }
+
+    /**
+     * Decrypt request and reuse the request object deserialized during decryption.
+     */
+    @Benchmark
+    public Object decryptAndReuseRequestObject() throws Exception {
+        final PowerAuthEciesEncryption<Object> eciesEncryption = decryptRequest();
+        return eciesEncryption.getRequestObject();
+    }
+
+    private PowerAuthEciesEncryption<Object> decryptRequest() throws Exception {
+        return fixture.getEncryptionProvider().decryptRequest("POST", fixture.getEncryptionHttpHeader(), null,
+                fixture.getRequestBodyBytes(), REQUEST_TYPE, EciesScope.APPLICATION_SCOPE);
+    }
+
+    /**
+     * Request object used in the benchmark.
+     */
+    public static class DataRequest {
+
+        private String data;
+
+        public DataRequest() {
+        }
+
+        public DataRequest(String data) {
+            this.data = data;
+        }
+
+        public String getData() {
+            return data;
+        }
+
+        public void setData(String data) {
+            this.data = data;
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.benchmark;
+
+import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.model.EciesScope;
+import io.getlime.security.powerauth.rest.api.base.encryption.PowerAuthEciesEncryption;
+import io.getlime.security.powerauth.rest.api.model.response.v3.EciesEncryptedResponse;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of ECIES request decryption and response encryption for various payload sizes. ECIES decryptor
+ * parameters are obtained from {@link StubPowerAuthClient}.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncryptionProviderBenchmark {
+
+    @Param({"1024", "65536", "1048576"})
+    private int payloadSize;
+
+    private EciesBenchmarkFixture fixture;
+    private PowerAuthEciesEncryption<byte[]> eciesEncryption;
+    private byte[] responseData;
+
+    @Setup
+    public void setUp() throws Exception {
+        final byte[] requestData = new byte[payloadSize];
+        Arrays.fill(requestData, (byte) 'x');
+        fixture = new EciesBenchmarkFixture(requestData);
+        responseData = requestData;
+    }
+
+    /**
+     * ECIES decryptor can encrypt only one response, the request is decrypted again before each invocation.
+     *
+     * @throws Exception In case request decryption fails.
+     */
+    @Setup(Level.Invocation)
+    public void prepareEncryption() throws Exception {
+        eciesEncryption = decryptRequest();
+    }
+
+    @Benchmark
+    public PowerAuthEciesEncryption<byte[]> decryptRequest() throws Exception {
+        return fixture.getEncryptionProvider().decryptRequest("POST", fixture.getEncryptionHttpHeader(), null,
+                fixture.getRequestBodyBytes(), byte[].class, EciesScope.APPLICATION_SCOPE);
+    }
+
+    @Benchmark
+    public EciesEncryptedResponse encryptResponse() {
+        return fixture.getEncryptionProvider().encryptResponse(responseData, eciesEncryption);
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.benchmark;
+
+import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.model.EciesScope;
+import io.getlime.security.powerauth.rest.api.base.encryption.PowerAuthEciesEncryption;
+import io.getlime.security.powerauth.rest.api.base.model.PowerAuthRequestObjects;
+import io.getlime.security.powerauth.rest.api.spring.annotation.PowerAuthEncryption;
+import io.getlime.security.powerauth.rest.api.spring.filter.EncryptionResponseBodyAdvice;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of response encryption in {@link EncryptionResponseBodyAdvice} for various payload sizes, both for
+ * responses converted to JSON by Jackson and for String responses which are written directly into the response body.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncryptionResponseBodyAdviceBenchmark {
+
+    @Param({"1024", "65536", "1048576"})
+    private int payloadSize;
+
+    private EncryptionResponseBodyAdvice advice;
+    private MethodParameter methodParameter;
+    private EciesBenchmarkFixture fixture;
+    private MockHttpServletRequest httpServletRequest;
+    private ServletServerHttpRequest serverHttpRequest;
+    private ServletServerHttpResponse serverHttpResponse;
+    private DataResponse response;
+
+    @Setup
+    public void setUp() throws Exception {
+        final byte[] requestData = "{}".getBytes(StandardCharsets.UTF_8);
+        fixture = new EciesBenchmarkFixture(requestData);
+
+        httpServletRequest = new MockHttpServletRequest("POST", "/exchange/v3/application");
+        serverHttpRequest = new ServletServerHttpRequest(httpServletRequest);
+        serverHttpResponse = new ServletServerHttpResponse(new DiscardingHttpServletResponse());
+
+        advice = new EncryptionResponseBodyAdvice();
+        methodParameter = new MethodParameter(SampleController.class.getMethod("exchange"), -1);
+
+        final char[] data = new char[payloadSize];
+        Arrays.fill(data, 'x');
+        response = new DataResponse(new String(data));
+    }
+
+    /**
+     * ECIES decryptor can encrypt only one response, the request is decrypted again before each invocation.
+     *
+     * @throws Exception In case request decryption fails.
+     */
+    @Setup(Level.Invocation)
+    public void decryptRequest() throws Exception {
+        final PowerAuthEciesEncryption<byte[]> eciesEncryption = fixture.getEncryptionProvider().decryptRequest("POST",
+                fixture.getEncryptionHttpHeader(), null, fixture.getRequestBodyBytes(), byte[].class, EciesScope.APPLICATION_SCOPE);
+        httpServletRequest.setAttribute(PowerAuthRequestObjects.ENCRYPTION_OBJECT, eciesEncryption);
+    }
+
+    @Benchmark
+    public Object jsonResponse() {
+        return advice.beforeBodyWrite(response, methodParameter, MediaType.APPLICATION_JSON,
+                MappingJackson2HttpMessageConverter.class, serverHttpRequest, serverHttpResponse);
+    }
+
+    @Benchmark
+    public Object stringResponse() {
+        return advice.beforeBodyWrite(response, methodParameter, MediaType.APPLICATION_JSON,
+                StringHttpMessageConverter.class, serverHttpRequest, serverHttpResponse);
+    }
+
+    /**
+     * Controller with a handler method which uses encrypted response.
+     */
+    public static class SampleController {
+
+        @PowerAuthEncryption
+        public DataResponse exchange() {
+            return new DataResponse("");
+        }
+
+    }
+
+    /**
+     * HTTP servlet response which discards written response body, so that the body does not accumulate
+     * across benchmark invocations.
+     */
+    public static class DiscardingHttpServletResponse extends MockHttpServletResponse {
+
+        private final ServletOutputStream outputStream = new ServletOutputStream() {
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return outputStream;
+        }
+    }
+
+    /**
+     * Response object used in the benchmark.
+     */
+    public static class DataResponse {
+
+        private final String data;
+
+        public DataResponse(String data) {
+            this.data = data;
+        }
+
+        public String getData() {
+            return data;
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.benchmark;
+
+import io.getlime.security.powerauth.http.PowerAuthSignatureHttpHeader;
+import io.getlime.security.powerauth.rest.api.base.filter.PowerAuthRequestFilterBase;
+import io.getlime.security.powerauth.rest.api.base.filter.ResettableStreamHttpServletRequest;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.DelegatingServletInputStream;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of request filtering which extracts the data used for signature validation: canonization of GET
+ * query parameters and buffering of POST request body.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestFilterBenchmark {
+
+    private static final String SIGNATURE_HEADER = "PowerAuth pa_activation_id=\"" + StubPowerAuthClient.ACTIVATION_ID + "\"";
+
+    @Param({"1024", "65536", "1048576"})
+    private int payloadSize;
+
+    private MockHttpServletRequest getRequest;
+    private MockHttpServletRequest postRequest;
+    private byte[] postBody;
+
+    @Setup
+    public void setUp() {
+        getRequest = new MockHttpServletRequest("GET", "/pa/v3/signature/validate");
+        getRequest.addHeader(PowerAuthSignatureHttpHeader.HEADER_NAME, SIGNATURE_HEADER);
+        getRequest.setQueryString("from=2021-01-01&to=2021-12-31&account=CZ6508000000192000145399&limit=50&offset=0&sort=desc");
+
+        postBody = new byte[payloadSize];
+        Arrays.fill(postBody, (byte) 'x');
+        postRequest = new MockHttpServletRequest("POST", "/pa/v3/signature/validate");
+        postRequest.addHeader(PowerAuthSignatureHttpHeader.HEADER_NAME, SIGNATURE_HEADER);
+        postRequest.setContentType("application/json");
+        postRequest.setContent(postBody);
+    }
+
+    @Benchmark
+    public ResettableStreamHttpServletRequest filterGetRequest() throws Exception {
+        return PowerAuthRequestFilterBase.filterRequest(getRequest);
+    }
+
+    @Benchmark
+    public ResettableStreamHttpServletRequest filterPostRequest() throws Exception {
+        return PowerAuthRequestFilterBase.filterRequest(new ReplayingRequest(postRequest, postBody));
+    }
+
+    /**
+     * Request wrapper which provides a new input stream with the request body for each filtered request.
+     */
+    private static class ReplayingRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        ReplayingRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            return new DelegatingServletInputStream(new ByteArrayInputStream(body));
+        }
+    }
+
+}
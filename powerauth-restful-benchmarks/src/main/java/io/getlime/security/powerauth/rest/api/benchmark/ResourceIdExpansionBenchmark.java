@@ -0,0 +1,116 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.benchmark;
+
+import io.getlime.security.powerauth.rest.api.spring.annotation.PowerAuth;
+import io.getlime.security.powerauth.rest.api.spring.annotation.PowerAuthHandlerMethodDescriptor;
+import io.getlime.security.powerauth.rest.api.spring.annotation.PowerAuthResourceIdTemplate;
+import org.apache.commons.text.StringSubstitutor;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.method.HandlerMethod;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of resource ID expansion for an endpoint with a path variable and a request parameter, such as
+ * the {@code dynamicResourceId} endpoint of the sample application. Compares the compiled resource ID template
+ * with substitution of placeholders by {@code StringSubstitutor} for each request.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResourceIdExpansionBenchmark {
+
+    private PowerAuthHandlerMethodDescriptor descriptor;
+    private Map<String, String> requestParameters;
+    private Map<String, String> pathVariables;
+    private PowerAuthResourceIdTemplate.ParameterValues parameterValues;
+
+    @Setup
+    public void setUp() throws Exception {
+        final HandlerMethod handlerMethod = new HandlerMethod(new SampleController(),
+                SampleController.class.getMethod("dynamicResourceId", String.class, String.class));
+        descriptor = PowerAuthHandlerMethodDescriptor.forHandlerMethod(handlerMethod);
+        requestParameters = Collections.singletonMap("value", "4c5f1d2a-6f0e-4b8e-9a43-2d0c8e7b1f36");
+        pathVariables = new HashMap<>();
+        pathVariables.put("id", "8d2b4e6a");
+        parameterValues = new PowerAuthResourceIdTemplate.ParameterValues() {
+            @Override
+            public String getRequestParameter(String name) {
+                return requestParameters.get(name);
+            }
+
+            @Override
+            public String getPathVariable(String name) {
+                return pathVariables.get(name);
+            }
+        };
+    }
+
+    @Benchmark
+    public String compiledTemplate() {
+        return descriptor.getResourceIdTemplate().expand(parameterValues);
+    }
+
+    @Benchmark
+    public String stringSubstitutor() {
+        final Map<String, String> parameters = new TreeMap<>();
+        for (PowerAuthHandlerMethodDescriptor.ResourceIdParameter parameter : descriptor.getResourceIdParameters()) {
+            final String name = parameter.getName();
+            if (parameter.isRequestParam()) {
+                final String value = requestParameters.get(name);
+                if (value != null) {
+                    parameters.put(name, value);
+                }
+            } else if (!parameters.containsKey(name)) {
+                final String value = pathVariables.get(name);
+                if (value != null) {
+                    parameters.put(name, value);
+                }
+            }
+        }
+        final StringSubstitutor sub = new StringSubstitutor(parameters);
+        return sub.replace(descriptor.getPowerAuthSignatureAnnotation().resourceId());
+    }
+
+    /**
+     * Controller with the same handler method signature as the sample application endpoint.
+     */
+    public static class SampleController {
+
+        @PowerAuth(resourceId = "/submit/${id}/test?value=${value}")
+        public String dynamicResourceId(@PathVariable("id") String id, @RequestParam("value") String value) {
+            return id + value;
+        }
+
+    }
+
+}
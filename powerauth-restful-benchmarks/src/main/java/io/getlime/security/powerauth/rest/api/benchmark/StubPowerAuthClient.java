@@ -0,0 +1,139 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.benchmark;
+
+import com.wultra.security.powerauth.client.PowerAuthClient;
+import com.wultra.security.powerauth.client.v3.*;
+import io.getlime.security.powerauth.rest.api.base.encryption.PowerAuthEciesDecryptorParameters;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * In-process stub of PowerAuth client used in benchmarks. The stub answers signature verification, token validation
+ * and ECIES decryptor calls with prepared successful responses, so that benchmarks can be run offline and their
+ * results are reproducible. All other PowerAuth client methods throw {@link UnsupportedOperationException}.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public final class StubPowerAuthClient implements InvocationHandler {
+
+    /**
+     * Activation ID returned by the stub.
+     */
+    public static final String ACTIVATION_ID = "6b8e3a2c-4d1f-4e5a-9c7b-0a2d8f1e3b4c";
+
+    /**
+     * User ID returned by the stub.
+     */
+    public static final String USER_ID = "benchmark-user";
+
+    /**
+     * Application ID returned by the stub.
+     */
+    public static final long APPLICATION_ID = 1L;
+
+    private final PowerAuthEciesDecryptorParameters decryptorParameters;
+
+    private StubPowerAuthClient(PowerAuthEciesDecryptorParameters decryptorParameters) {
+        this.decryptorParameters = decryptorParameters;
+    }
+
+    /**
+     * Create stub PowerAuth client without ECIES support.
+     *
+     * @return Stub PowerAuth client.
+     */
+    public static PowerAuthClient create() {
+        return create(null);
+    }
+
+    /**
+     * Create stub PowerAuth client which returns given ECIES decryptor parameters.
+     *
+     * @param decryptorParameters ECIES decryptor parameters returned by the stub.
+     * @return Stub PowerAuth client.
+     */
+    public static PowerAuthClient create(PowerAuthEciesDecryptorParameters decryptorParameters) {
+        return (PowerAuthClient) Proxy.newProxyInstance(StubPowerAuthClient.class.getClassLoader(),
+                new Class<?>[]{PowerAuthClient.class}, new StubPowerAuthClient(decryptorParameters));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        if (method.getDeclaringClass() == Object.class) {
+            return invokeObjectMethod(proxy, method, args);
+        }
+        if (args != null && args.length == 1) {
+            final Object request = args[0];
+            if (request instanceof VerifySignatureRequest) {
+                return verifySignature((VerifySignatureRequest) request);
+            }
+            if (request instanceof ValidateTokenRequest) {
+                return validateToken();
+            }
+            if (request instanceof GetEciesDecryptorRequest && decryptorParameters != null) {
+                return getEciesDecryptor();
+            }
+        }
+        throw new UnsupportedOperationException("Method is not supported by stub PowerAuth client: " + method.getName());
+    }
+
+    private VerifySignatureResponse verifySignature(VerifySignatureRequest request) {
+        final VerifySignatureResponse response = new VerifySignatureResponse();
+        response.setSignatureValid(true);
+        response.setActivationStatus(ActivationStatus.ACTIVE);
+        response.setActivationId(request.getActivationId());
+        response.setUserId(USER_ID);
+        response.setApplicationId(APPLICATION_ID);
+        response.setSignatureType(request.getSignatureType());
+        return response;
+    }
+
+    private ValidateTokenResponse validateToken() {
+        final ValidateTokenResponse response = new ValidateTokenResponse();
+        response.setTokenValid(true);
+        response.setActivationId(ACTIVATION_ID);
+        response.setUserId(USER_ID);
+        response.setApplicationId(APPLICATION_ID);
+        response.setSignatureType(SignatureType.POSSESSION_KNOWLEDGE);
+        return response;
+    }
+
+    private GetEciesDecryptorResponse getEciesDecryptor() {
+        final GetEciesDecryptorResponse response = new GetEciesDecryptorResponse();
+        response.setSecretKey(decryptorParameters.getSecretKey());
+        response.setSharedInfo2(decryptorParameters.getSharedInfo2());
+        return response;
+    }
+
+    private Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                return "StubPowerAuthClient";
+        }
+    }
+
+}
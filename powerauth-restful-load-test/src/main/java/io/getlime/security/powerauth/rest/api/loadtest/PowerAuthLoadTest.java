@@ -0,0 +1,156 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.loadtest;
+
+import io.getlime.security.powerauth.http.PowerAuthEncryptionHttpHeader;
+import io.getlime.security.powerauth.http.PowerAuthSignatureHttpHeader;
+import io.getlime.security.powerauth.http.PowerAuthTokenHttpHeader;
+import io.getlime.security.powerauth.rest.api.loadtest.client.LoadTestClient;
+import io.getlime.security.powerauth.rest.api.loadtest.client.LoadTestDevice;
+import io.getlime.security.powerauth.rest.api.loadtest.model.LoadTestFixtures;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Security;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end load test of the sample application with PowerAuth server replaced by {@link
+ * io.getlime.security.powerauth.rest.api.loadtest.stub.StubPowerAuthServer}. The test measures throughput
+ * and latency distribution of signed, token authenticated and encrypted requests. Each JMH thread simulates
+ * a device with its own activation, use the JMH "-t" option to set the number of concurrent devices.
+ * <br><br>
+ * Requests which do not end with HTTP status 200 are counted as failures and reported at the end of each trial.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 20)
+@Fork(1)
+@Threads(16)
+public class PowerAuthLoadTest {
+
+    private static final byte[] EMPTY_REQUEST = "{}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DATA_EXCHANGE_REQUEST = "{\"data\":\"load-test\"}".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Base URL of the tested application.
+     */
+    @Param("http://localhost:8080")
+    public String applicationUrl;
+
+    /**
+     * URL of stub PowerAuth server REST API, the same URL must be configured as PowerAuth service URL in the application.
+     */
+    @Param("http://localhost:18080/rest")
+    public String stubServerUrl;
+
+    private final AtomicInteger deviceCounter = new AtomicInteger();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private LoadTestFixtures fixtures;
+    private LoadTestClient client;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+        fixtures = LoadTestClient.fetchFixtures(stubServerUrl);
+        client = new LoadTestClient(applicationUrl);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.println();
+        System.out.println("Requests: " + requestCount.get() + ", failed requests: " + failureCount.get());
+    }
+
+    /**
+     * Simulated device which is owned by a single JMH thread.
+     */
+    @State(Scope.Thread)
+    public static class DeviceState {
+
+        LoadTestDevice device;
+
+        @Setup(Level.Trial)
+        public void setUp(PowerAuthLoadTest loadTest) throws Exception {
+            final int deviceIndex = loadTest.deviceCounter.getAndIncrement();
+            if (deviceIndex >= loadTest.fixtures.getActivations().size()) {
+                throw new IllegalStateException("Not enough activations for the number of threads, increase stub.activationCount");
+            }
+            device = new LoadTestDevice(loadTest.fixtures, loadTest.fixtures.getActivations().get(deviceIndex));
+        }
+
+    }
+
+    /**
+     * Signed request with signature verified by PowerAuth server.
+     */
+    @Benchmark
+    public int signedRequest(DeviceState state) throws Exception {
+        final String signatureHeader = state.device.computeSignatureHeader("POST", "/login", EMPTY_REQUEST);
+        return record(client.post("/login", PowerAuthSignatureHttpHeader.HEADER_NAME, signatureHeader, EMPTY_REQUEST));
+    }
+
+    /**
+     * Request authenticated using a token.
+     */
+    @Benchmark
+    public int tokenRequest(DeviceState state) throws Exception {
+        final String tokenHeader = state.device.computeTokenHeader();
+        return record(client.post("/token/authorize", PowerAuthTokenHttpHeader.HEADER_NAME, tokenHeader, EMPTY_REQUEST));
+    }
+
+    /**
+     * Request encrypted using ECIES in application scope.
+     */
+    @Benchmark
+    public int encryptedRequest(DeviceState state) throws Exception {
+        final byte[] requestBody = state.device.encryptInApplicationScope(DATA_EXCHANGE_REQUEST);
+        return record(client.post("/exchange/v3/application", PowerAuthEncryptionHttpHeader.HEADER_NAME, state.device.computeEncryptionHeader(), requestBody));
+    }
+
+    /**
+     * Signed request encrypted using ECIES in activation scope, the request data is signed before encryption.
+     */
+    @Benchmark
+    public int signedAndEncryptedRequest(DeviceState state) throws Exception {
+        final String signatureHeader = state.device.computeSignatureHeader("POST", "/exchange/v3/signed", DATA_EXCHANGE_REQUEST);
+        final byte[] requestBody = state.device.encryptInActivationScope(DATA_EXCHANGE_REQUEST);
+        return record(client.post("/exchange/v3/signed", PowerAuthSignatureHttpHeader.HEADER_NAME, signatureHeader, requestBody));
+    }
+
+    private int record(int status) {
+        requestCount.incrementAndGet();
+        if (status != 200) {
+            failureCount.incrementAndGet();
+        }
+        return status;
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.loadtest.client;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.getlime.security.powerauth.rest.api.loadtest.model.LoadTestFixtures;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Minimal HTTP client of the load test. The client uses {@link HttpURLConnection} with persistent connections,
+ * so that the client overhead is small compared to the request processing in the tested application.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class LoadTestClient {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final int READ_TIMEOUT_MILLIS = 30000;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final String baseUrl;
+
+    /**
+     * Constructor with base URL of the tested application.
+     *
+     * @param baseUrl Base URL of the tested application, for example "http://localhost:8080".
+     */
+    public LoadTestClient(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    /**
+     * Fetch test data from stub PowerAuth server.
+     *
+     * @param stubServerUrl URL of stub PowerAuth server REST API, for example "http://localhost:18080/rest".
+     * @return Load test fixtures.
+     * @throws IOException In case fixtures cannot be fetched.
+     */
+    public static LoadTestFixtures fetchFixtures(String stubServerUrl) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(stubServerUrl + "/load-test/fixtures").openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        if (connection.getResponseCode() != 200) {
+            throw new IOException("Load test fixtures are not available, HTTP status: " + connection.getResponseCode());
+        }
+        try (InputStream is = connection.getInputStream()) {
+            return objectMapper.readValue(is, LoadTestFixtures.class);
+        }
+    }
+
+    /**
+     * Send a POST request with JSON body and PowerAuth HTTP header.
+     *
+     * @param path Request path.
+     * @param headerName Name of PowerAuth HTTP header.
+     * @param headerValue Value of PowerAuth HTTP header.
+     * @param requestBody Request body bytes.
+     * @return HTTP status code.
+     * @throws IOException In case the request fails on network level.
+     */
+    public int post(String path, String headerName, String headerValue, byte[] requestBody) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(requestBody.length);
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setRequestProperty("Accept", "application/json");
+        connection.setRequestProperty(headerName, headerValue);
+        try (OutputStream os = connection.getOutputStream()) {
+            os.write(requestBody);
+        }
+        final int status = connection.getResponseCode();
+        // Response body must be fully consumed, otherwise the connection is not reused
+        final InputStream is = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        if (is != null) {
+            try (InputStream responseStream = is) {
+                final byte[] buffer = new byte[8192];
+                while (responseStream.read(buffer) != -1) {
+                    // Discard response data
+                }
+            }
+        }
+        return status;
+    }
+
+}
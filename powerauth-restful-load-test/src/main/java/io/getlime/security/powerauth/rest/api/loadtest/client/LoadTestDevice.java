@@ -0,0 +1,188 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.loadtest.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.BaseEncoding;
+import io.getlime.security.powerauth.crypto.client.keyfactory.PowerAuthClientKeyFactory;
+import io.getlime.security.powerauth.crypto.client.signature.PowerAuthClientSignature;
+import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.EciesEncryptor;
+import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.EciesFactory;
+import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.model.EciesCryptogram;
+import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.model.EciesSharedInfo1;
+import io.getlime.security.powerauth.crypto.lib.enums.PowerAuthSignatureFormat;
+import io.getlime.security.powerauth.crypto.lib.enums.PowerAuthSignatureTypes;
+import io.getlime.security.powerauth.crypto.lib.generator.HashBasedCounter;
+import io.getlime.security.powerauth.crypto.lib.generator.KeyGenerator;
+import io.getlime.security.powerauth.crypto.lib.util.KeyConvertor;
+import io.getlime.security.powerauth.crypto.lib.util.TokenUtils;
+import io.getlime.security.powerauth.http.PowerAuthEncryptionHttpHeader;
+import io.getlime.security.powerauth.http.PowerAuthHttpBody;
+import io.getlime.security.powerauth.http.PowerAuthSignatureHttpHeader;
+import io.getlime.security.powerauth.http.PowerAuthTokenHttpHeader;
+import io.getlime.security.powerauth.rest.api.loadtest.model.ActivationFixture;
+import io.getlime.security.powerauth.rest.api.loadtest.model.LoadTestFixtures;
+import io.getlime.security.powerauth.rest.api.model.request.v3.EciesEncryptedRequest;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.interfaces.ECPublicKey;
+import java.util.List;
+
+/**
+ * Simulated mobile device with an activation of stub PowerAuth server. The device computes PowerAuth signatures,
+ * tokens and ECIES requests the same way as the mobile SDK does.
+ * <br><br>
+ * The device keeps the signature counter, so a device instance must not be shared by concurrently running threads.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class LoadTestDevice {
+
+    private static final String PROTOCOL_VERSION = "3.1";
+
+    private static final KeyConvertor keyConvertor = new KeyConvertor();
+    private static final KeyGenerator keyGenerator = new KeyGenerator();
+    private static final HashBasedCounter hashBasedCounter = new HashBasedCounter();
+    private static final PowerAuthClientSignature clientSignature = new PowerAuthClientSignature();
+    private static final TokenUtils tokenUtils = new TokenUtils();
+    private static final EciesFactory eciesFactory = new EciesFactory();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String applicationKey;
+    private final byte[] applicationSecret;
+    private final ECPublicKey masterServerPublicKey;
+    private final String activationId;
+    private final ECPublicKey serverPublicKey;
+    private final List<SecretKey> signatureKeys;
+    private final byte[] transportKey;
+    private final String tokenId;
+    private final byte[] tokenSecret;
+    private byte[] ctrData;
+
+    /**
+     * Create a device using test data published by stub PowerAuth server.
+     *
+     * @param fixtures Load test fixtures.
+     * @param activation Fixture of activation which is used by the device.
+     * @throws Exception In case key conversion fails.
+     */
+    public LoadTestDevice(LoadTestFixtures fixtures, ActivationFixture activation) throws Exception {
+        this.applicationKey = fixtures.getApplicationKey();
+        this.applicationSecret = fixtures.getApplicationSecret().getBytes(StandardCharsets.UTF_8);
+        this.masterServerPublicKey = (ECPublicKey) keyConvertor.convertBytesToPublicKey(BaseEncoding.base64().decode(fixtures.getMasterServerPublicKey()));
+        this.activationId = activation.getActivationId();
+        this.serverPublicKey = (ECPublicKey) keyConvertor.convertBytesToPublicKey(BaseEncoding.base64().decode(activation.getServerPublicKey()));
+        final SecretKey possessionKey = keyConvertor.convertBytesToSharedSecretKey(BaseEncoding.base64().decode(activation.getSignaturePossessionKey()));
+        final SecretKey knowledgeKey = keyConvertor.convertBytesToSharedSecretKey(BaseEncoding.base64().decode(activation.getSignatureKnowledgeKey()));
+        this.signatureKeys = new PowerAuthClientKeyFactory().keysForSignatureType(PowerAuthSignatureTypes.POSSESSION_KNOWLEDGE, possessionKey, knowledgeKey, null);
+        this.transportKey = BaseEncoding.base64().decode(activation.getTransportKey());
+        this.tokenId = activation.getTokenId();
+        this.tokenSecret = BaseEncoding.base64().decode(activation.getTokenSecret());
+        this.ctrData = BaseEncoding.base64().decode(activation.getCtrData());
+    }
+
+    /**
+     * Compute PowerAuth signature HTTP header using possession and knowledge factors and move the signature counter.
+     *
+     * @param method HTTP method.
+     * @param resourceId Resource ID of the signed end-point.
+     * @param requestBody Request body bytes.
+     * @return Value of PowerAuth signature HTTP header.
+     * @throws Exception In case signature computation fails.
+     */
+    public String computeSignatureHeader(String method, String resourceId, byte[] requestBody) throws Exception {
+        final byte[] nonce = keyGenerator.generateRandomBytes(16);
+        final String data = PowerAuthHttpBody.getSignatureBaseString(method, resourceId, nonce, requestBody);
+        final String signature = clientSignature.signatureForData(data.getBytes(StandardCharsets.UTF_8), signatureKeys, ctrData,
+                PowerAuthSignatureFormat.getFormatForSignatureVersion(PROTOCOL_VERSION));
+        ctrData = hashBasedCounter.next(ctrData);
+        return new PowerAuthSignatureHttpHeader(activationId, applicationKey, signature,
+                PowerAuthSignatureTypes.POSSESSION_KNOWLEDGE.toString(), BaseEncoding.base64().encode(nonce), PROTOCOL_VERSION).buildHttpHeader();
+    }
+
+    /**
+     * Compute PowerAuth token HTTP header.
+     *
+     * @return Value of PowerAuth token HTTP header.
+     * @throws Exception In case token digest computation fails.
+     */
+    public String computeTokenHeader() throws Exception {
+        final byte[] nonce = keyGenerator.generateRandomBytes(16);
+        final long timestamp = System.currentTimeMillis();
+        final byte[] digest = tokenUtils.computeTokenDigest(nonce, tokenUtils.convertTokenTimestamp(timestamp), tokenSecret);
+        return new PowerAuthTokenHttpHeader(tokenId, BaseEncoding.base64().encode(digest), BaseEncoding.base64().encode(nonce),
+                String.valueOf(timestamp), PROTOCOL_VERSION).buildHttpHeader();
+    }
+
+    /**
+     * Compute PowerAuth encryption HTTP header for ECIES in application scope.
+     *
+     * @return Value of PowerAuth encryption HTTP header.
+     */
+    public String computeEncryptionHeader() {
+        return new PowerAuthEncryptionHttpHeader(applicationKey, PROTOCOL_VERSION).buildHttpHeader();
+    }
+
+    /**
+     * Encrypt request data using ECIES in application scope.
+     *
+     * @param requestData Request data.
+     * @return Encrypted request body bytes.
+     * @throws Exception In case encryption fails.
+     */
+    public byte[] encryptInApplicationScope(byte[] requestData) throws Exception {
+        final EciesEncryptor encryptor = eciesFactory.getEciesEncryptorForApplication(masterServerPublicKey,
+                applicationSecret, EciesSharedInfo1.APPLICATION_SCOPE_GENERIC);
+        return encryptRequest(encryptor, requestData);
+    }
+
+    /**
+     * Encrypt request data using ECIES in activation scope.
+     *
+     * @param requestData Request data.
+     * @return Encrypted request body bytes.
+     * @throws Exception In case encryption fails.
+     */
+    public byte[] encryptInActivationScope(byte[] requestData) throws Exception {
+        final EciesEncryptor encryptor = eciesFactory.getEciesEncryptorForActivation(serverPublicKey,
+                applicationSecret, transportKey, EciesSharedInfo1.ACTIVATION_SCOPE_GENERIC);
+        return encryptRequest(encryptor, requestData);
+    }
+
+    private byte[] encryptRequest(EciesEncryptor encryptor, byte[] requestData) throws Exception {
+        final EciesCryptogram cryptogram = encryptor.encryptRequest(requestData, true);
+        final EciesEncryptedRequest request = new EciesEncryptedRequest();
+        request.setEphemeralPublicKey(BaseEncoding.base64().encode(cryptogram.getEphemeralPublicKey()));
+        request.setEncryptedData(BaseEncoding.base64().encode(cryptogram.getEncryptedData()));
+        request.setMac(BaseEncoding.base64().encode(cryptogram.getMac()));
+        request.setNonce(BaseEncoding.base64().encode(cryptogram.getNonce()));
+        return objectMapper.writeValueAsBytes(request);
+    }
+
+    /**
+     * Get activation ID.
+     * @return Activation ID.
+     */
+    public String getActivationId() {
+        return activationId;
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.loadtest.model;
+
+/**
+ * Key material of a test activation from the client point of view. All binary values are Base64 encoded.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class ActivationFixture {
+
+    private String activationId;
+    private String serverPublicKey;
+    private String signaturePossessionKey;
+    private String signatureKnowledgeKey;
+    private String transportKey;
+    private String ctrData;
+    private String tokenId;
+    private String tokenSecret;
+
+    /**
+     * Get activation ID.
+     * @return Activation ID.
+     */
+    public String getActivationId() {
+        return activationId;
+    }
+
+    /**
+     * Set activation ID.
+     * @param activationId Activation ID.
+     */
+    public void setActivationId(String activationId) {
+        this.activationId = activationId;
+    }
+
+    /**
+     * Get server public key of the activation.
+     * @return Server public key of the activation.
+     */
+    public String getServerPublicKey() {
+        return serverPublicKey;
+    }
+
+    /**
+     * Set server public key of the activation.
+     * @param serverPublicKey Server public key of the activation.
+     */
+    public void setServerPublicKey(String serverPublicKey) {
+        this.serverPublicKey = serverPublicKey;
+    }
+
+    /**
+     * Get possession factor signature key.
+     * @return Possession factor signature key.
+     */
+    public String getSignaturePossessionKey() {
+        return signaturePossessionKey;
+    }
+
+    /**
+     * Set possession factor signature key.
+     * @param signaturePossessionKey Possession factor signature key.
+     */
+    public void setSignaturePossessionKey(String signaturePossessionKey) {
+        this.signaturePossessionKey = signaturePossessionKey;
+    }
+
+    /**
+     * Get knowledge factor signature key.
+     * @return Knowledge factor signature key.
+     */
+    public String getSignatureKnowledgeKey() {
+        return signatureKnowledgeKey;
+    }
+
+    /**
+     * Set knowledge factor signature key.
+     * @param signatureKnowledgeKey Knowledge factor signature key.
+     */
+    public void setSignatureKnowledgeKey(String signatureKnowledgeKey) {
+        this.signatureKnowledgeKey = signatureKnowledgeKey;
+    }
+
+    /**
+     * Get transport key.
+     * @return Transport key.
+     */
+    public String getTransportKey() {
+        return transportKey;
+    }
+
+    /**
+     * Set transport key.
+     * @param transportKey Transport key.
+     */
+    public void setTransportKey(String transportKey) {
+        this.transportKey = transportKey;
+    }
+
+    /**
+     * Get current signature counter data.
+     * @return Current signature counter data.
+     */
+    public String getCtrData() {
+        return ctrData;
+    }
+
+    /**
+     * Set current signature counter data.
+     * @param ctrData Current signature counter data.
+     */
+    public void setCtrData(String ctrData) {
+        this.ctrData = ctrData;
+    }
+
+    /**
+     * Get token ID.
+     * @return Token ID.
+     */
+    public String getTokenId() {
+        return tokenId;
+    }
+
+    /**
+     * Set token ID.
+     * @param tokenId Token ID.
+     */
+    public void setTokenId(String tokenId) {
+        this.tokenId = tokenId;
+    }
+
+    /**
+     * Get token secret.
+     * @return Token secret.
+     */
+    public String getTokenSecret() {
+        return tokenSecret;
+    }
+
+    /**
+     * Set token secret.
+     * @param tokenSecret Token secret.
+     */
+    public void setTokenSecret(String tokenSecret) {
+        this.tokenSecret = tokenSecret;
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.loadtest.model;
+
+import java.util.List;
+
+/**
+ * Test data published by stub PowerAuth server which enables the load test client to compute valid signatures,
+ * tokens and ECIES requests. The data contains key material of test activations and must never be used outside
+ * of load tests.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class LoadTestFixtures {
+
+    private String applicationKey;
+    private String applicationSecret;
+    private String masterServerPublicKey;
+    private List<ActivationFixture> activations;
+
+    /**
+     * Get application key.
+     * @return Application key.
+     */
+    public String getApplicationKey() {
+        return applicationKey;
+    }
+
+    /**
+     * Set application key.
+     * @param applicationKey Application key.
+     */
+    public void setApplicationKey(String applicationKey) {
+        this.applicationKey = applicationKey;
+    }
+
+    /**
+     * Get application secret.
+     * @return Application secret.
+     */
+    public String getApplicationSecret() {
+        return applicationSecret;
+    }
+
+    /**
+     * Set application secret.
+     * @param applicationSecret Application secret.
+     */
+    public void setApplicationSecret(String applicationSecret) {
+        this.applicationSecret = applicationSecret;
+    }
+
+    /**
+     * Get master server public key, Base64 encoded.
+     * @return Master server public key, Base64 encoded.
+     */
+    public String getMasterServerPublicKey() {
+        return masterServerPublicKey;
+    }
+
+    /**
+     * Set master server public key, Base64 encoded.
+     * @param masterServerPublicKey Master server public key, Base64 encoded.
+     */
+    public void setMasterServerPublicKey(String masterServerPublicKey) {
+        this.masterServerPublicKey = masterServerPublicKey;
+    }
+
+    /**
+     * Get test activations.
+     * @return Test activations.
+     */
+    public List<ActivationFixture> getActivations() {
+        return activations;
+    }
+
+    /**
+     * Set test activations.
+     * @param activations Test activations.
+     */
+    public void setActivations(List<ActivationFixture> activations) {
+        this.activations = activations;
+    }
+
+}
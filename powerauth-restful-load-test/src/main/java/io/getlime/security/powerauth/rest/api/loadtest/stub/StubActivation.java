@@ -0,0 +1,198 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.loadtest.stub;
+
+import com.google.common.io.BaseEncoding;
+import io.getlime.security.powerauth.crypto.lib.enums.PowerAuthSignatureFormat;
+import io.getlime.security.powerauth.crypto.lib.enums.PowerAuthSignatureTypes;
+import io.getlime.security.powerauth.crypto.lib.generator.HashBasedCounter;
+import io.getlime.security.powerauth.crypto.lib.generator.KeyGenerator;
+import io.getlime.security.powerauth.crypto.lib.util.KeyConvertor;
+import io.getlime.security.powerauth.crypto.lib.util.TokenUtils;
+import io.getlime.security.powerauth.crypto.server.keyfactory.PowerAuthServerKeyFactory;
+import io.getlime.security.powerauth.crypto.server.signature.PowerAuthServerSignature;
+import io.getlime.security.powerauth.rest.api.loadtest.model.ActivationFixture;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.interfaces.ECPrivateKey;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Test activation of stub PowerAuth server. The activation keys are derived using the same key derivation as
+ * in PowerAuth server, so that signatures and tokens computed by the load test client are verified using real
+ * cryptography.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class StubActivation {
+
+    /**
+     * Number of counter values which are checked ahead of the expected counter value. Requests which fail before
+     * reaching PowerAuth server, for example due to injected errors, move the client counter ahead.
+     */
+    private static final int SIGNATURE_COUNTER_LOOK_AHEAD = 20;
+
+    private static final KeyConvertor keyConvertor = new KeyConvertor();
+    private static final HashBasedCounter hashBasedCounter = new HashBasedCounter();
+    private static final PowerAuthServerSignature serverSignature = new PowerAuthServerSignature();
+    private static final TokenUtils tokenUtils = new TokenUtils();
+
+    private final String activationId;
+    private final String userId;
+    private final KeyPair serverKeyPair;
+    private final SecretKey signaturePossessionKey;
+    private final SecretKey signatureKnowledgeKey;
+    private final byte[] transportKey;
+    private final Map<PowerAuthSignatureTypes, List<SecretKey>> signatureKeys = new EnumMap<>(PowerAuthSignatureTypes.class);
+    private final AtomicReference<byte[]> ctrData;
+    private final String tokenId;
+    private final byte[] tokenSecret;
+
+    /**
+     * Generate a new test activation with a token.
+     *
+     * @param userId User ID.
+     * @throws Exception In case key generation fails.
+     */
+    public StubActivation(String userId) throws Exception {
+        final KeyGenerator keyGenerator = new KeyGenerator();
+        final PowerAuthServerKeyFactory serverKeyFactory = new PowerAuthServerKeyFactory();
+        this.activationId = UUID.randomUUID().toString();
+        this.userId = userId;
+        this.serverKeyPair = keyGenerator.generateKeyPair();
+        final KeyPair deviceKeyPair = keyGenerator.generateKeyPair();
+        final SecretKey masterSecretKey = serverKeyFactory.generateServerMasterSecretKey(serverKeyPair.getPrivate(), deviceKeyPair.getPublic());
+        this.signaturePossessionKey = serverKeyFactory.generateServerSignaturePossessionKey(masterSecretKey);
+        this.signatureKnowledgeKey = serverKeyFactory.generateServerSignatureKnowledgeKey(masterSecretKey);
+        this.transportKey = keyConvertor.convertSharedSecretKeyToBytes(serverKeyFactory.generateServerTransportKey(masterSecretKey));
+        for (PowerAuthSignatureTypes signatureType : PowerAuthSignatureTypes.values()) {
+            signatureKeys.put(signatureType, serverKeyFactory.keysForSignatureType(signatureType, masterSecretKey));
+        }
+        this.ctrData = new AtomicReference<>(hashBasedCounter.init());
+        this.tokenId = UUID.randomUUID().toString();
+        this.tokenSecret = tokenUtils.generateTokenSecret();
+    }
+
+    /**
+     * Verify signature of data and move the signature counter in case the signature is valid.
+     *
+     * @param data Signed data.
+     * @param signature Signature.
+     * @param signatureType Signature type.
+     * @param signatureVersion Signature version.
+     * @return Whether the signature is valid.
+     * @throws Exception In case signature verification fails.
+     */
+    public boolean verifySignature(String data, String signature, PowerAuthSignatureTypes signatureType, String signatureVersion) throws Exception {
+        final byte[] dataBytes = data.getBytes(StandardCharsets.UTF_8);
+        final PowerAuthSignatureFormat signatureFormat = PowerAuthSignatureFormat.getFormatForSignatureVersion(signatureVersion);
+        final List<SecretKey> keys = signatureKeys.get(signatureType);
+        final byte[] expectedCtrData = ctrData.get();
+        byte[] currentCtrData = expectedCtrData;
+        for (int i = 0; i < SIGNATURE_COUNTER_LOOK_AHEAD; i++) {
+            if (serverSignature.verifySignatureForData(dataBytes, signature, keys, currentCtrData, signatureFormat)) {
+                // Concurrent verification might have moved the counter already, the counter never moves back
+                ctrData.compareAndSet(expectedCtrData, hashBasedCounter.next(currentCtrData));
+                return true;
+            }
+            currentCtrData = hashBasedCounter.next(currentCtrData);
+        }
+        return false;
+    }
+
+    /**
+     * Validate token digest.
+     *
+     * @param tokenDigest Token digest.
+     * @param nonce Token nonce.
+     * @param timestamp Token timestamp.
+     * @return Whether the token digest is valid.
+     * @throws Exception In case token validation fails.
+     */
+    public boolean validateToken(byte[] tokenDigest, byte[] nonce, long timestamp) throws Exception {
+        return tokenUtils.validateTokenDigest(nonce, tokenUtils.convertTokenTimestamp(timestamp), tokenSecret, tokenDigest);
+    }
+
+    /**
+     * Convert the activation to test data for the load test client.
+     *
+     * @return Activation fixture.
+     * @throws Exception In case key conversion fails.
+     */
+    public ActivationFixture toFixture() throws Exception {
+        final ActivationFixture fixture = new ActivationFixture();
+        fixture.setActivationId(activationId);
+        fixture.setServerPublicKey(BaseEncoding.base64().encode(keyConvertor.convertPublicKeyToBytes(serverKeyPair.getPublic())));
+        fixture.setSignaturePossessionKey(BaseEncoding.base64().encode(keyConvertor.convertSharedSecretKeyToBytes(signaturePossessionKey)));
+        fixture.setSignatureKnowledgeKey(BaseEncoding.base64().encode(keyConvertor.convertSharedSecretKeyToBytes(signatureKnowledgeKey)));
+        fixture.setTransportKey(BaseEncoding.base64().encode(transportKey));
+        fixture.setCtrData(BaseEncoding.base64().encode(ctrData.get()));
+        fixture.setTokenId(tokenId);
+        fixture.setTokenSecret(BaseEncoding.base64().encode(tokenSecret));
+        return fixture;
+    }
+
+    /**
+     * Get activation ID.
+     * @return Activation ID.
+     */
+    public String getActivationId() {
+        return activationId;
+    }
+
+    /**
+     * Get user ID.
+     * @return User ID.
+     */
+    public String getUserId() {
+        return userId;
+    }
+
+    /**
+     * Get server private key of the activation.
+     * @return Server private key.
+     */
+    public ECPrivateKey getServerPrivateKey() {
+        return (ECPrivateKey) serverKeyPair.getPrivate();
+    }
+
+    /**
+     * Get transport key of the activation.
+     * @return Transport key bytes.
+     */
+    public byte[] getTransportKey() {
+        return transportKey;
+    }
+
+    /**
+     * Get token ID of the token which belongs to the activation.
+     * @return Token ID.
+     */
+    public String getTokenId() {
+        return tokenId;
+    }
+
+}
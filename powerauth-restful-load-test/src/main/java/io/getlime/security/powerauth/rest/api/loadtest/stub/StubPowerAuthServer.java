@@ -0,0 +1,343 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.loadtest.stub;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.BaseEncoding;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.wultra.security.powerauth.client.v3.*;
+import io.getlime.core.rest.model.base.request.ObjectRequest;
+import io.getlime.core.rest.model.base.response.ErrorResponse;
+import io.getlime.core.rest.model.base.response.ObjectResponse;
+import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.EciesDecryptor;
+import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.EciesFactory;
+import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.model.EciesSharedInfo1;
+import io.getlime.security.powerauth.crypto.lib.enums.PowerAuthSignatureTypes;
+import io.getlime.security.powerauth.crypto.lib.generator.KeyGenerator;
+import io.getlime.security.powerauth.crypto.lib.util.KeyConvertor;
+import io.getlime.security.powerauth.rest.api.loadtest.model.ActivationFixture;
+import io.getlime.security.powerauth.rest.api.loadtest.model.LoadTestFixtures;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.Security;
+import java.security.interfaces.ECPrivateKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process stand-in for PowerAuth server which implements the REST endpoints called by the PowerAuth REST client
+ * during signature verification, token validation and ECIES decryption. Signatures, tokens and ECIES keys are
+ * processed using real cryptography with test activations generated on startup. The server supports injection
+ * of latency and errors, so that the integration can be tested under realistic conditions.
+ * <br><br>
+ * The key material of test activations is published on the "/rest/load-test/fixtures" endpoint for the load test
+ * client. The server must be used only for load testing.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class StubPowerAuthServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(StubPowerAuthServer.class);
+
+    /**
+     * Context path of the REST API, use "http://host:port/rest" as PowerAuth service URL.
+     */
+    public static final String CONTEXT_PATH = "/rest";
+
+    /**
+     * Path of endpoint which publishes test data for the load test client.
+     */
+    public static final String FIXTURES_PATH = CONTEXT_PATH + "/load-test/fixtures";
+
+    private static final long APPLICATION_ID = 1L;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final EciesFactory eciesFactory = new EciesFactory();
+    private final KeyConvertor keyConvertor = new KeyConvertor();
+    private final StubServerConfiguration configuration;
+    private final String applicationKey;
+    private final String applicationSecret;
+    private final KeyPair masterKeyPair;
+    private final List<StubActivation> activations = new ArrayList<>();
+    private final Map<String, StubActivation> activationsById = new ConcurrentHashMap<>();
+    private final Map<String, StubActivation> activationsByTokenId = new ConcurrentHashMap<>();
+
+    private HttpServer httpServer;
+    private ExecutorService executorService;
+
+    /**
+     * Create stub PowerAuth server and generate test activations.
+     *
+     * @param configuration Stub server configuration.
+     * @throws Exception In case key generation fails.
+     */
+    public StubPowerAuthServer(StubServerConfiguration configuration) throws Exception {
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+        final KeyGenerator keyGenerator = new KeyGenerator();
+        this.configuration = configuration;
+        this.applicationKey = BaseEncoding.base64().encode(keyGenerator.generateRandomBytes(16));
+        this.applicationSecret = BaseEncoding.base64().encode(keyGenerator.generateRandomBytes(16));
+        this.masterKeyPair = keyGenerator.generateKeyPair();
+        for (int i = 0; i < configuration.getActivationCount(); i++) {
+            final StubActivation activation = new StubActivation("load-test-user-" + i);
+            activations.add(activation);
+            activationsById.put(activation.getActivationId(), activation);
+            activationsByTokenId.put(activation.getTokenId(), activation);
+        }
+    }
+
+    /**
+     * Run stub PowerAuth server configured using system properties, see {@link StubServerConfiguration#fromSystemProperties()}.
+     *
+     * @param args Command line arguments, not used.
+     * @throws Exception In case the server cannot be started.
+     */
+    public static void main(String[] args) throws Exception {
+        final StubPowerAuthServer server = new StubPowerAuthServer(StubServerConfiguration.fromSystemProperties());
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+    }
+
+    /**
+     * Start the HTTP server.
+     *
+     * @throws IOException In case the HTTP server cannot be started.
+     */
+    public void start() throws IOException {
+        final AtomicInteger threadCounter = new AtomicInteger();
+        executorService = Executors.newCachedThreadPool(runnable -> {
+            final Thread thread = new Thread(runnable, "stub-powerauth-server-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        httpServer = HttpServer.create(new InetSocketAddress(configuration.getPort()), 1024);
+        httpServer.setExecutor(executorService);
+        httpServer.createContext(CONTEXT_PATH + "/v3/signature/verify", exchange -> handleCall(exchange, VerifySignatureRequest.class, this::verifySignature));
+        httpServer.createContext(CONTEXT_PATH + "/v3/token/validate", exchange -> handleCall(exchange, ValidateTokenRequest.class, this::validateToken));
+        httpServer.createContext(CONTEXT_PATH + "/v3/ecies/decryptor", exchange -> handleCall(exchange, GetEciesDecryptorRequest.class, this::getEciesDecryptor));
+        httpServer.createContext(CONTEXT_PATH + "/v3/status", exchange -> handleCall(exchange, GetSystemStatusRequest.class, this::getSystemStatus));
+        httpServer.createContext(FIXTURES_PATH, this::handleFixtures);
+        httpServer.createContext("/", exchange -> sendResponse(exchange, 404, new ErrorResponse("ERROR_NOT_FOUND", "Endpoint is not supported by stub PowerAuth server")));
+        httpServer.start();
+        logger.info("Stub PowerAuth server started, URL: http://localhost:{}{}, activations: {}, latency: {} ms (+{} ms jitter), error rate: {}",
+                getPort(), CONTEXT_PATH, activations.size(), configuration.getLatencyMillis(), configuration.getLatencyJitterMillis(), configuration.getErrorRate());
+    }
+
+    /**
+     * Stop the HTTP server.
+     */
+    public void stop() {
+        if (httpServer != null) {
+            httpServer.stop(0);
+            executorService.shutdownNow();
+            logger.info("Stub PowerAuth server stopped");
+        }
+    }
+
+    /**
+     * Get HTTP port of the running server.
+     *
+     * @return HTTP port.
+     */
+    public int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    /**
+     * Get test data for the load test client.
+     *
+     * @return Load test fixtures.
+     * @throws Exception In case key conversion fails.
+     */
+    public LoadTestFixtures getFixtures() throws Exception {
+        final List<ActivationFixture> activationFixtures = new ArrayList<>();
+        for (StubActivation activation : activations) {
+            activationFixtures.add(activation.toFixture());
+        }
+        final LoadTestFixtures fixtures = new LoadTestFixtures();
+        fixtures.setApplicationKey(applicationKey);
+        fixtures.setApplicationSecret(applicationSecret);
+        fixtures.setMasterServerPublicKey(BaseEncoding.base64().encode(keyConvertor.convertPublicKeyToBytes(masterKeyPair.getPublic())));
+        fixtures.setActivations(activationFixtures);
+        return fixtures;
+    }
+
+    private VerifySignatureResponse verifySignature(VerifySignatureRequest request) throws Exception {
+        final VerifySignatureResponse response = new VerifySignatureResponse();
+        final StubActivation activation = activationsById.get(request.getActivationId());
+        if (activation == null) {
+            response.setSignatureValid(false);
+            response.setActivationStatus(ActivationStatus.REMOVED);
+            return response;
+        }
+        final PowerAuthSignatureTypes signatureType = PowerAuthSignatureTypes.getEnumFromString(request.getSignatureType().value());
+        final String signatureVersion = request.getForcedSignatureVersion() != null ? request.getForcedSignatureVersion() + ".0" : request.getSignatureVersion();
+        final boolean signatureValid = applicationKey.equals(request.getApplicationKey()) && signatureType != null
+                && activation.verifySignature(request.getData(), request.getSignature(), signatureType, signatureVersion);
+        response.setSignatureValid(signatureValid);
+        response.setActivationStatus(ActivationStatus.ACTIVE);
+        response.setActivationId(activation.getActivationId());
+        response.setUserId(activation.getUserId());
+        response.setApplicationId(APPLICATION_ID);
+        response.setSignatureType(request.getSignatureType());
+        return response;
+    }
+
+    private ValidateTokenResponse validateToken(ValidateTokenRequest request) throws Exception {
+        final ValidateTokenResponse response = new ValidateTokenResponse();
+        final StubActivation activation = activationsByTokenId.get(request.getTokenId());
+        if (activation == null) {
+            response.setTokenValid(false);
+            return response;
+        }
+        final boolean tokenValid = activation.validateToken(BaseEncoding.base64().decode(request.getTokenDigest()),
+                BaseEncoding.base64().decode(request.getNonce()), request.getTimestamp());
+        response.setTokenValid(tokenValid);
+        response.setActivationId(activation.getActivationId());
+        response.setUserId(activation.getUserId());
+        response.setApplicationId(APPLICATION_ID);
+        response.setSignatureType(SignatureType.POSSESSION_KNOWLEDGE);
+        return response;
+    }
+
+    private GetEciesDecryptorResponse getEciesDecryptor(GetEciesDecryptorRequest request) throws Exception {
+        if (!applicationKey.equals(request.getApplicationKey())) {
+            throw new IllegalArgumentException("Unknown application key");
+        }
+        final byte[] applicationSecretBytes = applicationSecret.getBytes(StandardCharsets.UTF_8);
+        final EciesDecryptor decryptor;
+        if (request.getActivationId() == null) {
+            decryptor = eciesFactory.getEciesDecryptorForApplication((ECPrivateKey) masterKeyPair.getPrivate(),
+                    applicationSecretBytes, EciesSharedInfo1.APPLICATION_SCOPE_GENERIC);
+        } else {
+            final StubActivation activation = activationsById.get(request.getActivationId());
+            if (activation == null) {
+                throw new IllegalArgumentException("Unknown activation");
+            }
+            decryptor = eciesFactory.getEciesDecryptorForActivation(activation.getServerPrivateKey(),
+                    applicationSecretBytes, activation.getTransportKey(), EciesSharedInfo1.ACTIVATION_SCOPE_GENERIC);
+        }
+        decryptor.initEnvelopeKey(BaseEncoding.base64().decode(request.getEphemeralPublicKey()));
+        final GetEciesDecryptorResponse response = new GetEciesDecryptorResponse();
+        response.setSecretKey(BaseEncoding.base64().encode(decryptor.getEnvelopeKey().getSecretKey()));
+        response.setSharedInfo2(BaseEncoding.base64().encode(decryptor.getSharedInfo2()));
+        return response;
+    }
+
+    private GetSystemStatusResponse getSystemStatus(GetSystemStatusRequest request) {
+        final GetSystemStatusResponse response = new GetSystemStatusResponse();
+        response.setStatus("OK");
+        response.setApplicationName("stub-powerauth-server");
+        return response;
+    }
+
+    /**
+     * Handle a PowerAuth server call with latency and error injection.
+     *
+     * @param exchange HTTP exchange.
+     * @param requestType Type of request object.
+     * @param call Call implementation.
+     * @param <T> Type of request object.
+     * @param <R> Type of response object.
+     * @throws IOException In case HTTP exchange fails.
+     */
+    private <T, R> void handleCall(HttpExchange exchange, Class<T> requestType, StubCall<T, R> call) throws IOException {
+        try {
+            injectLatency();
+            if (configuration.getErrorRate() > 0 && ThreadLocalRandom.current().nextDouble() < configuration.getErrorRate()) {
+                sendResponse(exchange, 500, new ErrorResponse("ERROR_GENERIC", "Injected error"));
+                return;
+            }
+            final JavaType objectRequestType = objectMapper.getTypeFactory().constructParametricType(ObjectRequest.class, requestType);
+            final ObjectRequest<T> request;
+            try (InputStream is = exchange.getRequestBody()) {
+                request = objectMapper.readValue(is, objectRequestType);
+            }
+            sendResponse(exchange, 200, new ObjectResponse<>(call.execute(request.getRequestObject())));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            sendResponse(exchange, 503, new ErrorResponse("ERROR_GENERIC", "Stub server is stopping"));
+        } catch (Exception ex) {
+            logger.warn("Stub PowerAuth server call failed, path: {}, error: {}", exchange.getRequestURI(), ex.getMessage());
+            logger.debug("Error details", ex);
+            sendResponse(exchange, 400, new ErrorResponse("ERROR_GENERIC", ex.getMessage()));
+        }
+    }
+
+    private void handleFixtures(HttpExchange exchange) throws IOException {
+        try {
+            sendResponse(exchange, 200, getFixtures());
+        } catch (Exception ex) {
+            logger.warn("Load test fixtures could not be created, error: {}", ex.getMessage());
+            logger.debug("Error details", ex);
+            sendResponse(exchange, 500, new ErrorResponse("ERROR_GENERIC", ex.getMessage()));
+        }
+    }
+
+    private void injectLatency() throws InterruptedException {
+        long latency = configuration.getLatencyMillis();
+        if (configuration.getLatencyJitterMillis() > 0) {
+            latency += ThreadLocalRandom.current().nextLong(configuration.getLatencyJitterMillis() + 1);
+        }
+        if (latency > 0) {
+            Thread.sleep(latency);
+        }
+    }
+
+    private void sendResponse(HttpExchange exchange, int status, Object response) throws IOException {
+        final byte[] responseBytes = objectMapper.writeValueAsBytes(response);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, responseBytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(responseBytes);
+        }
+    }
+
+    /**
+     * Implementation of a PowerAuth server call.
+     *
+     * @param <T> Type of request object.
+     * @param <R> Type of response object.
+     */
+    @FunctionalInterface
+    private interface StubCall<T, R> {
+        R execute(T request) throws Exception;
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.loadtest.stub;
+
+/**
+ * Configuration of stub PowerAuth server including latency and error injection.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class StubServerConfiguration {
+
+    private int port = 18080;
+    private int activationCount = 256;
+    private long latencyMillis = 0;
+    private long latencyJitterMillis = 0;
+    private double errorRate = 0.0;
+
+    /**
+     * Create configuration from system properties with "stub." prefix, default values are used for missing properties.
+     *
+     * @return Stub server configuration.
+     */
+    public static StubServerConfiguration fromSystemProperties() {
+        final StubServerConfiguration configuration = new StubServerConfiguration();
+        configuration.setPort(Integer.getInteger("stub.port", configuration.getPort()));
+        configuration.setActivationCount(Integer.getInteger("stub.activationCount", configuration.getActivationCount()));
+        configuration.setLatencyMillis(Long.getLong("stub.latencyMillis", configuration.getLatencyMillis()));
+        configuration.setLatencyJitterMillis(Long.getLong("stub.latencyJitterMillis", configuration.getLatencyJitterMillis()));
+        configuration.setErrorRate(Double.parseDouble(System.getProperty("stub.errorRate", String.valueOf(configuration.getErrorRate()))));
+        return configuration;
+    }
+
+    /**
+     * Get HTTP port of stub server.
+     * @return HTTP port, 0 for a random free port.
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Set HTTP port of stub server.
+     * @param port HTTP port, 0 for a random free port.
+     */
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Get number of generated test activations.
+     * @return Number of test activations.
+     */
+    public int getActivationCount() {
+        return activationCount;
+    }
+
+    /**
+     * Set number of generated test activations. Each load test thread uses its own activation, so that signature
+     * counters of concurrent requests do not collide.
+     * @param activationCount Number of test activations.
+     */
+    public void setActivationCount(int activationCount) {
+        this.activationCount = activationCount;
+    }
+
+    /**
+     * Get latency added to each PowerAuth server call.
+     * @return Latency in milliseconds.
+     */
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    /**
+     * Set latency added to each PowerAuth server call.
+     * @param latencyMillis Latency in milliseconds.
+     */
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Get maximum random latency added on top of the fixed latency.
+     * @return Latency jitter in milliseconds.
+     */
+    public long getLatencyJitterMillis() {
+        return latencyJitterMillis;
+    }
+
+    /**
+     * Set maximum random latency added on top of the fixed latency.
+     * @param latencyJitterMillis Latency jitter in milliseconds.
+     */
+    public void setLatencyJitterMillis(long latencyJitterMillis) {
+        this.latencyJitterMillis = latencyJitterMillis;
+    }
+
+    /**
+     * Get ratio of PowerAuth server calls which fail with an injected error.
+     * @return Error rate between 0.0 and 1.0.
+     */
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    /**
+     * Set ratio of PowerAuth server calls which fail with an injected error.
+     * @param errorRate Error rate between 0.0 and 1.0.
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.activation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.BaseEncoding;
+import io.getlime.security.powerauth.rest.api.base.client.RequestCoalescer;
+import io.getlime.security.powerauth.rest.api.model.request.v3.ActivationLayer1Request;
+import io.getlime.security.powerauth.rest.api.model.response.v3.ActivationLayer1Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded cache of activation responses which makes activation creation idempotent. Mobile clients retry activation
+ * requests after a timeout, the retried request contains the same activation data, including the ECIES ephemeral
+ * public key. The response of a successful activation is cached for a short time and it is returned for retried
+ * requests without calling PowerAuth server again. Concurrent identical requests are processed only once.
+ * <br><br>
+ * Responses are keyed by application key, ECIES ephemeral public key and digest of the whole activation request,
+ * so that only exact repetitions of a request are answered from the cache. Failed activations are not cached.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class ActivationResponseCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ActivationResponseCache.class);
+
+    private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+    private final RequestCoalescer<CacheKey, ActivationLayer1Response> coalescer = new RequestCoalescer<>();
+    private final Cache<CacheKey, ActivationLayer1Response> activationResponses;
+
+    /**
+     * Constructor with cache limits.
+     *
+     * @param maxSize Maximum number of cached activation responses.
+     * @param timeToLive Lifetime of an activation response since it was cached.
+     */
+    public ActivationResponseCache(long maxSize, Duration timeToLive) {
+        this.activationResponses = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(timeToLive.toMillis(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Get a cached response of an identical activation request or create the activation.
+     *
+     * @param applicationKey Application key.
+     * @param request Activation layer 1 request.
+     * @param activation Activation creation, called in case the response is not cached.
+     * @return Activation layer 1 response.
+     * @throws Exception In case the activation creation fails, the exception thrown by the activation creation is rethrown.
+     */
+    public ActivationLayer1Response execute(String applicationKey, ActivationLayer1Request request, Callable<ActivationLayer1Response> activation) throws Exception {
+        final String ephemeralPublicKey = request.getActivationData() != null ? request.getActivationData().getEphemeralPublicKey() : null;
+        if (applicationKey == null || ephemeralPublicKey == null) {
+            return activation.call();
+        }
+        final CacheKey key = new CacheKey(applicationKey, ephemeralPublicKey, requestDigest(request));
+        final ActivationLayer1Response cachedResponse = activationResponses.getIfPresent(key);
+        if (cachedResponse != null) {
+            logger.debug("Activation response is replayed for a repeated request, application key: {}", applicationKey);
+            return cachedResponse;
+        }
+        return coalescer.execute(key, () -> {
+            // The response may have been cached by a call which completed in the meantime
+            final ActivationLayer1Response response = activationResponses.getIfPresent(key);
+            if (response != null) {
+                return response;
+            }
+            final ActivationLayer1Response activationResponse = activation.call();
+            if (activationResponse != null) {
+                activationResponses.put(key, activationResponse);
+            }
+            return activationResponse;
+        });
+    }
+
+    /**
+     * Discard all cached activation responses.
+     */
+    public void invalidateAll() {
+        activationResponses.invalidateAll();
+    }
+
+    /**
+     * Compute digest of the whole activation request, map entries are ordered so that the digest does not depend on
+     * the order of attributes.
+     */
+    private String requestDigest(ActivationLayer1Request request) throws Exception {
+        final byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+        return BaseEncoding.base64().encode(digest);
+    }
+
+    /**
+     * Key of cached activation response.
+     */
+    private static final class CacheKey {
+
+        private final String applicationKey;
+        private final String ephemeralPublicKey;
+        private final String requestDigest;
+
+        CacheKey(String applicationKey, String ephemeralPublicKey, String requestDigest) {
+            this.applicationKey = applicationKey;
+            this.ephemeralPublicKey = ephemeralPublicKey;
+            this.requestDigest = requestDigest;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final CacheKey cacheKey = (CacheKey) o;
+            return applicationKey.equals(cacheKey.applicationKey) && ephemeralPublicKey.equals(cacheKey.ephemeralPublicKey) && requestDigest.equals(cacheKey.requestDigest);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(applicationKey, ephemeralPublicKey, requestDigest);
+        }
+    }
+
+}
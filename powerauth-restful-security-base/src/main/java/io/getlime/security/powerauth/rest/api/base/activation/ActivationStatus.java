@@ -0,0 +1,55 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.activation;
+
+/**
+ * Activation status as known by PowerAuth server, used in records which enable processing of requests without
+ * a call to PowerAuth server.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public enum ActivationStatus {
+
+    /**
+     * Activation was created.
+     */
+    CREATED,
+
+    /**
+     * Activation is waiting for commit.
+     */
+    PENDING_COMMIT,
+
+    /**
+     * Activation is active.
+     */
+    ACTIVE,
+
+    /**
+     * Activation is blocked.
+     */
+    BLOCKED,
+
+    /**
+     * Activation was removed.
+     */
+    REMOVED
+
+}
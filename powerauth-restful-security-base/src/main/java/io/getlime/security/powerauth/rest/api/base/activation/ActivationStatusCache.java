@@ -0,0 +1,254 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.activation;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.BaseEncoding;
+import io.getlime.security.powerauth.crypto.client.activation.PowerAuthClientActivation;
+import io.getlime.security.powerauth.crypto.lib.generator.KeyGenerator;
+import io.getlime.security.powerauth.crypto.lib.model.ActivationStatusBlobInfo;
+import io.getlime.security.powerauth.crypto.lib.util.KeyConvertor;
+import io.getlime.security.powerauth.crypto.server.activation.PowerAuthServerActivation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.SecretKey;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded cache of activation status obtained from PowerAuth server, keyed by activation ID. The encrypted status
+ * blob depends on the challenge sent by the mobile client, so the blob is reused only where the protocol allows it:
+ * <ul>
+ *     <li>Requests without challenge (protocol version 3.0) reuse the encrypted status blob as-is.</li>
+ *     <li>Requests with challenge (protocol version 3.1) reuse the decrypted status, which is encrypted again
+ *     for the new challenge with a new nonce. This requires the transport key of the activation.</li>
+ * </ul>
+ * Cached status is discarded when the activation changes in this node, for example when it is removed, committed,
+ * upgraded or used for signature verification. Changes made in other nodes are propagated using
+ * {@link ActivationStatusInvalidationPublisher}. Other changes, such as signature verifications in nodes without
+ * the publisher or changes made by other systems, are reflected when the cached status expires, so the lifetime
+ * of a cached status is limited by {@link #MAX_TIME_TO_LIVE}.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class ActivationStatusCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ActivationStatusCache.class);
+
+    /**
+     * Maximum lifetime of a cached activation status. The status includes the signature counter, which is not
+     * invalidated when the activation is used outside of this application.
+     */
+    public static final Duration MAX_TIME_TO_LIVE = Duration.ofSeconds(10);
+
+    private static final int STATUS_BLOB_NONCE_LENGTH = 16;
+    private static final int INVALIDATION_STRIPES = 64;
+
+    private final PowerAuthClientActivation clientActivation = new PowerAuthClientActivation();
+    private final PowerAuthServerActivation serverActivation = new PowerAuthServerActivation();
+    private final KeyConvertor keyConvertor = new KeyConvertor();
+    private final KeyGenerator keyGenerator = new KeyGenerator();
+    private final Cache<String, CachedStatus> statuses;
+    private final AtomicLongArray invalidationStamps = new AtomicLongArray(INVALIDATION_STRIPES);
+
+    private ActivationStatusInvalidationPublisher invalidationPublisher;
+
+    /**
+     * Constructor with cache limits.
+     *
+     * @param maxSize Maximum number of cached activation statuses.
+     * @param timeToLive Lifetime of a cached activation status since it was cached, at most {@link #MAX_TIME_TO_LIVE}.
+     */
+    public ActivationStatusCache(long maxSize, Duration timeToLive) {
+        if (timeToLive.compareTo(MAX_TIME_TO_LIVE) > 0) {
+            throw new IllegalArgumentException("Activation status lifetime exceeds maximum lifetime: " + MAX_TIME_TO_LIVE);
+        }
+        this.statuses = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(timeToLive.toMillis(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Set publisher of invalidation messages to other nodes.
+     *
+     * @param invalidationPublisher Invalidation publisher.
+     */
+    public void setInvalidationPublisher(ActivationStatusInvalidationPublisher invalidationPublisher) {
+        this.invalidationPublisher = invalidationPublisher;
+    }
+
+    /**
+     * Get invalidation stamp of an activation. The stamp should be obtained before the status is requested from
+     * PowerAuth server and passed to {@link #putStatus(String, long, String, EncryptedActivationStatus, byte[])},
+     * so that status obtained before a concurrent invalidation is not cached.
+     *
+     * @param activationId Activation ID.
+     * @return Invalidation stamp.
+     */
+    public long getInvalidationStamp(String activationId) {
+        return invalidationStamps.get(stripe(activationId));
+    }
+
+    /**
+     * Get cached activation status encrypted for given challenge.
+     *
+     * @param activationId Activation ID.
+     * @param challenge Challenge sent by the mobile client, Base64 encoded, null for protocol version 3.0.
+     * @param transportKey Transport key of the activation, null in case it is not available.
+     * @return Encrypted activation status or null in case the status should be obtained from PowerAuth server.
+     */
+    public EncryptedActivationStatus getStatus(String activationId, String challenge, byte[] transportKey) {
+        final CachedStatus cachedStatus = statuses.getIfPresent(activationId);
+        if (cachedStatus == null) {
+            return null;
+        }
+        if (challenge == null) {
+            return cachedStatus.statusWithoutChallenge;
+        }
+        if (cachedStatus.statusBlobInfo == null || transportKey == null) {
+            return null;
+        }
+        try {
+            final SecretKey transportSecretKey = keyConvertor.convertBytesToSharedSecretKey(transportKey);
+            final byte[] nonce = keyGenerator.generateRandomBytes(STATUS_BLOB_NONCE_LENGTH);
+            final byte[] encryptedStatusBlob = serverActivation.encryptedStatusBlob(cachedStatus.statusBlobInfo,
+                    BaseEncoding.base64().decode(challenge), nonce, transportSecretKey);
+            return new EncryptedActivationStatus(BaseEncoding.base64().encode(encryptedStatusBlob), BaseEncoding.base64().encode(nonce));
+        } catch (Exception ex) {
+            logger.warn("Activation status encryption failed, error: {}", ex.getMessage());
+            logger.debug("Error details", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Cache activation status obtained from PowerAuth server. Status obtained for a request with challenge is cached
+     * only in case the transport key is available.
+     *
+     * @param activationId Activation ID.
+     * @param invalidationStamp Invalidation stamp obtained before the status was requested from PowerAuth server.
+     * @param challenge Challenge sent by the mobile client, Base64 encoded, null for protocol version 3.0.
+     * @param status Encrypted activation status obtained from PowerAuth server.
+     * @param transportKey Transport key of the activation, null in case it is not available.
+     */
+    public void putStatus(String activationId, long invalidationStamp, String challenge, EncryptedActivationStatus status, byte[] transportKey) {
+        if (status.getEncryptedStatusBlob() == null) {
+            return;
+        }
+        final CachedStatus cachedStatus;
+        if (challenge == null) {
+            cachedStatus = new CachedStatus(null, status);
+        } else {
+            if (transportKey == null || status.getEncryptedStatusBlobNonce() == null) {
+                return;
+            }
+            final ActivationStatusBlobInfo statusBlobInfo = decryptStatusBlob(status, challenge, transportKey);
+            if (statusBlobInfo == null) {
+                return;
+            }
+            cachedStatus = new CachedStatus(statusBlobInfo, null);
+        }
+        statuses.put(activationId, cachedStatus);
+        if (getInvalidationStamp(activationId) != invalidationStamp) {
+            // Activation was invalidated while the status was obtained, the status may be outdated
+            statuses.invalidate(activationId);
+        }
+    }
+
+    /**
+     * Discard cached status of given activation in this node and publish the invalidation to other nodes.
+     *
+     * @param activationId Activation ID.
+     */
+    public void invalidateActivation(String activationId) {
+        onInvalidationMessage(activationId);
+        if (invalidationPublisher != null) {
+            try {
+                invalidationPublisher.publishInvalidation(activationId);
+            } catch (Exception ex) {
+                logger.warn("Activation status invalidation could not be published, activation ID: {}, error: {}", activationId, ex.getMessage());
+                logger.debug("Error details", ex);
+            }
+        }
+    }
+
+    /**
+     * Discard cached status of given activation in this node. The method should be called when an invalidation
+     * message published by another node is received.
+     *
+     * @param activationId Activation ID.
+     */
+    public void onInvalidationMessage(String activationId) {
+        invalidationStamps.incrementAndGet(stripe(activationId));
+        statuses.invalidate(activationId);
+    }
+
+    /**
+     * Discard all cached statuses in this node.
+     */
+    public void invalidateAll() {
+        for (int i = 0; i < INVALIDATION_STRIPES; i++) {
+            invalidationStamps.incrementAndGet(i);
+        }
+        statuses.invalidateAll();
+    }
+
+    private ActivationStatusBlobInfo decryptStatusBlob(EncryptedActivationStatus status, String challenge, byte[] transportKey) {
+        try {
+            final SecretKey transportSecretKey = keyConvertor.convertBytesToSharedSecretKey(transportKey);
+            final ActivationStatusBlobInfo statusBlobInfo = clientActivation.getStatusFromEncryptedBlob(
+                    BaseEncoding.base64().decode(status.getEncryptedStatusBlob()), BaseEncoding.base64().decode(challenge),
+                    BaseEncoding.base64().decode(status.getEncryptedStatusBlobNonce()), transportSecretKey);
+            if (!statusBlobInfo.isValid()) {
+                logger.warn("Activation status blob is not valid, the transport key does not match the activation");
+                return null;
+            }
+            return statusBlobInfo;
+        } catch (Exception ex) {
+            logger.warn("Activation status decryption failed, error: {}", ex.getMessage());
+            logger.debug("Error details", ex);
+            return null;
+        }
+    }
+
+    private static int stripe(String activationId) {
+        return (activationId.hashCode() & Integer.MAX_VALUE) % INVALIDATION_STRIPES;
+    }
+
+    /**
+     * Cached activation status, either decrypted status for requests with challenge or encrypted status blob for
+     * requests without challenge.
+     */
+    private static final class CachedStatus {
+
+        private final ActivationStatusBlobInfo statusBlobInfo;
+        private final EncryptedActivationStatus statusWithoutChallenge;
+
+        CachedStatus(ActivationStatusBlobInfo statusBlobInfo, EncryptedActivationStatus statusWithoutChallenge) {
+            this.statusBlobInfo = statusBlobInfo;
+            this.statusWithoutChallenge = statusWithoutChallenge;
+        }
+    }
+
+}
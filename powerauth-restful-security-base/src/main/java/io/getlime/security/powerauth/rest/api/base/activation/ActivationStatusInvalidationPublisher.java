@@ -0,0 +1,38 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.activation;
+
+/**
+ * Publisher of activation status invalidation messages to other nodes of the application. The application implements
+ * this interface in case it runs on multiple nodes, for example using a message broker, and calls
+ * {@link ActivationStatusCache#onInvalidationMessage(String)} on other nodes when a message is received.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public interface ActivationStatusInvalidationPublisher {
+
+    /**
+     * Publish invalidation of cached status of given activation to other nodes.
+     *
+     * @param activationId Activation ID.
+     */
+    void publishInvalidation(String activationId);
+
+}
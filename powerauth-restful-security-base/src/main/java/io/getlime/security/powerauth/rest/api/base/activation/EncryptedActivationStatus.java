@@ -0,0 +1,61 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.activation;
+
+/**
+ * Encrypted activation status blob with its nonce, as provided to the mobile client.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class EncryptedActivationStatus {
+
+    private final String encryptedStatusBlob;
+    private final String encryptedStatusBlobNonce;
+
+    /**
+     * Constructor with encrypted status blob and nonce.
+     *
+     * @param encryptedStatusBlob Encrypted status blob, Base64 encoded.
+     * @param encryptedStatusBlobNonce Nonce of encrypted status blob, Base64 encoded, null for protocol version 3.0.
+     */
+    public EncryptedActivationStatus(String encryptedStatusBlob, String encryptedStatusBlobNonce) {
+        this.encryptedStatusBlob = encryptedStatusBlob;
+        this.encryptedStatusBlobNonce = encryptedStatusBlobNonce;
+    }
+
+    /**
+     * Get encrypted status blob.
+     *
+     * @return Encrypted status blob, Base64 encoded.
+     */
+    public String getEncryptedStatusBlob() {
+        return encryptedStatusBlob;
+    }
+
+    /**
+     * Get nonce of encrypted status blob.
+     *
+     * @return Nonce of encrypted status blob, Base64 encoded, null for protocol version 3.0.
+     */
+    public String getEncryptedStatusBlobNonce() {
+        return encryptedStatusBlobNonce;
+    }
+
+}
@@ -37,4 +37,15 @@ public interface PowerAuthApplicationConfiguration {
      */
     Map<String, Object> statusServiceCustomObject();
 
+    /**
+     * Cacheable variant of {@link #statusServiceCustomObject()}. The returned object is requested again only after
+     * its refresh interval elapses and it is serialized only when its version changes, the serialized form is reused
+     * for all /pa/activation/status responses. Default implementation returns null, in this case
+     * {@link #statusServiceCustomObject()} is called for each request and this method is not called again.
+     * @return Versioned custom object with refresh interval or null in case the custom object is not cacheable.
+     */
+    default StatusServiceCustomObject cacheableStatusServiceCustomObject() {
+        return null;
+    }
+
 }
@@ -0,0 +1,101 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.application;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read-only custom object with pre-serialized JSON form. The object is a regular map for Java code, when it is
+ * serialized using Jackson, the pre-serialized JSON is written as-is instead of serializing the map again.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+@JsonSerialize(using = SerializedCustomObject.Serializer.class)
+public final class SerializedCustomObject extends AbstractMap<String, Object> {
+
+    private final Map<String, Object> customObject;
+    private final String json;
+
+    /**
+     * Constructor with custom object and its JSON form.
+     *
+     * @param customObject Read-only custom object.
+     * @param json JSON form of the custom object.
+     */
+    SerializedCustomObject(Map<String, Object> customObject, String json) {
+        this.customObject = customObject;
+        this.json = json;
+    }
+
+    /**
+     * Get JSON form of the custom object.
+     *
+     * @return JSON form of the custom object.
+     */
+    public String getJson() {
+        return json;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return customObject.entrySet();
+    }
+
+    @Override
+    public Object get(Object key) {
+        return customObject.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return customObject.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return customObject.size();
+    }
+
+    /**
+     * Serializer which writes the pre-serialized JSON form.
+     */
+    static final class Serializer extends StdSerializer<SerializedCustomObject> {
+
+        private static final long serialVersionUID = 5319046870263543128L;
+
+        Serializer() {
+            super(SerializedCustomObject.class);
+        }
+
+        @Override
+        public void serialize(SerializedCustomObject value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeRawValue(value.json);
+        }
+    }
+
+}
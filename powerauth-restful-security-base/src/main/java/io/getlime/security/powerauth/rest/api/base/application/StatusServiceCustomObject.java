@@ -0,0 +1,80 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.application;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Versioned custom object returned by the activation status end-point, see
+ * {@link PowerAuthApplicationConfiguration#cacheableStatusServiceCustomObject()}. The object is serialized once
+ * for each version and the serialized form is reused until the refresh interval elapses.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class StatusServiceCustomObject {
+
+    private final Map<String, Object> customObject;
+    private final long version;
+    private final Duration refreshInterval;
+
+    /**
+     * Constructor with custom object, its version and refresh interval.
+     *
+     * @param customObject Custom object with state-less information about the API server status, may be null.
+     * @param version Version of the custom object. The custom object is serialized again only when the version changes.
+     * @param refreshInterval Interval after which the custom object is requested again from the application configuration.
+     */
+    public StatusServiceCustomObject(Map<String, Object> customObject, long version, Duration refreshInterval) {
+        this.customObject = customObject == null ? null : Collections.unmodifiableMap(new LinkedHashMap<>(customObject));
+        this.version = version;
+        this.refreshInterval = refreshInterval;
+    }
+
+    /**
+     * Get custom object.
+     *
+     * @return Custom object, may be null.
+     */
+    public Map<String, Object> getCustomObject() {
+        return customObject;
+    }
+
+    /**
+     * Get version of the custom object.
+     *
+     * @return Version of the custom object.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get refresh interval of the custom object.
+     *
+     * @return Refresh interval.
+     */
+    public Duration getRefreshInterval() {
+        return refreshInterval;
+    }
+
+}
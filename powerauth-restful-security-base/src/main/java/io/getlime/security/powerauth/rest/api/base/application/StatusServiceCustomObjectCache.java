@@ -0,0 +1,165 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.application;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Cache of the custom object returned by the activation status end-point. In case the application configuration
+ * provides a cacheable custom object, the object is requested once per refresh interval and it is serialized only
+ * when its version changes. Otherwise the custom object is requested from the application configuration for each
+ * status request.
+ * <br><br>
+ * When the refresh interval elapses, a single caller refreshes the custom object while other callers keep using
+ * the previous one.
+ * <br><br>
+ * The custom object is serialized using the application object mapper, so that the pre-serialized JSON matches
+ * the JSON which the application would produce for the response. In case the custom object cannot be serialized,
+ * a read-only copy of the custom object is cached instead and it is serialized with each response.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class StatusServiceCustomObjectCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatusServiceCustomObjectCache.class);
+
+    private static final long REFRESH_CLAIM_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final PowerAuthApplicationConfiguration applicationConfiguration;
+    private final ObjectMapper objectMapper;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+    private volatile boolean cacheable = true;
+
+    /**
+     * Constructor with application configuration.
+     *
+     * @param applicationConfiguration Application configuration.
+     */
+    public StatusServiceCustomObjectCache(PowerAuthApplicationConfiguration applicationConfiguration) {
+        this(applicationConfiguration, new ObjectMapper());
+    }
+
+    /**
+     * Constructor with application configuration and object mapper.
+     *
+     * @param applicationConfiguration Application configuration.
+     * @param objectMapper Object mapper used for serialization of the custom object.
+     */
+    public StatusServiceCustomObjectCache(PowerAuthApplicationConfiguration applicationConfiguration, ObjectMapper objectMapper) {
+        this.applicationConfiguration = applicationConfiguration;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Get custom object for the activation status response.
+     *
+     * @return Custom object, may be null.
+     */
+    public Map<String, Object> getCustomObject() {
+        if (!cacheable) {
+            return applicationConfiguration.statusServiceCustomObject();
+        }
+        final long now = System.nanoTime();
+        final Snapshot current = snapshot.get();
+        if (current != null && now - current.refreshTime < 0) {
+            return current.customObject;
+        }
+        if (current != null) {
+            // Claim the refresh, callers which lose the race keep using the current custom object
+            final Snapshot claimed = new Snapshot(current.version, current.customObject, now + REFRESH_CLAIM_TIMEOUT_NANOS);
+            if (!snapshot.compareAndSet(current, claimed)) {
+                return current.customObject;
+            }
+        }
+        try {
+            return refresh(current, now);
+        } catch (RuntimeException ex) {
+            if (current != null) {
+                // Keep the current custom object and retry the refresh with the next request
+                snapshot.set(current);
+                logger.warn("Refresh of status service custom object failed, error: {}", ex.getMessage());
+                logger.debug("Error details", ex);
+                return current.customObject;
+            }
+            throw ex;
+        }
+    }
+
+    private Map<String, Object> refresh(Snapshot current, long now) {
+        final StatusServiceCustomObject statusCustomObject = applicationConfiguration.cacheableStatusServiceCustomObject();
+        if (statusCustomObject == null) {
+            // Application configuration does not provide a cacheable custom object
+            cacheable = false;
+            snapshot.set(null);
+            return applicationConfiguration.statusServiceCustomObject();
+        }
+        final long refreshTime = now + statusCustomObject.getRefreshInterval().toNanos();
+        if (current != null && current.version == statusCustomObject.getVersion()) {
+            snapshot.set(new Snapshot(current.version, current.customObject, refreshTime));
+            return current.customObject;
+        }
+        final Map<String, Object> customObject = serialize(statusCustomObject.getCustomObject());
+        snapshot.set(new Snapshot(statusCustomObject.getVersion(), customObject, refreshTime));
+        return customObject;
+    }
+
+    private Map<String, Object> serialize(Map<String, Object> customObject) {
+        if (customObject == null) {
+            return null;
+        }
+        // Copy the custom object, so that later changes of the map provided by the application are not visible
+        final Map<String, Object> customObjectCopy = Collections.unmodifiableMap(new LinkedHashMap<>(customObject));
+        try {
+            return new SerializedCustomObject(customObjectCopy, objectMapper.writeValueAsString(customObjectCopy));
+        } catch (JsonProcessingException ex) {
+            // Let the custom object be serialized with each response
+            logger.warn("Status service custom object could not be pre-serialized, error: {}", ex.getMessage());
+            logger.debug("Error details", ex);
+            return customObjectCopy;
+        }
+    }
+
+    /**
+     * Current custom object with its version and time of the next refresh.
+     */
+    private static final class Snapshot {
+
+        private final long version;
+        private final Map<String, Object> customObject;
+        private final long refreshTime;
+
+        Snapshot(long version, Map<String, Object> customObject, long refreshTime) {
+            this.version = version;
+            this.customObject = customObject;
+            this.refreshTime = refreshTime;
+        }
+    }
+
+}
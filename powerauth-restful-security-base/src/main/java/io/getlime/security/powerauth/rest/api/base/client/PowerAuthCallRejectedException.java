@@ -0,0 +1,116 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.client;
+
+/**
+ * Exception thrown when a PowerAuth server call is rejected without being performed, either because the circuit
+ * breaker is open or because the maximum number of concurrent calls was reached.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class PowerAuthCallRejectedException extends Exception {
+
+    private static final long serialVersionUID = -2319460837195713841L;
+
+    /**
+     * Reason of call rejection.
+     */
+    public enum Reason {
+
+        /**
+         * Circuit breaker is open.
+         */
+        CIRCUIT_OPEN("circuit_open"),
+
+        /**
+         * Maximum number of concurrent calls was reached.
+         */
+        BULKHEAD_FULL("bulkhead_full");
+
+        private final String value;
+
+        Reason(String value) {
+            this.value = value;
+        }
+
+        /**
+         * Get reason value used in logs and metrics.
+         *
+         * @return Reason value.
+         */
+        public String getValue() {
+            return value;
+        }
+    }
+
+    private final PowerAuthOperationClass operationClass;
+    private final Reason reason;
+
+    /**
+     * Constructor with operation class and rejection reason.
+     *
+     * @param operationClass Operation class of the rejected call.
+     * @param reason Reason of call rejection.
+     */
+    public PowerAuthCallRejectedException(PowerAuthOperationClass operationClass, Reason reason) {
+        super("PowerAuth server call rejected, operation class: " + operationClass.getValue() + ", reason: " + reason.getValue());
+        this.operationClass = operationClass;
+        this.reason = reason;
+    }
+
+    /**
+     * Get operation class of the rejected call.
+     *
+     * @return Operation class.
+     */
+    public PowerAuthOperationClass getOperationClass() {
+        return operationClass;
+    }
+
+    /**
+     * Get reason of call rejection.
+     *
+     * @return Rejection reason.
+     */
+    public Reason getReason() {
+        return reason;
+    }
+
+    /**
+     * Check whether the exception or any of its causes is a rejected call.
+     *
+     * @param throwable Exception to check.
+     * @return Whether the exception was caused by a rejected call.
+     */
+    public static boolean isCausedByRejectedCall(Throwable throwable) {
+        Throwable current = throwable;
+        while (current != null) {
+            if (current instanceof PowerAuthCallRejectedException) {
+                return true;
+            }
+            if (current.getCause() == current) {
+                return false;
+            }
+            current = current.getCause();
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,238 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Circuit breaker of PowerAuth server calls.
+ * <br><br>
+ * The circuit breaker is closed by default. Outcomes of calls are evaluated in consecutive windows of a fixed number
+ * of calls, failed calls and calls slower than the slow call duration are considered failures. When the failure rate
+ * in a window reaches the threshold, the circuit breaker opens and calls are rejected without calling PowerAuth server.
+ * After the open duration elapses, the circuit breaker becomes half-open and permits a limited number of probe calls.
+ * The circuit breaker closes when all probe calls succeed and opens again on the first failed probe call.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class PowerAuthCircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(PowerAuthCircuitBreaker.class);
+
+    /**
+     * State of circuit breaker.
+     */
+    public enum State {
+
+        /**
+         * Calls are permitted and their outcomes are evaluated.
+         */
+        CLOSED,
+
+        /**
+         * Calls are rejected.
+         */
+        OPEN,
+
+        /**
+         * Limited number of probe calls is permitted.
+         */
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final int slidingWindowSize;
+    private final int failureRateThreshold;
+    private final long slowCallDurationNanos;
+    private final long openDurationNanos;
+    private final int halfOpenCalls;
+    private final AtomicReference<Phase> phase = new AtomicReference<>(Phase.closed());
+
+    /**
+     * Constructor with circuit breaker settings.
+     *
+     * @param name Circuit breaker name used in logs.
+     * @param slidingWindowSize Number of calls evaluated together.
+     * @param failureRateThreshold Failure rate in percent which opens the circuit breaker.
+     * @param slowCallDuration Duration of a call which is considered a failure.
+     * @param openDuration Duration of open state before probe calls are permitted.
+     * @param halfOpenCalls Number of probe calls in half-open state.
+     */
+    public PowerAuthCircuitBreaker(String name, int slidingWindowSize, int failureRateThreshold, Duration slowCallDuration, Duration openDuration, int halfOpenCalls) {
+        if (slidingWindowSize < 1 || halfOpenCalls < 1) {
+            throw new IllegalArgumentException("Sliding window size and number of half-open calls must be positive");
+        }
+        if (failureRateThreshold < 1 || failureRateThreshold > 100) {
+            throw new IllegalArgumentException("Failure rate threshold must be between 1 and 100");
+        }
+        this.name = name;
+        this.slidingWindowSize = slidingWindowSize;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallDurationNanos = slowCallDuration.toNanos();
+        this.openDurationNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+    }
+
+    /**
+     * Get circuit breaker name.
+     *
+     * @return Circuit breaker name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get current state of circuit breaker. An open circuit breaker whose open duration elapsed is reported as open
+     * until the next call is attempted.
+     *
+     * @return Circuit breaker state.
+     */
+    public State getState() {
+        return phase.get().state;
+    }
+
+    /**
+     * Try to obtain permission for a call.
+     *
+     * @return Permission which must be passed to {@link #onCallCompleted(Phase, long, boolean)} or
+     * {@link #releasePermission(Phase)}, null in case the call is not permitted.
+     */
+    Phase tryAcquirePermission() {
+        while (true) {
+            final Phase current = phase.get();
+            switch (current.state) {
+                case CLOSED:
+                    return current;
+                case OPEN:
+                    if (System.nanoTime() - current.openedAt < openDurationNanos) {
+                        return null;
+                    }
+                    if (phase.compareAndSet(current, Phase.halfOpen(halfOpenCalls))) {
+                        logger.info("Circuit breaker is half-open, name: {}", name);
+                    }
+                    break;
+                default:
+                    return current.tryAcquireProbe() ? current : null;
+            }
+        }
+    }
+
+    /**
+     * Release permission of a call which was not performed.
+     *
+     * @param permission Permission obtained using {@link #tryAcquirePermission()}.
+     */
+    void releasePermission(Phase permission) {
+        if (permission.state == State.HALF_OPEN && phase.get() == permission) {
+            permission.probes.incrementAndGet();
+        }
+    }
+
+    /**
+     * Record outcome of a permitted call. Outcomes of calls which were permitted before the last state change
+     * are ignored.
+     *
+     * @param permission Permission obtained using {@link #tryAcquirePermission()}.
+     * @param durationNanos Call duration in nanoseconds.
+     * @param failed Whether the call failed.
+     */
+    void onCallCompleted(Phase permission, long durationNanos, boolean failed) {
+        if (phase.get() != permission) {
+            return;
+        }
+        final boolean failure = failed || durationNanos >= slowCallDurationNanos;
+        if (permission.state == State.CLOSED) {
+            // Failures are counted before calls, so that the failure of the last call in a window is evaluated
+            if (failure) {
+                permission.failures.incrementAndGet();
+            }
+            if (permission.calls.incrementAndGet() == slidingWindowSize) {
+                final int failureCount = permission.failures.get();
+                if (failureCount * 100 >= failureRateThreshold * slidingWindowSize) {
+                    open(permission, failureCount);
+                } else {
+                    phase.compareAndSet(permission, Phase.closed());
+                }
+            }
+        } else if (permission.state == State.HALF_OPEN) {
+            if (failure) {
+                open(permission, 1);
+            } else if (permission.successes.incrementAndGet() == halfOpenCalls && phase.compareAndSet(permission, Phase.closed())) {
+                logger.info("Circuit breaker is closed, name: {}", name);
+            }
+        }
+    }
+
+    private void open(Phase current, int failureCount) {
+        if (phase.compareAndSet(current, Phase.open(System.nanoTime()))) {
+            logger.warn("Circuit breaker is open, name: {}, failed calls: {}", name, failureCount);
+        }
+    }
+
+    /**
+     * Phase of circuit breaker, a new phase is created on each state change and each new window of calls.
+     */
+    static final class Phase {
+
+        private final State state;
+        private final long openedAt;
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicInteger successes = new AtomicInteger();
+        private final AtomicInteger probes;
+
+        private Phase(State state, long openedAt, int probes) {
+            this.state = state;
+            this.openedAt = openedAt;
+            this.probes = new AtomicInteger(probes);
+        }
+
+        private static Phase closed() {
+            return new Phase(State.CLOSED, 0, 0);
+        }
+
+        private static Phase open(long openedAt) {
+            return new Phase(State.OPEN, openedAt, 0);
+        }
+
+        private static Phase halfOpen(int probes) {
+            return new Phase(State.HALF_OPEN, 0, probes);
+        }
+
+        private boolean tryAcquireProbe() {
+            while (true) {
+                final int available = probes.get();
+                if (available <= 0) {
+                    return false;
+                }
+                if (probes.compareAndSet(available, available - 1)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.client;
+
+import io.getlime.security.powerauth.rest.api.base.metrics.PowerAuthMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.Predicate;
+
+/**
+ * Bulkheads and circuit breakers of PowerAuth server calls. Each operation class has its own bulkhead and circuit
+ * breaker. Calls which are rejected fail fast with {@link PowerAuthCallRejectedException}.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class PowerAuthClientResilience {
+
+    private static final Logger logger = LoggerFactory.getLogger(PowerAuthClientResilience.class);
+
+    private final Map<PowerAuthOperationClass, PowerAuthBulkhead> bulkheads = new EnumMap<>(PowerAuthOperationClass.class);
+    private final Map<PowerAuthOperationClass, PowerAuthCircuitBreaker> circuitBreakers = new EnumMap<>(PowerAuthOperationClass.class);
+
+    private PowerAuthMetrics powerAuthMetrics;
+
+    /**
+     * Constructor with default configuration.
+     */
+    public PowerAuthClientResilience() {
+        this(new PowerAuthClientResilienceConfiguration());
+    }
+
+    /**
+     * Constructor with configuration.
+     *
+     * @param configuration Configuration of bulkheads and circuit breakers.
+     */
+    public PowerAuthClientResilience(PowerAuthClientResilienceConfiguration configuration) {
+        for (PowerAuthOperationClass operationClass : PowerAuthOperationClass.values()) {
+            bulkheads.put(operationClass, new PowerAuthBulkhead(configuration.getMaxConcurrentCalls(operationClass), configuration.getMaxWaitDuration()));
+            circuitBreakers.put(operationClass, new PowerAuthCircuitBreaker(operationClass.getValue(), configuration.getSlidingWindowSize(),
+                    configuration.getFailureRateThreshold(), configuration.getSlowCallDuration(), configuration.getOpenDuration(),
+                    configuration.getHalfOpenCalls()));
+        }
+    }
+
+    /**
+     * Set PowerAuth metrics. State of bulkheads and circuit breakers is registered in metrics.
+     *
+     * @param powerAuthMetrics PowerAuth metrics.
+     */
+    public void setPowerAuthMetrics(PowerAuthMetrics powerAuthMetrics) {
+        this.powerAuthMetrics = powerAuthMetrics;
+        if (powerAuthMetrics != null) {
+            for (PowerAuthOperationClass operationClass : PowerAuthOperationClass.values()) {
+                powerAuthMetrics.registerBulkhead(operationClass.getValue(), bulkheads.get(operationClass));
+                powerAuthMetrics.registerCircuitBreaker(operationClass.getValue(), circuitBreakers.get(operationClass));
+            }
+        }
+    }
+
+    /**
+     * Get bulkhead of given operation class.
+     *
+     * @param operationClass Operation class.
+     * @return Bulkhead.
+     */
+    public PowerAuthBulkhead getBulkhead(PowerAuthOperationClass operationClass) {
+        return bulkheads.get(operationClass);
+    }
+
+    /**
+     * Get circuit breaker of given operation class.
+     *
+     * @param operationClass Operation class.
+     * @return Circuit breaker.
+     */
+    public PowerAuthCircuitBreaker getCircuitBreaker(PowerAuthOperationClass operationClass) {
+        return circuitBreakers.get(operationClass);
+    }
+
+    /**
+     * Execute a PowerAuth server call protected by bulkhead and circuit breaker of given operation class.
+     *
+     * @param operationClass Operation class of the call.
+     * @param call Call to execute.
+     * @param failurePredicate Predicate which decides whether an exception thrown by the call is a failure of
+     *                         PowerAuth server. Other exceptions, such as business errors, do not affect circuit breaker.
+     * @param <V> Type of call result.
+     * @return Call result.
+     * @throws PowerAuthCallRejectedException In case the call is rejected by bulkhead or circuit breaker.
+     * @throws Exception In case the call fails.
+     */
+    public <V> V execute(PowerAuthOperationClass operationClass, Callable<V> call, Predicate<Exception> failurePredicate) throws Exception {
+        final PowerAuthCircuitBreaker circuitBreaker = circuitBreakers.get(operationClass);
+        final PowerAuthCircuitBreaker.Phase permission = circuitBreaker.tryAcquirePermission();
+        if (permission == null) {
+            throw rejectCall(operationClass, PowerAuthCallRejectedException.Reason.CIRCUIT_OPEN);
+        }
+        final PowerAuthBulkhead bulkhead = bulkheads.get(operationClass);
+        if (!bulkhead.tryAcquire()) {
+            circuitBreaker.releasePermission(permission);
+            throw rejectCall(operationClass, PowerAuthCallRejectedException.Reason.BULKHEAD_FULL);
+        }
+        final long startTime = System.nanoTime();
+        boolean failed = true;
+        try {
+            final V result = call.call();
+            failed = false;
+            return result;
+        } catch (Exception ex) {
+            failed = failurePredicate.test(ex);
+            throw ex;
+        } finally {
+            bulkhead.release();
+            circuitBreaker.onCallCompleted(permission, System.nanoTime() - startTime, failed);
+        }
+    }
+
+    private PowerAuthCallRejectedException rejectCall(PowerAuthOperationClass operationClass, PowerAuthCallRejectedException.Reason reason) {
+        logger.debug("PowerAuth server call rejected, operation class: {}, reason: {}", operationClass.getValue(), reason.getValue());
+        if (powerAuthMetrics != null) {
+            powerAuthMetrics.recordClientCallRejected(operationClass.getValue(), reason.getValue());
+        }
+        return new PowerAuthCallRejectedException(operationClass, reason);
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.client;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Configuration of bulkheads and circuit breakers of PowerAuth server calls. The bulkhead limits are configured
+ * per operation class, circuit breaker settings are shared by circuit breakers of all operation classes.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class PowerAuthClientResilienceConfiguration {
+
+    /**
+     * Default maximum number of concurrent calls of each operation class.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_CALLS = 50;
+
+    private final Map<PowerAuthOperationClass, Integer> maxConcurrentCalls = new EnumMap<>(PowerAuthOperationClass.class);
+    private Duration maxWaitDuration = Duration.ZERO;
+    private int slidingWindowSize = 20;
+    private int failureRateThreshold = 50;
+    private Duration slowCallDuration = Duration.ofSeconds(5);
+    private Duration openDuration = Duration.ofSeconds(10);
+    private int halfOpenCalls = 3;
+
+    /**
+     * Get maximum number of concurrent calls of given operation class.
+     *
+     * @param operationClass Operation class.
+     * @return Maximum number of concurrent calls.
+     */
+    public int getMaxConcurrentCalls(PowerAuthOperationClass operationClass) {
+        return maxConcurrentCalls.getOrDefault(operationClass, DEFAULT_MAX_CONCURRENT_CALLS);
+    }
+
+    /**
+     * Set maximum number of concurrent calls of given operation class.
+     *
+     * @param operationClass Operation class.
+     * @param maxConcurrentCalls Maximum number of concurrent calls.
+     */
+    public void setMaxConcurrentCalls(PowerAuthOperationClass operationClass, int maxConcurrentCalls) {
+        this.maxConcurrentCalls.put(operationClass, maxConcurrentCalls);
+    }
+
+    /**
+     * Get maximum time a call waits for a free bulkhead slot.
+     *
+     * @return Maximum wait duration.
+     */
+    public Duration getMaxWaitDuration() {
+        return maxWaitDuration;
+    }
+
+    /**
+     * Set maximum time a call waits for a free bulkhead slot, zero means the call is rejected immediately.
+     *
+     * @param maxWaitDuration Maximum wait duration.
+     */
+    public void setMaxWaitDuration(Duration maxWaitDuration) {
+        this.maxWaitDuration = maxWaitDuration;
+    }
+
+    /**
+     * Get number of calls whose outcomes are evaluated together by circuit breaker.
+     *
+     * @return Sliding window size.
+     */
+    public int getSlidingWindowSize() {
+        return slidingWindowSize;
+    }
+
+    /**
+     * Set number of calls whose outcomes are evaluated together by circuit breaker.
+     *
+     * @param slidingWindowSize Sliding window size.
+     */
+    public void setSlidingWindowSize(int slidingWindowSize) {
+        this.slidingWindowSize = slidingWindowSize;
+    }
+
+    /**
+     * Get failure rate in percent which opens circuit breaker.
+     *
+     * @return Failure rate threshold.
+     */
+    public int getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    /**
+     * Set failure rate in percent which opens circuit breaker.
+     *
+     * @param failureRateThreshold Failure rate threshold.
+     */
+    public void setFailureRateThreshold(int failureRateThreshold) {
+        this.failureRateThreshold = failureRateThreshold;
+    }
+
+    /**
+     * Get duration of a call which is considered a failure by circuit breaker.
+     *
+     * @return Slow call duration.
+     */
+    public Duration getSlowCallDuration() {
+        return slowCallDuration;
+    }
+
+    /**
+     * Set duration of a call which is considered a failure by circuit breaker.
+     *
+     * @param slowCallDuration Slow call duration.
+     */
+    public void setSlowCallDuration(Duration slowCallDuration) {
+        this.slowCallDuration = slowCallDuration;
+    }
+
+    /**
+     * Get duration of open state of circuit breaker.
+     *
+     * @return Open state duration.
+     */
+    public Duration getOpenDuration() {
+        return openDuration;
+    }
+
+    /**
+     * Set duration of open state of circuit breaker.
+     *
+     * @param openDuration Open state duration.
+     */
+    public void setOpenDuration(Duration openDuration) {
+        this.openDuration = openDuration;
+    }
+
+    /**
+     * Get number of probe calls permitted in half-open state of circuit breaker.
+     *
+     * @return Number of half-open calls.
+     */
+    public int getHalfOpenCalls() {
+        return halfOpenCalls;
+    }
+
+    /**
+     * Set number of probe calls permitted in half-open state of circuit breaker.
+     *
+     * @param halfOpenCalls Number of half-open calls.
+     */
+    public void setHalfOpenCalls(int halfOpenCalls) {
+        this.halfOpenCalls = halfOpenCalls;
+    }
+
+}
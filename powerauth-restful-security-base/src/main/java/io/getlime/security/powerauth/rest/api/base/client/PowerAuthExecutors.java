@@ -0,0 +1,145 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Factory of executors used for calls of PowerAuth server. Virtual threads are used when the application runs
+ * on a JDK which supports them, the library itself is compiled for Java 8 so the virtual thread executor is
+ * obtained using reflection.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public final class PowerAuthExecutors {
+
+    private static final Logger logger = LoggerFactory.getLogger(PowerAuthExecutors.class);
+
+    /**
+     * Default capacity of the task queue of executors with platform threads.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+    private PowerAuthExecutors() {
+    }
+
+    /**
+     * Check whether virtual threads are supported by the current JDK.
+     *
+     * @return Whether virtual threads are supported.
+     */
+    public static boolean isVirtualThreadSupported() {
+        return findVirtualThreadExecutorFactory() != null;
+    }
+
+    /**
+     * Create an executor which starts a new virtual thread for each task.
+     *
+     * @return Executor with virtual threads.
+     * @throws IllegalStateException In case virtual threads are not supported by the current JDK.
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        final Method factory = findVirtualThreadExecutorFactory();
+        if (factory == null) {
+            throw new IllegalStateException("Virtual threads are not supported by the current JDK");
+        }
+        try {
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Virtual thread executor could not be created", ex);
+        }
+    }
+
+    /**
+     * Create a bounded executor with daemon platform threads and the default queue capacity. Idle threads are
+     * terminated after one minute.
+     *
+     * @param threadCount Maximum number of threads.
+     * @param threadNamePrefix Prefix of thread names.
+     * @return Executor with platform threads.
+     */
+    public static ExecutorService newPlatformThreadExecutor(int threadCount, String threadNamePrefix) {
+        return newPlatformThreadExecutor(threadCount, DEFAULT_QUEUE_CAPACITY, threadNamePrefix);
+    }
+
+    /**
+     * Create a bounded executor with daemon platform threads. Idle threads are terminated after one minute. Tasks
+     * submitted when all threads are busy and the queue is full are rejected with {@link java.util.concurrent.RejectedExecutionException},
+     * so that waiting tasks do not accumulate without limit when PowerAuth server is slow.
+     *
+     * @param threadCount Maximum number of threads.
+     * @param queueCapacity Maximum number of tasks waiting for a thread.
+     * @param threadNamePrefix Prefix of thread names.
+     * @return Executor with platform threads.
+     */
+    public static ExecutorService newPlatformThreadExecutor(int threadCount, int queueCapacity, String threadNamePrefix) {
+        final AtomicInteger threadCounter = new AtomicInteger();
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount,
+                60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    final Thread thread = new Thread(runnable, threadNamePrefix + threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Create an executor for PowerAuth server calls. In case virtual threads are requested but not supported
+     * by the current JDK, the executor with platform threads is created.
+     *
+     * @param virtualThreads Whether virtual threads should be used.
+     * @param threadCount Maximum number of threads in case platform threads are used.
+     * @param threadNamePrefix Prefix of thread names in case platform threads are used.
+     * @return Executor for PowerAuth server calls.
+     */
+    public static ExecutorService newExecutor(boolean virtualThreads, int threadCount, String threadNamePrefix) {
+        if (virtualThreads) {
+            if (isVirtualThreadSupported()) {
+                return newVirtualThreadExecutor();
+            }
+            logger.warn("Virtual threads are not supported by the current JDK, platform threads are used");
+        }
+        return newPlatformThreadExecutor(threadCount, threadNamePrefix);
+    }
+
+    /**
+     * Find the factory method of virtual thread executor.
+     *
+     * @return Factory method or null in case virtual threads are not supported.
+     */
+    private static Method findVirtualThreadExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException ex) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,366 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Client-side load balancer of PowerAuth server nodes.
+ * <br><br>
+ * Each request is sent to the less loaded of two randomly chosen available nodes, the load of a node is the number
+ * of its requests in progress. A node which fails the configured number of consecutive requests is ejected from load
+ * balancing for the ejection duration. Optional active health checks probe all nodes periodically and concurrently,
+ * each probe is limited by a timeout. A node which fails the probe is ejected and an ejected node which passes
+ * the probe is returned into load balancing once its ejection duration elapsed. In case no node is available,
+ * requests are sent to all nodes.
+ * <br><br>
+ * Requests which are safe to repeat can be retried on another node in case of a failure.
+ *
+ * @param <T> Type of client of PowerAuth server node.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class PowerAuthLoadBalancer<T> implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PowerAuthLoadBalancer.class);
+
+    /**
+     * Default number of consecutive failures which eject a node.
+     */
+    public static final int DEFAULT_FAILURES_TO_EJECT = 3;
+
+    /**
+     * Default duration of node ejection.
+     */
+    public static final Duration DEFAULT_EJECTION_DURATION = Duration.ofSeconds(30);
+
+    /**
+     * Default maximum number of attempts of retryable requests.
+     */
+    public static final int DEFAULT_MAX_ATTEMPTS = 2;
+
+    /**
+     * Default timeout of a health check of a node.
+     */
+    public static final Duration DEFAULT_HEALTH_CHECK_TIMEOUT = Duration.ofSeconds(5);
+
+    /**
+     * Call of PowerAuth server node.
+     *
+     * @param <T> Type of client of PowerAuth server node.
+     * @param <V> Type of call result.
+     */
+    @FunctionalInterface
+    public interface NodeCall<T, V> {
+
+        /**
+         * Perform the call using client of selected node.
+         *
+         * @param client Client of PowerAuth server node.
+         * @return Call result.
+         * @throws Exception In case the call fails.
+         */
+        V call(T client) throws Exception;
+    }
+
+    private final List<PowerAuthServerNode<T>> nodes;
+    private final int failuresToEject;
+    private final long ejectionDurationNanos;
+    private final int maxAttempts;
+    private volatile HealthChecks healthChecks;
+
+    /**
+     * Constructor with nodes and default settings.
+     *
+     * @param nodes PowerAuth server nodes.
+     */
+    public PowerAuthLoadBalancer(List<PowerAuthServerNode<T>> nodes) {
+        this(nodes, DEFAULT_FAILURES_TO_EJECT, DEFAULT_EJECTION_DURATION, DEFAULT_MAX_ATTEMPTS);
+    }
+
+    /**
+     * Constructor with nodes and load balancer settings.
+     *
+     * @param nodes PowerAuth server nodes.
+     * @param failuresToEject Number of consecutive failures which eject a node.
+     * @param ejectionDuration Duration of node ejection.
+     * @param maxAttempts Maximum number of attempts of retryable requests, each attempt uses a different node.
+     */
+    public PowerAuthLoadBalancer(List<PowerAuthServerNode<T>> nodes, int failuresToEject, Duration ejectionDuration, int maxAttempts) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("At least one PowerAuth server node is required");
+        }
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+        this.failuresToEject = failuresToEject;
+        this.ejectionDurationNanos = ejectionDuration.toNanos();
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    /**
+     * Get PowerAuth server nodes.
+     *
+     * @return PowerAuth server nodes.
+     */
+    public List<PowerAuthServerNode<T>> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Start periodic active health checks of all nodes with the default health check timeout, limited
+     * by the interval of health checks.
+     *
+     * @param healthCheck Health check of a node client, returns whether the node is healthy.
+     * @param interval Interval of health checks.
+     */
+    public void startHealthChecks(Predicate<T> healthCheck, Duration interval) {
+        startHealthChecks(healthCheck, interval, interval.compareTo(DEFAULT_HEALTH_CHECK_TIMEOUT) < 0 ? interval : DEFAULT_HEALTH_CHECK_TIMEOUT);
+    }
+
+    /**
+     * Start periodic active health checks of all nodes. Nodes are probed concurrently on daemon threads, a probe
+     * which does not complete within the timeout is cancelled and the node is considered unhealthy. A node whose
+     * previous probe is still running is considered unhealthy and it is not probed again.
+     *
+     * @param healthCheck Health check of a node client, returns whether the node is healthy.
+     * @param interval Interval of health checks.
+     * @param timeout Timeout of a health check of a node.
+     */
+    public void startHealthChecks(Predicate<T> healthCheck, Duration interval, Duration timeout) {
+        final HealthChecks newHealthChecks = new HealthChecks(healthCheck, timeout.toNanos());
+        newHealthChecks.scheduler.scheduleWithFixedDelay(newHealthChecks::checkHealth, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        final HealthChecks previousHealthChecks = healthChecks;
+        healthChecks = newHealthChecks;
+        if (previousHealthChecks != null) {
+            previousHealthChecks.stop();
+        }
+    }
+
+    /**
+     * Stop active health checks.
+     */
+    @Override
+    public void close() {
+        final HealthChecks currentHealthChecks = healthChecks;
+        if (currentHealthChecks != null) {
+            currentHealthChecks.stop();
+        }
+    }
+
+    /**
+     * Execute a call on a selected node.
+     *
+     * @param call Call to execute.
+     * @param retryable Whether the call is safe to repeat on another node in case of a failure.
+     * @param failurePredicate Predicate which decides whether an exception thrown by the call is a failure of the node.
+     *                         Other exceptions, such as business errors, are returned to the caller without a retry.
+     * @param <V> Type of call result.
+     * @return Call result.
+     * @throws Exception In case the call fails.
+     */
+    public <V> V execute(NodeCall<T, V> call, boolean retryable, Predicate<Exception> failurePredicate) throws Exception {
+        final int attempts = retryable ? Math.min(maxAttempts, nodes.size()) : 1;
+        PowerAuthServerNode<T> previousNode = null;
+        for (int attempt = 1; ; attempt++) {
+            final PowerAuthServerNode<T> node = selectNode(previousNode);
+            node.requestStarted();
+            try {
+                final V result = call.call(node.getClient());
+                if (node.onSuccess()) {
+                    logger.info("PowerAuth server node returned into load balancing, node: {}", node.getName());
+                }
+                return result;
+            } catch (Exception ex) {
+                if (!failurePredicate.test(ex)) {
+                    throw ex;
+                }
+                recordFailure(node);
+                if (attempt >= attempts) {
+                    throw ex;
+                }
+                logger.warn("PowerAuth server call failed, retrying on another node, node: {}, error: {}", node.getName(), ex.getMessage());
+                previousNode = node;
+            } finally {
+                node.requestCompleted();
+            }
+        }
+    }
+
+    /**
+     * Select a node using power of two choices, the node with less requests in progress is selected out of two
+     * randomly chosen available nodes.
+     *
+     * @param excludedNode Node which should not be selected, null in case any node can be selected.
+     * @return Selected node.
+     */
+    private PowerAuthServerNode<T> selectNode(PowerAuthServerNode<T> excludedNode) {
+        if (nodes.size() == 1) {
+            return nodes.get(0);
+        }
+        final long now = System.nanoTime();
+        final List<PowerAuthServerNode<T>> candidates = new ArrayList<>(nodes.size());
+        for (PowerAuthServerNode<T> node : nodes) {
+            if (node != excludedNode && node.isAvailable(now)) {
+                candidates.add(node);
+            }
+        }
+        if (candidates.isEmpty()) {
+            // No node is available, use all nodes except the excluded node rather than failing the request
+            for (PowerAuthServerNode<T> node : nodes) {
+                if (node != excludedNode) {
+                    candidates.add(node);
+                }
+            }
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int first = random.nextInt(candidates.size());
+        final int second = (first + 1 + random.nextInt(candidates.size() - 1)) % candidates.size();
+        final PowerAuthServerNode<T> firstNode = candidates.get(first);
+        final PowerAuthServerNode<T> secondNode = candidates.get(second);
+        return firstNode.getOutstandingRequests() <= secondNode.getOutstandingRequests() ? firstNode : secondNode;
+    }
+
+    private void recordFailure(PowerAuthServerNode<T> node) {
+        // A node whose ejection elapsed is ejected again on the next failure
+        final long now = System.nanoTime();
+        if (node.onFailure() >= failuresToEject && node.isAvailable(now)) {
+            node.eject(now + ejectionDurationNanos);
+            logger.warn("PowerAuth server node ejected from load balancing, node: {}", node.getName());
+        }
+    }
+
+    private void onHealthCheckResult(PowerAuthServerNode<T> node, boolean healthy) {
+        final long now = System.nanoTime();
+        if (healthy) {
+            if (node.onHealthCheckSuccess(now)) {
+                logger.info("PowerAuth server node returned into load balancing, node: {}", node.getName());
+            }
+        } else {
+            if (!node.isEjected()) {
+                logger.warn("PowerAuth server node ejected from load balancing after failed health check, node: {}", node.getName());
+            }
+            // Ejection of a node is extended while the node fails health checks
+            node.eject(now + ejectionDurationNanos);
+        }
+    }
+
+    /**
+     * Active health checks of all nodes, the scheduler starts health checks and the probes run on a thread per node.
+     */
+    private final class HealthChecks {
+
+        private final Predicate<T> healthCheck;
+        private final long timeoutNanos;
+        private final ScheduledExecutorService scheduler;
+        private final ExecutorService probeExecutor;
+        private final List<AtomicBoolean> probesRunning;
+
+        HealthChecks(Predicate<T> healthCheck, long timeoutNanos) {
+            this.healthCheck = healthCheck;
+            this.timeoutNanos = timeoutNanos;
+            this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+                final Thread thread = new Thread(runnable, "powerauth-health-check");
+                thread.setDaemon(true);
+                return thread;
+            });
+            final AtomicInteger threadCounter = new AtomicInteger();
+            this.probeExecutor = new ThreadPoolExecutor(nodes.size(), nodes.size(), 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                final Thread thread = new Thread(runnable, "powerauth-health-check-probe-" + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.probesRunning = new ArrayList<>(nodes.size());
+            for (int i = 0; i < nodes.size(); i++) {
+                probesRunning.add(new AtomicBoolean());
+            }
+        }
+
+        void checkHealth() {
+            // Start probes of all nodes first, so that a slow node does not delay probes of other nodes
+            final List<Future<Boolean>> probes = new ArrayList<>(Collections.nCopies(nodes.size(), null));
+            for (int i = 0; i < nodes.size(); i++) {
+                final AtomicBoolean probeRunning = probesRunning.get(i);
+                if (!probeRunning.compareAndSet(false, true)) {
+                    // Probe of the previous health check ignored cancellation and it is still running
+                    continue;
+                }
+                final T client = nodes.get(i).getClient();
+                probes.set(i, probeExecutor.submit(() -> {
+                    try {
+                        return healthCheck.test(client);
+                    } finally {
+                        probeRunning.set(false);
+                    }
+                }));
+            }
+            final long deadline = System.nanoTime() + timeoutNanos;
+            for (int i = 0; i < nodes.size(); i++) {
+                onHealthCheckResult(nodes.get(i), awaitProbe(nodes.get(i), probes.get(i), deadline));
+            }
+        }
+
+        void stop() {
+            scheduler.shutdownNow();
+            probeExecutor.shutdownNow();
+        }
+
+        private boolean awaitProbe(PowerAuthServerNode<T> node, Future<Boolean> probe, long deadline) {
+            if (probe == null) {
+                logger.debug("PowerAuth server node health check is still running, node: {}", node.getName());
+                return false;
+            }
+            try {
+                return probe.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException ex) {
+                logger.debug("PowerAuth server node health check timed out, node: {}", node.getName());
+                probe.cancel(true);
+                return false;
+            } catch (ExecutionException ex) {
+                logger.debug("PowerAuth server node health check failed, node: {}, error: {}", node.getName(), ex.getCause().getMessage());
+                return false;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.client;
+
+/**
+ * Class of PowerAuth server operations. Each operation class has its own bulkhead and circuit breaker, so that
+ * problems with one class of operations do not affect the other classes.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public enum PowerAuthOperationClass {
+
+    /**
+     * Signature verification and token validation.
+     */
+    AUTHENTICATION("authentication"),
+
+    /**
+     * Calls which provide encryption keys, for example ECIES decryptor parameters.
+     */
+    ENCRYPTION("encryption"),
+
+    /**
+     * Activation management and all other calls, for example activation creation, activation status, token creation
+     * or vault unlock.
+     */
+    ACTIVATION("activation");
+
+    private final String value;
+
+    PowerAuthOperationClass(String value) {
+        this.value = value;
+    }
+
+    /**
+     * Get operation class name used in logs and metrics.
+     *
+     * @return Operation class name.
+     */
+    public String getValue() {
+        return value;
+    }
+
+}
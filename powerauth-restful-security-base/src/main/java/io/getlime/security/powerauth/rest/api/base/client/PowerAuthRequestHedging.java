@@ -0,0 +1,468 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.client;
+
+import io.getlime.security.powerauth.rest.api.base.metrics.PowerAuthMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Predicate;
+
+/**
+ * Hedging of idempotent PowerAuth server calls. In case a call does not complete within the hedging delay, an identical
+ * second call is started and the first response wins, the other call is cancelled. The hedging delay is a percentile
+ * of recent call durations of the same operation, so that only calls in the latency tail are hedged.
+ * <br><br>
+ * The number of hedged calls is limited by a hedging budget, so that hedging does not multiply the load of PowerAuth
+ * server when it is slow in general. The budget is a token bucket: each call adds a fraction of a token given by
+ * the maximum hedge ratio, each hedged call consumes a whole token and the bucket holds at most 10 tokens, so that
+ * the budget reflects recent calls rather than all calls since start. Hedging must only be used for idempotent
+ * calls, both calls may be processed by PowerAuth server.
+ * <br><br>
+ * The primary call is executed on the calling thread, so that calls which are not hedged do not depend on the executor
+ * passed in constructor. The executor is used for hedged calls only. When the hedged call wins, the calling thread
+ * is interrupted to abort the primary call. The executor is shut down when the hedging is closed.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class PowerAuthRequestHedging implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PowerAuthRequestHedging.class);
+
+    /**
+     * Default percentile of call durations used as hedging delay.
+     */
+    public static final double DEFAULT_DELAY_PERCENTILE = 0.95;
+
+    /**
+     * Default minimum hedging delay.
+     */
+    public static final Duration DEFAULT_MIN_DELAY = Duration.ofMillis(10);
+
+    /**
+     * Default hedging delay used until enough call durations are recorded.
+     */
+    public static final Duration DEFAULT_INITIAL_DELAY = Duration.ofMillis(200);
+
+    /**
+     * Default maximum ratio of hedged calls to all calls.
+     */
+    public static final double DEFAULT_MAX_HEDGE_RATIO = 0.1;
+
+    private static final int LATENCY_WINDOW_SIZE = 1000;
+    private static final int MIN_LATENCY_SAMPLES = 100;
+    private static final int DELAY_UPDATE_INTERVAL = 100;
+    private static final int HEDGE_BUDGET_MAX_TOKENS = 10;
+    private static final long HEDGE_TOKEN_SCALE = 1000;
+    private static final long MAX_HEDGE_TOKENS = HEDGE_BUDGET_MAX_TOKENS * HEDGE_TOKEN_SCALE;
+
+    private static final int PRIMARY_RUNNING = 0;
+    private static final int PRIMARY_DONE = 1;
+    private static final int PRIMARY_INTERRUPTING = 2;
+    private static final int PRIMARY_INTERRUPTED = 3;
+
+    private final ExecutorService executor;
+    private final ScheduledThreadPoolExecutor hedgeScheduler;
+    private final double delayPercentile;
+    private final long minDelayNanos;
+    private final long initialDelayNanos;
+    private final long hedgeTokensPerCall;
+
+    private final ConcurrentMap<String, LatencyWindow> latencyWindows = new ConcurrentHashMap<>();
+    // Hedging budget in thousandths of a token, the bucket is full at start
+    private final AtomicLong hedgeTokens = new AtomicLong(MAX_HEDGE_TOKENS);
+
+    private PowerAuthMetrics powerAuthMetrics;
+
+    /**
+     * Constructor with executor and default hedging configuration.
+     *
+     * @param executor Executor of PowerAuth server calls.
+     */
+    public PowerAuthRequestHedging(ExecutorService executor) {
+        this(executor, DEFAULT_DELAY_PERCENTILE, DEFAULT_MIN_DELAY, DEFAULT_INITIAL_DELAY, DEFAULT_MAX_HEDGE_RATIO);
+    }
+
+    /**
+     * Constructor with executor and hedging configuration.
+     *
+     * @param executor Executor of PowerAuth server calls.
+     * @param delayPercentile Percentile of call durations used as hedging delay, for example 0.95.
+     * @param minDelay Minimum hedging delay.
+     * @param initialDelay Hedging delay used until enough call durations of an operation are recorded.
+     * @param maxHedgeRatio Maximum ratio of hedged calls to all calls, for example 0.1.
+     */
+    public PowerAuthRequestHedging(ExecutorService executor, double delayPercentile, Duration minDelay, Duration initialDelay, double maxHedgeRatio) {
+        if (delayPercentile <= 0 || delayPercentile > 1) {
+            throw new IllegalArgumentException("Invalid delay percentile: " + delayPercentile);
+        }
+        this.executor = executor;
+        this.hedgeScheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "powerauth-hedging-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Most calls complete within the hedging delay, remove their cancelled hedges from the queue
+        this.hedgeScheduler.setRemoveOnCancelPolicy(true);
+        this.delayPercentile = delayPercentile;
+        this.minDelayNanos = minDelay.toNanos();
+        this.initialDelayNanos = Math.max(initialDelay.toNanos(), minDelayNanos);
+        this.hedgeTokensPerCall = Math.round(maxHedgeRatio * HEDGE_TOKEN_SCALE);
+    }
+
+    /**
+     * Set PowerAuth metrics. Hedged calls are recorded in metrics.
+     *
+     * @param powerAuthMetrics PowerAuth metrics.
+     */
+    public void setPowerAuthMetrics(PowerAuthMetrics powerAuthMetrics) {
+        this.powerAuthMetrics = powerAuthMetrics;
+    }
+
+    /**
+     * Get current hedging delay of an operation.
+     *
+     * @param operation Operation name, for example PowerAuth client method name.
+     * @return Hedging delay.
+     */
+    public Duration getHedgingDelay(String operation) {
+        return Duration.ofNanos(getLatencyWindow(operation).getDelayNanos());
+    }
+
+    /**
+     * Execute an idempotent PowerAuth server call with hedging.
+     *
+     * @param operation Operation name, for example PowerAuth client method name. Call durations are tracked per operation.
+     * @param call Call to execute, the call may be executed twice.
+     * @param failurePredicate Predicate which decides whether an exception thrown by the call is a failure of
+     *                         PowerAuth server. Other exceptions, such as business errors, are responses which win
+     *                         as successful results do.
+     * @param <V> Type of call result.
+     * @return Result of the first response.
+     * @throws Exception In case the call fails, when both calls fail the exception of the first failed call is thrown.
+     */
+    public <V> V execute(String operation, Callable<V> call, Predicate<Exception> failurePredicate) throws Exception {
+        final LatencyWindow latencyWindow = getLatencyWindow(operation);
+        addHedgeTokens();
+        final HedgedCall<V> hedgedCall = new HedgedCall<>(call, failurePredicate, latencyWindow, Thread.currentThread());
+        final long startTime = System.nanoTime();
+        final ScheduledFuture<?> hedgeTimer = scheduleHedge(operation, hedgedCall, latencyWindow.getDelayNanos());
+        try {
+            hedgedCall.attemptPrimary();
+            hedgeTimer.cancel(false);
+            // In case the primary call failed, wait for the hedged call
+            return hedgedCall.result.get().getResult();
+        } catch (InterruptedException ex) {
+            hedgeTimer.cancel(false);
+            hedgedCall.cancelHedge();
+            Thread.currentThread().interrupt();
+            throw ex;
+        } finally {
+            if (hedgedCall.hedgeStarted && hedgedCall.result.isDone()) {
+                // Cancel the losing call, the duration of the primary call is recorded at least up to this point
+                final boolean hedgeWon = !hedgedCall.result.isCompletedExceptionally() && hedgedCall.result.join().isHedge();
+                if (hedgeWon) {
+                    latencyWindow.record(System.nanoTime() - startTime);
+                } else {
+                    hedgedCall.cancelHedge();
+                }
+                if (hedgedCall.pendingAttempts.get() == 0) {
+                    recordHedgedCall(operation, PowerAuthMetrics.HedgingOutcome.FAILED);
+                } else {
+                    recordHedgedCall(operation, hedgeWon ? PowerAuthMetrics.HedgingOutcome.HEDGE_WON : PowerAuthMetrics.HedgingOutcome.PRIMARY_WON);
+                }
+            }
+        }
+    }
+
+    /**
+     * Shut down the executor of PowerAuth server calls.
+     */
+    @Override
+    public void close() {
+        hedgeScheduler.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private <V> ScheduledFuture<?> scheduleHedge(String operation, HedgedCall<V> hedgedCall, long delayNanos) {
+        return hedgeScheduler.schedule(() -> startHedge(operation, hedgedCall), delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private <V> void startHedge(String operation, HedgedCall<V> hedgedCall) {
+        if (hedgedCall.result.isDone()) {
+            return;
+        }
+        if (!tryAcquireHedge()) {
+            recordHedgedCall(operation, PowerAuthMetrics.HedgingOutcome.BUDGET_EXHAUSTED);
+            return;
+        }
+        if (!hedgedCall.startHedge()) {
+            return;
+        }
+        logger.debug("PowerAuth server call exceeded hedging delay, sending hedged call, operation: {}", operation);
+        try {
+            hedgedCall.hedgeCall = executor.submit(() -> hedgedCall.attempt(true));
+            hedgedCall.hedgeStarted = true;
+        } catch (RejectedExecutionException ex) {
+            // Executor is saturated, wait for the primary call only
+            logger.debug("Hedged call was rejected, operation: {}", operation);
+            hedgedCall.abortHedge(ex);
+        }
+    }
+
+    private LatencyWindow getLatencyWindow(String operation) {
+        final LatencyWindow latencyWindow = latencyWindows.get(operation);
+        if (latencyWindow != null) {
+            return latencyWindow;
+        }
+        final LatencyWindow newLatencyWindow = new LatencyWindow();
+        final LatencyWindow existingLatencyWindow = latencyWindows.putIfAbsent(operation, newLatencyWindow);
+        return existingLatencyWindow != null ? existingLatencyWindow : newLatencyWindow;
+    }
+
+    private void addHedgeTokens() {
+        while (true) {
+            final long tokens = hedgeTokens.get();
+            if (tokens >= MAX_HEDGE_TOKENS) {
+                return;
+            }
+            if (hedgeTokens.compareAndSet(tokens, Math.min(tokens + hedgeTokensPerCall, MAX_HEDGE_TOKENS))) {
+                return;
+            }
+        }
+    }
+
+    private boolean tryAcquireHedge() {
+        while (true) {
+            final long tokens = hedgeTokens.get();
+            if (tokens < HEDGE_TOKEN_SCALE) {
+                return false;
+            }
+            if (hedgeTokens.compareAndSet(tokens, tokens - HEDGE_TOKEN_SCALE)) {
+                return true;
+            }
+        }
+    }
+
+    private void recordHedgedCall(String operation, PowerAuthMetrics.HedgingOutcome outcome) {
+        if (powerAuthMetrics != null) {
+            powerAuthMetrics.recordClientHedgedCall(operation, outcome);
+        }
+    }
+
+    /**
+     * State of a hedged call shared by the primary and the hedged attempt.
+     *
+     * @param <V> Type of call result.
+     */
+    private static final class HedgedCall<V> {
+
+        private final Callable<V> call;
+        private final Predicate<Exception> failurePredicate;
+        private final LatencyWindow latencyWindow;
+        private final Thread primaryThread;
+        private final CompletableFuture<Attempt<V>> result = new CompletableFuture<>();
+        private final AtomicInteger pendingAttempts = new AtomicInteger(1);
+        private final AtomicInteger primaryState = new AtomicInteger(PRIMARY_RUNNING);
+        private volatile Future<?> hedgeCall;
+        private volatile boolean hedgeStarted;
+
+        HedgedCall(Callable<V> call, Predicate<Exception> failurePredicate, LatencyWindow latencyWindow, Thread primaryThread) {
+            this.call = call;
+            this.failurePredicate = failurePredicate;
+            this.latencyWindow = latencyWindow;
+            this.primaryThread = primaryThread;
+        }
+
+        /**
+         * Execute the primary attempt on the calling thread.
+         */
+        void attemptPrimary() {
+            try {
+                attempt(false);
+            } finally {
+                if (!primaryState.compareAndSet(PRIMARY_RUNNING, PRIMARY_DONE)) {
+                    // The hedged attempt won and interrupted the primary attempt, wait until the interrupt is
+                    // delivered and clear it, so that it does not affect further processing of the request
+                    while (primaryState.get() == PRIMARY_INTERRUPTING) {
+                        Thread.yield();
+                    }
+                    Thread.interrupted();
+                }
+            }
+        }
+
+        /**
+         * Interrupt the primary attempt in case it is still running.
+         */
+        void cancelPrimary() {
+            if (primaryState.compareAndSet(PRIMARY_RUNNING, PRIMARY_INTERRUPTING)) {
+                try {
+                    primaryThread.interrupt();
+                } finally {
+                    primaryState.set(PRIMARY_INTERRUPTED);
+                }
+            }
+        }
+
+        /**
+         * Cancel the hedged attempt in case it was started.
+         */
+        void cancelHedge() {
+            final Future<?> hedgeCall = this.hedgeCall;
+            if (hedgeCall != null) {
+                hedgeCall.cancel(true);
+            }
+        }
+
+        /**
+         * Register the hedged attempt, unless all previous attempts have already failed.
+         *
+         * @return Whether the hedged attempt should be started.
+         */
+        boolean startHedge() {
+            return pendingAttempts.getAndUpdate(pending -> pending > 0 ? pending + 1 : pending) > 0;
+        }
+
+        /**
+         * Unregister the hedged attempt which could not be started.
+         *
+         * @param ex Exception which prevented the start of the attempt.
+         */
+        void abortHedge(Exception ex) {
+            if (pendingAttempts.decrementAndGet() == 0) {
+                // The primary attempt failed in the meantime, its failure was not reported
+                result.complete(new Attempt<>(null, ex, true));
+            }
+        }
+
+        void attempt(boolean hedge) {
+            if (hedge && result.isDone()) {
+                // The primary attempt completed before the hedged attempt was started
+                return;
+            }
+            final long startTime = System.nanoTime();
+            try {
+                final V value = call.call();
+                latencyWindow.record(System.nanoTime() - startTime);
+                complete(new Attempt<>(value, null, hedge));
+            } catch (Exception ex) {
+                if (result.isDone()) {
+                    // The attempt lost and it was interrupted
+                    logger.debug("Hedged PowerAuth server call attempt was cancelled, error: {}", ex.getMessage());
+                } else if (!failurePredicate.test(ex)) {
+                    latencyWindow.record(System.nanoTime() - startTime);
+                    complete(new Attempt<>(null, ex, hedge));
+                } else if (pendingAttempts.decrementAndGet() == 0) {
+                    // All attempts failed, the failure of the first failed attempt is reported
+                    result.complete(new Attempt<>(null, ex, hedge));
+                } else {
+                    logger.debug("Hedged PowerAuth server call attempt failed, error: {}", ex.getMessage());
+                }
+            } catch (Error ex) {
+                result.completeExceptionally(ex);
+            }
+        }
+
+        private void complete(Attempt<V> attempt) {
+            if (result.complete(attempt) && attempt.isHedge()) {
+                cancelPrimary();
+            }
+        }
+    }
+
+    /**
+     * Outcome of a call attempt.
+     *
+     * @param <V> Type of call result.
+     */
+    private static final class Attempt<V> {
+
+        private final V value;
+        private final Exception exception;
+        private final boolean hedge;
+
+        Attempt(V value, Exception exception, boolean hedge) {
+            this.value = value;
+            this.exception = exception;
+            this.hedge = hedge;
+        }
+
+        V getResult() throws Exception {
+            if (exception != null) {
+                throw exception;
+            }
+            return value;
+        }
+
+        boolean isHedge() {
+            return hedge;
+        }
+    }
+
+    /**
+     * Window of recent call durations of an operation, the hedging delay is recomputed periodically.
+     */
+    private final class LatencyWindow {
+
+        private final AtomicLongArray durations = new AtomicLongArray(LATENCY_WINDOW_SIZE);
+        private final AtomicLong sampleCount = new AtomicLong();
+        private volatile long delayNanos = initialDelayNanos;
+
+        void record(long durationNanos) {
+            final long sample = sampleCount.getAndIncrement();
+            durations.set((int) (sample % LATENCY_WINDOW_SIZE), durationNanos);
+            final long recorded = sample + 1;
+            if (recorded >= MIN_LATENCY_SAMPLES && recorded % DELAY_UPDATE_INTERVAL == 0) {
+                updateDelay((int) Math.min(recorded, LATENCY_WINDOW_SIZE));
+            }
+        }
+
+        long getDelayNanos() {
+            return delayNanos;
+        }
+
+        private void updateDelay(int count) {
+            final long[] values = new long[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = durations.get(i);
+            }
+            Arrays.sort(values);
+            final int index = Math.max((int) Math.ceil(delayPercentile * count) - 1, 0);
+            delayNanos = Math.max(values[index], minDelayNanos);
+        }
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.client;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PowerAuth server node used by {@link PowerAuthLoadBalancer}. The node keeps the number of requests in progress
+ * and the health state of the node.
+ *
+ * @param <T> Type of client of the node.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class PowerAuthServerNode<T> {
+
+    private final String name;
+    private final T client;
+    private final AtomicInteger outstandingRequests = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long ejectedUntil;
+    private volatile boolean ejected;
+
+    /**
+     * Constructor with node name and client.
+     *
+     * @param name Node name used in logs, for example PowerAuth server URL.
+     * @param client Client of the node.
+     */
+    public PowerAuthServerNode(String name, T client) {
+        this.name = name;
+        this.client = client;
+    }
+
+    /**
+     * Get node name.
+     *
+     * @return Node name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get client of the node.
+     *
+     * @return Client of the node.
+     */
+    public T getClient() {
+        return client;
+    }
+
+    /**
+     * Get number of requests in progress.
+     *
+     * @return Number of requests in progress.
+     */
+    public int getOutstandingRequests() {
+        return outstandingRequests.get();
+    }
+
+    /**
+     * Check whether the node is available for new requests.
+     *
+     * @param now Current time in nanoseconds.
+     * @return Whether the node is available.
+     */
+    boolean isAvailable(long now) {
+        return !ejected || now - ejectedUntil >= 0;
+    }
+
+    /**
+     * Check whether the node is ejected from load balancing.
+     *
+     * @return Whether the node is ejected.
+     */
+    public boolean isEjected() {
+        return ejected;
+    }
+
+    void requestStarted() {
+        outstandingRequests.incrementAndGet();
+    }
+
+    void requestCompleted() {
+        outstandingRequests.decrementAndGet();
+    }
+
+    /**
+     * Record successful request and return the node into load balancing.
+     *
+     * @return Whether the node was ejected before.
+     */
+    boolean onSuccess() {
+        consecutiveFailures.set(0);
+        final boolean wasEjected = ejected;
+        ejected = false;
+        return wasEjected;
+    }
+
+    /**
+     * Record successful health check. The node is returned into load balancing only in case its ejection elapsed,
+     * so that a node ejected for failing requests is not returned by a single successful health check.
+     *
+     * @param now Current time in nanoseconds.
+     * @return Whether the node was returned into load balancing.
+     */
+    boolean onHealthCheckSuccess(long now) {
+        if (!isAvailable(now)) {
+            return false;
+        }
+        return onSuccess();
+    }
+
+    /**
+     * Record failed request.
+     *
+     * @return Number of consecutive failures.
+     */
+    int onFailure() {
+        return consecutiveFailures.incrementAndGet();
+    }
+
+    /**
+     * Eject the node from load balancing until the ejection time elapses or a request succeeds.
+     *
+     * @param until Time in nanoseconds when the node becomes available again.
+     */
+    void eject(long until) {
+        ejectedUntil = until;
+        ejected = true;
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.client;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Coalescer of concurrent identical calls. In case a call with the same key is already in progress, the caller
+ * waits for the result of the call in progress instead of performing its own call. The result is shared only among
+ * callers whose calls overlap in time, results are not cached after the call completes.
+ *
+ * @param <K> Type of call key, the key must implement equals and hashCode.
+ * @param <V> Type of call result.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class RequestCoalescer<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> callsInProgress = new ConcurrentHashMap<>();
+
+    /**
+     * Execute a call or join an identical call which is already in progress.
+     *
+     * @param key Call key.
+     * @param call Call to execute.
+     * @return Call result.
+     * @throws Exception In case the call fails, the exception thrown by the call is rethrown for all callers.
+     */
+    public V execute(K key, Callable<V> call) throws Exception {
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        final CompletableFuture<V> callInProgress = callsInProgress.putIfAbsent(key, future);
+        if (callInProgress != null) {
+            return awaitResult(callInProgress);
+        }
+        try {
+            final V result = call.call();
+            future.complete(result);
+            return result;
+        } catch (Exception | Error ex) {
+            future.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            callsInProgress.remove(key, future);
+        }
+    }
+
+    /**
+     * Get number of calls which are currently in progress.
+     *
+     * @return Number of calls in progress.
+     */
+    public int getCallsInProgressCount() {
+        return callsInProgress.size();
+    }
+
+    /**
+     * Wait for result of a call which is in progress.
+     *
+     * @param callInProgress Call in progress.
+     * @return Call result.
+     * @throws Exception In case the call fails.
+     */
+    private V awaitResult(CompletableFuture<V> callInProgress) throws Exception {
+        try {
+            return callInProgress.get();
+        } catch (ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw ex;
+        }
+    }
+
+}
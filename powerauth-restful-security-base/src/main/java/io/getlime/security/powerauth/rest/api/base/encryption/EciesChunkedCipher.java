@@ -0,0 +1,212 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.encryption;
+
+import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.EciesEnvelopeKey;
+import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.exception.EciesException;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Cipher for chunked ECIES encryption of large payloads. The payload is split into chunks, each chunk is encrypted
+ * and authenticated separately, so that the payload can be processed as a stream in constant memory.
+ * <br><br>
+ * The keys are derived from the ECIES envelope key in the same way as for standard ECIES encryption. Each chunk
+ * is encrypted using AES-128-CBC with PKCS#7 padding and authenticated using HMAC-SHA256 (encrypt-then-MAC):
+ * <ul>
+ *     <li>{@code IV = HMAC-SHA256(KEY_IV, NONCE || DIRECTION || INDEX)[0..15]}</li>
+ *     <li>{@code MAC = HMAC-SHA256(KEY_MAC, CIPHERTEXT || SHARED_INFO_2 || EPHEMERAL_PUBLIC_KEY || NONCE || DIRECTION || INDEX || FLAGS)}</li>
+ * </ul>
+ * The direction is 0 for request and 1 for response, the index is the chunk index encoded as 8 byte big endian
+ * number and the flags byte has the lowest bit set for the last chunk. Each chunk is transferred as
+ * {@code FLAGS (1 byte) || LENGTH (4 bytes, big endian) || CIPHERTEXT || MAC (32 bytes)}. The stream must end with
+ * the last chunk, so that truncation, reordering and replay of chunks between directions are detected. The ephemeral
+ * public key and the nonce are sent in HTTP headers, they are authenticated by the MAC of each chunk.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class EciesChunkedCipher {
+
+    /**
+     * Maximum length of plaintext in one chunk.
+     */
+    public static final int MAX_CHUNK_LENGTH = 64 * 1024;
+
+    /**
+     * Length of nonce sent by the client.
+     */
+    public static final int NONCE_LENGTH = 16;
+
+    static final int MAX_CIPHERTEXT_LENGTH = MAX_CHUNK_LENGTH + 16;
+    static final int MAC_LENGTH = 32;
+    static final int CHUNK_HEADER_LENGTH = 5;
+    static final byte FLAG_LAST_CHUNK = 0x01;
+
+    private static final String CIPHER_TRANSFORMATION = "AES/CBC/PKCS5Padding";
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    /**
+     * Direction of the payload.
+     */
+    public enum Direction {
+
+        /**
+         * Request payload sent by the client.
+         */
+        REQUEST((byte) 0),
+
+        /**
+         * Response payload sent by the server.
+         */
+        RESPONSE((byte) 1);
+
+        private final byte value;
+
+        Direction(byte value) {
+            this.value = value;
+        }
+    }
+
+    private final SecretKeySpec encKey;
+    private final SecretKeySpec macKey;
+    private final SecretKeySpec ivKey;
+    private final byte[] sharedInfo2;
+    private final byte[] ephemeralPublicKey;
+    private final byte[] nonce;
+
+    /**
+     * Constructor with ECIES envelope key, sharedInfo2 parameter and nonce.
+     *
+     * @param envelopeKey ECIES envelope key.
+     * @param sharedInfo2 Parameter sharedInfo2 for ECIES.
+     * @param nonce Nonce sent by the client.
+     * @throws EciesException In case the envelope key or the nonce is invalid.
+     */
+    public EciesChunkedCipher(EciesEnvelopeKey envelopeKey, byte[] sharedInfo2, byte[] nonce) throws EciesException {
+        if (nonce == null || nonce.length != NONCE_LENGTH) {
+            throw new EciesException("Invalid nonce length");
+        }
+        this.encKey = new SecretKeySpec(envelopeKey.getEncKey(), "AES");
+        this.macKey = new SecretKeySpec(envelopeKey.getMacKey(), MAC_ALGORITHM);
+        this.ivKey = new SecretKeySpec(envelopeKey.getIvKey(), MAC_ALGORITHM);
+        this.sharedInfo2 = Arrays.copyOf(sharedInfo2, sharedInfo2.length);
+        this.ephemeralPublicKey = Arrays.copyOf(envelopeKey.getEphemeralKeyPublic(), envelopeKey.getEphemeralKeyPublic().length);
+        this.nonce = Arrays.copyOf(nonce, nonce.length);
+    }
+
+    /**
+     * Create input stream which reads chunked encrypted data from given input stream and returns decrypted data.
+     *
+     * @param inputStream Input stream with chunked encrypted data.
+     * @param direction Direction of the payload.
+     * @return Input stream with decrypted data.
+     */
+    public InputStream createDecryptingInputStream(InputStream inputStream, Direction direction) {
+        return new EciesChunkedInputStream(this, inputStream, direction);
+    }
+
+    /**
+     * Create output stream which encrypts written data and writes chunked encrypted data into given output stream.
+     * The output stream must be closed to write the last chunk, closing the stream does not close the underlying
+     * output stream.
+     *
+     * @param outputStream Output stream for chunked encrypted data.
+     * @param direction Direction of the payload.
+     * @return Output stream for data which should be encrypted.
+     */
+    public OutputStream createEncryptingOutputStream(OutputStream outputStream, Direction direction) {
+        return new EciesChunkedOutputStream(this, outputStream, direction);
+    }
+
+    /**
+     * Encrypt a chunk.
+     *
+     * @param data Buffer with plaintext.
+     * @param length Length of plaintext in the buffer.
+     * @param direction Direction of the payload.
+     * @param index Chunk index.
+     * @param flags Chunk flags.
+     * @return Ciphertext followed by MAC.
+     * @throws GeneralSecurityException In case encryption fails.
+     */
+    byte[] encryptChunk(byte[] data, int length, Direction direction, long index, byte flags) throws GeneralSecurityException {
+        final Cipher cipher = Cipher.getInstance(CIPHER_TRANSFORMATION);
+        cipher.init(Cipher.ENCRYPT_MODE, encKey, new IvParameterSpec(deriveIv(direction, index)));
+        final byte[] ciphertext = cipher.doFinal(data, 0, length);
+        final byte[] mac = computeMac(ciphertext, ciphertext.length, direction, index, flags);
+        final byte[] result = Arrays.copyOf(ciphertext, ciphertext.length + MAC_LENGTH);
+        System.arraycopy(mac, 0, result, ciphertext.length, MAC_LENGTH);
+        return result;
+    }
+
+    /**
+     * Verify MAC of a chunk and decrypt it.
+     *
+     * @param ciphertext Buffer with ciphertext.
+     * @param length Length of ciphertext in the buffer.
+     * @param mac Received MAC.
+     * @param direction Direction of the payload.
+     * @param index Chunk index.
+     * @param flags Chunk flags.
+     * @return Plaintext.
+     * @throws GeneralSecurityException In case MAC verification or decryption fails.
+     */
+    byte[] decryptChunk(byte[] ciphertext, int length, byte[] mac, Direction direction, long index, byte flags) throws GeneralSecurityException {
+        final byte[] expectedMac = computeMac(ciphertext, length, direction, index, flags);
+        if (!MessageDigest.isEqual(expectedMac, mac)) {
+            throw new GeneralSecurityException("Invalid MAC of chunk: " + index);
+        }
+        final Cipher cipher = Cipher.getInstance(CIPHER_TRANSFORMATION);
+        cipher.init(Cipher.DECRYPT_MODE, encKey, new IvParameterSpec(deriveIv(direction, index)));
+        return cipher.doFinal(ciphertext, 0, length);
+    }
+
+    private byte[] deriveIv(Direction direction, long index) throws GeneralSecurityException {
+        final Mac mac = Mac.getInstance(MAC_ALGORITHM);
+        mac.init(ivKey);
+        mac.update(nonce);
+        mac.update(direction.value);
+        mac.update(ByteBuffer.allocate(Long.BYTES).putLong(index).array());
+        return Arrays.copyOf(mac.doFinal(), 16);
+    }
+
+    private byte[] computeMac(byte[] ciphertext, int length, Direction direction, long index, byte flags) throws GeneralSecurityException {
+        final Mac mac = Mac.getInstance(MAC_ALGORITHM);
+        mac.init(macKey);
+        mac.update(ciphertext, 0, length);
+        mac.update(sharedInfo2);
+        mac.update(ephemeralPublicKey);
+        mac.update(nonce);
+        mac.update(direction.value);
+        mac.update(ByteBuffer.allocate(Long.BYTES).putLong(index).array());
+        mac.update(flags);
+        return mac.doFinal();
+    }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.encryption;
+
+import com.google.common.io.ByteStreams;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+
+/**
+ * Input stream which decrypts chunked ECIES encrypted data, see {@link EciesChunkedCipher} for the chunk format.
+ * Each chunk is authenticated before its data is returned.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+class EciesChunkedInputStream extends InputStream {
+
+    private final EciesChunkedCipher cipher;
+    private final InputStream inputStream;
+    private final EciesChunkedCipher.Direction direction;
+
+    private final byte[] chunkHeader = new byte[EciesChunkedCipher.CHUNK_HEADER_LENGTH];
+    private final byte[] ciphertext = new byte[EciesChunkedCipher.MAX_CIPHERTEXT_LENGTH];
+    private final byte[] mac = new byte[EciesChunkedCipher.MAC_LENGTH];
+
+    private byte[] plaintext = new byte[0];
+    private int position;
+    private long chunkIndex;
+    private boolean lastChunkRead;
+
+    EciesChunkedInputStream(EciesChunkedCipher cipher, InputStream inputStream, EciesChunkedCipher.Direction direction) {
+        this.cipher = cipher;
+        this.inputStream = inputStream;
+        this.direction = direction;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureData()) {
+            return -1;
+        }
+        return plaintext[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureData()) {
+            return -1;
+        }
+        final int count = Math.min(len, plaintext.length - position);
+        System.arraycopy(plaintext, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return plaintext.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+
+    /**
+     * Make sure that decrypted data is available, read next chunks in case it is needed.
+     *
+     * @return Whether data is available, false at the end of the stream.
+     * @throws IOException In case reading or decryption of a chunk fails.
+     */
+    private boolean ensureData() throws IOException {
+        // Empty chunks are allowed, read chunks until data is available or the last chunk is read
+        while (position == plaintext.length) {
+            if (lastChunkRead) {
+                return false;
+            }
+            readChunk();
+        }
+        return true;
+    }
+
+    private void readChunk() throws IOException {
+        final int headerLength = ByteStreams.read(inputStream, chunkHeader, 0, chunkHeader.length);
+        if (headerLength < chunkHeader.length) {
+            throw new EOFException("Encrypted stream ended before the last chunk");
+        }
+        final byte flags = chunkHeader[0];
+        final int length = ByteBuffer.wrap(chunkHeader, 1, 4).getInt();
+        if (length <= 0 || length > ciphertext.length) {
+            throw new IOException("Invalid length of chunk: " + chunkIndex);
+        }
+        ByteStreams.readFully(inputStream, ciphertext, 0, length);
+        ByteStreams.readFully(inputStream, mac);
+        try {
+            plaintext = cipher.decryptChunk(ciphertext, length, mac, direction, chunkIndex, flags);
+        } catch (GeneralSecurityException ex) {
+            throw new IOException("Decryption of chunk failed: " + chunkIndex, ex);
+        }
+        position = 0;
+        chunkIndex++;
+        if ((flags & EciesChunkedCipher.FLAG_LAST_CHUNK) != 0) {
+            lastChunkRead = true;
+            if (inputStream.read() != -1) {
+                throw new IOException("Unexpected data after the last chunk");
+            }
+        }
+    }
+
+}
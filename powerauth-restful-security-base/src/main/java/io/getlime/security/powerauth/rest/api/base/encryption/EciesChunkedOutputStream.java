@@ -0,0 +1,108 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.encryption;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+
+/**
+ * Output stream which encrypts written data into chunked ECIES encrypted data, see {@link EciesChunkedCipher}
+ * for the chunk format. A chunk is written once the chunk buffer is full and more data is written, the last
+ * chunk is written when the stream is closed.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+class EciesChunkedOutputStream extends OutputStream {
+
+    private final EciesChunkedCipher cipher;
+    private final OutputStream outputStream;
+    private final EciesChunkedCipher.Direction direction;
+
+    private final byte[] buffer = new byte[EciesChunkedCipher.MAX_CHUNK_LENGTH];
+    private int bufferLength;
+    private long chunkIndex;
+    private boolean closed;
+
+    EciesChunkedOutputStream(EciesChunkedCipher cipher, OutputStream outputStream, EciesChunkedCipher.Direction direction) {
+        this.cipher = cipher;
+        this.outputStream = outputStream;
+        this.direction = direction;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream is closed");
+        }
+        while (len > 0) {
+            if (bufferLength == buffer.length) {
+                // More data follows, the full buffer is not the last chunk
+                writeChunk((byte) 0);
+            }
+            final int count = Math.min(len, buffer.length - bufferLength);
+            System.arraycopy(b, off, buffer, bufferLength, count);
+            bufferLength += count;
+            off += count;
+            len -= count;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        outputStream.flush();
+    }
+
+    /**
+     * Write the last chunk and flush the underlying output stream, which is not closed.
+     *
+     * @throws IOException In case writing fails.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        writeChunk(EciesChunkedCipher.FLAG_LAST_CHUNK);
+        outputStream.flush();
+    }
+
+    private void writeChunk(byte flags) throws IOException {
+        final byte[] encryptedChunk;
+        try {
+            encryptedChunk = cipher.encryptChunk(buffer, bufferLength, direction, chunkIndex, flags);
+        } catch (GeneralSecurityException ex) {
+            throw new IOException("Encryption of chunk failed: " + chunkIndex, ex);
+        }
+        final int ciphertextLength = encryptedChunk.length - EciesChunkedCipher.MAC_LENGTH;
+        outputStream.write(ByteBuffer.allocate(EciesChunkedCipher.CHUNK_HEADER_LENGTH).put(flags).putInt(ciphertextLength).array());
+        outputStream.write(encryptedChunk);
+        bufferLength = 0;
+        chunkIndex++;
+    }
+
+}
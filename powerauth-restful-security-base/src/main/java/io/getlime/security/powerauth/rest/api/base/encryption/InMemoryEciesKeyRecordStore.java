@@ -0,0 +1,277 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.encryption;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.getlime.security.powerauth.rest.api.base.activation.ActivationStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded in-memory store of ECIES key records with limited record lifetime. The store is fed by the application
+ * and it is used as a {@link PowerAuthEciesKeyRecordProvider} for local derivation of ECIES decryptor parameters.
+ * <br><br>
+ * Key material is kept encrypted in memory using AES-GCM with a random key generated when the store is created,
+ * the key material is decrypted only when a key record is requested.
+ * <br><br>
+ * Key records are snapshots of the activation and application state. The application should replace the record
+ * or discard it using {@link #removeKeyRecordsForActivation(String)} in all nodes when the activation status changes,
+ * otherwise the change is reflected only when the record expires, so the lifetime should be short.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class InMemoryEciesKeyRecordStore implements PowerAuthEciesKeyRecordProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryEciesKeyRecordStore.class);
+
+    private static final String CIPHER_TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int GCM_IV_LENGTH = 12;
+    private static final int GCM_TAG_LENGTH_BITS = 128;
+
+    private final Cache<List<String>, EncryptedKeyRecord> keyRecords;
+    // Application key of the latest stored key record with transport key, keyed by activation ID
+    private final Cache<String, String> transportKeyRecords;
+    private final SecretKey storageKey;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    /**
+     * Constructor with store limits.
+     *
+     * @param maxSize Maximum number of stored key records.
+     * @param timeToLive Lifetime of a key record since it was stored.
+     */
+    public InMemoryEciesKeyRecordStore(long maxSize, Duration timeToLive) {
+        this.keyRecords = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(timeToLive.toMillis(), TimeUnit.MILLISECONDS)
+                .build();
+        this.transportKeyRecords = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(timeToLive.toMillis(), TimeUnit.MILLISECONDS)
+                .build();
+        try {
+            final KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+            keyGenerator.init(256, secureRandom);
+            this.storageKey = keyGenerator.generateKey();
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("AES key generation is not available", ex);
+        }
+    }
+
+    /**
+     * Store a key record.
+     *
+     * @param keyRecord Key record.
+     */
+    public void storeKeyRecord(PowerAuthEciesKeyRecord keyRecord) {
+        final List<String> recordKey = Arrays.asList(keyRecord.getActivationId(), keyRecord.getApplicationKey());
+        final byte[] keyMaterial = serializeKeyMaterial(keyRecord);
+        try {
+            final byte[] iv = new byte[GCM_IV_LENGTH];
+            secureRandom.nextBytes(iv);
+            final Cipher cipher = Cipher.getInstance(CIPHER_TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, storageKey, new GCMParameterSpec(GCM_TAG_LENGTH_BITS, iv));
+            cipher.updateAAD(associatedData(recordKey));
+            keyRecords.put(recordKey, new EncryptedKeyRecord(keyRecord.isApplicationVersionSupported(), keyRecord.getActivationStatus(),
+                    iv, cipher.doFinal(keyMaterial)));
+            if (keyRecord.getActivationId() != null && keyRecord.getTransportKey() != null) {
+                transportKeyRecords.put(keyRecord.getActivationId(), keyRecord.getApplicationKey());
+            }
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("Key record encryption failed", ex);
+        } finally {
+            Arrays.fill(keyMaterial, (byte) 0);
+        }
+    }
+
+    /**
+     * Remove a key record.
+     *
+     * @param activationId Activation ID, null in application scope.
+     * @param applicationKey Application key.
+     */
+    public void removeKeyRecord(String activationId, String applicationKey) {
+        keyRecords.invalidate(Arrays.asList(activationId, applicationKey));
+        if (activationId != null) {
+            transportKeyRecords.asMap().remove(activationId, applicationKey);
+        }
+    }
+
+    /**
+     * Remove all key records which belong to given activation.
+     *
+     * @param activationId Activation ID.
+     */
+    public void removeKeyRecordsForActivation(String activationId) {
+        transportKeyRecords.invalidate(activationId);
+        keyRecords.asMap().keySet().removeIf(recordKey -> activationId.equals(recordKey.get(0)));
+    }
+
+    @Override
+    public PowerAuthEciesKeyRecord findKeyRecord(String activationId, String applicationKey) {
+        final List<String> recordKey = Arrays.asList(activationId, applicationKey);
+        final EncryptedKeyRecord encryptedKeyRecord = keyRecords.getIfPresent(recordKey);
+        if (encryptedKeyRecord == null) {
+            return null;
+        }
+        byte[] keyMaterial = null;
+        try {
+            final Cipher cipher = Cipher.getInstance(CIPHER_TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, storageKey, new GCMParameterSpec(GCM_TAG_LENGTH_BITS, encryptedKeyRecord.iv));
+            cipher.updateAAD(associatedData(recordKey));
+            keyMaterial = cipher.doFinal(encryptedKeyRecord.encryptedKeyMaterial);
+            return deserializeKeyMaterial(activationId, applicationKey, encryptedKeyRecord, keyMaterial);
+        } catch (GeneralSecurityException ex) {
+            logger.warn("Key record decryption failed, error: {}", ex.getMessage());
+            logger.debug("Error details", ex);
+            return null;
+        } finally {
+            if (keyMaterial != null) {
+                Arrays.fill(keyMaterial, (byte) 0);
+            }
+        }
+    }
+
+    @Override
+    public byte[] findTransportKey(String activationId) {
+        final String applicationKey = transportKeyRecords.getIfPresent(activationId);
+        if (applicationKey == null) {
+            return null;
+        }
+        final PowerAuthEciesKeyRecord keyRecord = findKeyRecord(activationId, applicationKey);
+        if (keyRecord == null || keyRecord.getTransportKey() == null) {
+            // Key record was evicted or replaced by a record without transport key
+            transportKeyRecords.asMap().remove(activationId, applicationKey);
+            return null;
+        }
+        return keyRecord.getTransportKey();
+    }
+
+    @Override
+    public void activationWasRemoved(String activationId) {
+        removeKeyRecordsForActivation(activationId);
+    }
+
+    /**
+     * Get associated data which binds encrypted key material to the record key.
+     *
+     * @param recordKey Record key.
+     * @return Associated data.
+     */
+    private byte[] associatedData(List<String> recordKey) {
+        return (recordKey.get(0) + "&" + recordKey.get(1)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Serialize key material as length prefixed values, missing values have length -1.
+     *
+     * @param keyRecord Key record.
+     * @return Serialized key material.
+     */
+    private byte[] serializeKeyMaterial(PowerAuthEciesKeyRecord keyRecord) {
+        final byte[] applicationSecret = keyRecord.getApplicationSecret() == null ? null : keyRecord.getApplicationSecret().getBytes(StandardCharsets.UTF_8);
+        final byte[][] values = {applicationSecret, keyRecord.getServerPrivateKey(), keyRecord.getTransportKey()};
+        int length = 0;
+        for (byte[] value : values) {
+            length += Integer.BYTES + (value == null ? 0 : value.length);
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (byte[] value : values) {
+            if (value == null) {
+                buffer.putInt(-1);
+            } else {
+                buffer.putInt(value.length).put(value);
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Deserialize key material into a key record.
+     *
+     * @param activationId Activation ID.
+     * @param applicationKey Application key.
+     * @param encryptedKeyRecord Key record with encrypted key material.
+     * @param keyMaterial Serialized key material.
+     * @return Key record.
+     */
+    private PowerAuthEciesKeyRecord deserializeKeyMaterial(String activationId, String applicationKey, EncryptedKeyRecord encryptedKeyRecord, byte[] keyMaterial) {
+        final ByteBuffer buffer = ByteBuffer.wrap(keyMaterial);
+        final byte[] applicationSecret = readValue(buffer);
+        final byte[] serverPrivateKey = readValue(buffer);
+        final byte[] transportKey = readValue(buffer);
+        final PowerAuthEciesKeyRecord keyRecord = new PowerAuthEciesKeyRecord(activationId, applicationKey,
+                applicationSecret == null ? null : new String(applicationSecret, StandardCharsets.UTF_8),
+                encryptedKeyRecord.applicationVersionSupported, encryptedKeyRecord.activationStatus, serverPrivateKey, transportKey);
+        // Key record keeps its own copies of the keys
+        wipe(serverPrivateKey);
+        wipe(transportKey);
+        return keyRecord;
+    }
+
+    private byte[] readValue(ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] value = new byte[length];
+        buffer.get(value);
+        return value;
+    }
+
+    private void wipe(byte[] value) {
+        if (value != null) {
+            Arrays.fill(value, (byte) 0);
+        }
+    }
+
+    /**
+     * Key record with encrypted key material.
+     */
+    private static final class EncryptedKeyRecord {
+
+        private final boolean applicationVersionSupported;
+        private final ActivationStatus activationStatus;
+        private final byte[] iv;
+        private final byte[] encryptedKeyMaterial;
+
+        EncryptedKeyRecord(boolean applicationVersionSupported, ActivationStatus activationStatus, byte[] iv, byte[] encryptedKeyMaterial) {
+            this.applicationVersionSupported = applicationVersionSupported;
+            this.activationStatus = activationStatus;
+            this.iv = iv;
+            this.encryptedKeyMaterial = encryptedKeyMaterial;
+        }
+    }
+
+}
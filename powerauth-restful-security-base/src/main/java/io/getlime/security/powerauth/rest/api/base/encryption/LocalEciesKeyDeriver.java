@@ -0,0 +1,136 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.encryption;
+
+import com.google.common.io.BaseEncoding;
+import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.EciesDecryptor;
+import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.EciesFactory;
+import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.model.EciesSharedInfo1;
+import io.getlime.security.powerauth.crypto.lib.util.KeyConvertor;
+import io.getlime.security.powerauth.rest.api.base.activation.ActivationStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.interfaces.ECPrivateKey;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Deriver of ECIES decryptor parameters which uses key records provided by the application instead of calling
+ * PowerAuth server. The ECDH key agreement and the KDF are performed locally in the same way as in PowerAuth server.
+ * <br><br>
+ * The deriver only decides about requests for which a key record is available, the protocol version is supported
+ * by local derivation and the key record passes the checks performed by PowerAuth server: the application version
+ * must be supported and the activation must be active in activation scope. In all other cases the ECIES decryptor
+ * parameters should be obtained from PowerAuth server, which rejects the request in case the checks fail.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class LocalEciesKeyDeriver {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalEciesKeyDeriver.class);
+
+    private static final Set<String> SUPPORTED_VERSIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("3.0", "3.1")));
+
+    private final EciesFactory eciesFactory = new EciesFactory();
+    private final KeyConvertor keyConvertor = new KeyConvertor();
+    private final PowerAuthEciesKeyRecordProvider keyRecordProvider;
+
+    /**
+     * Constructor with key record provider.
+     *
+     * @param keyRecordProvider Key record provider.
+     */
+    public LocalEciesKeyDeriver(PowerAuthEciesKeyRecordProvider keyRecordProvider) {
+        this.keyRecordProvider = keyRecordProvider;
+    }
+
+    /**
+     * Derive ECIES decryptor parameters using the key record of given activation or application.
+     *
+     * @param activationId Activation ID (only used in activation scope, in application scope use null).
+     * @param applicationKey Application key.
+     * @param ephemeralPublicKey Ephemeral public key for ECIES.
+     * @param version Protocol version from PowerAuth HTTP header.
+     * @return ECIES decryptor parameters or null in case the parameters should be obtained from PowerAuth server.
+     */
+    public PowerAuthEciesDecryptorParameters deriveDecryptorParameters(String activationId, String applicationKey, byte[] ephemeralPublicKey, String version) {
+        if (!SUPPORTED_VERSIONS.contains(version)) {
+            logger.debug("Protocol version is not supported by local ECIES key derivation, version: {}", version);
+            return null;
+        }
+        final PowerAuthEciesKeyRecord keyRecord = keyRecordProvider.findKeyRecord(activationId, applicationKey);
+        if (keyRecord == null || keyRecord.getServerPrivateKey() == null || keyRecord.getApplicationSecret() == null) {
+            return null;
+        }
+        if (activationId != null && keyRecord.getTransportKey() == null) {
+            return null;
+        }
+        if (!keyRecord.isApplicationVersionSupported()) {
+            logger.debug("Application version is not supported, application key: {}", applicationKey);
+            return null;
+        }
+        if (activationId != null && keyRecord.getActivationStatus() != ActivationStatus.ACTIVE) {
+            logger.debug("Activation is not active, activation ID: {}, activation status: {}", activationId, keyRecord.getActivationStatus());
+            return null;
+        }
+        try {
+            final ECPrivateKey serverPrivateKey = (ECPrivateKey) keyConvertor.convertBytesToPrivateKey(keyRecord.getServerPrivateKey());
+            final byte[] applicationSecret = keyRecord.getApplicationSecret().getBytes(StandardCharsets.UTF_8);
+            final EciesDecryptor eciesDecryptor;
+            if (activationId == null) {
+                eciesDecryptor = eciesFactory.getEciesDecryptorForApplication(serverPrivateKey, applicationSecret, EciesSharedInfo1.APPLICATION_SCOPE_GENERIC);
+            } else {
+                eciesDecryptor = eciesFactory.getEciesDecryptorForActivation(serverPrivateKey, applicationSecret, keyRecord.getTransportKey(), EciesSharedInfo1.ACTIVATION_SCOPE_GENERIC);
+            }
+            eciesDecryptor.initEnvelopeKey(ephemeralPublicKey);
+            final String secretKey = BaseEncoding.base64().encode(eciesDecryptor.getEnvelopeKey().getSecretKey());
+            final String sharedInfo2 = BaseEncoding.base64().encode(eciesDecryptor.getSharedInfo2());
+            return new PowerAuthEciesDecryptorParameters(secretKey, sharedInfo2);
+        } catch (Exception ex) {
+            logger.warn("Local ECIES key derivation failed, error: {}", ex.getMessage());
+            logger.debug("Error details", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Find transport key of given activation using the key record provider.
+     *
+     * @param activationId Activation ID.
+     * @return Transport key or null in case it is not available.
+     */
+    public byte[] findTransportKey(String activationId) {
+        return keyRecordProvider.findTransportKey(activationId);
+    }
+
+    /**
+     * Notify key record provider that an activation was removed.
+     *
+     * @param activationId Activation ID.
+     */
+    public void activationWasRemoved(String activationId) {
+        keyRecordProvider.activationWasRemoved(activationId);
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.encryption;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Class used for storing data related to chunked ECIES encryption of large payloads. The request payload is available
+ * as a stream which is decrypted while it is read, the response payload is encrypted while it is written.
+ * <br><br>
+ * Chunked encryption is negotiated by the client using the {@link #EPHEMERAL_PUBLIC_KEY_HEADER} and
+ * {@link #NONCE_HEADER} HTTP headers, the request body contains chunked encrypted data instead of JSON
+ * with ECIES cryptogram. Chunked encryption is only accepted by endpoints which require encryption.
+ * <br><br>
+ * The request body is not available when the signature is verified, instead the signature data contains
+ * the values of the {@link #EPHEMERAL_PUBLIC_KEY_HEADER} and {@link #NONCE_HEADER} HTTP headers joined with
+ * the {@code &} character, see {@link #signatureData(String, String)}. The signature binds the request to the
+ * ephemeral key, so the body cannot be replaced without the ephemeral private key, each chunk is authenticated
+ * using keys derived from the ephemeral key and the last chunk is marked, so that truncation is detected.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class PowerAuthEciesChunkedEncryption {
+
+    /**
+     * HTTP header with Base64 encoded ephemeral public key for chunked ECIES encryption.
+     */
+    public static final String EPHEMERAL_PUBLIC_KEY_HEADER = "X-PowerAuth-Chunked-Ephemeral-Public-Key";
+
+    /**
+     * HTTP header with Base64 encoded nonce for chunked ECIES encryption.
+     */
+    public static final String NONCE_HEADER = "X-PowerAuth-Chunked-Nonce";
+
+    private static final String SIGNATURE_DATA_SEPARATOR = "&";
+
+    private final EciesEncryptionContext context;
+    private final EciesChunkedCipher cipher;
+    private final InputStream requestInputStream;
+
+    /**
+     * Constructor with ECIES context, chunked cipher and encrypted request body stream.
+     *
+     * @param context ECIES encryption context.
+     * @param cipher Chunked ECIES cipher.
+     * @param encryptedRequestInputStream Input stream with encrypted request body.
+     */
+    public PowerAuthEciesChunkedEncryption(EciesEncryptionContext context, EciesChunkedCipher cipher, InputStream encryptedRequestInputStream) {
+        this.context = context;
+        this.cipher = cipher;
+        this.requestInputStream = cipher.createDecryptingInputStream(encryptedRequestInputStream, EciesChunkedCipher.Direction.REQUEST);
+    }
+
+    /**
+     * Get data covered by PowerAuth signature of a request with chunked encrypted body.
+     *
+     * @param ephemeralPublicKeyHeader Value of chunked encryption ephemeral public key HTTP header.
+     * @param nonceHeader Value of chunked encryption nonce HTTP header.
+     * @return Signature data.
+     */
+    public static byte[] signatureData(String ephemeralPublicKeyHeader, String nonceHeader) {
+        return (ephemeralPublicKeyHeader + SIGNATURE_DATA_SEPARATOR + nonceHeader).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get ECIES encryption context.
+     * @return ECIES encryption context.
+     */
+    public EciesEncryptionContext getContext() {
+        return context;
+    }
+
+    /**
+     * Get input stream with decrypted request data. Reading fails with IOException in case the encrypted data
+     * is invalid, the data must not be processed until the stream is read completely in such case.
+     * @return Input stream with decrypted request data.
+     */
+    public InputStream getRequestInputStream() {
+        return requestInputStream;
+    }
+
+    /**
+     * Create output stream for response data which are encrypted and written into given output stream, typically
+     * the HTTP response output stream. The returned stream must be closed to complete the response.
+     *
+     * @param responseOutputStream Output stream for encrypted response data.
+     * @return Output stream for response data.
+     */
+    public OutputStream createResponseOutputStream(OutputStream responseOutputStream) {
+        return cipher.createEncryptingOutputStream(responseOutputStream, EciesChunkedCipher.Direction.RESPONSE);
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.encryption;
+
+import io.getlime.security.powerauth.rest.api.base.activation.ActivationStatus;
+
+import java.util.Arrays;
+
+/**
+ * Key record with inputs for local derivation of ECIES decryptor parameters. In activation scope, the record contains
+ * the server private key and the transport key of the activation. In application scope, the activation ID and
+ * transport key are null and the record contains the master server private key.
+ * <br><br>
+ * The activation status and the application version support flag are snapshots taken when the record was provisioned,
+ * the record should be replaced or discarded when either of them changes.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class PowerAuthEciesKeyRecord {
+
+    private final String activationId;
+    private final String applicationKey;
+    private final String applicationSecret;
+    private final boolean applicationVersionSupported;
+    private final ActivationStatus activationStatus;
+    private final byte[] serverPrivateKey;
+    private final byte[] transportKey;
+
+    /**
+     * Constructor with all key record attributes.
+     *
+     * @param activationId Activation ID, null in application scope.
+     * @param applicationKey Application key.
+     * @param applicationSecret Application secret.
+     * @param applicationVersionSupported Whether the application version is supported.
+     * @param activationStatus Activation status, null in application scope.
+     * @param serverPrivateKey Server private key of the activation, or master server private key in application scope.
+     * @param transportKey Transport key of the activation, null in application scope.
+     */
+    public PowerAuthEciesKeyRecord(String activationId, String applicationKey, String applicationSecret, boolean applicationVersionSupported,
+                                   ActivationStatus activationStatus, byte[] serverPrivateKey, byte[] transportKey) {
+        this.activationId = activationId;
+        this.applicationKey = applicationKey;
+        this.applicationSecret = applicationSecret;
+        this.applicationVersionSupported = applicationVersionSupported;
+        this.activationStatus = activationStatus;
+        this.serverPrivateKey = serverPrivateKey == null ? null : Arrays.copyOf(serverPrivateKey, serverPrivateKey.length);
+        this.transportKey = transportKey == null ? null : Arrays.copyOf(transportKey, transportKey.length);
+    }
+
+    /**
+     * Get activation ID.
+     * @return Activation ID, null in application scope.
+     */
+    public String getActivationId() {
+        return activationId;
+    }
+
+    /**
+     * Get application key.
+     * @return Application key.
+     */
+    public String getApplicationKey() {
+        return applicationKey;
+    }
+
+    /**
+     * Get application secret.
+     * @return Application secret.
+     */
+    public String getApplicationSecret() {
+        return applicationSecret;
+    }
+
+    /**
+     * Get whether the application version is supported.
+     * @return Whether the application version is supported.
+     */
+    public boolean isApplicationVersionSupported() {
+        return applicationVersionSupported;
+    }
+
+    /**
+     * Get activation status.
+     * @return Activation status, null in application scope.
+     */
+    public ActivationStatus getActivationStatus() {
+        return activationStatus;
+    }
+
+    /**
+     * Get server private key.
+     * @return Server private key.
+     */
+    public byte[] getServerPrivateKey() {
+        return serverPrivateKey;
+    }
+
+    /**
+     * Get transport key.
+     * @return Transport key, null in application scope.
+     */
+    public byte[] getTransportKey() {
+        return transportKey;
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.encryption;
+
+/**
+ * Provider of key records used for local derivation of ECIES decryptor parameters. The application implements this
+ * interface in case it has access to key material of activations, for example via a feed published by its PowerAuth
+ * server deployment.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public interface PowerAuthEciesKeyRecordProvider {
+
+    /**
+     * Find a key record for given activation ID and application key.
+     *
+     * @param activationId Activation ID, null in application scope.
+     * @param applicationKey Application key.
+     * @return Key record or null in case the record is not available and ECIES decryptor parameters should be obtained
+     * from PowerAuth server.
+     */
+    PowerAuthEciesKeyRecord findKeyRecord(String activationId, String applicationKey);
+
+    /**
+     * Find transport key of given activation. The transport key is used for encryption of cached activation status.
+     * Default implementation returns null, so that activation status is always obtained from PowerAuth server.
+     *
+     * @param activationId Activation ID.
+     * @return Transport key or null in case it is not available.
+     */
+    default byte[] findTransportKey(String activationId) {
+        return null;
+    }
+
+    /**
+     * Method is called when an activation is removed using the standard activation removal endpoint. All key records
+     * which belong to the activation should be discarded. Default implementation is no-op.
+     *
+     * @param activationId Activation ID.
+     */
+    default void activationWasRemoved(String activationId) {}
+
+}
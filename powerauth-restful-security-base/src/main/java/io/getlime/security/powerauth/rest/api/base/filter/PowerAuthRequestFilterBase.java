@@ -22,6 +22,8 @@ package io.getlime.security.powerauth.rest.api.base.filter;
 import io.getlime.security.powerauth.http.PowerAuthEncryptionHttpHeader;
 import io.getlime.security.powerauth.http.PowerAuthRequestCanonizationUtils;
 import io.getlime.security.powerauth.http.PowerAuthSignatureHttpHeader;
+import io.getlime.security.powerauth.rest.api.base.encryption.PowerAuthEciesChunkedEncryption;
+import io.getlime.security.powerauth.rest.api.base.metrics.PowerAuthMetrics;
 import io.getlime.security.powerauth.rest.api.base.model.PowerAuthRequestBody;
 import io.getlime.security.powerauth.rest.api.base.model.PowerAuthRequestObjects;
 
@@ -45,6 +47,43 @@ public class PowerAuthRequestFilterBase {
      * @throws IOException In case request body extraction fails.
      */
     public static ResettableStreamHttpServletRequest filterRequest(HttpServletRequest httpRequest) throws IOException {
+        return filterRequest(httpRequest, null);
+    }
+
+    /**
+     * Extract request body from HTTP servlet request and record duration of request body buffering.
+     *
+     * @param httpRequest HTTP servlet request.
+     * @param metrics PowerAuth metrics, null in case metrics are not recorded.
+     * @return Resettable HTTP servlet request.
+     * @throws IOException In case request body extraction fails.
+     */
+    public static ResettableStreamHttpServletRequest filterRequest(HttpServletRequest httpRequest, PowerAuthMetrics metrics) throws IOException {
+        if (metrics == null) {
+            return extractRequestBody(httpRequest);
+        }
+        final long startTime = metrics.startTimer();
+        try {
+            return extractRequestBody(httpRequest);
+        } finally {
+            metrics.recordRequestBodyBuffering(httpRequest.getMethod(), startTime);
+        }
+    }
+
+    private static ResettableStreamHttpServletRequest extractRequestBody(HttpServletRequest httpRequest) throws IOException {
+        final String chunkedEphemeralPublicKey = httpRequest.getHeader(PowerAuthEciesChunkedEncryption.EPHEMERAL_PUBLIC_KEY_HEADER);
+        if (chunkedEphemeralPublicKey != null) {
+            // Chunked encrypted request body is streamed and it is not buffered, the signature data contains
+            // the chunked encryption headers which bind the signature to the encrypted body
+            final ResettableStreamHttpServletRequest streamingRequest = new ResettableStreamHttpServletRequest(httpRequest, false);
+            streamingRequest.setAttribute(
+                    PowerAuthRequestObjects.REQUEST_BODY,
+                    new PowerAuthRequestBody(PowerAuthEciesChunkedEncryption.signatureData(
+                            chunkedEphemeralPublicKey, httpRequest.getHeader(PowerAuthEciesChunkedEncryption.NONCE_HEADER)))
+            );
+            return streamingRequest;
+        }
+
         final ResettableStreamHttpServletRequest resettableRequest = new ResettableStreamHttpServletRequest(httpRequest);
 
         if (httpRequest.getHeader(PowerAuthSignatureHttpHeader.HEADER_NAME) == null && httpRequest.getHeader(PowerAuthEncryptionHttpHeader.HEADER_NAME) == null) {
@@ -92,7 +131,7 @@ public class PowerAuthRequestFilterBase {
         } else { // ... handle POST, PUT, DELETE, ... method
 
             // Get the request body and pass it as the signature base string as the request attribute
-            final byte[] body = resettableRequest.getRequestBody();
+            final byte[] body = resettableRequest.getSharedRequestBody();
             if (body != null) {
                 resettableRequest.setAttribute(
                         PowerAuthRequestObjects.REQUEST_BODY,
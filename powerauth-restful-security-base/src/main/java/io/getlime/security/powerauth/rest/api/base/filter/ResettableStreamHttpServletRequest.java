@@ -19,14 +19,13 @@
  */
 package io.getlime.security.powerauth.rest.api.base.filter;
 
-import com.google.common.io.ByteStreams;
-
 import javax.annotation.Nonnull;
 import javax.servlet.ReadListener;
 import javax.servlet.ServletInputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
@@ -37,6 +36,23 @@ import java.util.Arrays;
  */
 public class ResettableStreamHttpServletRequest extends HttpServletRequestWrapper {
 
+    /**
+     * Maximum size of the buffer allocated based on the content length header, the header is sent by the client,
+     * so larger buffers are only allocated as the bytes actually arrive.
+     */
+    private static final int MAX_PRESIZED_BODY_LENGTH = 64 * 1024;
+
+    /**
+     * Initial buffer size in case the content length is not known.
+     */
+    private static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * Maximum size of a Java array.
+     */
+    private static final int MAX_BODY_LENGTH = Integer.MAX_VALUE - 8;
+
+    private final boolean bufferBody;
     private byte[] requestBody = new byte[0];
     private boolean bufferFilled = false;
 
@@ -47,40 +63,114 @@ public class ResettableStreamHttpServletRequest extends HttpServletRequestWrappe
      * @throws IllegalArgumentException if the request is null
      */
     public ResettableStreamHttpServletRequest(HttpServletRequest request) {
+        this(request, true);
+    }
+
+    /**
+     * Constructs a request object wrapping the given request, optionally without buffering of the request body.
+     * In case the request body is not buffered, the request body is empty and the input stream of the wrapped
+     * request is used, so that the request body can be streamed.
+     *
+     * @param request The request to wrap
+     * @param bufferBody Whether request body should be buffered.
+     * @throws IllegalArgumentException if the request is null
+     */
+    public ResettableStreamHttpServletRequest(HttpServletRequest request, boolean bufferBody) {
         super(request);
+        this.bufferBody = bufferBody;
     }
 
     /**
-     * Get request body.
+     * Get request body. The request body is read only once, the returned array is a copy of the buffered body.
      * @return Bytes with the request body contents.
      * @throws IOException In case stream reading fails.
      */
     public byte[] getRequestBody() throws IOException {
+        return getSharedRequestBody().clone();
+    }
 
-        if (bufferFilled) {
-            return Arrays.copyOf(requestBody, requestBody.length);
-        }
+    /**
+     * Get request body without copying. The returned array is shared with the input streams of this request
+     * and with {@link io.getlime.security.powerauth.rest.api.base.model.PowerAuthRequestBody}, so it must not be modified.
+     * @return Bytes with the request body contents.
+     * @throws IOException In case stream reading fails.
+     */
+    byte[] getSharedRequestBody() throws IOException {
 
-        InputStream inputStream = super.getInputStream();
+        if (bufferFilled || !bufferBody) {
+            return requestBody;
+        }
 
-        //TODO: Replace by Java 9 InputStream.readAllBytes() method when relevant.
-        requestBody = ByteStreams.toByteArray(inputStream);
+        requestBody = readRequestBody(super.getInputStream(), getContentLengthLong());
 
         bufferFilled = true;
 
         return requestBody;
     }
 
+    /**
+     * Get read-only view of the request body.
+     * @return Read-only buffer with the request body contents.
+     * @throws IOException In case stream reading fails.
+     */
+    public ByteBuffer getRequestBodyBuffer() throws IOException {
+        return ByteBuffer.wrap(getSharedRequestBody()).asReadOnlyBuffer();
+    }
+
     @Override
     public ServletInputStream getInputStream() throws IOException {
-        return new CustomServletInputStream(getRequestBody());
+        if (!bufferBody) {
+            return super.getInputStream();
+        }
+        return new CustomServletInputStream(getSharedRequestBody());
     }
 
     @Override
     public BufferedReader getReader() throws IOException {
+        if (!bufferBody) {
+            return super.getReader();
+        }
         return new BufferedReader(new InputStreamReader(getInputStream()));
     }
 
+    /**
+     * Read the request body. In case the content length is known, the buffer is presized up to a limit, so that
+     * small bodies are not copied while the buffer grows. The buffer grows only as the bytes actually arrive.
+     * @param inputStream Request input stream.
+     * @param contentLength Content length from HTTP header or -1 in case it is not known.
+     * @return Request body bytes.
+     * @throws IOException In case stream reading fails.
+     */
+    private static byte[] readRequestBody(InputStream inputStream, long contentLength) throws IOException {
+        final int initialSize = contentLength < 0 ? DEFAULT_BUFFER_SIZE : (int) Math.min(contentLength, MAX_PRESIZED_BODY_LENGTH);
+        byte[] body = new byte[initialSize];
+        int length = 0;
+        while (true) {
+            if (length == body.length) {
+                // Check whether the stream ended before growing the buffer, a body matching the buffer size is not copied
+                final int nextByte = inputStream.read();
+                if (nextByte == -1) {
+                    break;
+                }
+                body = Arrays.copyOf(body, grownSize(body.length));
+                body[length++] = (byte) nextByte;
+            }
+            final int bytesRead = inputStream.read(body, length, body.length - length);
+            if (bytesRead == -1) {
+                break;
+            }
+            length += bytesRead;
+        }
+        return length == body.length ? body : Arrays.copyOf(body, length);
+    }
+
+    private static int grownSize(int size) throws IOException {
+        if (size >= MAX_BODY_LENGTH) {
+            throw new IOException("Request body is too large");
+        }
+        return (int) Math.min(Math.max(size * 2L, DEFAULT_BUFFER_SIZE), MAX_BODY_LENGTH);
+    }
+
     private static class CustomServletInputStream extends ServletInputStream {
 
         private final ByteArrayInputStream buffer;
@@ -123,6 +213,16 @@ public class ResettableStreamHttpServletRequest extends HttpServletRequestWrappe
             return buffer.read(b);
         }
 
+        @Override
+        public long skip(long n) {
+            return buffer.skip(n);
+        }
+
+        @Override
+        public int available() {
+            return buffer.available();
+        }
+
         @Override
         public boolean isFinished() {
             return buffer.available() == 0;
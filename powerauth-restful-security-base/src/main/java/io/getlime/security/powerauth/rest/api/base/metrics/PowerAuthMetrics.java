@@ -0,0 +1,543 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.metrics;
+
+import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.model.EciesScope;
+import io.getlime.security.powerauth.crypto.lib.enums.PowerAuthSignatureTypes;
+import io.getlime.security.powerauth.rest.api.base.client.PowerAuthBulkhead;
+import io.getlime.security.powerauth.rest.api.base.client.PowerAuthCircuitBreaker;
+import io.getlime.security.powerauth.rest.api.base.exception.PowerAuthAuthenticationException;
+import io.getlime.security.powerauth.rest.api.base.exception.authentication.PowerAuthHeaderMissingException;
+import io.getlime.security.powerauth.rest.api.base.exception.authentication.PowerAuthSignatureErrorException;
+import io.getlime.security.powerauth.rest.api.base.exception.authentication.PowerAuthSignatureTypeInvalidException;
+import io.getlime.security.powerauth.rest.api.base.exception.authentication.PowerAuthTokenErrorException;
+import io.getlime.security.powerauth.rest.api.base.notification.ActivationNotificationQueue;
+import io.getlime.security.powerauth.rest.api.base.notification.ActivationNotificationType;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recorder of PowerAuth integration metrics using Micrometer. Metrics are recorded only when an instance of this
+ * class is configured, for example as a Spring bean.
+ * <br><br>
+ * Recorded metrics:
+ * <ul>
+ *     <li>{@value #CLIENT_REQUESTS} - timer of PowerAuth server calls, tagged by client method and outcome.</li>
+ *     <li>{@value #REQUEST_BODY_BUFFERING} - timer of request body buffering in request filter, tagged by HTTP method.</li>
+ *     <li>{@value #ECIES_DECRYPTION} - timer of ECIES request decryption, tagged by scope, protocol version and outcome.</li>
+ *     <li>{@value #ECIES_ENCRYPTION} - timer of ECIES response encryption, tagged by scope, protocol version and outcome.</li>
+ *     <li>{@value #AUTHENTICATIONS} - counter of signature and token authentications, tagged by authentication type,
+ *     endpoint, signature type, protocol version and outcome.</li>
+ *     <li>{@value #CLIENT_REJECTED_CALLS} - counter of PowerAuth server calls rejected by bulkhead or circuit breaker,
+ *     tagged by operation class and reason.</li>
+ *     <li>{@value #CLIENT_CIRCUIT_BREAKER_STATE} - gauge of circuit breaker state, tagged by operation class and state,
+ *     the value is 1 for the current state and 0 for other states.</li>
+ *     <li>{@value #CLIENT_BULKHEAD_AVAILABLE_CALLS} - gauge of concurrent calls available in bulkhead, tagged by operation class.</li>
+ *     <li>{@value #CLIENT_HEDGED_CALLS} - counter of PowerAuth server calls which exceeded the hedging delay, tagged by
+ *     client method and hedging outcome.</li>
+ * </ul>
+ * Tag values which come from HTTP requests are limited to known values. The number of distinct endpoint tag values
+ * is limited, endpoints which exceed the limit are tagged as {@value #TAG_VALUE_OTHER}.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class PowerAuthMetrics {
+
+    /**
+     * Timer of PowerAuth server calls.
+     */
+    public static final String CLIENT_REQUESTS = "powerauth.client.requests";
+
+    /**
+     * Timer of request body buffering in request filter.
+     */
+    public static final String REQUEST_BODY_BUFFERING = "powerauth.filter.body.buffering";
+
+    /**
+     * Timer of ECIES request decryption.
+     */
+    public static final String ECIES_DECRYPTION = "powerauth.ecies.decryption";
+
+    /**
+     * Timer of ECIES response encryption.
+     */
+    public static final String ECIES_ENCRYPTION = "powerauth.ecies.encryption";
+
+    /**
+     * Counter of signature and token authentications.
+     */
+    public static final String AUTHENTICATIONS = "powerauth.authentications";
+
+    /**
+     * Counter of PowerAuth server calls rejected by bulkhead or circuit breaker.
+     */
+    public static final String CLIENT_REJECTED_CALLS = "powerauth.client.rejected";
+
+    /**
+     * Gauge of circuit breaker state.
+     */
+    public static final String CLIENT_CIRCUIT_BREAKER_STATE = "powerauth.client.circuit.breaker.state";
+
+    /**
+     * Gauge of concurrent calls available in bulkhead.
+     */
+    public static final String CLIENT_BULKHEAD_AVAILABLE_CALLS = "powerauth.client.bulkhead.available";
+
+    /**
+     * Counter of PowerAuth server calls which exceeded the hedging delay.
+     */
+    public static final String CLIENT_HEDGED_CALLS = "powerauth.client.hedged";
+
+    /**
+     * Counter of activation notification delivery attempts.
+     */
+    public static final String ACTIVATION_NOTIFICATIONS = "powerauth.activation.notifications";
+
+    /**
+     * Timer of time between an activation change and delivery of its notification.
+     */
+    public static final String ACTIVATION_NOTIFICATION_LAG = "powerauth.activation.notification.lag";
+
+    /**
+     * Gauge of activation notifications waiting for delivery.
+     */
+    public static final String ACTIVATION_NOTIFICATION_QUEUE_SIZE = "powerauth.activation.notification.queue.size";
+
+    /**
+     * Default maximum number of distinct endpoint tag values.
+     */
+    public static final int DEFAULT_MAX_ENDPOINT_TAG_VALUES = 100;
+
+    /**
+     * Tag value used for values which are not known or exceed the limit of distinct values.
+     */
+    public static final String TAG_VALUE_OTHER = "other";
+
+    /**
+     * Tag value used when the value is not available.
+     */
+    public static final String TAG_VALUE_NONE = "none";
+
+    private static final String TAG_METHOD = "method";
+    private static final String TAG_OUTCOME = "outcome";
+    private static final String TAG_SCOPE = "scope";
+    private static final String TAG_VERSION = "version";
+    private static final String TAG_TYPE = "type";
+    private static final String TAG_ENDPOINT = "endpoint";
+    private static final String TAG_SIGNATURE_TYPE = "signature_type";
+    private static final String TAG_OPERATION_CLASS = "operation_class";
+    private static final String TAG_REASON = "reason";
+    private static final String TAG_STATE = "state";
+
+    private static final String OUTCOME_SUCCESS = "success";
+    private static final String OUTCOME_ERROR = "error";
+
+    private static final Set<String> KNOWN_VERSIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("2.0", "2.1", "3.0", "3.1")));
+    private static final Set<String> KNOWN_HTTP_METHODS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("GET", "POST", "PUT", "DELETE", "PATCH")));
+
+    private final MeterRegistry meterRegistry;
+    private final int maxEndpointTagValues;
+    private final Set<String> endpointTagValues = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Type of authentication.
+     */
+    public enum AuthenticationType {
+
+        /**
+         * Authentication using PowerAuth signature.
+         */
+        SIGNATURE("signature"),
+
+        /**
+         * Authentication using PowerAuth token.
+         */
+        TOKEN("token");
+
+        private final String tagValue;
+
+        AuthenticationType(String tagValue) {
+            this.tagValue = tagValue;
+        }
+    }
+
+    /**
+     * Outcome of authentication.
+     */
+    public enum AuthenticationOutcome {
+
+        /**
+         * Signature or token is valid.
+         */
+        VALID("valid"),
+
+        /**
+         * Signature or token is invalid, including invalid HTTP header and failed validation.
+         */
+        INVALID("invalid"),
+
+        /**
+         * Signature or token could not be validated, for example because PowerAuth server is not available.
+         */
+        ERROR("error"),
+
+        /**
+         * PowerAuth HTTP header is missing.
+         */
+        HEADER_MISSING("header_missing"),
+
+        /**
+         * Signature type is not allowed for the endpoint.
+         */
+        TYPE_NOT_ALLOWED("type_not_allowed");
+
+        private final String tagValue;
+
+        AuthenticationOutcome(String tagValue) {
+            this.tagValue = tagValue;
+        }
+
+        /**
+         * Resolve authentication outcome from authentication exception.
+         *
+         * @param ex Authentication exception.
+         * @return Authentication outcome.
+         */
+        public static AuthenticationOutcome fromException(PowerAuthAuthenticationException ex) {
+            if (ex instanceof PowerAuthHeaderMissingException) {
+                return HEADER_MISSING;
+            }
+            if (ex instanceof PowerAuthSignatureTypeInvalidException) {
+                return TYPE_NOT_ALLOWED;
+            }
+            if (ex instanceof PowerAuthSignatureErrorException || ex instanceof PowerAuthTokenErrorException) {
+                return ERROR;
+            }
+            return INVALID;
+        }
+    }
+
+    /**
+     * Outcome of a PowerAuth server call which exceeded the hedging delay.
+     */
+    public enum HedgingOutcome {
+
+        /**
+         * Hedged call was sent, the primary call responded first.
+         */
+        PRIMARY_WON("primary_won"),
+
+        /**
+         * Hedged call was sent and it responded first.
+         */
+        HEDGE_WON("hedge_won"),
+
+        /**
+         * Hedged call was sent, both calls failed.
+         */
+        FAILED("failed"),
+
+        /**
+         * Hedged call was not sent because the hedging budget was exhausted.
+         */
+        BUDGET_EXHAUSTED("budget_exhausted");
+
+        private final String tagValue;
+
+        HedgingOutcome(String tagValue) {
+            this.tagValue = tagValue;
+        }
+    }
+
+    /**
+     * Outcome of an activation notification.
+     */
+    public enum NotificationOutcome {
+
+        /**
+         * Notification was delivered.
+         */
+        DELIVERED("delivered"),
+
+        /**
+         * Delivery failed, the notification is scheduled for another attempt.
+         */
+        RETRIED("retried"),
+
+        /**
+         * Delivery failed and no attempts are left, the notification is discarded.
+         */
+        FAILED("failed"),
+
+        /**
+         * Notification was not accepted by the queue, it is delivered synchronously.
+         */
+        REJECTED("rejected");
+
+        private final String tagValue;
+
+        NotificationOutcome(String tagValue) {
+            this.tagValue = tagValue;
+        }
+    }
+
+    /**
+     * Constructor with meter registry and default limit of distinct endpoint tag values.
+     *
+     * @param meterRegistry Meter registry.
+     */
+    public PowerAuthMetrics(MeterRegistry meterRegistry) {
+        this(meterRegistry, DEFAULT_MAX_ENDPOINT_TAG_VALUES);
+    }
+
+    /**
+     * Constructor with meter registry and limit of distinct endpoint tag values.
+     *
+     * @param meterRegistry Meter registry.
+     * @param maxEndpointTagValues Maximum number of distinct endpoint tag values.
+     */
+    public PowerAuthMetrics(MeterRegistry meterRegistry, int maxEndpointTagValues) {
+        this.meterRegistry = meterRegistry;
+        this.maxEndpointTagValues = maxEndpointTagValues;
+    }
+
+    /**
+     * Get start time of a timed operation.
+     *
+     * @return Start time in nanoseconds, the value is only meaningful for recording of the operation duration.
+     */
+    public long startTimer() {
+        return meterRegistry.config().clock().monotonicTime();
+    }
+
+    /**
+     * Record duration of a PowerAuth server call.
+     *
+     * @param method Name of PowerAuth client method.
+     * @param startTime Start time obtained using {@link #startTimer()}.
+     * @param success Whether the call succeeded.
+     */
+    public void recordClientRequest(String method, long startTime, boolean success) {
+        meterRegistry.timer(CLIENT_REQUESTS,
+                TAG_METHOD, method,
+                TAG_OUTCOME, success ? OUTCOME_SUCCESS : OUTCOME_ERROR)
+                .record(elapsedTime(startTime), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record duration of request body buffering in request filter.
+     *
+     * @param httpMethod HTTP method.
+     * @param startTime Start time obtained using {@link #startTimer()}.
+     */
+    public void recordRequestBodyBuffering(String httpMethod, long startTime) {
+        meterRegistry.timer(REQUEST_BODY_BUFFERING,
+                TAG_METHOD, httpMethodTagValue(httpMethod))
+                .record(elapsedTime(startTime), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record duration of ECIES request decryption.
+     *
+     * @param eciesScope ECIES scope.
+     * @param version Protocol version.
+     * @param startTime Start time obtained using {@link #startTimer()}.
+     * @param success Whether decryption succeeded.
+     */
+    public void recordEciesDecryption(EciesScope eciesScope, String version, long startTime, boolean success) {
+        meterRegistry.timer(ECIES_DECRYPTION,
+                TAG_SCOPE, eciesScopeTagValue(eciesScope),
+                TAG_VERSION, versionTagValue(version),
+                TAG_OUTCOME, success ? OUTCOME_SUCCESS : OUTCOME_ERROR)
+                .record(elapsedTime(startTime), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record duration of ECIES response encryption.
+     *
+     * @param eciesScope ECIES scope.
+     * @param version Protocol version.
+     * @param startTime Start time obtained using {@link #startTimer()}.
+     * @param success Whether encryption succeeded.
+     */
+    public void recordEciesEncryption(EciesScope eciesScope, String version, long startTime, boolean success) {
+        meterRegistry.timer(ECIES_ENCRYPTION,
+                TAG_SCOPE, eciesScopeTagValue(eciesScope),
+                TAG_VERSION, versionTagValue(version),
+                TAG_OUTCOME, success ? OUTCOME_SUCCESS : OUTCOME_ERROR)
+                .record(elapsedTime(startTime), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record outcome of signature or token authentication.
+     *
+     * @param type Authentication type.
+     * @param endpoint Endpoint identifier, for example resource ID template of signed endpoint before expansion of placeholders, null in case it is not available.
+     * @param signatureType Signature type, null in case it is not available.
+     * @param version Protocol version, null in case it is not available.
+     * @param outcome Authentication outcome.
+     */
+    public void recordAuthentication(AuthenticationType type, String endpoint, PowerAuthSignatureTypes signatureType, String version, AuthenticationOutcome outcome) {
+        meterRegistry.counter(AUTHENTICATIONS,
+                TAG_TYPE, type.tagValue,
+                TAG_ENDPOINT, endpointTagValue(endpoint),
+                TAG_SIGNATURE_TYPE, signatureType != null ? signatureType.name().toLowerCase() : TAG_VALUE_NONE,
+                TAG_VERSION, versionTagValue(version),
+                TAG_OUTCOME, outcome.tagValue)
+                .increment();
+    }
+
+    /**
+     * Record a PowerAuth server call rejected by bulkhead or circuit breaker.
+     *
+     * @param operationClass Operation class of the call.
+     * @param reason Reason of call rejection.
+     */
+    public void recordClientCallRejected(String operationClass, String reason) {
+        meterRegistry.counter(CLIENT_REJECTED_CALLS,
+                TAG_OPERATION_CLASS, operationClass,
+                TAG_REASON, reason)
+                .increment();
+    }
+
+    /**
+     * Register gauges of circuit breaker state.
+     *
+     * @param operationClass Operation class of the circuit breaker.
+     * @param circuitBreaker Circuit breaker.
+     */
+    public void registerCircuitBreaker(String operationClass, PowerAuthCircuitBreaker circuitBreaker) {
+        for (PowerAuthCircuitBreaker.State state : PowerAuthCircuitBreaker.State.values()) {
+            Gauge.builder(CLIENT_CIRCUIT_BREAKER_STATE, circuitBreaker, breaker -> breaker.getState() == state ? 1 : 0)
+                    .tag(TAG_OPERATION_CLASS, operationClass)
+                    .tag(TAG_STATE, state.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Register gauge of concurrent calls available in bulkhead.
+     *
+     * @param operationClass Operation class of the bulkhead.
+     * @param bulkhead Bulkhead.
+     */
+    public void registerBulkhead(String operationClass, PowerAuthBulkhead bulkhead) {
+        Gauge.builder(CLIENT_BULKHEAD_AVAILABLE_CALLS, bulkhead, PowerAuthBulkhead::getAvailableConcurrentCalls)
+                .tag(TAG_OPERATION_CLASS, operationClass)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Record a PowerAuth server call which exceeded the hedging delay.
+     *
+     * @param method Name of PowerAuth client method.
+     * @param outcome Hedging outcome.
+     */
+    public void recordClientHedgedCall(String method, HedgingOutcome outcome) {
+        meterRegistry.counter(CLIENT_HEDGED_CALLS,
+                TAG_METHOD, method,
+                TAG_OUTCOME, outcome.tagValue)
+                .increment();
+    }
+
+    /**
+     * Record an activation notification outcome.
+     *
+     * @param type Notification type.
+     * @param outcome Notification outcome.
+     */
+    public void recordActivationNotification(ActivationNotificationType type, NotificationOutcome outcome) {
+        meterRegistry.counter(ACTIVATION_NOTIFICATIONS,
+                TAG_TYPE, type.getTagValue(),
+                TAG_OUTCOME, outcome.tagValue)
+                .increment();
+    }
+
+    /**
+     * Record time between an activation change and delivery of its notification.
+     *
+     * @param type Notification type.
+     * @param lagMillis Time since the activation change in milliseconds.
+     */
+    public void recordActivationNotificationLag(ActivationNotificationType type, long lagMillis) {
+        meterRegistry.timer(ACTIVATION_NOTIFICATION_LAG,
+                TAG_TYPE, type.getTagValue())
+                .record(Math.max(lagMillis, 0), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Register gauge of activation notifications waiting for delivery.
+     *
+     * @param notificationQueue Activation notification queue.
+     */
+    public void registerActivationNotificationQueue(ActivationNotificationQueue notificationQueue) {
+        Gauge.builder(ACTIVATION_NOTIFICATION_QUEUE_SIZE, notificationQueue, ActivationNotificationQueue::getPendingNotificationCount)
+                .register(meterRegistry);
+    }
+
+    private long elapsedTime(long startTime) {
+        return meterRegistry.config().clock().monotonicTime() - startTime;
+    }
+
+    private String endpointTagValue(String endpoint) {
+        if (endpoint == null) {
+            return TAG_VALUE_NONE;
+        }
+        if (endpointTagValues.contains(endpoint)) {
+            return endpoint;
+        }
+        // The limit can be slightly exceeded by concurrent requests, the number of values is still bounded
+        if (endpointTagValues.size() < maxEndpointTagValues) {
+            endpointTagValues.add(endpoint);
+            return endpoint;
+        }
+        return TAG_VALUE_OTHER;
+    }
+
+    private static String versionTagValue(String version) {
+        if (version == null) {
+            return TAG_VALUE_NONE;
+        }
+        return KNOWN_VERSIONS.contains(version) ? version : TAG_VALUE_OTHER;
+    }
+
+    private static String httpMethodTagValue(String httpMethod) {
+        if (httpMethod == null) {
+            return TAG_VALUE_NONE;
+        }
+        final String method = httpMethod.toUpperCase();
+        return KNOWN_HTTP_METHODS.contains(method) ? method : TAG_VALUE_OTHER;
+    }
+
+    private static String eciesScopeTagValue(EciesScope eciesScope) {
+        if (eciesScope == null) {
+            return TAG_VALUE_NONE;
+        }
+        return eciesScope.name().toLowerCase();
+    }
+
+}
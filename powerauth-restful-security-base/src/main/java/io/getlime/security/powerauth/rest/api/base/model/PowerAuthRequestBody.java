@@ -19,6 +19,8 @@
  */
 package io.getlime.security.powerauth.rest.api.base.model;
 
+import java.nio.ByteBuffer;
+
 /**
  * Class representing HTTP request body.
  *
@@ -36,7 +38,7 @@ public class PowerAuthRequestBody {
     }
 
     /**
-     * Constructor with HTTP request body bytes.
+     * Constructor with HTTP request body bytes. The bytes are not copied, the storage is shared with the caller.
      * @param requestBytes HTTP request body bytes.
      */
     public PowerAuthRequestBody(byte[] requestBytes) {
@@ -50,4 +52,12 @@ public class PowerAuthRequestBody {
     public byte[] getRequestBytes() {
         return requestBytes;
     }
+
+    /**
+     * Get read-only view of HTTP request body bytes.
+     * @return Read-only buffer with HTTP request body bytes.
+     */
+    public ByteBuffer getRequestBuffer() {
+        return ByteBuffer.wrap(requestBytes).asReadOnlyBuffer();
+    }
 }
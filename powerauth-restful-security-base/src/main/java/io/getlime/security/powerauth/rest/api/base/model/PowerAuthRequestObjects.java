@@ -17,9 +17,19 @@ public class PowerAuthRequestObjects {
      */
     public static final String AUTHENTICATION_OBJECT = "X-PowerAuth-Authentication-Object";
 
+    /**
+     * Constant for the request attribute name "X-PowerAuth-Authentication-Future".
+     */
+    public static final String AUTHENTICATION_FUTURE = "X-PowerAuth-Authentication-Future";
+
     /**
      * Constant for the request attribute name "X-PowerAuth-Encryption-Object".
      */
     public static final String ENCRYPTION_OBJECT = "X-PowerAuth-Encryption-Object";
 
+    /**
+     * Constant for the request attribute name "X-PowerAuth-Chunked-Encryption-Object".
+     */
+    public static final String CHUNKED_ENCRYPTION_OBJECT = "X-PowerAuth-Chunked-Encryption-Object";
+
 }
@@ -0,0 +1,280 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.notification;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.getlime.security.powerauth.rest.api.model.entity.ActivationType;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Notification about an activation change which is delivered to the custom activation provider. The notification
+ * is serialized to JSON in case a notification journal is used, values of custom attributes and context should
+ * be JSON serializable. Objects in context are recovered from the journal as maps. Identity attributes are
+ * not stored in the journal, recovered notifications are marked as recovered and their identity attributes are null.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class ActivationNotification {
+
+    private String notificationId;
+    private ActivationNotificationType type;
+    private long timestamp;
+    private Map<String, String> identityAttributes;
+    private Map<String, Object> customAttributes;
+    private String activationId;
+    private String userId;
+    private Long appId;
+    private ActivationType activationType;
+    private Map<String, Object> context;
+    @JsonIgnore
+    private boolean recovered;
+
+    /**
+     * Default constructor.
+     */
+    public ActivationNotification() {
+    }
+
+    /**
+     * Create notification about an activation commit.
+     *
+     * @param identityAttributes Identity related attributes.
+     * @param customAttributes Custom attributes, not related to identity.
+     * @param activationId Activation ID of created activation.
+     * @param userId User ID of user who created the activation.
+     * @param appId Application ID of the application associated to the activation.
+     * @param activationType Activation type.
+     * @param context Context for passing parameters between activation provider calls.
+     * @return Activation notification.
+     */
+    public static ActivationNotification activationCommitted(Map<String, String> identityAttributes, Map<String, Object> customAttributes, String activationId, String userId, Long appId, ActivationType activationType, Map<String, Object> context) {
+        final ActivationNotification notification = create(ActivationNotificationType.ACTIVATION_COMMITTED, activationId, userId, appId);
+        notification.setIdentityAttributes(identityAttributes);
+        notification.setCustomAttributes(customAttributes);
+        notification.setActivationType(activationType);
+        notification.setContext(context);
+        return notification;
+    }
+
+    /**
+     * Create notification about an activation removal.
+     *
+     * @param activationId Activation ID.
+     * @param userId User ID.
+     * @param appId Application ID.
+     * @return Activation notification.
+     */
+    public static ActivationNotification activationRemoved(String activationId, String userId, Long appId) {
+        return create(ActivationNotificationType.ACTIVATION_REMOVED, activationId, userId, appId);
+    }
+
+    private static ActivationNotification create(ActivationNotificationType type, String activationId, String userId, Long appId) {
+        final ActivationNotification notification = new ActivationNotification();
+        notification.setNotificationId(UUID.randomUUID().toString());
+        notification.setType(type);
+        notification.setTimestamp(System.currentTimeMillis());
+        notification.setActivationId(activationId);
+        notification.setUserId(userId);
+        notification.setAppId(appId);
+        return notification;
+    }
+
+    /**
+     * Get notification ID.
+     * @return Notification ID.
+     */
+    public String getNotificationId() {
+        return notificationId;
+    }
+
+    /**
+     * Set notification ID.
+     * @param notificationId Notification ID.
+     */
+    public void setNotificationId(String notificationId) {
+        this.notificationId = notificationId;
+    }
+
+    /**
+     * Get notification type.
+     * @return Notification type.
+     */
+    public ActivationNotificationType getType() {
+        return type;
+    }
+
+    /**
+     * Set notification type.
+     * @param type Notification type.
+     */
+    public void setType(ActivationNotificationType type) {
+        this.type = type;
+    }
+
+    /**
+     * Get timestamp of the activation change in milliseconds since epoch.
+     * @return Timestamp.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Set timestamp of the activation change in milliseconds since epoch.
+     * @param timestamp Timestamp.
+     */
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Get identity attributes.
+     * @return Identity attributes.
+     */
+    public Map<String, String> getIdentityAttributes() {
+        return identityAttributes;
+    }
+
+    /**
+     * Set identity attributes.
+     * @param identityAttributes Identity attributes.
+     */
+    public void setIdentityAttributes(Map<String, String> identityAttributes) {
+        this.identityAttributes = identityAttributes;
+    }
+
+    /**
+     * Get custom attributes.
+     * @return Custom attributes.
+     */
+    public Map<String, Object> getCustomAttributes() {
+        return customAttributes;
+    }
+
+    /**
+     * Set custom attributes.
+     * @param customAttributes Custom attributes.
+     */
+    public void setCustomAttributes(Map<String, Object> customAttributes) {
+        this.customAttributes = customAttributes;
+    }
+
+    /**
+     * Get activation ID.
+     * @return Activation ID.
+     */
+    public String getActivationId() {
+        return activationId;
+    }
+
+    /**
+     * Set activation ID.
+     * @param activationId Activation ID.
+     */
+    public void setActivationId(String activationId) {
+        this.activationId = activationId;
+    }
+
+    /**
+     * Get user ID.
+     * @return User ID.
+     */
+    public String getUserId() {
+        return userId;
+    }
+
+    /**
+     * Set user ID.
+     * @param userId User ID.
+     */
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    /**
+     * Get application ID.
+     * @return Application ID.
+     */
+    public Long getAppId() {
+        return appId;
+    }
+
+    /**
+     * Set application ID.
+     * @param appId Application ID.
+     */
+    public void setAppId(Long appId) {
+        this.appId = appId;
+    }
+
+    /**
+     * Get activation type.
+     * @return Activation type.
+     */
+    public ActivationType getActivationType() {
+        return activationType;
+    }
+
+    /**
+     * Set activation type.
+     * @param activationType Activation type.
+     */
+    public void setActivationType(ActivationType activationType) {
+        this.activationType = activationType;
+    }
+
+    /**
+     * Get context for passing parameters between activation provider calls.
+     * @return Context.
+     */
+    public Map<String, Object> getContext() {
+        return context;
+    }
+
+    /**
+     * Set context for passing parameters between activation provider calls.
+     * @param context Context.
+     */
+    public void setContext(Map<String, Object> context) {
+        this.context = context;
+    }
+
+    /**
+     * Get whether the notification was recovered from the notification journal, recovered notifications
+     * do not contain identity attributes.
+     * @return Whether the notification was recovered.
+     */
+    @JsonIgnore
+    public boolean isRecovered() {
+        return recovered;
+    }
+
+    /**
+     * Set whether the notification was recovered from the notification journal.
+     * @param recovered Whether the notification was recovered.
+     */
+    @JsonIgnore
+    public void setRecovered(boolean recovered) {
+        this.recovered = recovered;
+    }
+
+}
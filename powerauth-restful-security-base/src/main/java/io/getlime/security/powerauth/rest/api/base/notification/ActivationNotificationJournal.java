@@ -0,0 +1,59 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.notification;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Journal of activation notifications which were accepted by the notification queue, but not yet delivered.
+ * Pending notifications are recovered from the journal when the queue is started, so that notifications
+ * are not lost when the application stops before they are delivered.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public interface ActivationNotificationJournal {
+
+    /**
+     * Store a notification before it is queued.
+     *
+     * @param notification Activation notification.
+     * @throws IOException In case the notification could not be stored.
+     */
+    void append(ActivationNotification notification) throws IOException;
+
+    /**
+     * Mark notifications as processed, either delivered or discarded after all delivery attempts failed.
+     *
+     * @param notificationIds Notification IDs.
+     * @throws IOException In case the journal could not be updated.
+     */
+    void acknowledge(Collection<String> notificationIds) throws IOException;
+
+    /**
+     * Get notifications which were stored, but not acknowledged.
+     *
+     * @return Pending notifications in the order in which they were stored.
+     * @throws IOException In case the journal could not be read.
+     */
+    List<ActivationNotification> recover() throws IOException;
+
+}
@@ -0,0 +1,425 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.notification;
+
+import io.getlime.security.powerauth.rest.api.base.metrics.PowerAuthMetrics;
+import io.getlime.security.powerauth.rest.api.base.provider.CustomActivationProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Queue of activation notifications which are delivered to the custom activation provider outside of the request
+ * processing. Notifications are stored in a bounded in-memory queue and delivered in batches by worker threads.
+ * Failed deliveries are retried with exponential backoff until the maximum number of attempts is reached.
+ * <br><br>
+ * In case a notification journal is set, accepted notifications are stored in the journal and notifications which
+ * were not delivered before the application stopped are delivered after the queue is started again. Notifications
+ * are delivered at least once, the custom activation provider should handle repeated notifications.
+ * <br><br>
+ * A notification is not accepted when the queue is full, the journal cannot be written or the notification type
+ * is not enabled, in this case the caller should call the custom activation provider directly. Workers run on the
+ * executor passed in constructor, the executor is shut down and the journal is closed when the queue is closed.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class ActivationNotificationQueue implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ActivationNotificationQueue.class);
+
+    /**
+     * Default maximum number of notifications delivered by a worker in one batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 50;
+
+    /**
+     * Default maximum number of delivery attempts of a notification.
+     */
+    public static final int DEFAULT_MAX_ATTEMPTS = 10;
+
+    /**
+     * Default delay before the first retry of a failed delivery.
+     */
+    public static final Duration DEFAULT_INITIAL_BACKOFF = Duration.ofSeconds(1);
+
+    /**
+     * Default maximum delay between delivery attempts.
+     */
+    public static final Duration DEFAULT_MAX_BACKOFF = Duration.ofMinutes(5);
+
+    private static final long POLL_INTERVAL_MILLIS = 100;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5000;
+
+    private final CustomActivationProvider activationProvider;
+    private final ExecutorService executor;
+    private final int workerCount;
+    private final BlockingQueue<QueuedNotification> queue;
+    private final DelayQueue<QueuedNotification> retryQueue = new DelayQueue<>();
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private Set<ActivationNotificationType> notificationTypes = EnumSet.allOf(ActivationNotificationType.class);
+    private ActivationNotificationJournal journal;
+    private PowerAuthMetrics powerAuthMetrics;
+
+    /**
+     * Constructor with default batch size and retry configuration.
+     *
+     * @param activationProvider Custom activation provider which receives the notifications.
+     * @param executor Executor of worker threads.
+     * @param workerCount Number of worker threads.
+     * @param capacity Maximum number of notifications waiting in the queue.
+     */
+    public ActivationNotificationQueue(CustomActivationProvider activationProvider, ExecutorService executor, int workerCount, int capacity) {
+        this(activationProvider, executor, workerCount, capacity, DEFAULT_BATCH_SIZE, DEFAULT_MAX_ATTEMPTS, DEFAULT_INITIAL_BACKOFF, DEFAULT_MAX_BACKOFF);
+    }
+
+    /**
+     * Constructor with batch size and retry configuration.
+     *
+     * @param activationProvider Custom activation provider which receives the notifications.
+     * @param executor Executor of worker threads.
+     * @param workerCount Number of worker threads.
+     * @param capacity Maximum number of notifications waiting in the queue.
+     * @param batchSize Maximum number of notifications delivered by a worker in one batch.
+     * @param maxAttempts Maximum number of delivery attempts of a notification.
+     * @param initialBackoff Delay before the first retry of a failed delivery, the delay is doubled with each retry.
+     * @param maxBackoff Maximum delay between delivery attempts.
+     */
+    public ActivationNotificationQueue(CustomActivationProvider activationProvider, ExecutorService executor, int workerCount, int capacity,
+                                       int batchSize, int maxAttempts, Duration initialBackoff, Duration maxBackoff) {
+        if (workerCount < 1 || capacity < 1 || batchSize < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException("Invalid activation notification queue configuration");
+        }
+        this.activationProvider = activationProvider;
+        this.executor = executor;
+        this.workerCount = workerCount;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffNanos = initialBackoff.toNanos();
+        this.maxBackoffNanos = Math.max(maxBackoff.toNanos(), initialBackoffNanos);
+    }
+
+    /**
+     * Set types of notifications which are accepted by the queue, all types are accepted by default.
+     *
+     * @param notificationTypes Accepted notification types.
+     */
+    public void setNotificationTypes(Set<ActivationNotificationType> notificationTypes) {
+        this.notificationTypes = notificationTypes.isEmpty() ? EnumSet.noneOf(ActivationNotificationType.class) : EnumSet.copyOf(notificationTypes);
+    }
+
+    /**
+     * Set notification journal, the journal must be set before the queue is started.
+     *
+     * @param journal Activation notification journal.
+     */
+    public void setJournal(ActivationNotificationJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Set PowerAuth metrics. Notification outcomes, delivery lag and queue size are recorded in metrics.
+     *
+     * @param powerAuthMetrics PowerAuth metrics.
+     */
+    public void setPowerAuthMetrics(PowerAuthMetrics powerAuthMetrics) {
+        this.powerAuthMetrics = powerAuthMetrics;
+        if (powerAuthMetrics != null) {
+            powerAuthMetrics.registerActivationNotificationQueue(this);
+        }
+    }
+
+    /**
+     * Start worker threads and queue notifications recovered from the journal.
+     *
+     * @throws IOException In case the journal could not be read.
+     */
+    public void start() throws IOException {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        final List<ActivationNotification> recoveredNotifications = journal != null ? journal.recover() : Collections.emptyList();
+        for (int i = 0; i < workerCount; i++) {
+            executor.execute(this::processNotifications);
+        }
+        if (!recoveredNotifications.isEmpty()) {
+            logger.info("Recovered activation notifications from journal, count: {}", recoveredNotifications.size());
+        }
+        try {
+            for (ActivationNotification notification : recoveredNotifications) {
+                // Workers are already running, the recovered notifications may exceed queue capacity
+                queue.put(new QueuedNotification(notification));
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queue a notification for delivery.
+     *
+     * @param notification Activation notification.
+     * @return Whether the notification was accepted, the caller should deliver the notification in case it was not accepted.
+     */
+    public boolean offer(ActivationNotification notification) {
+        if (!running.get() || !notificationTypes.contains(notification.getType())) {
+            return false;
+        }
+        if (journal != null) {
+            try {
+                journal.append(notification);
+            } catch (IOException | RuntimeException ex) {
+                logger.warn("Storing activation notification failed, activation ID: {}, error: {}", notification.getActivationId(), ex.getMessage());
+                logger.debug("Error details", ex);
+                recordOutcome(notification, PowerAuthMetrics.NotificationOutcome.REJECTED);
+                return false;
+            }
+        }
+        if (!queue.offer(new QueuedNotification(notification))) {
+            logger.warn("Activation notification queue is full, activation ID: {}", notification.getActivationId());
+            acknowledge(Collections.singletonList(notification.getNotificationId()));
+            recordOutcome(notification, PowerAuthMetrics.NotificationOutcome.REJECTED);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get number of notifications waiting for delivery, including notifications waiting for retry.
+     *
+     * @return Number of pending notifications.
+     */
+    public int getPendingNotificationCount() {
+        return queue.size() + retryQueue.size();
+    }
+
+    /**
+     * Stop worker threads. Notifications which were not delivered remain in the journal.
+     */
+    @Override
+    public void close() {
+        running.set(false);
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                logger.warn("Activation notification workers did not stop in time");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        final int pendingCount = getPendingNotificationCount();
+        if (pendingCount > 0 && journal == null) {
+            logger.warn("Activation notifications were not delivered, count: {}", pendingCount);
+        }
+        if (journal instanceof Closeable) {
+            try {
+                ((Closeable) journal).close();
+            } catch (IOException ex) {
+                logger.warn("Closing activation notification journal failed, error: {}", ex.getMessage());
+                logger.debug("Error details", ex);
+            }
+        }
+    }
+
+    /**
+     * Worker loop, notifications waiting for retry are delivered before new notifications.
+     */
+    private void processNotifications() {
+        final List<QueuedNotification> batch = new ArrayList<>(batchSize);
+        while (running.get()) {
+            try {
+                batch.clear();
+                retryQueue.drainTo(batch, batchSize);
+                if (batch.isEmpty()) {
+                    final QueuedNotification notification = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (notification == null) {
+                        continue;
+                    }
+                    batch.add(notification);
+                }
+                queue.drainTo(batch, batchSize - batch.size());
+                deliverBatch(batch);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException ex) {
+                logger.error("Activation notification worker error: {}", ex.getMessage());
+                logger.debug("Error details", ex);
+            }
+        }
+    }
+
+    /**
+     * Deliver a batch of notifications and acknowledge processed notifications in the journal.
+     */
+    private void deliverBatch(List<QueuedNotification> batch) {
+        final List<String> processedNotificationIds = new ArrayList<>(batch.size());
+        for (QueuedNotification queuedNotification : batch) {
+            if (deliver(queuedNotification)) {
+                processedNotificationIds.add(queuedNotification.notification.getNotificationId());
+            }
+        }
+        acknowledge(processedNotificationIds);
+    }
+
+    /**
+     * Deliver a notification.
+     *
+     * @return Whether the notification was processed, false in case it is scheduled for retry or delivery was interrupted.
+     */
+    private boolean deliver(QueuedNotification queuedNotification) {
+        final ActivationNotification notification = queuedNotification.notification;
+        try {
+            notifyActivationProvider(notification);
+            recordOutcome(notification, PowerAuthMetrics.NotificationOutcome.DELIVERED);
+            if (powerAuthMetrics != null) {
+                powerAuthMetrics.recordActivationNotificationLag(notification.getType(), System.currentTimeMillis() - notification.getTimestamp());
+            }
+            return true;
+        } catch (InterruptedException ex) {
+            // Queue is closing, the notification remains in the journal
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception ex) {
+            final Throwable cause = ex instanceof ExecutionException && ex.getCause() != null ? ex.getCause() : ex;
+            queuedNotification.attempts++;
+            if (queuedNotification.attempts < maxAttempts) {
+                final long backoffNanos = backoffNanos(queuedNotification.attempts);
+                logger.warn("Activation notification delivery failed, activation ID: {}, attempt: {}, next attempt in {} ms, error: {}",
+                        notification.getActivationId(), queuedNotification.attempts, TimeUnit.NANOSECONDS.toMillis(backoffNanos), cause.getMessage());
+                logger.debug("Error details", cause);
+                queuedNotification.dueTime = System.nanoTime() + backoffNanos;
+                retryQueue.add(queuedNotification);
+                recordOutcome(notification, PowerAuthMetrics.NotificationOutcome.RETRIED);
+                return false;
+            }
+            logger.error("Activation notification delivery failed, notification is discarded, activation ID: {}, type: {}, attempts: {}, error: {}",
+                    notification.getActivationId(), notification.getType(), queuedNotification.attempts, cause.getMessage());
+            logger.debug("Error details", cause);
+            recordOutcome(notification, PowerAuthMetrics.NotificationOutcome.FAILED);
+            return true;
+        }
+    }
+
+    /**
+     * Call the custom activation provider callback corresponding to notification type.
+     */
+    private void notifyActivationProvider(ActivationNotification notification) throws Exception {
+        switch (notification.getType()) {
+            case ACTIVATION_COMMITTED:
+                activationProvider.activationWasCommittedAsync(notification.getIdentityAttributes(), notification.getCustomAttributes(), notification.getActivationId(),
+                        notification.getUserId(), notification.getAppId(), notification.getActivationType(), notificationContext(notification)).toCompletableFuture().get();
+                break;
+            case ACTIVATION_REMOVED:
+                activationProvider.activationWasRemoved(notification.getActivationId(), notification.getUserId(), notification.getAppId());
+                break;
+            default:
+                throw new IllegalStateException("Unsupported notification type: " + notification.getType());
+        }
+    }
+
+    /**
+     * Get context of a notification, context of a recovered notification is marked as recovered, since the identity
+     * attributes are missing.
+     */
+    private static Map<String, Object> notificationContext(ActivationNotification notification) {
+        if (!notification.isRecovered()) {
+            return notification.getContext();
+        }
+        final Map<String, Object> context = notification.getContext() != null ? new HashMap<>(notification.getContext()) : new HashMap<>();
+        context.put(CustomActivationProvider.CONTEXT_NOTIFICATION_RECOVERED, Boolean.TRUE);
+        return context;
+    }
+
+    private long backoffNanos(int attempts) {
+        // Limit the shift to avoid overflow, the result is capped by maximum backoff anyway
+        final long backoff = initialBackoffNanos << Math.min(attempts - 1, 30);
+        return backoff < 0 ? maxBackoffNanos : Math.min(backoff, maxBackoffNanos);
+    }
+
+    private void acknowledge(Collection<String> notificationIds) {
+        if (journal == null || notificationIds.isEmpty()) {
+            return;
+        }
+        try {
+            journal.acknowledge(notificationIds);
+        } catch (IOException | RuntimeException ex) {
+            // Notifications which were not acknowledged are delivered again after restart
+            logger.warn("Acknowledging activation notifications failed, error: {}", ex.getMessage());
+            logger.debug("Error details", ex);
+        }
+    }
+
+    private void recordOutcome(ActivationNotification notification, PowerAuthMetrics.NotificationOutcome outcome) {
+        if (powerAuthMetrics != null) {
+            powerAuthMetrics.recordActivationNotification(notification.getType(), outcome);
+        }
+    }
+
+    /**
+     * Notification with delivery state.
+     */
+    private static final class QueuedNotification implements Delayed {
+
+        private final ActivationNotification notification;
+        private int attempts;
+        private long dueTime;
+
+        QueuedNotification(ActivationNotification notification) {
+            this.notification = notification;
+            this.dueTime = System.nanoTime();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueTime - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueTime, ((QueuedNotification) other).dueTime);
+        }
+    }
+
+}
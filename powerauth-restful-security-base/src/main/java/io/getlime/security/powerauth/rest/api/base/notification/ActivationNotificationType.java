@@ -0,0 +1,54 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.notification;
+
+/**
+ * Type of activation notification, each type corresponds to a callback of the custom activation provider.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public enum ActivationNotificationType {
+
+    /**
+     * Activation was committed, delivered using the activationWasCommitted callback.
+     */
+    ACTIVATION_COMMITTED("activation_committed"),
+
+    /**
+     * Activation was removed, delivered using the activationWasRemoved callback.
+     */
+    ACTIVATION_REMOVED("activation_removed");
+
+    private final String tagValue;
+
+    ActivationNotificationType(String tagValue) {
+        this.tagValue = tagValue;
+    }
+
+    /**
+     * Get value used in metric tags.
+     *
+     * @return Tag value.
+     */
+    public String getTagValue() {
+        return tagValue;
+    }
+
+}
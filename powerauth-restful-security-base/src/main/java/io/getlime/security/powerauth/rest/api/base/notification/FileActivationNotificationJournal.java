@@ -0,0 +1,352 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.notification;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Activation notification journal stored in a local file. Each stored notification and each acknowledgement
+ * is appended to the file as a line with a JSON record. The file is rewritten with pending notifications only
+ * when it is opened and after the configured number of records is appended.
+ * <br><br>
+ * Appended notifications are synchronized to the storage device by default. The synchronization is done outside
+ * of the journal lock and concurrent appends are synchronized together, so that requests do not wait for each
+ * other's synchronization one by one. Acknowledgements are not synchronized, a lost acknowledgement only causes
+ * a repeated delivery of the notification.
+ * <br><br>
+ * The journal protects notifications against application restarts on the same node. In case the data must
+ * survive loss of the node, the file must be stored on a persistent volume.
+ * <br><br>
+ * Identity attributes are not stored in the journal, since they contain secrets such as the activation code or
+ * the recovery code and PUK. Notifications recovered from the journal are marked as recovered and they are delivered
+ * with null identity attributes.
+ * Custom attributes and context are stored as plain JSON, they must not contain secrets. The file is created
+ * readable by the owner only on file systems supporting POSIX permissions.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class FileActivationNotificationJournal implements ActivationNotificationJournal, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileActivationNotificationJournal.class);
+
+    /**
+     * Default number of appended records after which the file is compacted.
+     */
+    public static final int DEFAULT_COMPACTION_THRESHOLD = 10000;
+
+    private static final String RECORD_NOTIFICATION = "notification";
+    private static final String RECORD_ACKNOWLEDGED = "acknowledged";
+    private static final String FIELD_IDENTITY_ATTRIBUTES = "identityAttributes";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Map<String, ActivationNotification> pendingNotifications = new LinkedHashMap<>();
+    private final Path file;
+    private final boolean syncWrites;
+    private final int compactionThreshold;
+
+    private FileChannel channel;
+    private int appendedRecords;
+    private long writtenNotifications;
+    private long syncedNotifications;
+
+    /**
+     * Constructor with journal file, appended notifications are synchronized to the storage device.
+     *
+     * @param file Journal file.
+     */
+    public FileActivationNotificationJournal(Path file) {
+        this(file, true, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * Constructor with journal file and write options.
+     *
+     * @param file Journal file.
+     * @param syncWrites Whether appended notifications are synchronized to the storage device, without synchronization
+     *                   the notifications survive an application crash, but not an operating system crash.
+     * @param compactionThreshold Number of appended records after which the file is compacted.
+     */
+    public FileActivationNotificationJournal(Path file, boolean syncWrites, int compactionThreshold) {
+        this.file = file;
+        this.syncWrites = syncWrites;
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    @Override
+    public void append(ActivationNotification notification) throws IOException {
+        final byte[] line = toLine(notificationRecord(notification));
+        final long notificationSequence;
+        lock.lock();
+        try {
+            ensureOpen();
+            write(line);
+            pendingNotifications.put(notification.getNotificationId(), notification);
+            notificationSequence = ++writtenNotifications;
+        } finally {
+            lock.unlock();
+        }
+        if (syncWrites) {
+            sync(notificationSequence);
+        }
+    }
+
+    @Override
+    public void acknowledge(Collection<String> notificationIds) throws IOException {
+        if (notificationIds.isEmpty()) {
+            return;
+        }
+        final ObjectNode record = objectMapper.createObjectNode();
+        final ArrayNode acknowledged = record.putArray(RECORD_ACKNOWLEDGED);
+        notificationIds.forEach(acknowledged::add);
+        final byte[] line = toLine(record);
+        lock.lock();
+        try {
+            ensureOpen();
+            write(line);
+            notificationIds.forEach(pendingNotifications::remove);
+            if (appendedRecords >= compactionThreshold) {
+                compact();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<ActivationNotification> recover() throws IOException {
+        lock.lock();
+        try {
+            ensureOpen();
+            return new ArrayList<>(pendingNotifications.values());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Synchronize the file to the storage device, unless the notification was already synchronized together
+     * with another notification. The file is synchronized outside of the journal lock, so that other notifications
+     * can be appended meanwhile and synchronized by the next synchronization.
+     */
+    private void sync(long notificationSequence) throws IOException {
+        syncLock.lock();
+        try {
+            final long syncSequence;
+            final FileChannel syncChannel;
+            lock.lock();
+            try {
+                if (syncedNotifications >= notificationSequence) {
+                    return;
+                }
+                syncSequence = writtenNotifications;
+                syncChannel = channel;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                if (syncChannel == null) {
+                    throw new ClosedChannelException();
+                }
+                syncChannel.force(false);
+            } catch (ClosedChannelException ex) {
+                // The file was closed, in case it was compacted the notification is already synchronized
+                lock.lock();
+                try {
+                    if (syncedNotifications >= notificationSequence) {
+                        return;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                throw ex;
+            }
+            lock.lock();
+            try {
+                syncedNotifications = Math.max(syncedNotifications, syncSequence);
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Load pending notifications from the file and open the file for appending, must be called under lock.
+     */
+    private void ensureOpen() throws IOException {
+        if (channel != null) {
+            return;
+        }
+        pendingNotifications.clear();
+        if (Files.exists(file)) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    readRecord(line);
+                }
+            }
+        }
+        compact();
+    }
+
+    /**
+     * Apply a journal record to pending notifications.
+     */
+    private void readRecord(String line) {
+        if (line.trim().isEmpty()) {
+            return;
+        }
+        try {
+            final JsonNode record = objectMapper.readTree(line);
+            if (record.has(RECORD_NOTIFICATION)) {
+                final ActivationNotification notification = objectMapper.treeToValue(record.get(RECORD_NOTIFICATION), ActivationNotification.class);
+                notification.setRecovered(true);
+                pendingNotifications.put(notification.getNotificationId(), notification);
+            } else if (record.has(RECORD_ACKNOWLEDGED)) {
+                record.get(RECORD_ACKNOWLEDGED).forEach(id -> pendingNotifications.remove(id.asText()));
+            }
+        } catch (IOException ex) {
+            // The last record may be incomplete in case the application was stopped during a write
+            logger.warn("Invalid record in activation notification journal: {}, error: {}", file, ex.getMessage());
+            logger.debug("Error details", ex);
+        }
+    }
+
+    /**
+     * Rewrite the file with pending notifications only, must be called under lock.
+     */
+    private void compact() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        final Path absoluteFile = file.toAbsolutePath();
+        final Path directory = absoluteFile.getParent() != null ? absoluteFile.getParent() : Paths.get(".");
+        Files.createDirectories(directory);
+        final Path tempFile = directory.resolve(absoluteFile.getFileName() + ".tmp");
+        Files.deleteIfExists(tempFile);
+        try (FileChannel tempChannel = openOwnerOnly(tempFile)) {
+            for (ActivationNotification notification : pendingNotifications.values()) {
+                writeFully(tempChannel, toLine(notificationRecord(notification)));
+            }
+            tempChannel.force(true);
+        }
+        Files.move(tempFile, absoluteFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(absoluteFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        appendedRecords = 0;
+        // Pending notifications were synchronized with the compacted file
+        syncedNotifications = writtenNotifications;
+    }
+
+    /**
+     * Append a line to the file, must be called under lock.
+     */
+    private void write(byte[] line) throws IOException {
+        try {
+            writeFully(channel, line);
+            appendedRecords++;
+        } catch (IOException ex) {
+            // Reopen the file before the next write, an incomplete record is skipped when the file is loaded
+            try {
+                channel.close();
+            } catch (IOException closeEx) {
+                logger.debug("Closing activation notification journal failed", closeEx);
+            }
+            channel = null;
+            throw ex;
+        }
+    }
+
+    /**
+     * Create journal record of a notification, identity attributes are not stored.
+     */
+    private ObjectNode notificationRecord(ActivationNotification notification) {
+        final ObjectNode notificationNode = objectMapper.valueToTree(notification);
+        notificationNode.remove(FIELD_IDENTITY_ATTRIBUTES);
+        final ObjectNode record = objectMapper.createObjectNode();
+        record.set(RECORD_NOTIFICATION, notificationNode);
+        return record;
+    }
+
+    /**
+     * Create a new file readable and writable by the owner only, in case the file system supports POSIX permissions.
+     */
+    private static FileChannel openOwnerOnly(Path path) throws IOException {
+        if (path.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            return FileChannel.open(path, EnumSet.of(StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE),
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        }
+        return FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    private byte[] toLine(ObjectNode record) throws IOException {
+        return (objectMapper.writeValueAsString(record) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void writeFully(FileChannel channel, byte[] data) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+}
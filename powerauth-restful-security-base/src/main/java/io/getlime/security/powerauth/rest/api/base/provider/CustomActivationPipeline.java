@@ -0,0 +1,275 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.provider;
+
+import io.getlime.security.powerauth.rest.api.base.notification.ActivationNotification;
+import io.getlime.security.powerauth.rest.api.base.notification.ActivationNotificationQueue;
+import io.getlime.security.powerauth.rest.api.model.entity.ActivationType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Orchestration of {@link CustomActivationProvider} callbacks which are called after an activation is created
+ * on PowerAuth server.
+ * <br><br>
+ * The callbacks form the following dependency graph:
+ * <ul>
+ *     <li>processing of custom attributes, followed by resolving activation flags and saving the flags,</li>
+ *     <li>auto-commit decision, which uses the original custom attributes,</li>
+ *     <li>activation commit, which waits for both previous branches,</li>
+ *     <li>commit notification, which waits for the activation commit.</li>
+ * </ul>
+ * Callbacks which are not overridden as asynchronous by the provider, including the default asynchronous variants
+ * calling the synchronous methods, are called sequentially in the calling thread, so that they keep the thread
+ * bound state of the request such as the logging context or the security context. In case an activation executor
+ * is configured, asynchronous callbacks overridden by the provider are started on the executor and the auto-commit
+ * decision runs concurrently with processing of custom attributes. PowerAuth server calls are performed in
+ * the calling thread.
+ * <br><br>
+ * In case a notification queue is configured and it accepts the commit notification, the notification is delivered
+ * by the queue. Otherwise, in case a notification executor is configured, the commit notification runs on this
+ * executor after the response is prepared and its errors are only logged. Without both, errors of the commit
+ * notification terminate the activation.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class CustomActivationPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(CustomActivationPipeline.class);
+
+    private final CustomActivationProvider activationProvider;
+    private final Executor activationExecutor;
+    private final Executor notificationExecutor;
+    private final ActivationNotificationQueue notificationQueue;
+    private final boolean processAttributesAsync;
+    private final boolean activationFlagsAsync;
+    private final boolean autoCommitAsync;
+
+    /**
+     * Constructor with activation provider and optional executors.
+     *
+     * @param activationProvider Custom activation provider.
+     * @param activationExecutor Executor for asynchronous activation callbacks, null for sequential processing.
+     * @param notificationExecutor Executor for commit notifications, null for notifications in the calling thread.
+     * @param notificationQueue Queue for commit notifications, null in case notifications are not queued.
+     */
+    public CustomActivationPipeline(CustomActivationProvider activationProvider, Executor activationExecutor, Executor notificationExecutor, ActivationNotificationQueue notificationQueue) {
+        this.activationProvider = activationProvider;
+        this.activationExecutor = activationExecutor;
+        this.notificationExecutor = notificationExecutor;
+        this.notificationQueue = notificationQueue;
+        this.processAttributesAsync = isOverridden(activationProvider, "processCustomActivationAttributesAsync",
+                Map.class, String.class, String.class, Long.class, ActivationType.class, Map.class);
+        this.activationFlagsAsync = isOverridden(activationProvider, "getActivationFlagsAsync",
+                Map.class, Map.class, String.class, String.class, Long.class, ActivationType.class, Map.class);
+        this.autoCommitAsync = isOverridden(activationProvider, "shouldAutoCommitActivationAsync",
+                Map.class, Map.class, String.class, String.class, Long.class, ActivationType.class, Map.class);
+    }
+
+    /**
+     * Create context for passing parameters between activation provider calls. The context is a synchronized map
+     * in case asynchronous callbacks may run concurrently, iteration over such context must be synchronized
+     * on the context.
+     *
+     * @return Activation context.
+     */
+    public Map<String, Object> createContext() {
+        if (activationExecutor != null && (processAttributesAsync || activationFlagsAsync || autoCommitAsync)) {
+            return Collections.synchronizedMap(new LinkedHashMap<>());
+        }
+        return new LinkedHashMap<>();
+    }
+
+    /**
+     * Process activation callbacks of a created activation.
+     *
+     * @param identityAttributes Identity related attributes.
+     * @param customAttributes Custom attributes, not related to identity.
+     * @param activationId Activation ID of created activation.
+     * @param userId User ID of user who created the activation.
+     * @param appId Application ID of the application associated to the activation.
+     * @param activationType Activation type.
+     * @param context Context for passing parameters between activation provider calls.
+     * @param committed Whether the activation was already committed on PowerAuth server.
+     * @param serverCalls PowerAuth server calls used by the pipeline.
+     * @return Custom attributes after processing.
+     * @throws Exception In case any callback or PowerAuth server call fails, the original exception is rethrown.
+     */
+    public Map<String, Object> execute(Map<String, String> identityAttributes, Map<String, Object> customAttributes, String activationId, String userId, Long appId, ActivationType activationType, Map<String, Object> context, boolean committed, ServerCalls serverCalls) throws Exception {
+        final Supplier<CompletionStage<Boolean>> autoCommitCallback = () ->
+                activationProvider.shouldAutoCommitActivationAsync(identityAttributes, customAttributes, activationId, userId, appId, activationType, context);
+        // Asynchronous auto-commit decision runs concurrently with processing of custom attributes
+        final CompletableFuture<Boolean> concurrentAutoCommit = !committed && autoCommitAsync && activationExecutor != null
+                ? callProvider(true, autoCommitCallback) : null;
+        final Map<String, Object> processedAttributes = await(callProvider(processAttributesAsync, () ->
+                activationProvider.processCustomActivationAttributesAsync(customAttributes, activationId, userId, appId, activationType, context)));
+        final List<String> activationFlags = await(callProvider(activationFlagsAsync, () ->
+                activationProvider.getActivationFlagsAsync(identityAttributes, processedAttributes, activationId, userId, appId, activationType, context)));
+        // Activation is committed only after activation flags are saved
+        if (activationFlags != null && !activationFlags.isEmpty()) {
+            serverCalls.addActivationFlags(activationId, activationFlags);
+        }
+        final boolean autoCommit;
+        if (committed) {
+            autoCommit = false;
+        } else if (concurrentAutoCommit != null) {
+            autoCommit = await(concurrentAutoCommit);
+        } else {
+            autoCommit = await(callProvider(autoCommitAsync, autoCommitCallback));
+        }
+        final boolean activated = autoCommit ? serverCalls.commitActivation(activationId) : committed;
+        if (activated) {
+            notifyActivationCommit(identityAttributes, customAttributes, activationId, userId, appId, activationType, context);
+        }
+        return processedAttributes;
+    }
+
+    /**
+     * Notify activation provider about an activation commit.
+     */
+    private void notifyActivationCommit(Map<String, String> identityAttributes, Map<String, Object> customAttributes, String activationId, String userId, Long appId, ActivationType activationType, Map<String, Object> context) throws Exception {
+        if (notificationQueue != null && notificationQueue.offer(ActivationNotification.activationCommitted(identityAttributes, customAttributes, activationId, userId, appId, activationType, context))) {
+            return;
+        }
+        final Supplier<CompletionStage<Void>> notification = () ->
+                activationProvider.activationWasCommittedAsync(identityAttributes, customAttributes, activationId, userId, appId, activationType, context);
+        if (notificationExecutor == null) {
+            await(callProvider(false, notification));
+            return;
+        }
+        final CompletableFuture<CompletionStage<Void>> notificationFuture;
+        try {
+            notificationFuture = CompletableFuture.supplyAsync(notification, notificationExecutor);
+        } catch (RejectedExecutionException ex) {
+            // Notification executor is saturated, deliver the notification in the calling thread
+            logger.warn("Activation commit notification was rejected, activation ID: {}, error: {}", activationId, ex.getMessage());
+            await(callProvider(false, notification));
+            return;
+        }
+        notificationFuture
+                .thenCompose(stage -> stage)
+                .whenComplete((ignored, ex) -> {
+                    if (ex != null) {
+                        logger.warn("Activation commit notification failed, activation ID: {}, error: {}", activationId, unwrap(ex).getMessage());
+                        logger.debug("Error details", ex);
+                    }
+                });
+    }
+
+    /**
+     * Call an activation provider callback, an asynchronous callback overridden by the provider is started
+     * on the activation executor when configured, other callbacks are called in the calling thread.
+     */
+    private <T> CompletableFuture<T> callProvider(boolean async, Supplier<CompletionStage<T>> callback) {
+        if (async && activationExecutor != null) {
+            try {
+                return CompletableFuture.supplyAsync(callback, activationExecutor).thenCompose(stage -> stage);
+            } catch (RejectedExecutionException ex) {
+                // Activation executor is saturated, start the callback in the calling thread
+                logger.debug("Activation callback was rejected by executor, error: {}", ex.getMessage());
+            }
+        }
+        try {
+            return callback.get().toCompletableFuture();
+        } catch (RuntimeException ex) {
+            final CompletableFuture<T> result = new CompletableFuture<>();
+            result.completeExceptionally(ex);
+            return result;
+        }
+    }
+
+    /**
+     * Check whether the provider overrides a default method of {@link CustomActivationProvider}.
+     */
+    private static boolean isOverridden(CustomActivationProvider activationProvider, String methodName, Class<?>... parameterTypes) {
+        try {
+            return activationProvider.getClass().getMethod(methodName, parameterTypes).getDeclaringClass() != CustomActivationProvider.class;
+        } catch (NoSuchMethodException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Wait for a result of a step, the original exception of a failed step is rethrown.
+     */
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            final Throwable cause = unwrap(ex);
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Get the original exception from exceptions wrapped by completion stages.
+     */
+    private static Throwable unwrap(Throwable ex) {
+        Throwable cause = ex;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    /**
+     * PowerAuth server calls used by the pipeline.
+     */
+    public interface ServerCalls {
+
+        /**
+         * Save activation flags.
+         *
+         * @param activationId Activation ID.
+         * @param activationFlags Activation flags to add.
+         * @throws Exception In case the call fails.
+         */
+        void addActivationFlags(String activationId, List<String> activationFlags) throws Exception;
+
+        /**
+         * Commit activation.
+         *
+         * @param activationId Activation ID.
+         * @return Whether the activation was activated by the commit.
+         * @throws Exception In case the call fails.
+         */
+        boolean commitActivation(String activationId) throws Exception;
+
+    }
+
+}
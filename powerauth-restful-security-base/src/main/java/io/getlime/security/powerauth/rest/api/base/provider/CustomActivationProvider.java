@@ -25,17 +25,30 @@ import io.getlime.security.powerauth.rest.api.model.entity.ActivationType;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * Interface which enables implementation of custom activations. The interface defines a method for obtaining
  * a user ID based on arbitrary identity attributes, processing of custom activation attributes and configuration
  * of auto-commit mode.
+ * <br><br>
+ * Methods called after the activation is created on PowerAuth server have asynchronous variants returning
+ * {@link CompletionStage}. Default implementations of the asynchronous variants call the synchronous methods,
+ * override them in case the provider calls other systems asynchronously. The asynchronous variants are always
+ * used by the activation service.
  *
  * @author Petr Dvorak, petr@wultra.com
  * @author Roman Strobl, roman.strobl@wultra.com
  */
 public interface CustomActivationProvider {
 
+    /**
+     * Context key which is set to {@link Boolean#TRUE} in case the commit notification was recovered from
+     * the activation notification journal after an application restart.
+     */
+    String CONTEXT_NOTIFICATION_RECOVERED = "powerAuthNotificationRecovered";
+
     /**
      * This method is responsible for looking user ID up based on a provided set of identity attributes.
      * <br><br>
@@ -95,8 +108,12 @@ public interface CustomActivationProvider {
      * was successfully committed on the server side. Method is not called in case commit fails on server. On CODE
      * activation type, auto-commit is always disabled and hence this method is not called. Default implementation
      * is no-op.
+     * <br><br>
+     * In case the notification was recovered from the activation notification journal after an application restart,
+     * identity attributes are null, since they are not stored in the journal, and context contains
+     * {@link #CONTEXT_NOTIFICATION_RECOVERED} set to {@link Boolean#TRUE}.
      *
-     * @param identityAttributes Identity related attributes.
+     * @param identityAttributes Identity related attributes, null in case the notification was recovered from the journal.
      * @param customAttributes Custom attributes, not related to identity.
      * @param activationId Activation ID of created activation.
      * @param userId User ID of user who created the activation.
@@ -186,4 +203,93 @@ public interface CustomActivationProvider {
         return Collections.emptyList();
     }
 
+    /**
+     * Asynchronous variant of {@link #processCustomActivationAttributes(Map, String, String, Long, ActivationType, Map)}.
+     * Default implementation calls the synchronous method.
+     *
+     * @param customAttributes Custom attributes (not related to identity) to be processed.
+     * @param activationId Activation ID of created activation.
+     * @param userId User ID of user who created the activation.
+     * @param appId Application ID of the application associated to the activation.
+     * @param activationType Activation type.
+     * @param context Context for passing parameters between activation provider calls.
+     * @return Completion stage with custom attributes after processing, completed exceptionally with
+     * {@link PowerAuthActivationException} in case of error that should terminate the rest of the activation.
+     */
+    default CompletionStage<Map<String, Object>> processCustomActivationAttributesAsync(Map<String, Object> customAttributes, String activationId, String userId, Long appId, ActivationType activationType, Map<String, Object> context) {
+        final CompletableFuture<Map<String, Object>> result = new CompletableFuture<>();
+        try {
+            result.complete(processCustomActivationAttributes(customAttributes, activationId, userId, appId, activationType, context));
+        } catch (PowerAuthActivationException ex) {
+            result.completeExceptionally(ex);
+        }
+        return result;
+    }
+
+    /**
+     * Asynchronous variant of {@link #getActivationFlags(Map, Map, String, String, Long, ActivationType, Map)}.
+     * Default implementation calls the synchronous method.
+     *
+     * @param identityAttributes Identity related attributes.
+     * @param customAttributes Custom attributes, not related to identity.
+     * @param activationId Activation ID.
+     * @param userId User ID of user who created the activation.
+     * @param appId Application ID of the application associated to the activation.
+     * @param activationType Activation type.
+     * @param context Context for passing parameters between activation provider calls.
+     * @return Completion stage with list of activation flags.
+     */
+    default CompletionStage<List<String>> getActivationFlagsAsync(Map<String, String> identityAttributes, Map<String, Object> customAttributes, String activationId, String userId, Long appId, ActivationType activationType, Map<String, Object> context) {
+        return CompletableFuture.completedFuture(getActivationFlags(identityAttributes, customAttributes, activationId, userId, appId, activationType, context));
+    }
+
+    /**
+     * Asynchronous variant of {@link #shouldAutoCommitActivation(Map, Map, String, String, Long, ActivationType, Map)}.
+     * Default implementation calls the synchronous method.
+     *
+     * @param identityAttributes Identity related attributes.
+     * @param customAttributes Custom attributes, not related to identity.
+     * @param activationId Activation ID of created activation.
+     * @param userId User ID of user who created the activation.
+     * @param appId Application ID of the application associated to the activation.
+     * @param activationType Activation type.
+     * @param context Context for passing parameters between activation provider calls.
+     * @return Completion stage with true in case activation should be committed, false otherwise, completed
+     * exceptionally with {@link PowerAuthActivationException} in case of error that should terminate the rest of the activation.
+     */
+    default CompletionStage<Boolean> shouldAutoCommitActivationAsync(Map<String, String> identityAttributes, Map<String, Object> customAttributes, String activationId, String userId, Long appId, ActivationType activationType, Map<String, Object> context) {
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        try {
+            result.complete(shouldAutoCommitActivation(identityAttributes, customAttributes, activationId, userId, appId, activationType, context));
+        } catch (PowerAuthActivationException ex) {
+            result.completeExceptionally(ex);
+        }
+        return result;
+    }
+
+    /**
+     * Asynchronous variant of {@link #activationWasCommitted(Map, Map, String, String, Long, ActivationType, Map)}.
+     * Default implementation calls the synchronous method.
+     *
+     * @param identityAttributes Identity related attributes, null in case the notification was recovered from the journal.
+     * @param customAttributes Custom attributes, not related to identity.
+     * @param activationId Activation ID of created activation.
+     * @param userId User ID of user who created the activation.
+     * @param appId Application ID of the application associated to the activation.
+     * @param activationType Activation type.
+     * @param context Context for passing parameters between activation provider calls.
+     * @return Completion stage completed when the notification is processed, completed exceptionally with
+     * {@link PowerAuthActivationException} in case of error in custom activation business logic.
+     */
+    default CompletionStage<Void> activationWasCommittedAsync(Map<String, String> identityAttributes, Map<String, Object> customAttributes, String activationId, String userId, Long appId, ActivationType activationType, Map<String, Object> context) {
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        try {
+            activationWasCommitted(identityAttributes, customAttributes, activationId, userId, appId, activationType, context);
+            result.complete(null);
+        } catch (PowerAuthActivationException ex) {
+            result.completeExceptionally(ex);
+        }
+        return result;
+    }
+
 }
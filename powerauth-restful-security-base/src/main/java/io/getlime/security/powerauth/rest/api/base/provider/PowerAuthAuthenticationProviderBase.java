@@ -21,9 +21,13 @@ package io.getlime.security.powerauth.rest.api.base.provider;
 
 import io.getlime.security.powerauth.crypto.lib.enums.PowerAuthSignatureTypes;
 import io.getlime.security.powerauth.rest.api.base.authentication.PowerAuthApiAuthentication;
+import io.getlime.security.powerauth.rest.api.base.client.PowerAuthExecutors;
 import io.getlime.security.powerauth.rest.api.base.encryption.PowerAuthEciesEncryption;
 import io.getlime.security.powerauth.rest.api.base.exception.PowerAuthAuthenticationException;
 import io.getlime.security.powerauth.rest.api.base.exception.authentication.PowerAuthRequestFilterException;
+import io.getlime.security.powerauth.rest.api.base.exception.authentication.PowerAuthSignatureErrorException;
+import io.getlime.security.powerauth.rest.api.base.exception.authentication.PowerAuthTokenErrorException;
+import io.getlime.security.powerauth.rest.api.base.metrics.PowerAuthMetrics;
 import io.getlime.security.powerauth.rest.api.base.model.PowerAuthRequestBody;
 import io.getlime.security.powerauth.rest.api.base.model.PowerAuthRequestObjects;
 import org.slf4j.Logger;
@@ -33,6 +37,12 @@ import javax.annotation.Nullable;
 import javax.servlet.http.HttpServletRequest;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 /**
  * Abstract class for PowerAuth authentication provider.
@@ -44,28 +54,92 @@ public abstract class PowerAuthAuthenticationProviderBase {
 
     private static final Logger logger = LoggerFactory.getLogger(PowerAuthAuthenticationProviderBase.class);
 
+    /**
+     * Default number of threads used for asynchronous validation in case no executor is configured.
+     */
+    private static final int DEFAULT_ASYNC_THREAD_COUNT = 32;
+
+    private final AtomicReference<Executor> asyncExecutor = new AtomicReference<>();
+
+    private PowerAuthMetrics powerAuthMetrics;
+
+    /**
+     * Set executor used for asynchronous signature and token validation. In case no executor is set, a default
+     * executor with bounded number of daemon threads is created on first use.
+     * @param asyncExecutor Executor for asynchronous validation.
+     */
+    public void setAsyncExecutor(Executor asyncExecutor) {
+        this.asyncExecutor.set(asyncExecutor);
+    }
+
+    /**
+     * Set PowerAuth metrics. When metrics are configured, outcomes of signature and token validation are recorded.
+     * @param powerAuthMetrics PowerAuth metrics.
+     */
+    public void setPowerAuthMetrics(PowerAuthMetrics powerAuthMetrics) {
+        this.powerAuthMetrics = powerAuthMetrics;
+    }
+
+    /**
+     * Get PowerAuth metrics.
+     * @return PowerAuth metrics, null in case metrics are not configured.
+     */
+    protected PowerAuthMetrics getPowerAuthMetrics() {
+        return powerAuthMetrics;
+    }
+
     /**
      * Validate the signature from the PowerAuth HTTP header against the provided HTTP method, request body and URI identifier.
      * Make sure to accept only allowed signatures.
      * @param httpMethod HTTP method (GET, POST, ...)
      * @param httpBody Body of the HTTP request.
      * @param requestUriIdentifier Request URI identifier.
+     * @param resourceIdTemplate Resource ID template before expansion of placeholders, used to identify the endpoint in metrics.
      * @param httpAuthorizationHeader PowerAuth HTTP authorization header.
      * @param allowedSignatureTypes Allowed types of the signature.
      * @param forcedSignatureVersion Forced signature version during upgrade.
      * @return Instance of a PowerAuthApiAuthentication on successful authorization.
      * @throws PowerAuthAuthenticationException In case authorization fails, exception is raised.
      */
-    public abstract PowerAuthApiAuthentication validateRequestSignature(String httpMethod, byte[] httpBody, String requestUriIdentifier, String httpAuthorizationHeader, List<PowerAuthSignatureTypes> allowedSignatureTypes, @Nullable Integer forcedSignatureVersion) throws PowerAuthAuthenticationException;
+    public abstract PowerAuthApiAuthentication validateRequestSignature(String httpMethod, byte[] httpBody, String requestUriIdentifier, String resourceIdTemplate, String httpAuthorizationHeader, List<PowerAuthSignatureTypes> allowedSignatureTypes, @Nullable Integer forcedSignatureVersion) throws PowerAuthAuthenticationException;
+
+    /**
+     * Validate the signature from the PowerAuth HTTP header against the provided HTTP method, request body and URI identifier.
+     * Make sure to accept only allowed signatures. The request URI identifier must not contain request specific values,
+     * since it is used to identify the endpoint in metrics.
+     * @param httpMethod HTTP method (GET, POST, ...)
+     * @param httpBody Body of the HTTP request.
+     * @param requestUriIdentifier Request URI identifier.
+     * @param httpAuthorizationHeader PowerAuth HTTP authorization header.
+     * @param allowedSignatureTypes Allowed types of the signature.
+     * @param forcedSignatureVersion Forced signature version during upgrade.
+     * @return Instance of a PowerAuthApiAuthentication on successful authorization.
+     * @throws PowerAuthAuthenticationException In case authorization fails, exception is raised.
+     */
+    public PowerAuthApiAuthentication validateRequestSignature(String httpMethod, byte[] httpBody, String requestUriIdentifier, String httpAuthorizationHeader, List<PowerAuthSignatureTypes> allowedSignatureTypes, @Nullable Integer forcedSignatureVersion) throws PowerAuthAuthenticationException {
+        return this.validateRequestSignature(httpMethod, httpBody, requestUriIdentifier, requestUriIdentifier, httpAuthorizationHeader, allowedSignatureTypes, forcedSignatureVersion);
+    }
 
     /**
      * Validate the token digest from PowerAuth authentication header.
      * @param httpAuthorizationHeader HTTP header with token digest.
      * @param allowedSignatureTypes Allowed types of the signature.
+     * @param endpoint Request mapping pattern of the endpoint, used to identify the endpoint in metrics, null in case it is not available.
      * @return Instance of a PowerAuthApiAuthentication on successful authorization.
      * @throws PowerAuthAuthenticationException In case authorization fails, exception is raised.
      */
-    public abstract PowerAuthApiAuthentication validateToken(String httpAuthorizationHeader, List<PowerAuthSignatureTypes> allowedSignatureTypes) throws PowerAuthAuthenticationException;
+    public abstract PowerAuthApiAuthentication validateToken(String httpAuthorizationHeader, List<PowerAuthSignatureTypes> allowedSignatureTypes, @Nullable String endpoint) throws PowerAuthAuthenticationException;
+
+    /**
+     * Validate the token digest from PowerAuth authentication header.
+     * @param httpAuthorizationHeader HTTP header with token digest.
+     * @param allowedSignatureTypes Allowed types of the signature.
+     * @return Instance of a PowerAuthApiAuthentication on successful authorization.
+     * @throws PowerAuthAuthenticationException In case authorization fails, exception is raised.
+     */
+    public PowerAuthApiAuthentication validateToken(String httpAuthorizationHeader, List<PowerAuthSignatureTypes> allowedSignatureTypes) throws PowerAuthAuthenticationException {
+        return this.validateToken(httpAuthorizationHeader, allowedSignatureTypes, null);
+    }
 
     /**
      * The same as {{@link #validateRequestSignature(String, byte[], String, String, List, Integer)} but uses default accepted signature type (2FA or 3FA) and does not specify forced signature version.
@@ -111,10 +185,25 @@ public abstract class PowerAuthAuthenticationProviderBase {
      * @throws PowerAuthAuthenticationException In case authorization fails, exception is raised.
      */
     public PowerAuthApiAuthentication validateRequestSignature(HttpServletRequest servletRequest, String requestUriIdentifier, String httpAuthorizationHeader, List<PowerAuthSignatureTypes> allowedSignatureTypes, @Nullable Integer forcedSignatureVersion) throws PowerAuthAuthenticationException {
+        return this.validateRequestSignature(servletRequest, requestUriIdentifier, requestUriIdentifier, httpAuthorizationHeader, allowedSignatureTypes, forcedSignatureVersion);
+    }
+
+    /**
+     * Validate a request signature, make sure only supported signature types are used and allow specification of forced signature version.
+     * @param servletRequest HTTPServletRequest with signed data.
+     * @param requestUriIdentifier Request URI identifier.
+     * @param resourceIdTemplate Resource ID template before expansion of placeholders, used to identify the endpoint in metrics.
+     * @param httpAuthorizationHeader PowerAuth HTTP authorization header.
+     * @param allowedSignatureTypes Allowed types of signatures.
+     * @param forcedSignatureVersion Forced signature version during upgrade.
+     * @return Instance of a PowerAuthApiAuthentication on successful authorization.
+     * @throws PowerAuthAuthenticationException In case authorization fails, exception is raised.
+     */
+    public PowerAuthApiAuthentication validateRequestSignature(HttpServletRequest servletRequest, String requestUriIdentifier, String resourceIdTemplate, String httpAuthorizationHeader, List<PowerAuthSignatureTypes> allowedSignatureTypes, @Nullable Integer forcedSignatureVersion) throws PowerAuthAuthenticationException {
         // Get HTTP method and body bytes
         String requestMethod = servletRequest.getMethod().toUpperCase();
         byte[] requestBodyBytes = extractRequestBodyBytes(servletRequest);
-        return this.validateRequestSignature(requestMethod, requestBodyBytes, requestUriIdentifier, httpAuthorizationHeader, allowedSignatureTypes, forcedSignatureVersion);
+        return this.validateRequestSignature(requestMethod, requestBodyBytes, requestUriIdentifier, resourceIdTemplate, httpAuthorizationHeader, allowedSignatureTypes, forcedSignatureVersion);
     }
 
     /**
@@ -147,6 +236,105 @@ public abstract class PowerAuthAuthenticationProviderBase {
         return this.validateToken(tokenHeader, defaultAllowedSignatureTypes);
     }
 
+    /**
+     * Validate the signature asynchronously, the validation runs in the executor for asynchronous validation so
+     * that the calling thread is not blocked by the call of PowerAuth server.
+     * @param httpMethod HTTP method (GET, POST, ...)
+     * @param httpBody Body of the HTTP request.
+     * @param requestUriIdentifier Request URI identifier.
+     * @param httpAuthorizationHeader PowerAuth HTTP authorization header.
+     * @param allowedSignatureTypes Allowed types of the signature.
+     * @param forcedSignatureVersion Forced signature version during upgrade.
+     * @return Future completed with a PowerAuthApiAuthentication on successful authorization, or completed exceptionally
+     * with PowerAuthAuthenticationException in case authorization fails.
+     */
+    public CompletableFuture<PowerAuthApiAuthentication> validateRequestSignatureAsync(String httpMethod, byte[] httpBody, String requestUriIdentifier, String httpAuthorizationHeader, List<PowerAuthSignatureTypes> allowedSignatureTypes, @Nullable Integer forcedSignatureVersion) {
+        return validateRequestSignatureAsync(httpMethod, httpBody, requestUriIdentifier, requestUriIdentifier, httpAuthorizationHeader, allowedSignatureTypes, forcedSignatureVersion);
+    }
+
+    /**
+     * Validate the signature asynchronously, the validation runs in the executor for asynchronous validation so
+     * that the calling thread is not blocked by the call of PowerAuth server.
+     * @param httpMethod HTTP method (GET, POST, ...)
+     * @param httpBody Body of the HTTP request.
+     * @param requestUriIdentifier Request URI identifier.
+     * @param resourceIdTemplate Resource ID template before expansion of placeholders, used to identify the endpoint in metrics.
+     * @param httpAuthorizationHeader PowerAuth HTTP authorization header.
+     * @param allowedSignatureTypes Allowed types of the signature.
+     * @param forcedSignatureVersion Forced signature version during upgrade.
+     * @return Future completed with a PowerAuthApiAuthentication on successful authorization, or completed exceptionally
+     * with PowerAuthAuthenticationException in case authorization fails.
+     */
+    public CompletableFuture<PowerAuthApiAuthentication> validateRequestSignatureAsync(String httpMethod, byte[] httpBody, String requestUriIdentifier, String resourceIdTemplate, String httpAuthorizationHeader, List<PowerAuthSignatureTypes> allowedSignatureTypes, @Nullable Integer forcedSignatureVersion) {
+        return executeAsync(() -> validateRequestSignature(httpMethod, httpBody, requestUriIdentifier, resourceIdTemplate, httpAuthorizationHeader, allowedSignatureTypes, forcedSignatureVersion),
+                PowerAuthSignatureErrorException::new);
+    }
+
+    /**
+     * Validate the signature asynchronously. The HTTP method and request body are extracted from the servlet request
+     * in the calling thread, the servlet request is not accessed during asynchronous validation.
+     * @param servletRequest HTTPServletRequest with signed data.
+     * @param requestUriIdentifier Request URI identifier.
+     * @param httpAuthorizationHeader PowerAuth HTTP authorization header.
+     * @param allowedSignatureTypes Allowed types of signatures.
+     * @param forcedSignatureVersion Forced signature version during upgrade.
+     * @return Future completed with a PowerAuthApiAuthentication on successful authorization, or completed exceptionally
+     * with PowerAuthAuthenticationException in case authorization fails.
+     */
+    public CompletableFuture<PowerAuthApiAuthentication> validateRequestSignatureAsync(HttpServletRequest servletRequest, String requestUriIdentifier, String httpAuthorizationHeader, List<PowerAuthSignatureTypes> allowedSignatureTypes, @Nullable Integer forcedSignatureVersion) {
+        return validateRequestSignatureAsync(servletRequest, requestUriIdentifier, requestUriIdentifier, httpAuthorizationHeader, allowedSignatureTypes, forcedSignatureVersion);
+    }
+
+    /**
+     * Validate the signature asynchronously. The HTTP method and request body are extracted from the servlet request
+     * in the calling thread, the servlet request is not accessed during asynchronous validation.
+     * @param servletRequest HTTPServletRequest with signed data.
+     * @param requestUriIdentifier Request URI identifier.
+     * @param resourceIdTemplate Resource ID template before expansion of placeholders, used to identify the endpoint in metrics.
+     * @param httpAuthorizationHeader PowerAuth HTTP authorization header.
+     * @param allowedSignatureTypes Allowed types of signatures.
+     * @param forcedSignatureVersion Forced signature version during upgrade.
+     * @return Future completed with a PowerAuthApiAuthentication on successful authorization, or completed exceptionally
+     * with PowerAuthAuthenticationException in case authorization fails.
+     */
+    public CompletableFuture<PowerAuthApiAuthentication> validateRequestSignatureAsync(HttpServletRequest servletRequest, String requestUriIdentifier, String resourceIdTemplate, String httpAuthorizationHeader, List<PowerAuthSignatureTypes> allowedSignatureTypes, @Nullable Integer forcedSignatureVersion) {
+        final String requestMethod = servletRequest.getMethod().toUpperCase();
+        final byte[] requestBodyBytes;
+        try {
+            requestBodyBytes = extractRequestBodyBytes(servletRequest);
+        } catch (PowerAuthAuthenticationException ex) {
+            final CompletableFuture<PowerAuthApiAuthentication> future = new CompletableFuture<>();
+            future.completeExceptionally(ex);
+            return future;
+        }
+        return validateRequestSignatureAsync(requestMethod, requestBodyBytes, requestUriIdentifier, resourceIdTemplate, httpAuthorizationHeader, allowedSignatureTypes, forcedSignatureVersion);
+    }
+
+    /**
+     * Validate the token digest asynchronously, the validation runs in the executor for asynchronous validation so
+     * that the calling thread is not blocked by the call of PowerAuth server.
+     * @param httpAuthorizationHeader HTTP header with token digest.
+     * @param allowedSignatureTypes Allowed types of the signature.
+     * @return Future completed with a PowerAuthApiAuthentication on successful authorization, or completed exceptionally
+     * with PowerAuthAuthenticationException in case authorization fails.
+     */
+    public CompletableFuture<PowerAuthApiAuthentication> validateTokenAsync(String httpAuthorizationHeader, List<PowerAuthSignatureTypes> allowedSignatureTypes) {
+        return validateTokenAsync(httpAuthorizationHeader, allowedSignatureTypes, null);
+    }
+
+    /**
+     * Validate the token digest asynchronously, the validation runs in the executor for asynchronous validation so
+     * that the calling thread is not blocked by the call of PowerAuth server.
+     * @param httpAuthorizationHeader HTTP header with token digest.
+     * @param allowedSignatureTypes Allowed types of the signature.
+     * @param endpoint Request mapping pattern of the endpoint, used to identify the endpoint in metrics, null in case it is not available.
+     * @return Future completed with a PowerAuthApiAuthentication on successful authorization, or completed exceptionally
+     * with PowerAuthAuthenticationException in case authorization fails.
+     */
+    public CompletableFuture<PowerAuthApiAuthentication> validateTokenAsync(String httpAuthorizationHeader, List<PowerAuthSignatureTypes> allowedSignatureTypes, @Nullable String endpoint) {
+        return executeAsync(() -> validateToken(httpAuthorizationHeader, allowedSignatureTypes, endpoint), PowerAuthTokenErrorException::new);
+    }
+
     /**
      * Extract request body bytes from HTTP servlet request. In case the data was transparently decrypted, use the decrypted request data.
      * @param servletRequest HTTP servlet request.
@@ -168,4 +356,55 @@ public abstract class PowerAuthAuthenticationProviderBase {
             return requestBody.getRequestBytes();
         }
     }
+
+    /**
+     * Execute validation in the executor for asynchronous validation. In case the executor rejects the validation,
+     * for example when its queue is full, the future is completed with the error of the authentication type.
+     * @param validation Validation to execute.
+     * @param rejectionException Supplier of the exception used in case the validation is rejected.
+     * @return Future with validation result.
+     */
+    private CompletableFuture<PowerAuthApiAuthentication> executeAsync(AuthenticationValidation validation, Supplier<PowerAuthAuthenticationException> rejectionException) {
+        final CompletableFuture<PowerAuthApiAuthentication> future = new CompletableFuture<>();
+        try {
+            getAsyncExecutor().execute(() -> {
+                try {
+                    future.complete(validation.validate());
+                } catch (Throwable ex) {
+                    future.completeExceptionally(ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            logger.warn("Asynchronous validation was rejected, error: {}", ex.getMessage());
+            logger.debug("Error details", ex);
+            future.completeExceptionally(rejectionException.get());
+        }
+        return future;
+    }
+
+    /**
+     * Get executor for asynchronous validation, create the default executor in case it is not set.
+     * @return Executor for asynchronous validation.
+     */
+    private Executor getAsyncExecutor() {
+        // Lock-free lazy initialization, the default executor does not start any threads until a task is submitted
+        final Executor executor = asyncExecutor.get();
+        if (executor != null) {
+            return executor;
+        }
+        final ExecutorService defaultExecutor = PowerAuthExecutors.newPlatformThreadExecutor(DEFAULT_ASYNC_THREAD_COUNT, "powerauth-async-");
+        if (asyncExecutor.compareAndSet(null, defaultExecutor)) {
+            return defaultExecutor;
+        }
+        defaultExecutor.shutdown();
+        return asyncExecutor.get();
+    }
+
+    /**
+     * Validation of PowerAuth authentication executed asynchronously.
+     */
+    @FunctionalInterface
+    private interface AuthenticationValidation {
+        PowerAuthApiAuthentication validate() throws PowerAuthAuthenticationException;
+    }
 }
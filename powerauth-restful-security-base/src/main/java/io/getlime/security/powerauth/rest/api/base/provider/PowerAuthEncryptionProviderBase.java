@@ -19,7 +19,11 @@
  */
 package io.getlime.security.powerauth.rest.api.base.provider;
 
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.io.BaseEncoding;
 import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.EciesDecryptor;
@@ -32,10 +36,14 @@ import io.getlime.security.powerauth.http.PowerAuthSignatureHttpHeader;
 import io.getlime.security.powerauth.http.validator.InvalidPowerAuthHttpHeaderException;
 import io.getlime.security.powerauth.http.validator.PowerAuthEncryptionHttpHeaderValidator;
 import io.getlime.security.powerauth.http.validator.PowerAuthSignatureHttpHeaderValidator;
+import io.getlime.security.powerauth.rest.api.base.encryption.EciesChunkedCipher;
 import io.getlime.security.powerauth.rest.api.base.encryption.EciesEncryptionContext;
+import io.getlime.security.powerauth.rest.api.base.encryption.LocalEciesKeyDeriver;
+import io.getlime.security.powerauth.rest.api.base.encryption.PowerAuthEciesChunkedEncryption;
 import io.getlime.security.powerauth.rest.api.base.encryption.PowerAuthEciesDecryptorParameters;
 import io.getlime.security.powerauth.rest.api.base.encryption.PowerAuthEciesEncryption;
 import io.getlime.security.powerauth.rest.api.base.exception.PowerAuthEncryptionException;
+import io.getlime.security.powerauth.rest.api.base.metrics.PowerAuthMetrics;
 import io.getlime.security.powerauth.rest.api.base.model.PowerAuthRequestBody;
 import io.getlime.security.powerauth.rest.api.base.model.PowerAuthRequestObjects;
 import io.getlime.security.powerauth.rest.api.model.request.v3.EciesEncryptedRequest;
@@ -45,6 +53,8 @@ import org.slf4j.LoggerFactory;
 
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
 
 /**
  * Abstract class for PowerAuth encryption provider with common HTTP header parsing logic. The class is available for
@@ -60,6 +70,28 @@ public abstract class PowerAuthEncryptionProviderBase {
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final EciesFactory eciesFactory = new EciesFactory();
 
+    private PowerAuthMetrics powerAuthMetrics;
+
+    private LocalEciesKeyDeriver localEciesKeyDeriver;
+
+    /**
+     * Set PowerAuth metrics. When metrics are configured, duration of ECIES request decryption and response
+     * encryption is recorded.
+     * @param powerAuthMetrics PowerAuth metrics.
+     */
+    public void setPowerAuthMetrics(PowerAuthMetrics powerAuthMetrics) {
+        this.powerAuthMetrics = powerAuthMetrics;
+    }
+
+    /**
+     * Set local ECIES key deriver. When the deriver is configured, ECIES decryptor parameters are derived locally
+     * for requests with available key records, other requests use decryptor parameters from PowerAuth server.
+     * @param localEciesKeyDeriver Local ECIES key deriver.
+     */
+    public void setLocalEciesKeyDeriver(LocalEciesKeyDeriver localEciesKeyDeriver) {
+        this.localEciesKeyDeriver = localEciesKeyDeriver;
+    }
+
     /**
      * Get ECIES decryptor parameters from PowerAuth server.
      *
@@ -83,14 +115,94 @@ public abstract class PowerAuthEncryptionProviderBase {
      * @throws PowerAuthEncryptionException In case request decryption fails.
      */
     public <T> PowerAuthEciesEncryption<T> decryptRequest(HttpServletRequest request, Class<T> requestType, EciesScope eciesScope) throws PowerAuthEncryptionException {
+        return decryptRequest(request, (Type) requestType, eciesScope);
+    }
+
+    /**
+     * Decrypt HTTP request body and construct object with ECIES data. Use the requestType parameter to specify
+     * the type of decrypted object, generic types such as {@code ObjectRequest<T>} are supported.
+     *
+     * @param <T> Generic request object type.
+     * @param request HTTP request.
+     * @param requestType Type of request object.
+     * @param eciesScope ECIES scope.
+     * @return Object with ECIES data.
+     * @throws PowerAuthEncryptionException In case request decryption fails.
+     */
+    public <T> PowerAuthEciesEncryption<T> decryptRequest(HttpServletRequest request, Type requestType, EciesScope eciesScope) throws PowerAuthEncryptionException {
+        // Extract request body stored by the PowerAuthRequestFilter
+        final PowerAuthRequestBody requestBody = ((PowerAuthRequestBody) request.getAttribute(PowerAuthRequestObjects.REQUEST_BODY));
+        if (requestBody == null) {
+            logger.warn("The X-PowerAuth-Request-Body request attribute is missing. Register the PowerAuthRequestFilter to fix this error.");
+            throw new PowerAuthEncryptionException();
+        }
+
+        final String encryptionHttpHeader = request.getHeader(PowerAuthEncryptionHttpHeader.HEADER_NAME);
+        final String signatureHttpHeader = request.getHeader(PowerAuthSignatureHttpHeader.HEADER_NAME);
+        final PowerAuthEciesEncryption<T> eciesEncryption = decryptRequest(request.getMethod(), encryptionHttpHeader, signatureHttpHeader, requestBody.getRequestBytes(), requestType, eciesScope);
+
+        // Set encryption object in HTTP servlet request
+        request.setAttribute(PowerAuthRequestObjects.ENCRYPTION_OBJECT, eciesEncryption);
+        return eciesEncryption;
+    }
+
+    /**
+     * Decrypt HTTP request body and construct object with ECIES data. This variant is independent of the servlet API,
+     * the HTTP method, HTTP headers and request body are extracted from the request by the caller.
+     *
+     * @param <T> Generic request object type.
+     * @param httpMethod HTTP method.
+     * @param encryptionHttpHeader Value of PowerAuth encryption HTTP header, null in case the header is not present.
+     * @param signatureHttpHeader Value of PowerAuth signature HTTP header, null in case the header is not present.
+     * @param requestBodyBytes Request body bytes.
+     * @param requestType Class of request object.
+     * @param eciesScope ECIES scope.
+     * @return Object with ECIES data.
+     * @throws PowerAuthEncryptionException In case request decryption fails.
+     */
+    public <T> PowerAuthEciesEncryption<T> decryptRequest(String httpMethod, String encryptionHttpHeader, String signatureHttpHeader, byte[] requestBodyBytes, Class<T> requestType, EciesScope eciesScope) throws PowerAuthEncryptionException {
+        return decryptRequest(httpMethod, encryptionHttpHeader, signatureHttpHeader, requestBodyBytes, (Type) requestType, eciesScope);
+    }
+
+    /**
+     * Decrypt HTTP request body and construct object with ECIES data. This variant is independent of the servlet API
+     * and supports generic request types such as {@code ObjectRequest<T>}.
+     *
+     * @param <T> Generic request object type.
+     * @param httpMethod HTTP method.
+     * @param encryptionHttpHeader Value of PowerAuth encryption HTTP header, null in case the header is not present.
+     * @param signatureHttpHeader Value of PowerAuth signature HTTP header, null in case the header is not present.
+     * @param requestBodyBytes Request body bytes.
+     * @param requestType Type of request object.
+     * @param eciesScope ECIES scope.
+     * @return Object with ECIES data.
+     * @throws PowerAuthEncryptionException In case request decryption fails.
+     */
+    public <T> PowerAuthEciesEncryption<T> decryptRequest(String httpMethod, String encryptionHttpHeader, String signatureHttpHeader, byte[] requestBodyBytes, Type requestType, EciesScope eciesScope) throws PowerAuthEncryptionException {
+        if (powerAuthMetrics == null) {
+            return decryptRequestInternal(httpMethod, encryptionHttpHeader, signatureHttpHeader, requestBodyBytes, requestType, eciesScope);
+        }
+        // Decryption duration includes the PowerAuth server call which provides ECIES decryptor parameters
+        final long startTime = powerAuthMetrics.startTimer();
+        try {
+            final PowerAuthEciesEncryption<T> eciesEncryption = decryptRequestInternal(httpMethod, encryptionHttpHeader, signatureHttpHeader, requestBodyBytes, requestType, eciesScope);
+            powerAuthMetrics.recordEciesDecryption(eciesScope, eciesEncryption.getContext().getVersion(), startTime, true);
+            return eciesEncryption;
+        } catch (PowerAuthEncryptionException ex) {
+            powerAuthMetrics.recordEciesDecryption(eciesScope, null, startTime, false);
+            throw ex;
+        }
+    }
+
+    private <T> PowerAuthEciesEncryption<T> decryptRequestInternal(String httpMethod, String encryptionHttpHeader, String signatureHttpHeader, byte[] requestBodyBytes, Type requestType, EciesScope eciesScope) throws PowerAuthEncryptionException {
         // Only POST HTTP method is supported for ECIES
-        if (!"POST".equals(request.getMethod())) {
-            logger.warn("Invalid HTTP method: {}", request.getMethod());
+        if (!"POST".equals(httpMethod)) {
+            logger.warn("Invalid HTTP method: {}", httpMethod);
             throw new PowerAuthEncryptionException();
         }
 
         // Resolve either signature or encryption HTTP header for ECIES
-        final EciesEncryptionContext encryptionContext = extractEciesEncryptionContext(request);
+        final EciesEncryptionContext encryptionContext = extractEciesEncryptionContext(encryptionHttpHeader, signatureHttpHeader);
 
         // Construct ECIES encryption object from HTTP header
         final PowerAuthEciesEncryption<T> eciesEncryption = new PowerAuthEciesEncryption<>(encryptionContext);
@@ -100,84 +212,61 @@ public abstract class PowerAuthEncryptionProviderBase {
 
         try {
             // Parse ECIES cryptogram from request body
-            final PowerAuthRequestBody requestBody = ((PowerAuthRequestBody) request.getAttribute(PowerAuthRequestObjects.REQUEST_BODY));
-            if (requestBody == null) {
-                logger.warn("The X-PowerAuth-Request-Body request attribute is missing. Register the PowerAuthRequestFilter to fix this error.");
-                throw new PowerAuthEncryptionException();
-            }
-            final byte[] requestBodyBytes = requestBody.getRequestBytes();
             if (requestBodyBytes == null || requestBodyBytes.length == 0) {
                 logger.warn("Invalid HTTP request");
                 throw new PowerAuthEncryptionException();
             }
-            final EciesEncryptedRequest eciesRequest = objectMapper.readValue(requestBodyBytes, EciesEncryptedRequest.class);
-            if (eciesRequest == null) {
+            final EciesCryptogram cryptogram = parseEciesCryptogram(requestBodyBytes);
+            if (cryptogram == null) {
                 logger.warn("Invalid ECIES request data");
                 throw new PowerAuthEncryptionException();
             }
 
-            // Prepare ephemeral public key
-            final String ephemeralPublicKey = eciesRequest.getEphemeralPublicKey();
-            final String encryptedData = eciesRequest.getEncryptedData();
-            final String mac = eciesRequest.getMac();
-            final String nonce = eciesRequest.getNonce();
+            final byte[] ephemeralPublicKeyBytes = cryptogram.getEphemeralPublicKey();
 
             // Verify ECIES request data. Nonce is required for protocol 3.1+
-            if (ephemeralPublicKey == null || encryptedData == null || mac == null) {
+            if (ephemeralPublicKeyBytes == null || cryptogram.getEncryptedData() == null || cryptogram.getMac() == null) {
                 logger.warn("Invalid ECIES request data");
                 throw new PowerAuthEncryptionException();
             }
-            if (nonce == null && !"3.0".equals(encryptionContext.getVersion())) {
+            if (cryptogram.getNonce() == null && !"3.0".equals(encryptionContext.getVersion())) {
                 logger.warn("Missing nonce in ECIES request data");
                 throw new PowerAuthEncryptionException();
             }
 
-            final byte[] ephemeralPublicKeyBytes = BaseEncoding.base64().decode(ephemeralPublicKey);
-            final byte[] encryptedDataBytes = BaseEncoding.base64().decode(encryptedData);
-            final byte[] macBytes = BaseEncoding.base64().decode(mac);
-            final byte[] nonceBytes = nonce != null ? BaseEncoding.base64().decode(nonce) : null;
-
             final String applicationKey = eciesEncryption.getContext().getApplicationKey();
-            final PowerAuthEciesDecryptorParameters decryptorParameters;
-            // Obtain ECIES decryptor parameters from PowerAuth server
-            switch (eciesScope) {
-                case ACTIVATION_SCOPE:
-                    final String activationId = eciesEncryption.getContext().getActivationId();
-                    if (activationId == null) {
-                        logger.warn("Activation ID is required in ECIES activation scope");
-                        throw new PowerAuthEncryptionException();
-                    }
-                    decryptorParameters = getEciesDecryptorParameters(activationId, applicationKey, ephemeralPublicKey);
-                    break;
-                case APPLICATION_SCOPE:
-                    decryptorParameters = getEciesDecryptorParameters(null, applicationKey, ephemeralPublicKey);
-                    break;
-                default:
-                    logger.warn("Unsupported ECIES scope: {}", eciesScope);
-                    throw new PowerAuthEncryptionException();
+            final String activationId = resolveActivationId(eciesEncryption.getContext(), eciesScope);
+
+            EciesDecryptor eciesDecryptor = null;
+            byte[] decryptedData = null;
+
+            // Derive ECIES decryptor parameters locally in case a valid key record is available. PowerAuth server
+            // is used only when the key record is missing or expired, decryption failure with a locally derived key
+            // (e.g. invalid MAC) rejects the request, so that invalid requests do not cause calls to PowerAuth server.
+            if (localEciesKeyDeriver != null) {
+                final PowerAuthEciesDecryptorParameters decryptorParameters = localEciesKeyDeriver.deriveDecryptorParameters(activationId, applicationKey, ephemeralPublicKeyBytes, encryptionContext.getVersion());
+                if (decryptorParameters != null) {
+                    eciesDecryptor = createEciesDecryptor(decryptorParameters, ephemeralPublicKeyBytes);
+                    decryptedData = eciesDecryptor.decryptRequest(cryptogram);
+                }
             }
 
-            // Prepare envelope key and sharedInfo2 parameter for decryptor
-            final byte[] secretKey = BaseEncoding.base64().decode(decryptorParameters.getSecretKey());
-            final EciesEnvelopeKey envelopeKey = new EciesEnvelopeKey(secretKey, ephemeralPublicKeyBytes);
-            final byte[] sharedInfo2 = BaseEncoding.base64().decode(decryptorParameters.getSharedInfo2());
+            if (eciesDecryptor == null) {
+                // Obtain ECIES decryptor parameters from PowerAuth server
+                final String ephemeralPublicKey = BaseEncoding.base64().encode(ephemeralPublicKeyBytes);
+                final PowerAuthEciesDecryptorParameters decryptorParameters = getEciesDecryptorParameters(activationId, applicationKey, ephemeralPublicKey);
+                eciesDecryptor = createEciesDecryptor(decryptorParameters, ephemeralPublicKeyBytes);
+                decryptedData = eciesDecryptor.decryptRequest(cryptogram);
+            }
 
-            // Construct decryptor and set it to the request for later encryption of response
-            final EciesDecryptor eciesDecryptor = eciesFactory.getEciesDecryptor(envelopeKey, sharedInfo2);
+            // Set decryptor to the request for later encryption of response
             eciesEncryption.setEciesDecryptor(eciesDecryptor);
-
-            // Decrypt request data
-            final EciesCryptogram cryptogram = new EciesCryptogram(ephemeralPublicKeyBytes, macBytes, encryptedDataBytes, nonceBytes);
-            final byte[] decryptedData = eciesDecryptor.decryptRequest(cryptogram);
-            eciesEncryption.setEncryptedRequest(encryptedDataBytes);
+            eciesEncryption.setEncryptedRequest(cryptogram.getEncryptedData());
             eciesEncryption.setDecryptedRequest(decryptedData);
             // Set the request object only in case when request data is sent
             if (decryptedData.length != 0) {
                 eciesEncryption.setRequestObject(deserializeRequestData(decryptedData, requestType));
             }
-
-            // Set encryption object in HTTP servlet request
-            request.setAttribute(PowerAuthRequestObjects.ENCRYPTION_OBJECT, eciesEncryption);
         } catch (Exception ex) {
             logger.debug("Request decryption failed, error: " + ex.getMessage(), ex);
             throw new PowerAuthEncryptionException();
@@ -185,6 +274,100 @@ public abstract class PowerAuthEncryptionProviderBase {
         return eciesEncryption;
     }
 
+    /**
+     * Prepare chunked ECIES decryption of HTTP request body. The request body is decrypted while it is read from
+     * the returned object, so that large payloads are processed in constant memory.
+     *
+     * @param request HTTP request.
+     * @param eciesScope ECIES scope.
+     * @return Object with chunked ECIES data.
+     * @throws PowerAuthEncryptionException In case chunked decryption cannot be prepared.
+     */
+    public PowerAuthEciesChunkedEncryption decryptRequestChunked(HttpServletRequest request, EciesScope eciesScope) throws PowerAuthEncryptionException {
+        final InputStream requestInputStream;
+        try {
+            requestInputStream = request.getInputStream();
+        } catch (IOException ex) {
+            logger.warn("Request body is not available, error: {}", ex.getMessage());
+            logger.debug("Error details", ex);
+            throw new PowerAuthEncryptionException();
+        }
+        final PowerAuthEciesChunkedEncryption chunkedEncryption = decryptRequestChunked(request.getMethod(),
+                request.getHeader(PowerAuthEncryptionHttpHeader.HEADER_NAME), request.getHeader(PowerAuthSignatureHttpHeader.HEADER_NAME),
+                request.getHeader(PowerAuthEciesChunkedEncryption.EPHEMERAL_PUBLIC_KEY_HEADER), request.getHeader(PowerAuthEciesChunkedEncryption.NONCE_HEADER),
+                requestInputStream, eciesScope);
+
+        // Set chunked encryption object in HTTP servlet request
+        request.setAttribute(PowerAuthRequestObjects.CHUNKED_ENCRYPTION_OBJECT, chunkedEncryption);
+        return chunkedEncryption;
+    }
+
+    /**
+     * Prepare chunked ECIES decryption of request body. This variant is independent of the servlet API, the HTTP
+     * method, HTTP headers and request body stream are extracted from the request by the caller.
+     *
+     * @param httpMethod HTTP method.
+     * @param encryptionHttpHeader Value of PowerAuth encryption HTTP header, null in case the header is not present.
+     * @param signatureHttpHeader Value of PowerAuth signature HTTP header, null in case the header is not present.
+     * @param ephemeralPublicKeyHeader Value of chunked encryption ephemeral public key HTTP header.
+     * @param nonceHeader Value of chunked encryption nonce HTTP header.
+     * @param requestInputStream Input stream with encrypted request body.
+     * @param eciesScope ECIES scope.
+     * @return Object with chunked ECIES data.
+     * @throws PowerAuthEncryptionException In case chunked decryption cannot be prepared.
+     */
+    public PowerAuthEciesChunkedEncryption decryptRequestChunked(String httpMethod, String encryptionHttpHeader, String signatureHttpHeader,
+                                                                 String ephemeralPublicKeyHeader, String nonceHeader,
+                                                                 InputStream requestInputStream, EciesScope eciesScope) throws PowerAuthEncryptionException {
+        // Only POST HTTP method is supported for ECIES
+        if (!"POST".equals(httpMethod)) {
+            logger.warn("Invalid HTTP method: {}", httpMethod);
+            throw new PowerAuthEncryptionException();
+        }
+
+        // Resolve either signature or encryption HTTP header for ECIES
+        final EciesEncryptionContext encryptionContext = extractEciesEncryptionContext(encryptionHttpHeader, signatureHttpHeader);
+        encryptionContext.setEciesScope(eciesScope);
+
+        // Ephemeral public key and nonce are required for chunked encryption
+        if (ephemeralPublicKeyHeader == null || nonceHeader == null) {
+            logger.warn("Invalid chunked ECIES request headers");
+            throw new PowerAuthEncryptionException();
+        }
+
+        try {
+            final byte[] ephemeralPublicKeyBytes = BaseEncoding.base64().decode(ephemeralPublicKeyHeader);
+            final byte[] nonceBytes = BaseEncoding.base64().decode(nonceHeader);
+            // Reject invalid headers before the keys are derived
+            if (ephemeralPublicKeyBytes.length == 0 || nonceBytes.length != EciesChunkedCipher.NONCE_LENGTH) {
+                logger.warn("Invalid chunked ECIES request headers");
+                throw new PowerAuthEncryptionException();
+            }
+            final String applicationKey = encryptionContext.getApplicationKey();
+            final String activationId = resolveActivationId(encryptionContext, eciesScope);
+
+            // Derive ECIES decryptor parameters locally in case key record is available, otherwise use PowerAuth server
+            PowerAuthEciesDecryptorParameters decryptorParameters = null;
+            if (localEciesKeyDeriver != null) {
+                decryptorParameters = localEciesKeyDeriver.deriveDecryptorParameters(activationId, applicationKey, ephemeralPublicKeyBytes, encryptionContext.getVersion());
+            }
+            if (decryptorParameters == null) {
+                decryptorParameters = getEciesDecryptorParameters(activationId, applicationKey, ephemeralPublicKeyHeader);
+            }
+
+            final byte[] secretKey = BaseEncoding.base64().decode(decryptorParameters.getSecretKey());
+            final EciesEnvelopeKey envelopeKey = new EciesEnvelopeKey(secretKey, ephemeralPublicKeyBytes);
+            final byte[] sharedInfo2 = BaseEncoding.base64().decode(decryptorParameters.getSharedInfo2());
+            final EciesChunkedCipher cipher = new EciesChunkedCipher(envelopeKey, sharedInfo2, nonceBytes);
+            return new PowerAuthEciesChunkedEncryption(encryptionContext, cipher, requestInputStream);
+        } catch (PowerAuthEncryptionException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            logger.debug("Chunked request decryption failed, error: " + ex.getMessage(), ex);
+            throw new PowerAuthEncryptionException();
+        }
+    }
+
     /**
      * Encrypt response using ECIES.
      *
@@ -193,6 +376,17 @@ public abstract class PowerAuthEncryptionProviderBase {
      * @return ECIES encrypted response.
      */
     public EciesEncryptedResponse encryptResponse(Object responseObject, PowerAuthEciesEncryption<?> eciesEncryption) {
+        if (powerAuthMetrics == null) {
+            return encryptResponseInternal(responseObject, eciesEncryption);
+        }
+        final long startTime = powerAuthMetrics.startTimer();
+        final EciesEncryptedResponse encryptedResponse = encryptResponseInternal(responseObject, eciesEncryption);
+        powerAuthMetrics.recordEciesEncryption(eciesEncryption.getContext().getEciesScope(), eciesEncryption.getContext().getVersion(),
+                startTime, encryptedResponse != null);
+        return encryptedResponse;
+    }
+
+    private EciesEncryptedResponse encryptResponseInternal(Object responseObject, PowerAuthEciesEncryption<?> eciesEncryption) {
         try {
             final byte[] responseData = serializeResponseData(responseObject);
             // Encrypt response using decryptor and return ECIES cryptogram
@@ -206,23 +400,126 @@ public abstract class PowerAuthEncryptionProviderBase {
         }
     }
 
+    /**
+     * Parse ECIES cryptogram from request body with {@link EciesEncryptedRequest} structure. The request body is parsed
+     * using streaming JSON parser and Base64 encoded values are decoded directly from the parser buffer, so that
+     * the encrypted data is not allocated as an intermediate String.
+     *
+     * @param requestBodyBytes Request body bytes.
+     * @return ECIES cryptogram with values which are missing in request set to null, or null in case request body is JSON null.
+     * @throws IOException In case request body is not a valid ECIES request.
+     */
+    private EciesCryptogram parseEciesCryptogram(byte[] requestBodyBytes) throws IOException {
+        try (final JsonParser parser = objectMapper.getFactory().createParser(requestBodyBytes)) {
+            final JsonToken firstToken = parser.nextToken();
+            if (firstToken == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            if (firstToken != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected JSON object with ECIES request data");
+            }
+            byte[] ephemeralPublicKey = null;
+            byte[] encryptedData = null;
+            byte[] mac = null;
+            byte[] nonce = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String fieldName = parser.getCurrentName();
+                final byte[] value = parser.nextToken() == JsonToken.VALUE_NULL ? null : readBase64Value(parser);
+                switch (fieldName) {
+                    case "ephemeralPublicKey":
+                        ephemeralPublicKey = value;
+                        break;
+                    case "encryptedData":
+                        encryptedData = value;
+                        break;
+                    case "mac":
+                        mac = value;
+                        break;
+                    case "nonce":
+                        nonce = value;
+                        break;
+                    default:
+                        throw new JsonParseException(parser, "Unknown field in ECIES request data: " + fieldName);
+                }
+            }
+            if (parser.currentToken() != JsonToken.END_OBJECT) {
+                throw new JsonParseException(parser, "Invalid ECIES request data");
+            }
+            return new EciesCryptogram(ephemeralPublicKey, mac, encryptedData, nonce);
+        }
+    }
+
+    /**
+     * Decode Base64 encoded string value at the current parser position.
+     *
+     * @param parser JSON parser.
+     * @return Decoded value.
+     * @throws IOException In case the value is not a Base64 encoded string.
+     */
+    private byte[] readBase64Value(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.VALUE_STRING) {
+            throw new JsonParseException(parser, "Expected Base64 encoded string in ECIES request data");
+        }
+        return parser.getBinaryValue(Base64Variants.MIME_NO_LINEFEEDS);
+    }
+
+    /**
+     * Resolve activation ID for given ECIES scope.
+     *
+     * @param encryptionContext ECIES encryption context.
+     * @param eciesScope ECIES scope.
+     * @return Activation ID in activation scope, null in application scope.
+     * @throws PowerAuthEncryptionException In case activation ID is missing or ECIES scope is not supported.
+     */
+    private String resolveActivationId(EciesEncryptionContext encryptionContext, EciesScope eciesScope) throws PowerAuthEncryptionException {
+        switch (eciesScope) {
+            case ACTIVATION_SCOPE:
+                final String activationId = encryptionContext.getActivationId();
+                if (activationId == null) {
+                    logger.warn("Activation ID is required in ECIES activation scope");
+                    throw new PowerAuthEncryptionException();
+                }
+                return activationId;
+            case APPLICATION_SCOPE:
+                return null;
+            default:
+                logger.warn("Unsupported ECIES scope: {}", eciesScope);
+                throw new PowerAuthEncryptionException();
+        }
+    }
+
+    /**
+     * Construct ECIES decryptor from ECIES decryptor parameters.
+     *
+     * @param decryptorParameters ECIES decryptor parameters.
+     * @param ephemeralPublicKeyBytes Ephemeral public key bytes.
+     * @return ECIES decryptor.
+     */
+    private EciesDecryptor createEciesDecryptor(PowerAuthEciesDecryptorParameters decryptorParameters, byte[] ephemeralPublicKeyBytes) {
+        // Prepare envelope key and sharedInfo2 parameter for decryptor
+        final byte[] secretKey = BaseEncoding.base64().decode(decryptorParameters.getSecretKey());
+        final EciesEnvelopeKey envelopeKey = new EciesEnvelopeKey(secretKey, ephemeralPublicKeyBytes);
+        final byte[] sharedInfo2 = BaseEncoding.base64().decode(decryptorParameters.getSharedInfo2());
+        return eciesFactory.getEciesDecryptor(envelopeKey, sharedInfo2);
+    }
+
     /**
      * Convert byte[] request data to Object with given type.
      *
      * @param requestData Raw request data.
-     * @param requestType Class specifying request type.
+     * @param requestType Type of request object, including generic type parameters.
      * @param <T> Type of request object.
      * @return Request object.
      * @throws IOException In case request object could not be deserialized.
      */
     @SuppressWarnings("unchecked") // byte[] conversion to T is unchecked, detected when compiling with new Java
-    private <T> T deserializeRequestData(byte[] requestData, Class<T> requestType) throws IOException {
-        if (requestType.equals(byte[].class)) {
+    private <T> T deserializeRequestData(byte[] requestData, Type requestType) throws IOException {
+        if (byte[].class.equals(requestType)) {
             // Raw data without deserialization from JSON
             return (T) requestData;
         } else {
             // Object is deserialized from JSON based on request type
-            return objectMapper.readValue(requestData, requestType);
+            return objectMapper.readValue(requestData, objectMapper.getTypeFactory().constructType(requestType));
         }
     }
 
@@ -246,14 +543,12 @@ public abstract class PowerAuthEncryptionProviderBase {
     /**
      * Extract context required for ECIES encryption from either encryption or signature HTTP header.
      *
-     * @param request HTTP servlet request.
+     * @param encryptionHttpHeader Value of PowerAuth encryption HTTP header.
+     * @param signatureHttpHeader Value of PowerAuth signature HTTP header.
      * @return Context for ECIES encryption.
      * @throws PowerAuthEncryptionException Thrown when HTTP header with ECIES data is invalid.
      */
-    private EciesEncryptionContext extractEciesEncryptionContext(HttpServletRequest request) throws PowerAuthEncryptionException {
-        final String encryptionHttpHeader = request.getHeader(PowerAuthEncryptionHttpHeader.HEADER_NAME);
-        final String signatureHttpHeader = request.getHeader(PowerAuthSignatureHttpHeader.HEADER_NAME);
-
+    private EciesEncryptionContext extractEciesEncryptionContext(String encryptionHttpHeader, String signatureHttpHeader) throws PowerAuthEncryptionException {
         // Check that at least one PowerAuth HTTP header with parameters for ECIES is present
         if (encryptionHttpHeader == null && signatureHttpHeader == null) {
             logger.warn("Signature HTTP header is invalid");
@@ -0,0 +1,106 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.token;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded in-memory store of token records with limited record lifetime. The store is fed by the application,
+ * for example from a provisioning hook or a token feed, and it is used as a {@link PowerAuthTokenRecordProvider}
+ * for local token digest verification.
+ * <br><br>
+ * Token records are snapshots of the token and activation state, so the lifetime of a record is limited
+ * by {@link #MAX_TIME_TO_LIVE}. The application should replace the record or discard it using
+ * {@link #removeTokenRecordsForActivation(String)} in all nodes when the activation status changes.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class InMemoryTokenRecordStore implements PowerAuthTokenRecordProvider {
+
+    /**
+     * Maximum lifetime of a token record.
+     */
+    public static final Duration MAX_TIME_TO_LIVE = Duration.ofMinutes(15);
+
+    private final Cache<String, PowerAuthTokenRecord> tokenRecords;
+
+    /**
+     * Constructor with store limits.
+     *
+     * @param maxSize Maximum number of stored token records.
+     * @param timeToLive Lifetime of a token record since it was stored, at most {@link #MAX_TIME_TO_LIVE}.
+     */
+    public InMemoryTokenRecordStore(long maxSize, Duration timeToLive) {
+        if (timeToLive.compareTo(MAX_TIME_TO_LIVE) > 0) {
+            throw new IllegalArgumentException("Token record lifetime exceeds maximum lifetime: " + MAX_TIME_TO_LIVE);
+        }
+        this.tokenRecords = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(timeToLive.toMillis(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Store a token record.
+     *
+     * @param tokenRecord Token record.
+     */
+    public void storeTokenRecord(PowerAuthTokenRecord tokenRecord) {
+        tokenRecords.put(tokenRecord.getTokenId(), tokenRecord);
+    }
+
+    /**
+     * Remove a token record.
+     *
+     * @param tokenId Token ID.
+     */
+    public void removeTokenRecord(String tokenId) {
+        tokenRecords.invalidate(tokenId);
+    }
+
+    /**
+     * Remove all token records which belong to given activation.
+     *
+     * @param activationId Activation ID.
+     */
+    public void removeTokenRecordsForActivation(String activationId) {
+        tokenRecords.asMap().values().removeIf(tokenRecord -> activationId.equals(tokenRecord.getActivationId()));
+    }
+
+    @Override
+    public PowerAuthTokenRecord findTokenRecord(String tokenId) {
+        return tokenRecords.getIfPresent(tokenId);
+    }
+
+    @Override
+    public void tokenWasRemoved(String tokenId) {
+        removeTokenRecord(tokenId);
+    }
+
+    @Override
+    public void activationWasRemoved(String activationId) {
+        removeTokenRecordsForActivation(activationId);
+    }
+
+}
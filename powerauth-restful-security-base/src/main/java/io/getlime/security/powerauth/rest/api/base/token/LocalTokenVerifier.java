@@ -0,0 +1,219 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.token;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.BaseEncoding;
+import io.getlime.security.powerauth.crypto.lib.util.TokenUtils;
+import io.getlime.security.powerauth.rest.api.base.activation.ActivationStatus;
+import io.getlime.security.powerauth.rest.api.base.activation.ActivationStatusInvalidationPublisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verifier of token digests which uses token records provided by the application instead of calling PowerAuth server.
+ * <br><br>
+ * The verifier only decides about tokens for which a token record of an active activation is available and the token
+ * timestamp is within the configured tolerance. In all other cases the token should be validated by PowerAuth server,
+ * which rejects tokens of blocked or removed activations.
+ * <br><br>
+ * A token header is accepted locally only once. Nonces of verified tokens are remembered for twice the timestamp
+ * tolerance, which is the period during which the token timestamp is accepted, so that a captured token header
+ * cannot be replayed. The number of remembered nonces is bounded, it should cover the number of locally verified
+ * tokens within the period.
+ * <br><br>
+ * Token records are snapshots, a change of the activation status on PowerAuth server is reflected only when
+ * the record is replaced, discarded or expired, so the record lifetime should be short. Token records of a removed
+ * activation are discarded in this node, the removal is propagated to other nodes using
+ * {@link ActivationStatusInvalidationPublisher} set by {@link #setInvalidationPublisher(ActivationStatusInvalidationPublisher)}.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class LocalTokenVerifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalTokenVerifier.class);
+
+    /**
+     * Default tolerance of difference between token timestamp and current time.
+     */
+    public static final Duration DEFAULT_TIMESTAMP_TOLERANCE = Duration.ofMinutes(5);
+
+    /**
+     * Default maximum number of remembered token nonces.
+     */
+    public static final long DEFAULT_MAX_SEEN_NONCES = 100000;
+
+    private static final int TOKEN_NONCE_LENGTH = 16;
+
+    private final TokenUtils tokenUtils = new TokenUtils();
+    private final PowerAuthTokenRecordProvider tokenRecordProvider;
+    private final long timestampToleranceMillis;
+    private final Cache<List<String>, Boolean> seenNonces;
+
+    private ActivationStatusInvalidationPublisher invalidationPublisher;
+
+    /**
+     * Constructor with token record provider and default timestamp tolerance.
+     *
+     * @param tokenRecordProvider Token record provider.
+     */
+    public LocalTokenVerifier(PowerAuthTokenRecordProvider tokenRecordProvider) {
+        this(tokenRecordProvider, DEFAULT_TIMESTAMP_TOLERANCE);
+    }
+
+    /**
+     * Constructor with token record provider and timestamp tolerance.
+     *
+     * @param tokenRecordProvider Token record provider.
+     * @param timestampTolerance Tolerance of difference between token timestamp and current time.
+     */
+    public LocalTokenVerifier(PowerAuthTokenRecordProvider tokenRecordProvider, Duration timestampTolerance) {
+        this(tokenRecordProvider, timestampTolerance, DEFAULT_MAX_SEEN_NONCES);
+    }
+
+    /**
+     * Constructor with token record provider, timestamp tolerance and maximum number of remembered token nonces.
+     *
+     * @param tokenRecordProvider Token record provider.
+     * @param timestampTolerance Tolerance of difference between token timestamp and current time.
+     * @param maxSeenNonces Maximum number of remembered token nonces.
+     */
+    public LocalTokenVerifier(PowerAuthTokenRecordProvider tokenRecordProvider, Duration timestampTolerance, long maxSeenNonces) {
+        this.tokenRecordProvider = tokenRecordProvider;
+        this.timestampToleranceMillis = timestampTolerance.toMillis();
+        this.seenNonces = CacheBuilder.newBuilder()
+                .maximumSize(maxSeenNonces)
+                .expireAfterWrite(2 * timestampToleranceMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Set publisher of activation removal messages to other nodes. The publisher should use a channel dedicated
+     * to token records, other nodes should call {@link #onInvalidationMessage(String)} when a message is received.
+     *
+     * @param invalidationPublisher Invalidation publisher.
+     */
+    public void setInvalidationPublisher(ActivationStatusInvalidationPublisher invalidationPublisher) {
+        this.invalidationPublisher = invalidationPublisher;
+    }
+
+    /**
+     * Find a token record which can be used for local verification of the token digest.
+     *
+     * @param tokenId Token ID.
+     * @param timestamp Token timestamp in milliseconds.
+     * @return Token record or null in case the token should be validated by PowerAuth server.
+     */
+    public PowerAuthTokenRecord findTokenRecord(String tokenId, long timestamp) {
+        if (Math.abs(System.currentTimeMillis() - timestamp) > timestampToleranceMillis) {
+            logger.debug("Token timestamp is outside of local verification window, token ID: {}", tokenId);
+            return null;
+        }
+        final PowerAuthTokenRecord tokenRecord = tokenRecordProvider.findTokenRecord(tokenId);
+        if (tokenRecord == null || tokenRecord.getTokenSecret() == null) {
+            return null;
+        }
+        if (tokenRecord.getActivationStatus() != ActivationStatus.ACTIVE) {
+            logger.debug("Activation is not active, token ID: {}, activation status: {}", tokenId, tokenRecord.getActivationStatus());
+            return null;
+        }
+        return tokenRecord;
+    }
+
+    /**
+     * Verify token digest using the token secret from token record. A token with valid digest is rejected
+     * in case its nonce was already used with the same token.
+     *
+     * @param tokenRecord Token record.
+     * @param tokenDigest Token digest from HTTP header, Base64 encoded.
+     * @param nonce Token nonce from HTTP header, Base64 encoded.
+     * @param timestamp Token timestamp in milliseconds.
+     * @return Whether token digest is valid and the token nonce was not used before.
+     */
+    public boolean verifyTokenDigest(PowerAuthTokenRecord tokenRecord, String tokenDigest, String nonce, long timestamp) {
+        try {
+            final byte[] nonceBytes = BaseEncoding.base64().decode(nonce);
+            if (nonceBytes.length != TOKEN_NONCE_LENGTH) {
+                logger.warn("Invalid token nonce length: {}", nonceBytes.length);
+                return false;
+            }
+            final byte[] timestampBytes = tokenUtils.convertTokenTimestamp(timestamp);
+            final byte[] expectedDigest = tokenUtils.computeTokenDigest(nonceBytes, timestampBytes, tokenRecord.getTokenSecret());
+            if (!MessageDigest.isEqual(expectedDigest, BaseEncoding.base64().decode(tokenDigest))) {
+                return false;
+            }
+            // Remember the nonce only for valid digests, so that invalid tokens cannot block a nonce
+            final List<String> nonceKey = Arrays.asList(tokenRecord.getTokenId(), BaseEncoding.base64().encode(nonceBytes));
+            if (seenNonces.asMap().putIfAbsent(nonceKey, Boolean.TRUE) != null) {
+                logger.warn("Token nonce was already used, token ID: {}", tokenRecord.getTokenId());
+                return false;
+            }
+            return true;
+        } catch (Exception ex) {
+            logger.warn("Local token verification failed, error: {}", ex.getMessage());
+            logger.debug("Error details", ex);
+            return false;
+        }
+    }
+
+    /**
+     * Notify token record provider that a token was removed.
+     *
+     * @param tokenId Token ID.
+     */
+    public void tokenWasRemoved(String tokenId) {
+        tokenRecordProvider.tokenWasRemoved(tokenId);
+    }
+
+    /**
+     * Notify token record provider that an activation was removed and publish the removal to other nodes.
+     *
+     * @param activationId Activation ID.
+     */
+    public void activationWasRemoved(String activationId) {
+        onInvalidationMessage(activationId);
+        if (invalidationPublisher != null) {
+            try {
+                invalidationPublisher.publishInvalidation(activationId);
+            } catch (Exception ex) {
+                logger.warn("Token record invalidation could not be published, activation ID: {}, error: {}", activationId, ex.getMessage());
+                logger.debug("Error details", ex);
+            }
+        }
+    }
+
+    /**
+     * Notify token record provider that an activation was removed in another node. The method should be called
+     * when an invalidation message published by another node is received.
+     *
+     * @param activationId Activation ID.
+     */
+    public void onInvalidationMessage(String activationId) {
+        tokenRecordProvider.activationWasRemoved(activationId);
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.token;
+
+import io.getlime.security.powerauth.crypto.lib.enums.PowerAuthSignatureTypes;
+import io.getlime.security.powerauth.rest.api.base.activation.ActivationStatus;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class used for storing token secret together with attributes of the activation the token belongs to.
+ * The record contains all data required for token digest verification without a call to PowerAuth server.
+ * The activation status is a snapshot taken when the record was provisioned, the record should be replaced
+ * or discarded when the activation status changes.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class PowerAuthTokenRecord {
+
+    private final String tokenId;
+    private final byte[] tokenSecret;
+    private final String activationId;
+    private final ActivationStatus activationStatus;
+    private final String userId;
+    private final Long applicationId;
+    private final List<String> applicationRoles;
+    private final List<String> activationFlags;
+    private final PowerAuthSignatureTypes signatureType;
+
+    /**
+     * Constructor with all token record attributes.
+     *
+     * @param tokenId Token ID.
+     * @param tokenSecret Token secret.
+     * @param activationId Activation ID.
+     * @param activationStatus Activation status.
+     * @param userId User ID.
+     * @param applicationId Application ID.
+     * @param applicationRoles Application roles.
+     * @param activationFlags Activation flags.
+     * @param signatureType Signature type used when the token was created.
+     */
+    public PowerAuthTokenRecord(String tokenId, byte[] tokenSecret, String activationId, ActivationStatus activationStatus,
+                                String userId, Long applicationId, List<String> applicationRoles,
+                                List<String> activationFlags, PowerAuthSignatureTypes signatureType) {
+        this.tokenId = tokenId;
+        this.tokenSecret = tokenSecret == null ? null : Arrays.copyOf(tokenSecret, tokenSecret.length);
+        this.activationId = activationId;
+        this.activationStatus = activationStatus;
+        this.userId = userId;
+        this.applicationId = applicationId;
+        this.applicationRoles = applicationRoles == null ? Collections.emptyList() : Collections.unmodifiableList(applicationRoles);
+        this.activationFlags = activationFlags == null ? Collections.emptyList() : Collections.unmodifiableList(activationFlags);
+        this.signatureType = signatureType;
+    }
+
+    /**
+     * Get token ID.
+     * @return Token ID.
+     */
+    public String getTokenId() {
+        return tokenId;
+    }
+
+    /**
+     * Get token secret.
+     * @return Token secret.
+     */
+    public byte[] getTokenSecret() {
+        return tokenSecret;
+    }
+
+    /**
+     * Get activation ID.
+     * @return Activation ID.
+     */
+    public String getActivationId() {
+        return activationId;
+    }
+
+    /**
+     * Get activation status.
+     * @return Activation status.
+     */
+    public ActivationStatus getActivationStatus() {
+        return activationStatus;
+    }
+
+    /**
+     * Get user ID.
+     * @return User ID.
+     */
+    public String getUserId() {
+        return userId;
+    }
+
+    /**
+     * Get application ID.
+     * @return Application ID.
+     */
+    public Long getApplicationId() {
+        return applicationId;
+    }
+
+    /**
+     * Get application roles.
+     * @return Application roles.
+     */
+    public List<String> getApplicationRoles() {
+        return applicationRoles;
+    }
+
+    /**
+     * Get activation flags.
+     * @return Activation flags.
+     */
+    public List<String> getActivationFlags() {
+        return activationFlags;
+    }
+
+    /**
+     * Get signature type used when the token was created.
+     * @return Signature type.
+     */
+    public PowerAuthSignatureTypes getSignatureType() {
+        return signatureType;
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.token;
+
+/**
+ * Interface which enables provisioning of token records for local token digest verification. The implementation
+ * decides where the token secrets come from, for example from a feed published by the PowerAuth server deployment.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public interface PowerAuthTokenRecordProvider {
+
+    /**
+     * Find a token record for given token ID.
+     *
+     * @param tokenId Token ID.
+     * @return Token record or null in case the record is not available and token should be validated by PowerAuth server.
+     */
+    PowerAuthTokenRecord findTokenRecord(String tokenId);
+
+    /**
+     * Method is called when a token is removed using the standard token removal endpoint. Default implementation is no-op.
+     *
+     * @param tokenId Token ID.
+     */
+    default void tokenWasRemoved(String tokenId) {}
+
+    /**
+     * Method is called when an activation is removed using the standard activation removal endpoint. All token
+     * records which belong to the activation should be discarded. Default implementation is no-op.
+     *
+     * @param activationId Activation ID.
+     */
+    default void activationWasRemoved(String activationId) {}
+
+}
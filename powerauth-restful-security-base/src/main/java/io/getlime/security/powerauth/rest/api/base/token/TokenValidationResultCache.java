@@ -0,0 +1,124 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.token;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.getlime.security.powerauth.rest.api.base.authentication.PowerAuthApiAuthentication;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded cache of successful token validation results. The results are keyed by token ID, token digest and nonce,
+ * so that only exact repetitions of a token header, such as client retries, are served from the cache.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class TokenValidationResultCache {
+
+    private final Cache<CacheKey, PowerAuthApiAuthentication> validationResults;
+
+    /**
+     * Constructor with cache limits.
+     *
+     * @param maxSize Maximum number of cached validation results.
+     * @param timeToLive Lifetime of a validation result since it was cached.
+     */
+    public TokenValidationResultCache(long maxSize, Duration timeToLive) {
+        this.validationResults = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(timeToLive.toMillis(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Get a cached validation result.
+     *
+     * @param tokenId Token ID.
+     * @param tokenDigest Token digest.
+     * @param nonce Token nonce.
+     * @return Cached authentication or null in case the result is not cached.
+     */
+    public PowerAuthApiAuthentication getValidationResult(String tokenId, String tokenDigest, String nonce) {
+        return validationResults.getIfPresent(new CacheKey(tokenId, tokenDigest, nonce));
+    }
+
+    /**
+     * Cache a successful validation result.
+     *
+     * @param tokenId Token ID.
+     * @param tokenDigest Token digest.
+     * @param nonce Token nonce.
+     * @param authentication Authentication obtained by successful token validation.
+     */
+    public void putValidationResult(String tokenId, String tokenDigest, String nonce, PowerAuthApiAuthentication authentication) {
+        validationResults.put(new CacheKey(tokenId, tokenDigest, nonce), authentication);
+    }
+
+    /**
+     * Discard all validation results of given token.
+     *
+     * @param tokenId Token ID.
+     */
+    public void invalidateToken(String tokenId) {
+        validationResults.asMap().keySet().removeIf(key -> key.tokenId.equals(tokenId));
+    }
+
+    /**
+     * Discard all validation results of tokens which belong to given activation.
+     *
+     * @param activationId Activation ID.
+     */
+    public void invalidateActivation(String activationId) {
+        validationResults.asMap().values().removeIf(authentication -> activationId.equals(authentication.getActivationId()));
+    }
+
+    /**
+     * Key of cached validation result.
+     */
+    private static final class CacheKey {
+
+        private final String tokenId;
+        private final String tokenDigest;
+        private final String nonce;
+
+        CacheKey(String tokenId, String tokenDigest, String nonce) {
+            this.tokenId = tokenId;
+            this.tokenDigest = tokenDigest;
+            this.nonce = nonce;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final CacheKey cacheKey = (CacheKey) o;
+            return tokenId.equals(cacheKey.tokenId) && tokenDigest.equals(cacheKey.tokenDigest) && nonce.equals(cacheKey.nonce);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(tokenId, tokenDigest, nonce);
+        }
+    }
+
+}
@@ -0,0 +1,241 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.encryption;
+
+import com.google.common.io.ByteStreams;
+import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.EciesEnvelopeKey;
+import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.exception.EciesException;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for chunked ECIES encryption.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+class EciesChunkedCipherTest {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private byte[] secretKey;
+    private byte[] ephemeralPublicKey;
+    private byte[] sharedInfo2;
+    private byte[] nonce;
+
+    @BeforeAll
+    static void setUpProvider() {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    @BeforeEach
+    void setUp() {
+        secretKey = randomBytes(48);
+        ephemeralPublicKey = randomBytes(33);
+        sharedInfo2 = randomBytes(32);
+        nonce = randomBytes(16);
+    }
+
+    @Test
+    void testRoundTrip() throws Exception {
+        final EciesChunkedCipher cipher = cipher(ephemeralPublicKey, nonce);
+        final int[] lengths = {0, 1, 15, 16, EciesChunkedCipher.MAX_CHUNK_LENGTH - 1, EciesChunkedCipher.MAX_CHUNK_LENGTH,
+                EciesChunkedCipher.MAX_CHUNK_LENGTH + 1, 3 * EciesChunkedCipher.MAX_CHUNK_LENGTH + 123};
+        for (int length : lengths) {
+            final byte[] plaintext = randomBytes(length);
+            for (EciesChunkedCipher.Direction direction : EciesChunkedCipher.Direction.values()) {
+                final byte[] encrypted = encrypt(cipher, plaintext, direction);
+                assertArrayEquals(plaintext, decrypt(cipher, encrypted, direction), "Round trip failed for length: " + length);
+            }
+        }
+    }
+
+    @Test
+    void testRoundTripWithSmallWrites() throws Exception {
+        final EciesChunkedCipher cipher = cipher(ephemeralPublicKey, nonce);
+        final byte[] plaintext = randomBytes(2 * EciesChunkedCipher.MAX_CHUNK_LENGTH + 7);
+        final ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        try (OutputStream outputStream = cipher.createEncryptingOutputStream(encrypted, EciesChunkedCipher.Direction.REQUEST)) {
+            for (byte b : plaintext) {
+                outputStream.write(b);
+            }
+        }
+        final InputStream inputStream = cipher.createDecryptingInputStream(new ByteArrayInputStream(encrypted.toByteArray()), EciesChunkedCipher.Direction.REQUEST);
+        final ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+        int b;
+        while ((b = inputStream.read()) != -1) {
+            decrypted.write(b);
+        }
+        assertArrayEquals(plaintext, decrypted.toByteArray());
+    }
+
+    @Test
+    void testDifferentNonceRejected() throws Exception {
+        final byte[] encrypted = encrypt(cipher(ephemeralPublicKey, nonce), randomBytes(100), EciesChunkedCipher.Direction.REQUEST);
+        final byte[] otherNonce = nonce.clone();
+        otherNonce[0] ^= 1;
+        assertThrows(IOException.class, () -> decrypt(cipher(ephemeralPublicKey, otherNonce), encrypted, EciesChunkedCipher.Direction.REQUEST));
+    }
+
+    @Test
+    void testDifferentEphemeralPublicKeyRejected() throws Exception {
+        final byte[] encrypted = encrypt(cipher(ephemeralPublicKey, nonce), randomBytes(100), EciesChunkedCipher.Direction.REQUEST);
+        final byte[] otherEphemeralPublicKey = ephemeralPublicKey.clone();
+        otherEphemeralPublicKey[1] ^= 1;
+        assertThrows(IOException.class, () -> decrypt(cipher(otherEphemeralPublicKey, nonce), encrypted, EciesChunkedCipher.Direction.REQUEST));
+    }
+
+    @Test
+    void testDifferentDirectionRejected() throws Exception {
+        final EciesChunkedCipher cipher = cipher(ephemeralPublicKey, nonce);
+        final byte[] encrypted = encrypt(cipher, randomBytes(100), EciesChunkedCipher.Direction.REQUEST);
+        assertThrows(IOException.class, () -> decrypt(cipher, encrypted, EciesChunkedCipher.Direction.RESPONSE));
+    }
+
+    @Test
+    void testModifiedCiphertextRejected() throws Exception {
+        final EciesChunkedCipher cipher = cipher(ephemeralPublicKey, nonce);
+        final byte[] encrypted = encrypt(cipher, randomBytes(100), EciesChunkedCipher.Direction.REQUEST);
+        encrypted[EciesChunkedCipher.CHUNK_HEADER_LENGTH] ^= 1;
+        assertThrows(IOException.class, () -> decrypt(cipher, encrypted, EciesChunkedCipher.Direction.REQUEST));
+    }
+
+    @Test
+    void testModifiedMacRejected() throws Exception {
+        final EciesChunkedCipher cipher = cipher(ephemeralPublicKey, nonce);
+        final byte[] encrypted = encrypt(cipher, randomBytes(100), EciesChunkedCipher.Direction.REQUEST);
+        encrypted[encrypted.length - 1] ^= 1;
+        assertThrows(IOException.class, () -> decrypt(cipher, encrypted, EciesChunkedCipher.Direction.REQUEST));
+    }
+
+    @Test
+    void testModifiedFlagsRejected() throws Exception {
+        final EciesChunkedCipher cipher = cipher(ephemeralPublicKey, nonce);
+        final byte[] encrypted = encrypt(cipher, randomBytes(2 * EciesChunkedCipher.MAX_CHUNK_LENGTH), EciesChunkedCipher.Direction.REQUEST);
+        // Mark the first chunk as the last one to truncate the payload
+        final List<byte[]> chunks = splitChunks(encrypted);
+        chunks.get(0)[0] = EciesChunkedCipher.FLAG_LAST_CHUNK;
+        assertThrows(IOException.class, () -> decrypt(cipher, chunks.get(0), EciesChunkedCipher.Direction.REQUEST));
+    }
+
+    @Test
+    void testTruncatedStreamRejected() throws Exception {
+        final EciesChunkedCipher cipher = cipher(ephemeralPublicKey, nonce);
+        final byte[] encrypted = encrypt(cipher, randomBytes(2 * EciesChunkedCipher.MAX_CHUNK_LENGTH), EciesChunkedCipher.Direction.REQUEST);
+        final List<byte[]> chunks = splitChunks(encrypted);
+        final byte[] truncated = join(chunks.subList(0, chunks.size() - 1));
+        assertThrows(IOException.class, () -> decrypt(cipher, truncated, EciesChunkedCipher.Direction.REQUEST));
+        final byte[] partial = Arrays.copyOf(encrypted, encrypted.length - 1);
+        assertThrows(IOException.class, () -> decrypt(cipher, partial, EciesChunkedCipher.Direction.REQUEST));
+    }
+
+    @Test
+    void testReorderedChunksRejected() throws Exception {
+        final EciesChunkedCipher cipher = cipher(ephemeralPublicKey, nonce);
+        final byte[] encrypted = encrypt(cipher, randomBytes(3 * EciesChunkedCipher.MAX_CHUNK_LENGTH), EciesChunkedCipher.Direction.REQUEST);
+        final List<byte[]> chunks = splitChunks(encrypted);
+        assertTrue(chunks.size() >= 3);
+        final List<byte[]> reordered = new ArrayList<>(chunks);
+        reordered.set(0, chunks.get(1));
+        reordered.set(1, chunks.get(0));
+        assertThrows(IOException.class, () -> decrypt(cipher, join(reordered), EciesChunkedCipher.Direction.REQUEST));
+    }
+
+    @Test
+    void testTrailingDataRejected() throws Exception {
+        final EciesChunkedCipher cipher = cipher(ephemeralPublicKey, nonce);
+        final byte[] encrypted = encrypt(cipher, randomBytes(100), EciesChunkedCipher.Direction.REQUEST);
+        final byte[] extended = Arrays.copyOf(encrypted, encrypted.length + 1);
+        assertThrows(IOException.class, () -> decrypt(cipher, extended, EciesChunkedCipher.Direction.REQUEST));
+    }
+
+    @Test
+    void testInvalidNonceLengthRejected() {
+        assertThrows(EciesException.class, () -> cipher(ephemeralPublicKey, randomBytes(8)));
+        assertThrows(EciesException.class, () -> cipher(ephemeralPublicKey, new byte[0]));
+    }
+
+    @Test
+    void testSignatureData() {
+        assertArrayEquals("key&nonce".getBytes(StandardCharsets.UTF_8), PowerAuthEciesChunkedEncryption.signatureData("key", "nonce"));
+        assertFalse(Arrays.equals(PowerAuthEciesChunkedEncryption.signatureData("key", "nonce"), PowerAuthEciesChunkedEncryption.signatureData("key", "other")));
+    }
+
+    private EciesChunkedCipher cipher(byte[] ephemeralPublicKey, byte[] nonce) throws Exception {
+        return new EciesChunkedCipher(new EciesEnvelopeKey(secretKey, ephemeralPublicKey), sharedInfo2, nonce);
+    }
+
+    private static byte[] encrypt(EciesChunkedCipher cipher, byte[] plaintext, EciesChunkedCipher.Direction direction) throws IOException {
+        final ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        try (OutputStream outputStream = cipher.createEncryptingOutputStream(encrypted, direction)) {
+            outputStream.write(plaintext);
+        }
+        return encrypted.toByteArray();
+    }
+
+    private static byte[] decrypt(EciesChunkedCipher cipher, byte[] encrypted, EciesChunkedCipher.Direction direction) throws IOException {
+        try (InputStream inputStream = cipher.createDecryptingInputStream(new ByteArrayInputStream(encrypted), direction)) {
+            return ByteStreams.toByteArray(inputStream);
+        }
+    }
+
+    private static List<byte[]> splitChunks(byte[] encrypted) {
+        final List<byte[]> chunks = new ArrayList<>();
+        int offset = 0;
+        while (offset < encrypted.length) {
+            final int length = ByteBuffer.wrap(encrypted, offset + 1, 4).getInt();
+            final int chunkLength = EciesChunkedCipher.CHUNK_HEADER_LENGTH + length + EciesChunkedCipher.MAC_LENGTH;
+            chunks.add(Arrays.copyOfRange(encrypted, offset, offset + chunkLength));
+            offset += chunkLength;
+        }
+        return chunks;
+    }
+
+    private static byte[] join(List<byte[]> chunks) {
+        final ByteArrayOutputStream result = new ByteArrayOutputStream();
+        for (byte[] chunk : chunks) {
+            result.write(chunk, 0, chunk.length);
+        }
+        return result.toByteArray();
+    }
+
+    private static byte[] randomBytes(int length) {
+        final byte[] bytes = new byte[length];
+        RANDOM.nextBytes(bytes);
+        return bytes;
+    }
+
+}
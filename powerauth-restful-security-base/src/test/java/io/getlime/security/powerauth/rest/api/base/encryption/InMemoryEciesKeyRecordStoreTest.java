@@ -0,0 +1,153 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.encryption;
+
+import com.google.common.cache.Cache;
+import com.google.common.primitives.Bytes;
+import io.getlime.security.powerauth.rest.api.base.activation.ActivationStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for in-memory store of ECIES key records.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+class InMemoryEciesKeyRecordStoreTest {
+
+    private static final String ACTIVATION_ID = "e43a5dec-afea-4a10-a80b-b2183399f16b";
+    private static final String OTHER_ACTIVATION_ID = "0bc5c1e3-1d34-4e4c-9a9c-d84bdec6a3a2";
+    private static final String APPLICATION_KEY = "w4pQ5aMVs6Sd2fYqjGjkzA==";
+    private static final String APPLICATION_SECRET = "1hDjf0oVnV2HIiRMVE8MCQ==";
+
+    private final SecureRandom random = new SecureRandom();
+
+    private InMemoryEciesKeyRecordStore keyRecordStore;
+
+    @BeforeEach
+    void setUp() {
+        keyRecordStore = new InMemoryEciesKeyRecordStore(1000, Duration.ofMinutes(5));
+    }
+
+    @Test
+    void testStoreAndFind() {
+        final PowerAuthEciesKeyRecord keyRecord = keyRecord(ACTIVATION_ID, randomBytes(32), randomBytes(16));
+        keyRecordStore.storeKeyRecord(keyRecord);
+        final PowerAuthEciesKeyRecord foundRecord = keyRecordStore.findKeyRecord(ACTIVATION_ID, APPLICATION_KEY);
+        assertNotNull(foundRecord);
+        assertEquals(ACTIVATION_ID, foundRecord.getActivationId());
+        assertEquals(APPLICATION_KEY, foundRecord.getApplicationKey());
+        assertEquals(APPLICATION_SECRET, foundRecord.getApplicationSecret());
+        assertTrue(foundRecord.isApplicationVersionSupported());
+        assertEquals(ActivationStatus.ACTIVE, foundRecord.getActivationStatus());
+        assertArrayEquals(keyRecord.getServerPrivateKey(), foundRecord.getServerPrivateKey());
+        assertArrayEquals(keyRecord.getTransportKey(), foundRecord.getTransportKey());
+        assertNull(keyRecordStore.findKeyRecord(OTHER_ACTIVATION_ID, APPLICATION_KEY));
+    }
+
+    @Test
+    void testKeyMaterialEncryptedAtRest() throws Exception {
+        final byte[] serverPrivateKey = randomBytes(32);
+        final byte[] transportKey = randomBytes(16);
+        keyRecordStore.storeKeyRecord(keyRecord(ACTIVATION_ID, serverPrivateKey, transportKey));
+        final byte[] encryptedKeyMaterial = encryptedKeyMaterial(storedRecords().get(Arrays.asList(ACTIVATION_ID, APPLICATION_KEY)));
+        assertEquals(-1, Bytes.indexOf(encryptedKeyMaterial, serverPrivateKey));
+        assertEquals(-1, Bytes.indexOf(encryptedKeyMaterial, transportKey));
+        assertEquals(-1, Bytes.indexOf(encryptedKeyMaterial, APPLICATION_SECRET.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void testEncryptedRecordBoundToRecordKey() throws Exception {
+        keyRecordStore.storeKeyRecord(keyRecord(ACTIVATION_ID, randomBytes(32), randomBytes(16)));
+        keyRecordStore.storeKeyRecord(keyRecord(OTHER_ACTIVATION_ID, randomBytes(32), randomBytes(16)));
+        final Map<List<String>, Object> storedRecords = storedRecords();
+        // Key material of one activation moved to another activation cannot be decrypted
+        storedRecords.put(Arrays.asList(OTHER_ACTIVATION_ID, APPLICATION_KEY), storedRecords.get(Arrays.asList(ACTIVATION_ID, APPLICATION_KEY)));
+        assertNull(keyRecordStore.findKeyRecord(OTHER_ACTIVATION_ID, APPLICATION_KEY));
+        assertNotNull(keyRecordStore.findKeyRecord(ACTIVATION_ID, APPLICATION_KEY));
+    }
+
+    @Test
+    void testTamperedRecordRejected() throws Exception {
+        keyRecordStore.storeKeyRecord(keyRecord(ACTIVATION_ID, randomBytes(32), randomBytes(16)));
+        final byte[] encryptedKeyMaterial = encryptedKeyMaterial(storedRecords().get(Arrays.asList(ACTIVATION_ID, APPLICATION_KEY)));
+        encryptedKeyMaterial[0] ^= 1;
+        assertNull(keyRecordStore.findKeyRecord(ACTIVATION_ID, APPLICATION_KEY));
+    }
+
+    @Test
+    void testFindTransportKey() {
+        final byte[] transportKey = randomBytes(16);
+        keyRecordStore.storeKeyRecord(keyRecord(ACTIVATION_ID, randomBytes(32), transportKey));
+        assertArrayEquals(transportKey, keyRecordStore.findTransportKey(ACTIVATION_ID));
+        assertNull(keyRecordStore.findTransportKey(OTHER_ACTIVATION_ID));
+        // Record replaced by a record without transport key
+        keyRecordStore.storeKeyRecord(keyRecord(ACTIVATION_ID, randomBytes(32), null));
+        assertNull(keyRecordStore.findTransportKey(ACTIVATION_ID));
+    }
+
+    @Test
+    void testRemoveKeyRecords() {
+        keyRecordStore.storeKeyRecord(keyRecord(ACTIVATION_ID, randomBytes(32), randomBytes(16)));
+        keyRecordStore.storeKeyRecord(keyRecord(OTHER_ACTIVATION_ID, randomBytes(32), randomBytes(16)));
+        keyRecordStore.activationWasRemoved(ACTIVATION_ID);
+        assertNull(keyRecordStore.findKeyRecord(ACTIVATION_ID, APPLICATION_KEY));
+        assertNull(keyRecordStore.findTransportKey(ACTIVATION_ID));
+        assertNotNull(keyRecordStore.findKeyRecord(OTHER_ACTIVATION_ID, APPLICATION_KEY));
+        keyRecordStore.removeKeyRecord(OTHER_ACTIVATION_ID, APPLICATION_KEY);
+        assertNull(keyRecordStore.findKeyRecord(OTHER_ACTIVATION_ID, APPLICATION_KEY));
+        assertNull(keyRecordStore.findTransportKey(OTHER_ACTIVATION_ID));
+    }
+
+    private PowerAuthEciesKeyRecord keyRecord(String activationId, byte[] serverPrivateKey, byte[] transportKey) {
+        return new PowerAuthEciesKeyRecord(activationId, APPLICATION_KEY, APPLICATION_SECRET, true, ActivationStatus.ACTIVE,
+                serverPrivateKey, transportKey);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<List<String>, Object> storedRecords() throws Exception {
+        final Field field = InMemoryEciesKeyRecordStore.class.getDeclaredField("keyRecords");
+        field.setAccessible(true);
+        return ((Cache<List<String>, Object>) field.get(keyRecordStore)).asMap();
+    }
+
+    private byte[] encryptedKeyMaterial(Object encryptedKeyRecord) throws Exception {
+        final Field field = encryptedKeyRecord.getClass().getDeclaredField("encryptedKeyMaterial");
+        field.setAccessible(true);
+        return (byte[]) field.get(encryptedKeyRecord);
+    }
+
+    private byte[] randomBytes(int length) {
+        final byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+}
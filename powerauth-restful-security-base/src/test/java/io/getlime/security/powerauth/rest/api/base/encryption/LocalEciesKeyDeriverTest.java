@@ -0,0 +1,235 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.encryption;
+
+import com.google.common.io.BaseEncoding;
+import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.EciesDecryptor;
+import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.EciesEncryptor;
+import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.EciesEnvelopeKey;
+import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.EciesFactory;
+import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.model.EciesCryptogram;
+import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.model.EciesSharedInfo1;
+import io.getlime.security.powerauth.crypto.lib.generator.KeyGenerator;
+import io.getlime.security.powerauth.crypto.lib.util.KeyConvertor;
+import io.getlime.security.powerauth.rest.api.base.activation.ActivationStatus;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.Security;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for local derivation of ECIES decryptor parameters.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+class LocalEciesKeyDeriverTest {
+
+    private static final String ACTIVATION_ID = "e43a5dec-afea-4a10-a80b-b2183399f16b";
+    private static final String APPLICATION_KEY = "w4pQ5aMVs6Sd2fYqjGjkzA==";
+    private static final String APPLICATION_SECRET = "1hDjf0oVnV2HIiRMVE8MCQ==";
+    private static final byte[] REQUEST_DATA = "{\"requestObject\":{\"value\":\"test\"}}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RESPONSE_DATA = "{\"status\":\"OK\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final EciesFactory eciesFactory = new EciesFactory();
+    private final KeyConvertor keyConvertor = new KeyConvertor();
+    private final KeyGenerator keyGenerator = new KeyGenerator();
+
+    private ECPublicKey masterPublicKey;
+    private byte[] masterPrivateKey;
+    private ECPublicKey serverPublicKey;
+    private byte[] serverPrivateKey;
+    private byte[] transportKey;
+    private InMemoryEciesKeyRecordStore keyRecordStore;
+    private LocalEciesKeyDeriver keyDeriver;
+
+    @BeforeAll
+    static void setUpProvider() {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        final KeyPair masterKeyPair = keyGenerator.generateKeyPair();
+        masterPublicKey = (ECPublicKey) masterKeyPair.getPublic();
+        masterPrivateKey = keyConvertor.convertPrivateKeyToBytes(masterKeyPair.getPrivate());
+        final KeyPair serverKeyPair = keyGenerator.generateKeyPair();
+        serverPublicKey = (ECPublicKey) serverKeyPair.getPublic();
+        serverPrivateKey = keyConvertor.convertPrivateKeyToBytes(serverKeyPair.getPrivate());
+        transportKey = keyGenerator.generateRandomBytes(16);
+        keyRecordStore = new InMemoryEciesKeyRecordStore(1000, Duration.ofMinutes(5));
+        keyDeriver = new LocalEciesKeyDeriver(keyRecordStore);
+    }
+
+    @Test
+    void testApplicationScopeRoundTrip() throws Exception {
+        keyRecordStore.storeKeyRecord(applicationKeyRecord(true));
+        for (String version : new String[]{"3.0", "3.1"}) {
+            final EciesEncryptor encryptor = eciesFactory.getEciesEncryptorForApplication(masterPublicKey,
+                    APPLICATION_SECRET.getBytes(StandardCharsets.UTF_8), EciesSharedInfo1.APPLICATION_SCOPE_GENERIC);
+            final EciesCryptogram requestCryptogram = encryptor.encryptRequest(REQUEST_DATA, "3.1".equals(version));
+            final PowerAuthEciesDecryptorParameters parameters = keyDeriver.deriveDecryptorParameters(null, APPLICATION_KEY,
+                    requestCryptogram.getEphemeralPublicKey(), version);
+            assertNotNull(parameters, "Parameters not derived for version: " + version);
+
+            // Parameters match the parameters derived by PowerAuth server
+            final EciesDecryptor serverDecryptor = eciesFactory.getEciesDecryptorForApplication(
+                    (ECPrivateKey) keyConvertor.convertBytesToPrivateKey(masterPrivateKey),
+                    APPLICATION_SECRET.getBytes(StandardCharsets.UTF_8), EciesSharedInfo1.APPLICATION_SCOPE_GENERIC);
+            serverDecryptor.initEnvelopeKey(requestCryptogram.getEphemeralPublicKey());
+            assertEquals(base64(serverDecryptor.getEnvelopeKey().getSecretKey()), parameters.getSecretKey());
+            assertEquals(base64(serverDecryptor.getSharedInfo2()), parameters.getSharedInfo2());
+
+            assertRoundTrip(encryptor, requestCryptogram, parameters, version);
+        }
+    }
+
+    @Test
+    void testActivationScopeRoundTrip() throws Exception {
+        keyRecordStore.storeKeyRecord(activationKeyRecord(ActivationStatus.ACTIVE, true));
+        for (String version : new String[]{"3.0", "3.1"}) {
+            final EciesEncryptor encryptor = eciesFactory.getEciesEncryptorForActivation(serverPublicKey,
+                    APPLICATION_SECRET.getBytes(StandardCharsets.UTF_8), transportKey, EciesSharedInfo1.ACTIVATION_SCOPE_GENERIC);
+            final EciesCryptogram requestCryptogram = encryptor.encryptRequest(REQUEST_DATA, "3.1".equals(version));
+            final PowerAuthEciesDecryptorParameters parameters = keyDeriver.deriveDecryptorParameters(ACTIVATION_ID, APPLICATION_KEY,
+                    requestCryptogram.getEphemeralPublicKey(), version);
+            assertNotNull(parameters, "Parameters not derived for version: " + version);
+
+            // Parameters match the parameters derived by PowerAuth server
+            final EciesDecryptor serverDecryptor = eciesFactory.getEciesDecryptorForActivation(
+                    (ECPrivateKey) keyConvertor.convertBytesToPrivateKey(serverPrivateKey),
+                    APPLICATION_SECRET.getBytes(StandardCharsets.UTF_8), transportKey, EciesSharedInfo1.ACTIVATION_SCOPE_GENERIC);
+            serverDecryptor.initEnvelopeKey(requestCryptogram.getEphemeralPublicKey());
+            assertEquals(base64(serverDecryptor.getEnvelopeKey().getSecretKey()), parameters.getSecretKey());
+            assertEquals(base64(serverDecryptor.getSharedInfo2()), parameters.getSharedInfo2());
+
+            assertRoundTrip(encryptor, requestCryptogram, parameters, version);
+        }
+    }
+
+    @Test
+    void testWrongTransportKey() throws Exception {
+        keyRecordStore.storeKeyRecord(activationKeyRecord(ActivationStatus.ACTIVE, true));
+        final EciesEncryptor encryptor = eciesFactory.getEciesEncryptorForActivation(serverPublicKey,
+                APPLICATION_SECRET.getBytes(StandardCharsets.UTF_8), keyGenerator.generateRandomBytes(16), EciesSharedInfo1.ACTIVATION_SCOPE_GENERIC);
+        final EciesCryptogram requestCryptogram = encryptor.encryptRequest(REQUEST_DATA, true);
+        final PowerAuthEciesDecryptorParameters parameters = keyDeriver.deriveDecryptorParameters(ACTIVATION_ID, APPLICATION_KEY,
+                requestCryptogram.getEphemeralPublicKey(), "3.1");
+        assertNotNull(parameters);
+        final EciesDecryptor decryptor = createDecryptor(parameters, requestCryptogram.getEphemeralPublicKey());
+        assertThrows(Exception.class, () -> decryptor.decryptRequest(requestCryptogram));
+    }
+
+    @Test
+    void testUnsupportedProtocolVersion() throws Exception {
+        keyRecordStore.storeKeyRecord(activationKeyRecord(ActivationStatus.ACTIVE, true));
+        final byte[] ephemeralPublicKey = ephemeralPublicKey();
+        for (String version : new String[]{"2.1", "3.2", null}) {
+            assertNull(keyDeriver.deriveDecryptorParameters(ACTIVATION_ID, APPLICATION_KEY, ephemeralPublicKey, version),
+                    "Parameters derived for version: " + version);
+        }
+    }
+
+    @Test
+    void testActivationNotActive() throws Exception {
+        final byte[] ephemeralPublicKey = ephemeralPublicKey();
+        for (ActivationStatus activationStatus : ActivationStatus.values()) {
+            keyRecordStore.storeKeyRecord(activationKeyRecord(activationStatus, true));
+            final PowerAuthEciesDecryptorParameters parameters = keyDeriver.deriveDecryptorParameters(ACTIVATION_ID, APPLICATION_KEY, ephemeralPublicKey, "3.1");
+            if (activationStatus == ActivationStatus.ACTIVE) {
+                assertNotNull(parameters);
+            } else {
+                assertNull(parameters, "Parameters derived for activation status: " + activationStatus);
+            }
+        }
+    }
+
+    @Test
+    void testApplicationVersionNotSupported() throws Exception {
+        final byte[] ephemeralPublicKey = ephemeralPublicKey();
+        keyRecordStore.storeKeyRecord(activationKeyRecord(ActivationStatus.ACTIVE, false));
+        assertNull(keyDeriver.deriveDecryptorParameters(ACTIVATION_ID, APPLICATION_KEY, ephemeralPublicKey, "3.1"));
+        keyRecordStore.storeKeyRecord(applicationKeyRecord(false));
+        assertNull(keyDeriver.deriveDecryptorParameters(null, APPLICATION_KEY, ephemeralPublicKey, "3.1"));
+    }
+
+    @Test
+    void testMissingKeyRecord() throws Exception {
+        final byte[] ephemeralPublicKey = ephemeralPublicKey();
+        assertNull(keyDeriver.deriveDecryptorParameters(ACTIVATION_ID, APPLICATION_KEY, ephemeralPublicKey, "3.1"));
+        // Activation scope requires the transport key
+        keyRecordStore.storeKeyRecord(new PowerAuthEciesKeyRecord(ACTIVATION_ID, APPLICATION_KEY, APPLICATION_SECRET, true,
+                ActivationStatus.ACTIVE, serverPrivateKey, null));
+        assertNull(keyDeriver.deriveDecryptorParameters(ACTIVATION_ID, APPLICATION_KEY, ephemeralPublicKey, "3.1"));
+        // Key record of another application
+        keyRecordStore.storeKeyRecord(activationKeyRecord(ActivationStatus.ACTIVE, true));
+        assertNull(keyDeriver.deriveDecryptorParameters(ACTIVATION_ID, "other-application-key", ephemeralPublicKey, "3.1"));
+    }
+
+    @Test
+    void testActivationRemoved() throws Exception {
+        keyRecordStore.storeKeyRecord(activationKeyRecord(ActivationStatus.ACTIVE, true));
+        keyDeriver.activationWasRemoved(ACTIVATION_ID);
+        assertNull(keyDeriver.deriveDecryptorParameters(ACTIVATION_ID, APPLICATION_KEY, ephemeralPublicKey(), "3.1"));
+        assertNull(keyDeriver.findTransportKey(ACTIVATION_ID));
+    }
+
+    private void assertRoundTrip(EciesEncryptor encryptor, EciesCryptogram requestCryptogram, PowerAuthEciesDecryptorParameters parameters, String version) throws Exception {
+        final EciesDecryptor decryptor = createDecryptor(parameters, requestCryptogram.getEphemeralPublicKey());
+        assertArrayEquals(REQUEST_DATA, decryptor.decryptRequest(requestCryptogram), "Request decryption failed for version: " + version);
+        final EciesCryptogram responseCryptogram = decryptor.encryptResponse(RESPONSE_DATA);
+        assertArrayEquals(RESPONSE_DATA, encryptor.decryptResponse(responseCryptogram), "Response decryption failed for version: " + version);
+    }
+
+    /**
+     * Create ECIES decryptor from decryptor parameters in the same way as the encryption provider.
+     */
+    private EciesDecryptor createDecryptor(PowerAuthEciesDecryptorParameters parameters, byte[] ephemeralPublicKey) {
+        final EciesEnvelopeKey envelopeKey = new EciesEnvelopeKey(BaseEncoding.base64().decode(parameters.getSecretKey()), ephemeralPublicKey);
+        return eciesFactory.getEciesDecryptor(envelopeKey, BaseEncoding.base64().decode(parameters.getSharedInfo2()));
+    }
+
+    private PowerAuthEciesKeyRecord applicationKeyRecord(boolean applicationVersionSupported) {
+        return new PowerAuthEciesKeyRecord(null, APPLICATION_KEY, APPLICATION_SECRET, applicationVersionSupported,
+                null, masterPrivateKey, null);
+    }
+
+    private PowerAuthEciesKeyRecord activationKeyRecord(ActivationStatus activationStatus, boolean applicationVersionSupported) {
+        return new PowerAuthEciesKeyRecord(ACTIVATION_ID, APPLICATION_KEY, APPLICATION_SECRET, applicationVersionSupported,
+                activationStatus, serverPrivateKey, transportKey);
+    }
+
+    private byte[] ephemeralPublicKey() throws Exception {
+        return keyConvertor.convertPublicKeyToBytes(keyGenerator.generateKeyPair().getPublic());
+    }
+
+    private static String base64(byte[] value) {
+        return BaseEncoding.base64().encode(value);
+    }
+
+}
@@ -0,0 +1,211 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.provider;
+
+import io.getlime.security.powerauth.rest.api.base.exception.PowerAuthActivationException;
+import io.getlime.security.powerauth.rest.api.model.entity.ActivationType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for orchestration of custom activation provider callbacks.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+class CustomActivationPipelineTest {
+
+    private static final String ACTIVATION_ID = "e43a5dec-afea-4a10-a80b-b2183399f16b";
+    private static final String USER_ID = "test-user";
+    private static final Long APP_ID = 1L;
+
+    private final List<String> calls = new CopyOnWriteArrayList<>();
+    private final List<Thread> callbackThreads = new CopyOnWriteArrayList<>();
+    private ExecutorService activationExecutor;
+
+    @BeforeEach
+    void setUp() {
+        activationExecutor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        activationExecutor.shutdownNow();
+    }
+
+    @Test
+    void testFlagsSavedBeforeCommit() throws Exception {
+        final CustomActivationPipeline pipeline = new CustomActivationPipeline(new TestActivationProvider(), null, null, null);
+        final Map<String, Object> processedAttributes = execute(pipeline);
+        assertEquals(Collections.singletonMap("processed", true), processedAttributes);
+        assertEquals(Arrays.asList("processCustomActivationAttributes", "getActivationFlags", "addActivationFlags", "shouldAutoCommitActivation",
+                "commitActivation", "activationWasCommitted"), calls);
+    }
+
+    @Test
+    void testFlagsSavedBeforeCommitWithAsyncAutoCommit() throws Exception {
+        final CustomActivationProvider activationProvider = new TestActivationProvider() {
+            @Override
+            public CompletionStage<Boolean> shouldAutoCommitActivationAsync(Map<String, String> identityAttributes, Map<String, Object> customAttributes, String activationId, String userId, Long appId, ActivationType activationType, Map<String, Object> context) {
+                return CompletableFuture.completedFuture(shouldAutoCommitActivation(identityAttributes, customAttributes, activationId, userId, appId, activationType, context));
+            }
+        };
+        final CustomActivationPipeline pipeline = new CustomActivationPipeline(activationProvider, activationExecutor, null, null);
+        execute(pipeline);
+        assertTrue(calls.indexOf("addActivationFlags") < calls.indexOf("commitActivation"));
+        assertEquals("activationWasCommitted", calls.get(calls.size() - 1));
+    }
+
+    @Test
+    void testFailingProcessAttributesPreventsCommit() {
+        final CustomActivationProvider activationProvider = new TestActivationProvider() {
+            @Override
+            public Map<String, Object> processCustomActivationAttributes(Map<String, Object> customAttributes, String activationId, String userId, Long appId, ActivationType activationType, Map<String, Object> context) throws PowerAuthActivationException {
+                throw new PowerAuthActivationException("Processing failed");
+            }
+        };
+        final CustomActivationPipeline pipeline = new CustomActivationPipeline(activationProvider, activationExecutor, null, null);
+        final PowerAuthActivationException ex = assertThrows(PowerAuthActivationException.class, () -> execute(pipeline));
+        assertEquals("Processing failed", ex.getMessage());
+        assertFalse(calls.contains("addActivationFlags"));
+        assertFalse(calls.contains("commitActivation"));
+        assertFalse(calls.contains("activationWasCommitted"));
+    }
+
+    @Test
+    void testFailingAsyncProcessAttributesPreventsCommit() {
+        final CustomActivationProvider activationProvider = new TestActivationProvider() {
+            @Override
+            public CompletionStage<Map<String, Object>> processCustomActivationAttributesAsync(Map<String, Object> customAttributes, String activationId, String userId, Long appId, ActivationType activationType, Map<String, Object> context) {
+                final CompletableFuture<Map<String, Object>> result = new CompletableFuture<>();
+                result.completeExceptionally(new PowerAuthActivationException("Processing failed"));
+                return result;
+            }
+
+            @Override
+            public CompletionStage<Boolean> shouldAutoCommitActivationAsync(Map<String, String> identityAttributes, Map<String, Object> customAttributes, String activationId, String userId, Long appId, ActivationType activationType, Map<String, Object> context) {
+                return CompletableFuture.completedFuture(true);
+            }
+        };
+        final CustomActivationPipeline pipeline = new CustomActivationPipeline(activationProvider, activationExecutor, null, null);
+        assertThrows(PowerAuthActivationException.class, () -> execute(pipeline));
+        assertFalse(calls.contains("commitActivation"));
+    }
+
+    @Test
+    void testSynchronousCallbacksRunInCallingThread() throws Exception {
+        final CustomActivationPipeline pipeline = new CustomActivationPipeline(new TestActivationProvider(), activationExecutor, null, null);
+        assertEquals(LinkedHashMap.class, pipeline.createContext().getClass());
+        execute(pipeline);
+        assertEquals(4, callbackThreads.size());
+        callbackThreads.forEach(thread -> assertSame(Thread.currentThread(), thread));
+    }
+
+    @Test
+    void testAsyncCallbacksRunOnExecutor() throws Exception {
+        final List<Thread> asyncThreads = new CopyOnWriteArrayList<>();
+        final CustomActivationProvider activationProvider = new TestActivationProvider() {
+            @Override
+            public CompletionStage<Boolean> shouldAutoCommitActivationAsync(Map<String, String> identityAttributes, Map<String, Object> customAttributes, String activationId, String userId, Long appId, ActivationType activationType, Map<String, Object> context) {
+                asyncThreads.add(Thread.currentThread());
+                return CompletableFuture.completedFuture(true);
+            }
+        };
+        final CustomActivationPipeline pipeline = new CustomActivationPipeline(activationProvider, activationExecutor, null, null);
+        assertNotEquals(LinkedHashMap.class, pipeline.createContext().getClass());
+        execute(pipeline);
+        assertEquals(1, asyncThreads.size());
+        assertNotSame(Thread.currentThread(), asyncThreads.get(0));
+        callbackThreads.forEach(thread -> assertSame(Thread.currentThread(), thread));
+        assertTrue(calls.contains("commitActivation"));
+    }
+
+    private Map<String, Object> execute(CustomActivationPipeline pipeline) throws Exception {
+        final CustomActivationPipeline.ServerCalls serverCalls = new CustomActivationPipeline.ServerCalls() {
+            @Override
+            public void addActivationFlags(String activationId, List<String> activationFlags) {
+                calls.add("addActivationFlags");
+            }
+
+            @Override
+            public boolean commitActivation(String activationId) {
+                calls.add("commitActivation");
+                return true;
+            }
+        };
+        return pipeline.execute(Collections.singletonMap("username", USER_ID), new HashMap<>(), ACTIVATION_ID, USER_ID, APP_ID,
+                ActivationType.CUSTOM, pipeline.createContext(), false, serverCalls);
+    }
+
+    /**
+     * Activation provider with synchronous callbacks which records the calls.
+     */
+    private class TestActivationProvider implements CustomActivationProvider {
+
+        @Override
+        public String lookupUserIdForAttributes(Map<String, String> identityAttributes, Map<String, Object> context) {
+            return USER_ID;
+        }
+
+        @Override
+        public Map<String, Object> processCustomActivationAttributes(Map<String, Object> customAttributes, String activationId, String userId, Long appId, ActivationType activationType, Map<String, Object> context) throws PowerAuthActivationException {
+            record("processCustomActivationAttributes");
+            return Collections.singletonMap("processed", true);
+        }
+
+        @Override
+        public List<String> getActivationFlags(Map<String, String> identityAttributes, Map<String, Object> customAttributes, String activationId, String userId, Long appId, ActivationType activationType, Map<String, Object> context) {
+            record("getActivationFlags");
+            return new ArrayList<>(Collections.singletonList("TEST_FLAG"));
+        }
+
+        @Override
+        public boolean shouldAutoCommitActivation(Map<String, String> identityAttributes, Map<String, Object> customAttributes, String activationId, String userId, Long appId, ActivationType activationType, Map<String, Object> context) {
+            record("shouldAutoCommitActivation");
+            return true;
+        }
+
+        @Override
+        public void activationWasCommitted(Map<String, String> identityAttributes, Map<String, Object> customAttributes, String activationId, String userId, Long appId, ActivationType activationType, Map<String, Object> context) {
+            record("activationWasCommitted");
+        }
+
+        private void record(String call) {
+            calls.add(call);
+            callbackThreads.add(Thread.currentThread());
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.provider;
+
+import com.google.common.io.BaseEncoding;
+import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.model.EciesScope;
+import io.getlime.security.powerauth.rest.api.base.encryption.PowerAuthEciesDecryptorParameters;
+import io.getlime.security.powerauth.rest.api.base.exception.PowerAuthEncryptionException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for validation of chunked ECIES request headers.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+class PowerAuthEncryptionProviderBaseTest {
+
+    private final AtomicInteger derivedKeys = new AtomicInteger();
+    private final PowerAuthEncryptionProviderBase encryptionProvider = new PowerAuthEncryptionProviderBase() {
+        @Override
+        public PowerAuthEciesDecryptorParameters getEciesDecryptorParameters(String activationId, String applicationKey, String ephemeralPublicKey) throws PowerAuthEncryptionException {
+            derivedKeys.incrementAndGet();
+            throw new PowerAuthEncryptionException();
+        }
+    };
+
+    private String encryptionHeader;
+
+    @BeforeEach
+    void setUp() {
+        encryptionHeader = "PowerAuth version=\"3.1\", application_key=\"" + base64(randomBytes(16)) + "\"";
+    }
+
+    @Test
+    void testValidHeadersDeriveKeys() {
+        assertThrows(PowerAuthEncryptionException.class, () -> decryptRequestChunked(base64(randomBytes(33)), base64(randomBytes(16))));
+        assertEquals(1, derivedKeys.get());
+    }
+
+    @Test
+    void testInvalidNonceLengthRejected() {
+        assertThrows(PowerAuthEncryptionException.class, () -> decryptRequestChunked(base64(randomBytes(33)), base64(randomBytes(8))));
+        assertThrows(PowerAuthEncryptionException.class, () -> decryptRequestChunked(base64(randomBytes(33)), base64(randomBytes(32))));
+        assertThrows(PowerAuthEncryptionException.class, () -> decryptRequestChunked(base64(randomBytes(33)), ""));
+        assertEquals(0, derivedKeys.get());
+    }
+
+    @Test
+    void testMissingEphemeralPublicKeyRejected() {
+        assertThrows(PowerAuthEncryptionException.class, () -> decryptRequestChunked(null, base64(randomBytes(16))));
+        assertThrows(PowerAuthEncryptionException.class, () -> decryptRequestChunked("", base64(randomBytes(16))));
+        assertEquals(0, derivedKeys.get());
+    }
+
+    private void decryptRequestChunked(String ephemeralPublicKey, String nonce) throws PowerAuthEncryptionException {
+        encryptionProvider.decryptRequestChunked("POST", encryptionHeader, null, ephemeralPublicKey, nonce,
+                new ByteArrayInputStream(new byte[0]), EciesScope.APPLICATION_SCOPE);
+    }
+
+    private static byte[] randomBytes(int length) {
+        final byte[] bytes = new byte[length];
+        new SecureRandom().nextBytes(bytes);
+        return bytes;
+    }
+
+    private static String base64(byte[] data) {
+        return BaseEncoding.base64().encode(data);
+    }
+
+}
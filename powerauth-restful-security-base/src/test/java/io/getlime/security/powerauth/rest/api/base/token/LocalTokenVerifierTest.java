@@ -0,0 +1,183 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.base.token;
+
+import com.google.common.io.BaseEncoding;
+import io.getlime.security.powerauth.crypto.client.token.ClientTokenGenerator;
+import io.getlime.security.powerauth.crypto.lib.enums.PowerAuthSignatureTypes;
+import io.getlime.security.powerauth.rest.api.base.activation.ActivationStatus;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.time.Duration;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for local token verification.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+class LocalTokenVerifierTest {
+
+    private static final String TOKEN_ID = "d6561669-34d6-4fee-8913-89477687a5cb";
+    private static final String ACTIVATION_ID = "e43a5dec-afea-4a10-a80b-b2183399f16b";
+
+    private final ClientTokenGenerator clientTokenGenerator = new ClientTokenGenerator();
+
+    private byte[] tokenSecret;
+    private InMemoryTokenRecordStore tokenRecordStore;
+    private LocalTokenVerifier tokenVerifier;
+
+    @BeforeAll
+    static void setUpProvider() {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    @BeforeEach
+    void setUp() {
+        tokenSecret = new byte[16];
+        new SecureRandom().nextBytes(tokenSecret);
+        tokenRecordStore = new InMemoryTokenRecordStore(1000, Duration.ofMinutes(5));
+        tokenVerifier = new LocalTokenVerifier(tokenRecordStore);
+    }
+
+    @Test
+    void testValidDigest() throws Exception {
+        tokenRecordStore.storeTokenRecord(tokenRecord(ActivationStatus.ACTIVE));
+        final long timestamp = System.currentTimeMillis();
+        final byte[] nonce = clientTokenGenerator.generateTokenNonce();
+        final PowerAuthTokenRecord tokenRecord = tokenVerifier.findTokenRecord(TOKEN_ID, timestamp);
+        assertNotNull(tokenRecord);
+        assertEquals(ACTIVATION_ID, tokenRecord.getActivationId());
+        assertTrue(tokenVerifier.verifyTokenDigest(tokenRecord, digest(nonce, timestamp, tokenSecret), base64(nonce), timestamp));
+    }
+
+    @Test
+    void testWrongDigest() throws Exception {
+        tokenRecordStore.storeTokenRecord(tokenRecord(ActivationStatus.ACTIVE));
+        final long timestamp = System.currentTimeMillis();
+        final byte[] nonce = clientTokenGenerator.generateTokenNonce();
+        final PowerAuthTokenRecord tokenRecord = tokenVerifier.findTokenRecord(TOKEN_ID, timestamp);
+        final byte[] otherSecret = new byte[16];
+        new SecureRandom().nextBytes(otherSecret);
+        assertFalse(tokenVerifier.verifyTokenDigest(tokenRecord, digest(nonce, timestamp, otherSecret), base64(nonce), timestamp));
+        // Digest computed for another timestamp or nonce
+        assertFalse(tokenVerifier.verifyTokenDigest(tokenRecord, digest(nonce, timestamp - 1, tokenSecret), base64(nonce), timestamp));
+        assertFalse(tokenVerifier.verifyTokenDigest(tokenRecord, digest(clientTokenGenerator.generateTokenNonce(), timestamp, tokenSecret), base64(nonce), timestamp));
+        // Nonce with invalid length
+        final byte[] shortNonce = new byte[8];
+        assertFalse(tokenVerifier.verifyTokenDigest(tokenRecord, digest(shortNonce, timestamp, tokenSecret), base64(shortNonce), timestamp));
+    }
+
+    @Test
+    void testTimestampWindow() {
+        tokenRecordStore.storeTokenRecord(tokenRecord(ActivationStatus.ACTIVE));
+        final long now = System.currentTimeMillis();
+        final long tolerance = LocalTokenVerifier.DEFAULT_TIMESTAMP_TOLERANCE.toMillis();
+        assertNotNull(tokenVerifier.findTokenRecord(TOKEN_ID, now - tolerance + 10000));
+        assertNotNull(tokenVerifier.findTokenRecord(TOKEN_ID, now + tolerance - 10000));
+        assertNull(tokenVerifier.findTokenRecord(TOKEN_ID, now - tolerance - 10000));
+        assertNull(tokenVerifier.findTokenRecord(TOKEN_ID, now + tolerance + 10000));
+    }
+
+    @Test
+    void testInactiveActivation() {
+        final long timestamp = System.currentTimeMillis();
+        for (ActivationStatus activationStatus : ActivationStatus.values()) {
+            tokenRecordStore.storeTokenRecord(tokenRecord(activationStatus));
+            final PowerAuthTokenRecord tokenRecord = tokenVerifier.findTokenRecord(TOKEN_ID, timestamp);
+            if (activationStatus == ActivationStatus.ACTIVE) {
+                assertNotNull(tokenRecord);
+            } else {
+                assertNull(tokenRecord, "Token record returned for activation status: " + activationStatus);
+            }
+        }
+    }
+
+    @Test
+    void testUnknownToken() {
+        assertNull(tokenVerifier.findTokenRecord(TOKEN_ID, System.currentTimeMillis()));
+    }
+
+    @Test
+    void testTimeToLive() throws Exception {
+        assertThrows(IllegalArgumentException.class, () -> new InMemoryTokenRecordStore(1000, InMemoryTokenRecordStore.MAX_TIME_TO_LIVE.plusSeconds(1)));
+        new InMemoryTokenRecordStore(1000, InMemoryTokenRecordStore.MAX_TIME_TO_LIVE);
+
+        final InMemoryTokenRecordStore shortLivedStore = new InMemoryTokenRecordStore(1000, Duration.ofMillis(50));
+        shortLivedStore.storeTokenRecord(tokenRecord(ActivationStatus.ACTIVE));
+        assertNotNull(shortLivedStore.findTokenRecord(TOKEN_ID));
+        Thread.sleep(200);
+        assertNull(shortLivedStore.findTokenRecord(TOKEN_ID));
+    }
+
+    @Test
+    void testActivationRemoved() {
+        tokenRecordStore.storeTokenRecord(tokenRecord(ActivationStatus.ACTIVE));
+        tokenVerifier.activationWasRemoved(ACTIVATION_ID);
+        assertNull(tokenVerifier.findTokenRecord(TOKEN_ID, System.currentTimeMillis()));
+    }
+
+    @Test
+    void testReplay() throws Exception {
+        tokenRecordStore.storeTokenRecord(tokenRecord(ActivationStatus.ACTIVE));
+        final long timestamp = System.currentTimeMillis();
+        final byte[] nonce = clientTokenGenerator.generateTokenNonce();
+        final String tokenDigest = digest(nonce, timestamp, tokenSecret);
+        final PowerAuthTokenRecord tokenRecord = tokenVerifier.findTokenRecord(TOKEN_ID, timestamp);
+        assertTrue(tokenVerifier.verifyTokenDigest(tokenRecord, tokenDigest, base64(nonce), timestamp));
+        assertFalse(tokenVerifier.verifyTokenDigest(tokenRecord, tokenDigest, base64(nonce), timestamp));
+        // Token with a new nonce is accepted
+        final byte[] newNonce = clientTokenGenerator.generateTokenNonce();
+        assertTrue(tokenVerifier.verifyTokenDigest(tokenRecord, digest(newNonce, timestamp, tokenSecret), base64(newNonce), timestamp));
+    }
+
+    @Test
+    void testInvalidDigestDoesNotConsumeNonce() throws Exception {
+        tokenRecordStore.storeTokenRecord(tokenRecord(ActivationStatus.ACTIVE));
+        final long timestamp = System.currentTimeMillis();
+        final byte[] nonce = clientTokenGenerator.generateTokenNonce();
+        final PowerAuthTokenRecord tokenRecord = tokenVerifier.findTokenRecord(TOKEN_ID, timestamp);
+        assertFalse(tokenVerifier.verifyTokenDigest(tokenRecord, base64(new byte[32]), base64(nonce), timestamp));
+        assertTrue(tokenVerifier.verifyTokenDigest(tokenRecord, digest(nonce, timestamp, tokenSecret), base64(nonce), timestamp));
+    }
+
+    private PowerAuthTokenRecord tokenRecord(ActivationStatus activationStatus) {
+        return new PowerAuthTokenRecord(TOKEN_ID, tokenSecret, ACTIVATION_ID, activationStatus, "user", 1L,
+                Collections.emptyList(), Collections.emptyList(), PowerAuthSignatureTypes.POSSESSION_KNOWLEDGE);
+    }
+
+    private String digest(byte[] nonce, long timestamp, byte[] secret) throws Exception {
+        final byte[] timestampBytes = Long.toString(timestamp).getBytes(StandardCharsets.UTF_8);
+        return base64(clientTokenGenerator.computeTokenDigest(nonce, timestampBytes, secret));
+    }
+
+    private static String base64(byte[] value) {
+        return BaseEncoding.base64().encode(value);
+    }
+
+}
@@ -23,30 +23,27 @@ import io.getlime.security.powerauth.crypto.lib.enums.PowerAuthSignatureTypes;
 import io.getlime.security.powerauth.http.PowerAuthSignatureHttpHeader;
 import io.getlime.security.powerauth.http.PowerAuthTokenHttpHeader;
 import io.getlime.security.powerauth.rest.api.base.authentication.PowerAuthApiAuthentication;
+import io.getlime.security.powerauth.rest.api.base.encryption.PowerAuthEciesChunkedEncryption;
 import io.getlime.security.powerauth.rest.api.base.exception.PowerAuthAuthenticationException;
 import io.getlime.security.powerauth.rest.api.base.exception.PowerAuthEncryptionException;
 import io.getlime.security.powerauth.rest.api.base.model.PowerAuthRequestObjects;
 import io.getlime.security.powerauth.rest.api.spring.provider.PowerAuthAuthenticationProvider;
 import io.getlime.security.powerauth.rest.api.spring.provider.PowerAuthEncryptionProvider;
-import org.apache.commons.text.StringSubstitutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.MethodParameter;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Component;
-import org.springframework.web.bind.annotation.PathVariable;
-import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.AsyncHandlerInterceptor;
 import org.springframework.web.servlet.HandlerMapping;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.util.Arrays;
+import java.lang.reflect.Type;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Interceptor class for the PowerAuth related annotations: @PowerAuth, @PowerAuthToken and @PowerAuthEncryption.
@@ -90,24 +87,23 @@ public class PowerAuthAnnotationInterceptor implements AsyncHandlerInterceptor {
 
             final HandlerMethod handlerMethod = (HandlerMethod) handler;
 
-            // Obtain annotations
-            PowerAuth powerAuthSignatureAnnotation = handlerMethod.getMethodAnnotation(PowerAuth.class);
-            PowerAuthToken powerAuthTokenAnnotation = handlerMethod.getMethodAnnotation(PowerAuthToken.class);
-            PowerAuthEncryption powerAuthEncryptionAnnotation = handlerMethod.getMethodAnnotation(PowerAuthEncryption.class);
-
-            // Check that either signature or token annotation is active
-            if (powerAuthSignatureAnnotation != null && powerAuthTokenAnnotation != null) {
-                logger.warn("You cannot use both @PowerAuth and @PowerAuthToken on same handler method. We are removing both.");
-                powerAuthSignatureAnnotation = null;
-                powerAuthTokenAnnotation = null;
-            }
+            // Obtain annotations and method metadata resolved once per handler method
+            final PowerAuthHandlerMethodDescriptor descriptor = PowerAuthHandlerMethodDescriptor.forHandlerMethod(handlerMethod);
+            final PowerAuth powerAuthSignatureAnnotation = descriptor.getPowerAuthSignatureAnnotation();
+            final PowerAuthToken powerAuthTokenAnnotation = descriptor.getPowerAuthTokenAnnotation();
+            final PowerAuthEncryption powerAuthEncryptionAnnotation = descriptor.getPowerAuthEncryptionAnnotation();
 
             // Resolve @PowerAuthEncryption annotation. The order of processing is important, PowerAuth expects
             // sign-then-encrypt sequence in case both authorization and encryption are used.
             if (powerAuthEncryptionAnnotation != null) {
-                final Class<?> requestType = resolveGenericParameterTypeForEcies(handlerMethod);
+                final Type requestType = descriptor.getEciesRequestType();
                 try {
-                    encryptionProvider.decryptRequest(request, requestType, powerAuthEncryptionAnnotation.scope());
+                    if (request.getHeader(PowerAuthEciesChunkedEncryption.EPHEMERAL_PUBLIC_KEY_HEADER) != null) {
+                        // Chunked encryption, the request body is decrypted while it is read by the handler method
+                        encryptionProvider.decryptRequestChunked(request, powerAuthEncryptionAnnotation.scope());
+                    } else {
+                        encryptionProvider.decryptRequest(request, requestType, powerAuthEncryptionAnnotation.scope());
+                    }
                     // Encryption object is saved in HTTP servlet request by encryption provider, so that it is available for both Spring and Java EE
                 } catch (PowerAuthEncryptionException ex) {
                     logger.warn("Decryption failed, error: {}", ex.getMessage());
@@ -115,34 +111,68 @@ public class PowerAuthAnnotationInterceptor implements AsyncHandlerInterceptor {
                 }
             }
 
+            // Check whether the handler method accepts the authentication object as a future, in this case
+            // the authentication is validated asynchronously and the request thread is not blocked
+            final boolean asyncAuthentication = descriptor.isAsyncAuthentication();
+
+            // Chunked encryption is only accepted by endpoints which require encryption, the signature of other
+            // endpoints would not cover the request body which is read by the handler method
+            if (powerAuthEncryptionAnnotation == null && request.getHeader(PowerAuthEciesChunkedEncryption.EPHEMERAL_PUBLIC_KEY_HEADER) != null
+                    && (powerAuthSignatureAnnotation != null || powerAuthTokenAnnotation != null)) {
+                logger.warn("Chunked encryption is not allowed for the endpoint, authentication object was removed");
+                if (asyncAuthentication) {
+                    request.setAttribute(PowerAuthRequestObjects.AUTHENTICATION_FUTURE, CompletableFuture.completedFuture(null));
+                } else {
+                    request.setAttribute(PowerAuthRequestObjects.AUTHENTICATION_OBJECT, null);
+                }
+                return true;
+            }
+
             // Resolve @PowerAuth annotation
             if (powerAuthSignatureAnnotation != null) {
-                try {
-                    final String resourceId = expandResourceId(powerAuthSignatureAnnotation.resourceId(), request, handlerMethod);
-                    final String header = request.getHeader(PowerAuthSignatureHttpHeader.HEADER_NAME);
-                    final List<PowerAuthSignatureTypes> signatureTypes = Arrays.asList(powerAuthSignatureAnnotation.signatureType());
-                    final PowerAuthApiAuthentication authentication = authenticationProvider.validateRequestSignature(
-                            request, resourceId, header, signatureTypes
+                final String resourceId = expandResourceId(descriptor.getResourceIdTemplate(), request);
+                final String header = request.getHeader(PowerAuthSignatureHttpHeader.HEADER_NAME);
+                final List<PowerAuthSignatureTypes> signatureTypes = descriptor.getSignatureTypes();
+                if (asyncAuthentication) {
+                    final CompletableFuture<PowerAuthApiAuthentication> authenticationFuture = authenticationProvider.validateRequestSignatureAsync(
+                            request, resourceId, descriptor.getResourceIdTemplate().getTemplate(), header, signatureTypes, null
                     );
-                    request.setAttribute(PowerAuthRequestObjects.AUTHENTICATION_OBJECT, authentication);
-                } catch (PowerAuthAuthenticationException ex) {
-                    logger.warn("Invalid request signature, authentication object was removed");
-                    request.setAttribute(PowerAuthRequestObjects.AUTHENTICATION_OBJECT, null);
+                    request.setAttribute(PowerAuthRequestObjects.AUTHENTICATION_FUTURE, handleAsyncAuthentication(authenticationFuture, "Invalid request signature, authentication object was removed"));
+                } else {
+                    try {
+                        final PowerAuthApiAuthentication authentication = authenticationProvider.validateRequestSignature(
+                                request, resourceId, descriptor.getResourceIdTemplate().getTemplate(), header, signatureTypes, null
+                        );
+                        request.setAttribute(PowerAuthRequestObjects.AUTHENTICATION_OBJECT, authentication);
+                    } catch (PowerAuthAuthenticationException ex) {
+                        logger.warn("Invalid request signature, authentication object was removed");
+                        request.setAttribute(PowerAuthRequestObjects.AUTHENTICATION_OBJECT, null);
+                    }
                 }
             }
 
             // Resolve @PowerAuthToken annotation
             if (powerAuthTokenAnnotation != null) {
-                try {
-                    final String header = request.getHeader(PowerAuthTokenHttpHeader.HEADER_NAME);
-                    final List<PowerAuthSignatureTypes> signatureTypes = Arrays.asList(powerAuthTokenAnnotation.signatureType());
-                    final PowerAuthApiAuthentication authentication = authenticationProvider.validateToken(
-                            header, signatureTypes
+                final String header = request.getHeader(PowerAuthTokenHttpHeader.HEADER_NAME);
+                final List<PowerAuthSignatureTypes> signatureTypes = descriptor.getSignatureTypes();
+                // Request mapping pattern identifies the endpoint in metrics, values from the request are not included
+                final Object bestMatchingPattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                final String endpoint = bestMatchingPattern != null ? bestMatchingPattern.toString() : null;
+                if (asyncAuthentication) {
+                    final CompletableFuture<PowerAuthApiAuthentication> authenticationFuture = authenticationProvider.validateTokenAsync(
+                            header, signatureTypes, endpoint
                     );
-                    request.setAttribute(PowerAuthRequestObjects.AUTHENTICATION_OBJECT, authentication);
-                } catch (PowerAuthAuthenticationException ex) {
-                    logger.warn("Invalid token, authentication object was removed");
-                    request.setAttribute(PowerAuthRequestObjects.AUTHENTICATION_OBJECT, null);
+                    request.setAttribute(PowerAuthRequestObjects.AUTHENTICATION_FUTURE, handleAsyncAuthentication(authenticationFuture, "Invalid token, authentication object was removed"));
+                } else {
+                    try {
+                        final PowerAuthApiAuthentication authentication = authenticationProvider.validateToken(
+                                header, signatureTypes, endpoint
+                        );
+                        request.setAttribute(PowerAuthRequestObjects.AUTHENTICATION_OBJECT, authentication);
+                    } catch (PowerAuthAuthenticationException ex) {
+                        logger.warn("Invalid token, authentication object was removed");
+                        request.setAttribute(PowerAuthRequestObjects.AUTHENTICATION_OBJECT, null);
+                    }
                 }
             }
 
@@ -152,19 +182,22 @@ public class PowerAuthAnnotationInterceptor implements AsyncHandlerInterceptor {
     }
 
     /**
-     * Resolve type of request object which is annotated by the @EncryptedRequestBody annotation.
-     * In case such parameter is missing the Object.class type is returned.
+     * Convert failed asynchronous authentication into a future completed with null authentication object,
+     * consistently with the synchronous validation.
      *
-     * @param handlerMethod Handler method.
-     * @return Resolved type of request object.
+     * @param authenticationFuture Future with authentication object.
+     * @param errorMessage Error message which is logged in case authentication fails.
+     * @return Future with authentication object or null in case authentication fails.
      */
-    private Class<?> resolveGenericParameterTypeForEcies(HandlerMethod handlerMethod) {
-        for (MethodParameter parameter: handlerMethod.getMethodParameters()) {
-            if (parameter.hasParameterAnnotation(EncryptedRequestBody.class)) {
-                return parameter.getParameterType();
+    private CompletableFuture<PowerAuthApiAuthentication> handleAsyncAuthentication(CompletableFuture<PowerAuthApiAuthentication> authenticationFuture, String errorMessage) {
+        return authenticationFuture.handle((authentication, ex) -> {
+            if (ex != null) {
+                logger.warn(errorMessage);
+                logger.debug("Error details", ex);
+                return null;
             }
-        }
-        return Object.class;
+            return authentication;
+        });
     }
 
     /**
@@ -180,51 +213,33 @@ public class PowerAuthAnnotationInterceptor implements AsyncHandlerInterceptor {
      *     the code with no impact on functionality.
      * </b>
      *
-     * @param resourceId Resource ID with possible placeholders.
+     * @param resourceIdTemplate Compiled resource ID template.
      * @param request HttpServletRequest for the current execution.
-     * @param handlerMethod Handler method that is responsible for the request processing.
      * @return Resource ID with substituted placeholders.
      */
-    @SuppressWarnings("unchecked")
-    private String expandResourceId(String resourceId, HttpServletRequest request, HandlerMethod handlerMethod) {
-        // Get method parameters that could be replaced in the context of resource ID
-        final Map<String, String> parameters = new TreeMap<>();
-        final MethodParameter[] methodParameters = handlerMethod.getMethodParameters();
-        for (MethodParameter mp : methodParameters) {
-            // Handle parameters annotated by @RequestParam annotation.
-            // These are stored in the servlet request parameter map.
-            // Note: @RequestParam must be processed before @PathVariable since
-            //       in API, it cannot be renamed (the path variable is just
-            //       a placeholder and can have arbitrary name).
-            final RequestParam requestParam = mp.getParameterAnnotation(RequestParam.class);
-            if (requestParam != null) {
-                final String name = requestParam.name();
-                final String value = request.getParameter(name);
-                if (value != null) { // do not check "&& !parameters.containsKey(name)" because in the case of
-                                     // a name conflict, we want @RequestParam to overwrite @PathVariable value
-                    parameters.put(name, value);
-                }
-            } else {
-                // Handle parameters annotated by @PathVariable annotation.
-                // These are stored by Spring in the servlet request attributes map, under a special
-                // URI_TEMPLATE_VARIABLES_ATTRIBUTE key that contains Map<String, String> with path
-                // variable mapping.
-                final PathVariable pathVariable = mp.getParameterAnnotation(PathVariable.class);
-                if (pathVariable != null) {
-                    final String name = pathVariable.name();
-                    final Map<String, String> pathVariableMap = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
-                    if (pathVariableMap != null && !parameters.containsKey(name)) { // prevent overwriting value that is already assigned
-                        final String value = pathVariableMap.get(name);
-                        if (value != null) {
-                            parameters.put(name, value);
-                        }
-                    }
+    private String expandResourceId(PowerAuthResourceIdTemplate resourceIdTemplate, HttpServletRequest request) {
+        return resourceIdTemplate.expand(new PowerAuthResourceIdTemplate.ParameterValues() {
+
+            private Map<String, String> pathVariableMap;
+
+            @Override
+            public String getRequestParameter(String name) {
+                // Parameters annotated by @RequestParam annotation are stored in the servlet request parameter map.
+                return request.getParameter(name);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public String getPathVariable(String name) {
+                // Parameters annotated by @PathVariable annotation are stored by Spring in the servlet request
+                // attributes map, under a special URI_TEMPLATE_VARIABLES_ATTRIBUTE key that contains
+                // Map<String, String> with path variable mapping.
+                if (pathVariableMap == null) {
+                    pathVariableMap = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
                 }
+                return pathVariableMap != null ? pathVariableMap.get(name) : null;
             }
-        }
-        // Substitute the placeholders
-        final StringSubstitutor sub = new StringSubstitutor(parameters);
-        return sub.replace(resourceId);
+        });
     }
 
 }
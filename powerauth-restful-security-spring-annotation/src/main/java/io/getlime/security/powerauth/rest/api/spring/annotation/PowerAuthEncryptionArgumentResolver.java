@@ -21,6 +21,7 @@ package io.getlime.security.powerauth.rest.api.spring.annotation;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.getlime.security.powerauth.rest.api.base.encryption.EciesEncryptionContext;
+import io.getlime.security.powerauth.rest.api.base.encryption.PowerAuthEciesChunkedEncryption;
 import io.getlime.security.powerauth.rest.api.base.encryption.PowerAuthEciesEncryption;
 import io.getlime.security.powerauth.rest.api.base.model.PowerAuthRequestObjects;
 import org.slf4j.Logger;
@@ -38,6 +39,7 @@ import java.io.IOException;
 /**
  * Argument resolver for {@link PowerAuthEciesEncryption} objects. It enables automatic
  * parameter resolution for methods that are annotated via {@link PowerAuthEciesEncryption} annotation.
+ * Parameters of type {@link PowerAuthEciesChunkedEncryption} are resolved for requests which use chunked encryption.
  *
  * @author Roman Strobl, roman.strobl@wultra.com
  */
@@ -50,21 +52,35 @@ public class PowerAuthEncryptionArgumentResolver implements HandlerMethodArgumen
     @Override
     public boolean supportsParameter(@NonNull MethodParameter parameter) {
         return parameter.hasMethodAnnotation(PowerAuthEncryption.class)
-                && (parameter.hasParameterAnnotation(EncryptedRequestBody.class) || EciesEncryptionContext.class.isAssignableFrom(parameter.getParameterType()));
+                && (parameter.hasParameterAnnotation(EncryptedRequestBody.class)
+                        || EciesEncryptionContext.class.isAssignableFrom(parameter.getParameterType())
+                        || PowerAuthEciesChunkedEncryption.class.isAssignableFrom(parameter.getParameterType()));
     }
 
     @Override
     public Object resolveArgument(@NonNull MethodParameter parameter, ModelAndViewContainer mavContainer, @NonNull NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
         final HttpServletRequest request = (HttpServletRequest) webRequest.getNativeRequest();
         final PowerAuthEciesEncryption<?> eciesObject = (PowerAuthEciesEncryption<?>) request.getAttribute(PowerAuthRequestObjects.ENCRYPTION_OBJECT);
+        final PowerAuthEciesChunkedEncryption chunkedObject = (PowerAuthEciesChunkedEncryption) request.getAttribute(PowerAuthRequestObjects.CHUNKED_ENCRYPTION_OBJECT);
+        // Chunked encryption object is inserted into parameter which is of type PowerAuthEciesChunkedEncryption
+        if (PowerAuthEciesChunkedEncryption.class.isAssignableFrom(parameter.getParameterType())) {
+            if (chunkedObject != null && validateEciesScope(chunkedObject.getContext())) {
+                return chunkedObject;
+            }
+            return null;
+        }
         // Decrypted object is inserted into parameter annotated by @EncryptedRequestBody annotation
         if (parameter.hasParameterAnnotation(EncryptedRequestBody.class) && eciesObject != null && eciesObject.getDecryptedRequest() != null) {
             final Class<?> parameterType = parameter.getParameterType();
             if (parameterType.equals(byte[].class)) {
                 return eciesObject.getDecryptedRequest();
+            } else if (eciesObject.getRequestObject() == null || parameterType.isInstance(eciesObject.getRequestObject())) {
+                // Request object was already deserialized during decryption using the generic parameter type
+                return eciesObject.getRequestObject();
             } else {
+                // Request object was deserialized using a different type, deserialize it using the parameter type
                 try {
-                    return objectMapper.readValue(eciesObject.getDecryptedRequest(), parameterType);
+                    return objectMapper.readValue(eciesObject.getDecryptedRequest(), objectMapper.getTypeFactory().constructType(parameter.getGenericParameterType()));
                 } catch (IOException ex) {
                     logger.warn("Invalid request, error: {}", ex.getMessage());
                     logger.debug("Error details", ex);
@@ -73,11 +89,11 @@ public class PowerAuthEncryptionArgumentResolver implements HandlerMethodArgumen
             }
         }
         // Ecies encryption object is inserted into parameter which is of type PowerAuthEciesEncryption
-        if (eciesObject != null && EciesEncryptionContext.class.isAssignableFrom(parameter.getParameterType())) {
+        if ((eciesObject != null || chunkedObject != null) && EciesEncryptionContext.class.isAssignableFrom(parameter.getParameterType())) {
             // Set ECIES scope in case it is specified by the @PowerAuthEncryption annotation
             PowerAuthEncryption powerAuthEncryption = parameter.getMethodAnnotation(PowerAuthEncryption.class);
             if (powerAuthEncryption != null) {
-                EciesEncryptionContext eciesContext = eciesObject.getContext();
+                EciesEncryptionContext eciesContext = eciesObject != null ? eciesObject.getContext() : chunkedObject.getContext();
                 boolean validScope = validateEciesScope(eciesContext);
                 if (validScope) {
                     return eciesContext;
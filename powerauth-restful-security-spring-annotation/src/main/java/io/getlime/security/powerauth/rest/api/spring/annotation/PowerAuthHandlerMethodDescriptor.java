@@ -0,0 +1,220 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.spring.annotation;
+
+import io.getlime.security.powerauth.crypto.lib.enums.PowerAuthSignatureTypes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.MethodParameter;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.method.HandlerMethod;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Immutable descriptor of PowerAuth related metadata of a handler method. The descriptor is resolved once
+ * per handler method, so that annotations and method parameters are not inspected for every request.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public final class PowerAuthHandlerMethodDescriptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(PowerAuthHandlerMethodDescriptor.class);
+
+    private static final ConcurrentMap<Method, PowerAuthHandlerMethodDescriptor> descriptors = new ConcurrentHashMap<>();
+
+    private final PowerAuth powerAuthSignatureAnnotation;
+    private final PowerAuthToken powerAuthTokenAnnotation;
+    private final PowerAuthEncryption powerAuthEncryptionAnnotation;
+    private final List<PowerAuthSignatureTypes> signatureTypes;
+    private final Type eciesRequestType;
+    private final boolean asyncAuthentication;
+    private final List<ResourceIdParameter> resourceIdParameters;
+    private final PowerAuthResourceIdTemplate resourceIdTemplate;
+
+    private PowerAuthHandlerMethodDescriptor(HandlerMethod handlerMethod) {
+        PowerAuth signatureAnnotation = handlerMethod.getMethodAnnotation(PowerAuth.class);
+        PowerAuthToken tokenAnnotation = handlerMethod.getMethodAnnotation(PowerAuthToken.class);
+
+        // Check that either signature or token annotation is active
+        if (signatureAnnotation != null && tokenAnnotation != null) {
+            logger.warn("You cannot use both @PowerAuth and @PowerAuthToken on same handler method. We are removing both.");
+            signatureAnnotation = null;
+            tokenAnnotation = null;
+        }
+
+        this.powerAuthSignatureAnnotation = signatureAnnotation;
+        this.powerAuthTokenAnnotation = tokenAnnotation;
+        this.powerAuthEncryptionAnnotation = handlerMethod.getMethodAnnotation(PowerAuthEncryption.class);
+
+        // Resolve allowed signature types
+        final EnumSet<PowerAuthSignatureTypes> allowedSignatureTypes = EnumSet.noneOf(PowerAuthSignatureTypes.class);
+        if (signatureAnnotation != null) {
+            allowedSignatureTypes.addAll(Arrays.asList(signatureAnnotation.signatureType()));
+        } else if (tokenAnnotation != null) {
+            allowedSignatureTypes.addAll(Arrays.asList(tokenAnnotation.signatureType()));
+        }
+        this.signatureTypes = Collections.unmodifiableList(new ArrayList<>(allowedSignatureTypes));
+
+        // Resolve method parameters
+        Type requestType = Object.class;
+        boolean async = false;
+        final List<ResourceIdParameter> parameters = new ArrayList<>();
+        for (MethodParameter parameter : handlerMethod.getMethodParameters()) {
+            if (requestType == Object.class && parameter.hasParameterAnnotation(EncryptedRequestBody.class)) {
+                requestType = parameter.getGenericParameterType();
+            }
+            if (PowerAuthWebArgumentResolver.isAuthenticationFutureParameter(parameter)) {
+                async = true;
+            }
+            final RequestParam requestParam = parameter.getParameterAnnotation(RequestParam.class);
+            if (requestParam != null) {
+                parameters.add(new ResourceIdParameter(requestParam.name(), true));
+            } else {
+                final PathVariable pathVariable = parameter.getParameterAnnotation(PathVariable.class);
+                if (pathVariable != null) {
+                    parameters.add(new ResourceIdParameter(pathVariable.name(), false));
+                }
+            }
+        }
+        this.eciesRequestType = requestType;
+        this.asyncAuthentication = async;
+        this.resourceIdParameters = Collections.unmodifiableList(parameters);
+        this.resourceIdTemplate = signatureAnnotation != null ? PowerAuthResourceIdTemplate.compile(signatureAnnotation.resourceId(), resourceIdParameters) : null;
+    }
+
+    /**
+     * Get descriptor of given handler method. The descriptor is created on first use and cached.
+     *
+     * @param handlerMethod Handler method.
+     * @return Handler method descriptor.
+     */
+    public static PowerAuthHandlerMethodDescriptor forHandlerMethod(HandlerMethod handlerMethod) {
+        // Handler method instances may be created per request, the underlying method is used as the cache key
+        final Method method = handlerMethod.getMethod();
+        final PowerAuthHandlerMethodDescriptor descriptor = descriptors.get(method);
+        if (descriptor != null) {
+            return descriptor;
+        }
+        final PowerAuthHandlerMethodDescriptor newDescriptor = new PowerAuthHandlerMethodDescriptor(handlerMethod);
+        final PowerAuthHandlerMethodDescriptor existingDescriptor = descriptors.putIfAbsent(method, newDescriptor);
+        return existingDescriptor != null ? existingDescriptor : newDescriptor;
+    }
+
+    /**
+     * Get @PowerAuth annotation.
+     * @return Annotation or null in case signature validation is not used.
+     */
+    public PowerAuth getPowerAuthSignatureAnnotation() {
+        return powerAuthSignatureAnnotation;
+    }
+
+    /**
+     * Get @PowerAuthToken annotation.
+     * @return Annotation or null in case token validation is not used.
+     */
+    public PowerAuthToken getPowerAuthTokenAnnotation() {
+        return powerAuthTokenAnnotation;
+    }
+
+    /**
+     * Get @PowerAuthEncryption annotation.
+     * @return Annotation or null in case encryption is not used.
+     */
+    public PowerAuthEncryption getPowerAuthEncryptionAnnotation() {
+        return powerAuthEncryptionAnnotation;
+    }
+
+    /**
+     * Get signature types allowed by @PowerAuth or @PowerAuthToken annotation.
+     * @return Unmodifiable list of allowed signature types.
+     */
+    public List<PowerAuthSignatureTypes> getSignatureTypes() {
+        return signatureTypes;
+    }
+
+    /**
+     * Get type of request object annotated by @EncryptedRequestBody, including generic type parameters.
+     * @return Request object type, Object.class in case such parameter is missing.
+     */
+    public Type getEciesRequestType() {
+        return eciesRequestType;
+    }
+
+    /**
+     * Get whether the handler method accepts authentication object as {@code CompletableFuture<PowerAuthApiAuthentication>}.
+     * @return Whether authentication should be validated asynchronously.
+     */
+    public boolean isAsyncAuthentication() {
+        return asyncAuthentication;
+    }
+
+    /**
+     * Get method parameters which can be used in resource ID placeholders, in order of method parameters.
+     * @return Unmodifiable list of resource ID parameters.
+     */
+    public List<ResourceIdParameter> getResourceIdParameters() {
+        return resourceIdParameters;
+    }
+
+    /**
+     * Get compiled resource ID template of @PowerAuth annotation.
+     * @return Resource ID template or null in case signature validation is not used.
+     */
+    public PowerAuthResourceIdTemplate getResourceIdTemplate() {
+        return resourceIdTemplate;
+    }
+
+    /**
+     * Method parameter annotated by @RequestParam or @PathVariable annotation.
+     */
+    public static final class ResourceIdParameter {
+
+        private final String name;
+        private final boolean requestParam;
+
+        ResourceIdParameter(String name, boolean requestParam) {
+            this.name = name;
+            this.requestParam = requestParam;
+        }
+
+        /**
+         * Get parameter name.
+         * @return Parameter name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Get whether the parameter is annotated by @RequestParam, otherwise it is annotated by @PathVariable.
+         * @return Whether the parameter is a request parameter.
+         */
+        public boolean isRequestParam() {
+            return requestParam;
+        }
+    }
+
+}
@@ -0,0 +1,205 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.spring.annotation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resource ID template compiled from the value of {@link PowerAuth#resourceId()}. The template is parsed once
+ * into literal segments and placeholder slots bound to the @RequestParam and @PathVariable parameters of the
+ * handler method, so that the resource ID can be expanded in a single pass for every request.
+ * <br><br>
+ * The template syntax is compatible with the default syntax of {@code StringSubstitutor}: placeholders use
+ * {@code ${name}} notation, a default value can be specified using {@code ${name:-default}} and {@code $${name}}
+ * is expanded to literal {@code ${name}}. Placeholders which cannot be resolved are kept in the resource ID as is.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public final class PowerAuthResourceIdTemplate {
+
+    private static final String PLACEHOLDER_PREFIX = "${";
+    private static final char PLACEHOLDER_SUFFIX = '}';
+    private static final char ESCAPE_CHAR = '$';
+    private static final String DEFAULT_VALUE_DELIMITER = ":-";
+
+    private final String template;
+    private final String[] literals;
+    private final Slot[] slots;
+    private final int literalLength;
+
+    private PowerAuthResourceIdTemplate(String template, List<String> literals, List<Slot> slots) {
+        this.template = template;
+        this.literals = literals.toArray(new String[0]);
+        this.slots = slots.toArray(new Slot[0]);
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * Compile resource ID template.
+     *
+     * @param template Resource ID template with possible placeholders.
+     * @param parameters Method parameters which can be used in placeholders.
+     * @return Compiled resource ID template.
+     */
+    public static PowerAuthResourceIdTemplate compile(String template, List<PowerAuthHandlerMethodDescriptor.ResourceIdParameter> parameters) {
+        final List<String> literals = new ArrayList<>();
+        final List<Slot> slots = new ArrayList<>();
+        final StringBuilder literal = new StringBuilder();
+        int position = 0;
+        while (position < template.length()) {
+            final int prefixIndex = template.indexOf(PLACEHOLDER_PREFIX, position);
+            if (prefixIndex < 0) {
+                break;
+            }
+            // Escaped placeholder prefix is kept as a literal without the escape character
+            if (prefixIndex > position && template.charAt(prefixIndex - 1) == ESCAPE_CHAR) {
+                literal.append(template, position, prefixIndex - 1).append(PLACEHOLDER_PREFIX);
+                position = prefixIndex + PLACEHOLDER_PREFIX.length();
+                continue;
+            }
+            final int suffixIndex = template.indexOf(PLACEHOLDER_SUFFIX, prefixIndex + PLACEHOLDER_PREFIX.length());
+            if (suffixIndex < 0) {
+                break;
+            }
+            literal.append(template, position, prefixIndex);
+            literals.add(literal.toString());
+            literal.setLength(0);
+            slots.add(createSlot(template.substring(prefixIndex, suffixIndex + 1), parameters));
+            position = suffixIndex + 1;
+        }
+        literal.append(template, position, template.length());
+        literals.add(literal.toString());
+        return new PowerAuthResourceIdTemplate(template, literals, slots);
+    }
+
+    /**
+     * Create a placeholder slot and bind it to method parameters with matching name.
+     *
+     * @param placeholder Placeholder including prefix and suffix.
+     * @param parameters Method parameters which can be used in placeholders.
+     * @return Placeholder slot.
+     */
+    private static Slot createSlot(String placeholder, List<PowerAuthHandlerMethodDescriptor.ResourceIdParameter> parameters) {
+        String name = placeholder.substring(PLACEHOLDER_PREFIX.length(), placeholder.length() - 1);
+        String defaultValue = null;
+        final int delimiterIndex = name.indexOf(DEFAULT_VALUE_DELIMITER);
+        if (delimiterIndex >= 0) {
+            defaultValue = name.substring(delimiterIndex + DEFAULT_VALUE_DELIMITER.length());
+            name = name.substring(0, delimiterIndex);
+        }
+        boolean requestParam = false;
+        boolean pathVariable = false;
+        for (PowerAuthHandlerMethodDescriptor.ResourceIdParameter parameter : parameters) {
+            if (parameter.getName().equals(name)) {
+                if (parameter.isRequestParam()) {
+                    requestParam = true;
+                } else {
+                    pathVariable = true;
+                }
+            }
+        }
+        // Unresolvable placeholder is kept as is, unless it has a default value
+        final String fallback = defaultValue != null ? defaultValue : placeholder;
+        return new Slot(name, requestParam, pathVariable, fallback);
+    }
+
+    /**
+     * Get the resource ID template before expansion of placeholders.
+     *
+     * @return Resource ID template.
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * Expand the resource ID using values of method parameters.
+     *
+     * @param values Source of parameter values for the current request.
+     * @return Resource ID with substituted placeholders.
+     */
+    public String expand(ParameterValues values) {
+        if (slots.length == 0) {
+            return literals[0];
+        }
+        final StringBuilder resourceId = new StringBuilder(literalLength + 16 * slots.length);
+        for (int i = 0; i < slots.length; i++) {
+            resourceId.append(literals[i]);
+            final Slot slot = slots[i];
+            String value = null;
+            // Note: @RequestParam is resolved before @PathVariable since in API, it cannot be renamed
+            //       (the path variable is just a placeholder and can have arbitrary name).
+            if (slot.requestParam) {
+                value = values.getRequestParameter(slot.name);
+            }
+            if (value == null && slot.pathVariable) {
+                value = values.getPathVariable(slot.name);
+            }
+            resourceId.append(value != null ? value : slot.fallback);
+        }
+        resourceId.append(literals[slots.length]);
+        return resourceId.toString();
+    }
+
+    /**
+     * Source of method parameter values for the current request.
+     */
+    public interface ParameterValues {
+
+        /**
+         * Get value of request parameter.
+         * @param name Parameter name.
+         * @return Parameter value or null in case the parameter is not present.
+         */
+        String getRequestParameter(String name);
+
+        /**
+         * Get value of path variable.
+         * @param name Path variable name.
+         * @return Path variable value or null in case the path variable is not present.
+         */
+        String getPathVariable(String name);
+
+    }
+
+    /**
+     * Placeholder slot bound to method parameters.
+     */
+    private static final class Slot {
+
+        private final String name;
+        private final boolean requestParam;
+        private final boolean pathVariable;
+        private final String fallback;
+
+        Slot(String name, boolean requestParam, boolean pathVariable, String fallback) {
+            this.name = name;
+            this.requestParam = requestParam;
+            this.pathVariable = pathVariable;
+            this.fallback = fallback;
+        }
+    }
+
+}
@@ -22,6 +22,7 @@ package io.getlime.security.powerauth.rest.api.spring.annotation;
 import io.getlime.security.powerauth.rest.api.base.authentication.PowerAuthApiAuthentication;
 import io.getlime.security.powerauth.rest.api.base.model.PowerAuthRequestObjects;
 import org.springframework.core.MethodParameter;
+import org.springframework.core.ResolvableType;
 import org.springframework.lang.NonNull;
 import org.springframework.web.bind.support.WebDataBinderFactory;
 import org.springframework.web.context.request.NativeWebRequest;
@@ -29,10 +30,14 @@ import org.springframework.web.method.support.HandlerMethodArgumentResolver;
 import org.springframework.web.method.support.ModelAndViewContainer;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Argument resolver for {@link PowerAuthApiAuthentication} objects. It enables automatic
  * parameter resolution for methods that are annotated via {@link PowerAuth} annotation.
+ * <br><br>
+ * Parameters of type {@code CompletableFuture<PowerAuthApiAuthentication>} are resolved as well, such parameter
+ * is completed once the asynchronous validation started by {@link PowerAuthAnnotationInterceptor} finishes.
  *
  * @author Petr Dvorak, petr@wultra.com
  */
@@ -40,13 +45,35 @@ public class PowerAuthWebArgumentResolver implements HandlerMethodArgumentResolv
 
     @Override
     public boolean supportsParameter(@NonNull MethodParameter parameter) {
-        return PowerAuthApiAuthentication.class.isAssignableFrom(parameter.getParameterType());
+        return PowerAuthApiAuthentication.class.isAssignableFrom(parameter.getParameterType())
+                || isAuthenticationFutureParameter(parameter);
     }
 
     @Override
     public Object resolveArgument(@NonNull MethodParameter parameter, ModelAndViewContainer mavContainer, @NonNull NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
         HttpServletRequest request = (HttpServletRequest) webRequest.getNativeRequest();
+        if (isAuthenticationFutureParameter(parameter)) {
+            final Object authenticationFuture = request.getAttribute(PowerAuthRequestObjects.AUTHENTICATION_FUTURE);
+            if (authenticationFuture != null) {
+                return authenticationFuture;
+            }
+            return CompletableFuture.completedFuture(request.getAttribute(PowerAuthRequestObjects.AUTHENTICATION_OBJECT));
+        }
         return request.getAttribute(PowerAuthRequestObjects.AUTHENTICATION_OBJECT);
     }
 
+    /**
+     * Check whether the parameter is of type {@code CompletableFuture<PowerAuthApiAuthentication>}.
+     *
+     * @param parameter Method parameter.
+     * @return Whether the parameter is a future of authentication object.
+     */
+    static boolean isAuthenticationFutureParameter(MethodParameter parameter) {
+        if (!CompletableFuture.class.equals(parameter.getParameterType())) {
+            return false;
+        }
+        final Class<?> futureType = ResolvableType.forMethodParameter(parameter).getGeneric(0).resolve();
+        return futureType != null && PowerAuthApiAuthentication.class.isAssignableFrom(futureType);
+    }
+
 }
@@ -0,0 +1,75 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.spring.client;
+
+import com.wultra.security.powerauth.client.PowerAuthClient;
+import io.getlime.security.powerauth.rest.api.base.client.PowerAuthRequestHedging;
+
+import java.lang.reflect.Method;
+import java.util.Set;
+
+/**
+ * Decorator of {@link PowerAuthClient} which hedges latency critical read-only PowerAuth server calls using
+ * {@link PowerAuthRequestHedging}: activation status and ECIES decryptor parameters. When such call does not respond
+ * within the hedging delay, an identical call is sent and the first response wins.
+ * <br><br>
+ * Other calls are never hedged, because they are not idempotent, for example signature verification increments
+ * the signature counter and activation commit changes activation state. Calls of the version 2 client returned
+ * by {@link PowerAuthClient#v2()} are not hedged either.
+ * <br><br>
+ * Usage: wrap the client when the PowerAuth client bean is created, for example
+ * {@code return HedgedPowerAuthClient.wrap(new PowerAuthRestClient(url, config), powerAuthRequestHedging);}
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public final class HedgedPowerAuthClient extends PowerAuthClientDecorator {
+
+    static final Set<String> HEDGED_METHODS = methodNames(
+            "getActivationStatus", "getActivationStatusWithEncryptedStatusBlob", "getEciesDecryptor");
+
+    private final PowerAuthClient delegate;
+    private final PowerAuthRequestHedging hedging;
+
+    private HedgedPowerAuthClient(PowerAuthClient delegate, PowerAuthRequestHedging hedging) {
+        super(false);
+        this.delegate = delegate;
+        this.hedging = hedging;
+    }
+
+    /**
+     * Wrap PowerAuth client with a decorator which hedges latency critical read-only PowerAuth server calls.
+     *
+     * @param powerAuthClient PowerAuth client.
+     * @param hedging Hedging of PowerAuth server calls.
+     * @return Decorated PowerAuth client.
+     */
+    public static PowerAuthClient wrap(PowerAuthClient powerAuthClient, PowerAuthRequestHedging hedging) {
+        return newProxy(new HedgedPowerAuthClient(powerAuthClient, hedging));
+    }
+
+    @Override
+    Object invokeClientMethod(Method method, Object[] args) throws Throwable {
+        if (!HEDGED_METHODS.contains(method.getName())) {
+            return invokeTarget(delegate, method, args);
+        }
+        return hedging.execute(method.getName(), targetCall(delegate, method, args), PowerAuthClientErrors::isServerFailure);
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.spring.client;
+
+import com.wultra.security.powerauth.client.PowerAuthClient;
+import io.getlime.security.powerauth.rest.api.base.client.PowerAuthLoadBalancer;
+
+import java.lang.reflect.Method;
+import java.util.Set;
+
+/**
+ * Decorator of {@link PowerAuthClient} which distributes PowerAuth server calls across multiple PowerAuth server
+ * nodes using {@link PowerAuthLoadBalancer}. Each node is accessed using its own PowerAuth client.
+ * <br><br>
+ * Read-only calls, for example activation status or ECIES decryptor parameters, are retried on another node
+ * in case of a failure of PowerAuth server. Other calls are never repeated, because they may have been processed
+ * by the failed node, for example signature verification increments the signature counter. Errors returned by
+ * PowerAuth server for invalid requests are not retried. Methods of the version 2 client returned
+ * by {@link PowerAuthClient#v2()} are load balanced as well.
+ * <br><br>
+ * Usage: wrap the load balancer when the PowerAuth client bean is created, for example
+ * {@code return LoadBalancedPowerAuthClient.wrap(powerAuthLoadBalancer);}
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public final class LoadBalancedPowerAuthClient extends PowerAuthClientDecorator {
+
+    static final Set<String> RETRYABLE_METHODS = methodNames(
+            "getSystemStatus", "getErrorList", "getActivationStatus", "getActivationStatusWithEncryptedStatusBlob",
+            "getActivationListForUser", "lookupActivations", "getActivationHistory", "listActivationFlags",
+            "getEciesDecryptor", "getApplicationList", "getApplicationDetail", "lookupApplicationByAppKey",
+            "listApplicationRoles", "getCallbackUrlList", "getIntegrationList", "getSignatureAuditLog",
+            "getRecoveryConfig", "lookupRecoveryCodes", "operationDetail", "operationList", "operationPendingList",
+            "operationTemplateList", "operationTemplateDetail");
+
+    private final PowerAuthLoadBalancer<PowerAuthClient> loadBalancer;
+    private final boolean clientV2;
+
+    private LoadBalancedPowerAuthClient(PowerAuthLoadBalancer<PowerAuthClient> loadBalancer, boolean clientV2) {
+        super(clientV2);
+        this.loadBalancer = loadBalancer;
+        this.clientV2 = clientV2;
+    }
+
+    /**
+     * Create PowerAuth client which distributes calls across nodes of the load balancer.
+     *
+     * @param loadBalancer Load balancer with PowerAuth clients of PowerAuth server nodes.
+     * @return Load balanced PowerAuth client.
+     */
+    public static PowerAuthClient wrap(PowerAuthLoadBalancer<PowerAuthClient> loadBalancer) {
+        return newProxy(new LoadBalancedPowerAuthClient(loadBalancer, false));
+    }
+
+    @Override
+    PowerAuthClientDecorator decorateClientV2(Method method, Object[] args) {
+        // Version 2 client is load balanced as well, calls are performed using version 2 client of selected node
+        return new LoadBalancedPowerAuthClient(loadBalancer, true);
+    }
+
+    @Override
+    Object invokeClientMethod(Method method, Object[] args) throws Throwable {
+        return loadBalancer.execute(client -> targetCall(clientV2 ? client.v2() : client, method, args).call(),
+                RETRYABLE_METHODS.contains(method.getName()), PowerAuthClientErrors::isServerFailure);
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.spring.client;
+
+import com.wultra.security.powerauth.client.PowerAuthClient;
+import io.getlime.security.powerauth.rest.api.base.metrics.PowerAuthMetrics;
+
+import java.lang.reflect.Method;
+
+/**
+ * Decorator of {@link PowerAuthClient} which records duration and outcome of every PowerAuth server call using
+ * {@link PowerAuthMetrics}. Calls are tagged by the client method name, methods of the version 2 client returned
+ * by {@link PowerAuthClient#v2()} are tagged with "v2." prefix.
+ * <br><br>
+ * Usage: wrap the client when the PowerAuth client bean is created, for example
+ * {@code return MeteredPowerAuthClient.wrap(new PowerAuthRestClient(url, config), powerAuthMetrics);}
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public final class MeteredPowerAuthClient extends PowerAuthClientDecorator {
+
+    private static final String V2_METHOD_PREFIX = "v2.";
+
+    private final Object delegate;
+    private final PowerAuthMetrics powerAuthMetrics;
+    private final String methodPrefix;
+
+    private MeteredPowerAuthClient(Object delegate, PowerAuthMetrics powerAuthMetrics, String methodPrefix) {
+        super(!methodPrefix.isEmpty());
+        this.delegate = delegate;
+        this.powerAuthMetrics = powerAuthMetrics;
+        this.methodPrefix = methodPrefix;
+    }
+
+    /**
+     * Wrap PowerAuth client with a decorator which records metrics of PowerAuth server calls.
+     *
+     * @param powerAuthClient PowerAuth client.
+     * @param powerAuthMetrics PowerAuth metrics.
+     * @return Decorated PowerAuth client.
+     */
+    public static PowerAuthClient wrap(PowerAuthClient powerAuthClient, PowerAuthMetrics powerAuthMetrics) {
+        return newProxy(new MeteredPowerAuthClient(powerAuthClient, powerAuthMetrics, ""));
+    }
+
+    @Override
+    PowerAuthClientDecorator decorateClientV2(Method method, Object[] args) throws Throwable {
+        // Version 2 client is decorated as well, so that its calls are recorded, too
+        return new MeteredPowerAuthClient(invokeTarget(delegate, method, args), powerAuthMetrics, V2_METHOD_PREFIX);
+    }
+
+    @Override
+    Object invokeClientMethod(Method method, Object[] args) throws Throwable {
+        final long startTime = powerAuthMetrics.startTimer();
+        boolean success = false;
+        try {
+            final Object result = invokeTarget(delegate, method, args);
+            success = true;
+            return result;
+        } finally {
+            powerAuthMetrics.recordClientRequest(methodPrefix + method.getName(), startTime, success);
+        }
+    }
+
+}
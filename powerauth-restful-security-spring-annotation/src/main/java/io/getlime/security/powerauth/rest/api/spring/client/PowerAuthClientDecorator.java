@@ -0,0 +1,167 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.spring.client;
+
+import com.wultra.security.powerauth.client.PowerAuthClient;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Base of {@link PowerAuthClient} decorators implemented as dynamic proxies. The base handles methods declared
+ * by {@link Object} on the proxy itself and decoration of the version 2 client returned by {@link PowerAuthClient#v2()},
+ * the decorator implements handling of PowerAuth client methods.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+abstract class PowerAuthClientDecorator implements InvocationHandler {
+
+    private static final String V2_METHOD_NAME = "v2";
+
+    private final boolean clientV2;
+
+    /**
+     * Constructor with the decorated client version.
+     *
+     * @param clientV2 Whether the decorator handles the version 2 client.
+     */
+    PowerAuthClientDecorator(boolean clientV2) {
+        this.clientV2 = clientV2;
+    }
+
+    /**
+     * Create a proxy of PowerAuth client which uses given decorator.
+     *
+     * @param decorator Decorator of PowerAuth client.
+     * @return Decorated PowerAuth client.
+     */
+    static PowerAuthClient newProxy(PowerAuthClientDecorator decorator) {
+        return (PowerAuthClient) newProxy(PowerAuthClient.class, decorator);
+    }
+
+    /**
+     * Create an unmodifiable set of PowerAuth client method names.
+     *
+     * @param methodNames Method names.
+     * @return Set of method names.
+     */
+    static Set<String> methodNames(String... methodNames) {
+        return Collections.unmodifiableSet(new HashSet<>(Arrays.asList(methodNames)));
+    }
+
+    @Override
+    public final Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return invokeObjectMethod(proxy, method, args);
+        }
+        if (!clientV2 && V2_METHOD_NAME.equals(method.getName()) && method.getParameterCount() == 0) {
+            final PowerAuthClientDecorator clientV2Decorator = decorateClientV2(method, args);
+            if (clientV2Decorator != null) {
+                return newProxy(method.getReturnType(), clientV2Decorator);
+            }
+        }
+        return invokeClientMethod(method, args);
+    }
+
+    /**
+     * Handle a PowerAuth client method.
+     *
+     * @param method PowerAuth client method.
+     * @param args Method arguments.
+     * @return Method result.
+     * @throws Throwable In case the method fails.
+     */
+    abstract Object invokeClientMethod(Method method, Object[] args) throws Throwable;
+
+    /**
+     * Create a decorator of the version 2 client. Default implementation does not decorate the version 2 client,
+     * the {@code v2} method is handled as other PowerAuth client methods.
+     *
+     * @param method The {@code v2} method.
+     * @param args Method arguments.
+     * @return Decorator of the version 2 client or null in case it should not be decorated.
+     * @throws Throwable In case the version 2 client could not be obtained.
+     */
+    PowerAuthClientDecorator decorateClientV2(Method method, Object[] args) throws Throwable {
+        return null;
+    }
+
+    /**
+     * Invoke a method on the target client and rethrow the exception thrown by the method.
+     *
+     * @param target Target client.
+     * @param method Method.
+     * @param args Method arguments.
+     * @return Method result.
+     * @throws Throwable In case the method fails.
+     */
+    static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * Create a callable which invokes a method on the target client.
+     *
+     * @param target Target client.
+     * @param method Method.
+     * @param args Method arguments.
+     * @return Callable which invokes the method.
+     */
+    static Callable<Object> targetCall(Object target, Method method, Object[] args) {
+        return () -> {
+            try {
+                return invokeTarget(target, method, args);
+            } catch (Exception | Error ex) {
+                throw ex;
+            } catch (Throwable ex) {
+                throw new IllegalStateException(ex);
+            }
+        };
+    }
+
+    private static Object newProxy(Class<?> type, PowerAuthClientDecorator decorator) {
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, decorator);
+    }
+
+    private Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+            default:
+                throw new UnsupportedOperationException("Unsupported method: " + method.getName());
+        }
+    }
+
+}
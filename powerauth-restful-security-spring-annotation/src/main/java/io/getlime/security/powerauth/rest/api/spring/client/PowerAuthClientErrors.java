@@ -0,0 +1,45 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.spring.client;
+
+import com.wultra.security.powerauth.client.model.error.PowerAuthClientException;
+
+/**
+ * Classification of exceptions thrown by PowerAuth client.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+final class PowerAuthClientErrors {
+
+    private PowerAuthClientErrors() {
+    }
+
+    /**
+     * Check whether an exception is a failure of PowerAuth server. PowerAuth client exceptions with PowerAuth error
+     * are responses of PowerAuth server to invalid requests, PowerAuth server is available in this case.
+     *
+     * @param ex Exception thrown by PowerAuth client.
+     * @return Whether the exception is a failure of PowerAuth server.
+     */
+    static boolean isServerFailure(Exception ex) {
+        return !(ex instanceof PowerAuthClientException) || ((PowerAuthClientException) ex).getPowerAuthError() == null;
+    }
+
+}
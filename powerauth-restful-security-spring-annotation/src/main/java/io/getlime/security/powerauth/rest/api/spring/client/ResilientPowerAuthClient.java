@@ -0,0 +1,99 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.spring.client;
+
+import com.wultra.security.powerauth.client.PowerAuthClient;
+import com.wultra.security.powerauth.client.model.error.PowerAuthClientException;
+import io.getlime.security.powerauth.rest.api.base.client.PowerAuthCallRejectedException;
+import io.getlime.security.powerauth.rest.api.base.client.PowerAuthClientResilience;
+import io.getlime.security.powerauth.rest.api.base.client.PowerAuthOperationClass;
+
+import java.lang.reflect.Method;
+import java.util.Set;
+
+/**
+ * Decorator of {@link PowerAuthClient} which protects PowerAuth server calls using bulkheads and circuit breakers
+ * of {@link PowerAuthClientResilience}. Rejected calls fail fast with {@link PowerAuthClientException} caused by
+ * {@link PowerAuthCallRejectedException}, so that they are handled as other failed PowerAuth server calls.
+ * <br><br>
+ * Errors returned by PowerAuth server for invalid requests do not affect circuit breakers, only exceptions without
+ * PowerAuth error, such as connection failures and timeouts, are considered failures. Methods of the version 2
+ * client returned by {@link PowerAuthClient#v2()} are protected as well.
+ * <br><br>
+ * Usage: wrap the client when the PowerAuth client bean is created, for example
+ * {@code return ResilientPowerAuthClient.wrap(new PowerAuthRestClient(url, config), powerAuthClientResilience);}
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public final class ResilientPowerAuthClient extends PowerAuthClientDecorator {
+
+    static final Set<String> AUTHENTICATION_METHODS = methodNames(
+            "verifySignature", "validateToken", "verifyECDSASignature", "verifyOfflineSignature");
+
+    static final Set<String> ENCRYPTION_METHODS = methodNames(
+            "getEciesDecryptor", "generateNonPersonalizedE2EEncryptionKey", "generatePersonalizedE2EEncryptionKey");
+
+    private final Object delegate;
+    private final PowerAuthClientResilience resilience;
+
+    private ResilientPowerAuthClient(Object delegate, PowerAuthClientResilience resilience, boolean clientV2) {
+        super(clientV2);
+        this.delegate = delegate;
+        this.resilience = resilience;
+    }
+
+    /**
+     * Wrap PowerAuth client with a decorator which protects PowerAuth server calls using bulkheads and circuit breakers.
+     *
+     * @param powerAuthClient PowerAuth client.
+     * @param resilience Bulkheads and circuit breakers of PowerAuth server calls.
+     * @return Decorated PowerAuth client.
+     */
+    public static PowerAuthClient wrap(PowerAuthClient powerAuthClient, PowerAuthClientResilience resilience) {
+        return newProxy(new ResilientPowerAuthClient(powerAuthClient, resilience, false));
+    }
+
+    @Override
+    PowerAuthClientDecorator decorateClientV2(Method method, Object[] args) throws Throwable {
+        // Version 2 client is decorated as well, so that its calls are protected, too
+        return new ResilientPowerAuthClient(invokeTarget(delegate, method, args), resilience, true);
+    }
+
+    @Override
+    Object invokeClientMethod(Method method, Object[] args) throws Throwable {
+        try {
+            return resilience.execute(resolveOperationClass(method.getName()), targetCall(delegate, method, args),
+                    PowerAuthClientErrors::isServerFailure);
+        } catch (PowerAuthCallRejectedException ex) {
+            throw new PowerAuthClientException(ex.getMessage(), ex);
+        }
+    }
+
+    private static PowerAuthOperationClass resolveOperationClass(String methodName) {
+        if (AUTHENTICATION_METHODS.contains(methodName)) {
+            return PowerAuthOperationClass.AUTHENTICATION;
+        }
+        if (ENCRYPTION_METHODS.contains(methodName)) {
+            return PowerAuthOperationClass.ENCRYPTION;
+        }
+        return PowerAuthOperationClass.ACTIVATION;
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.spring.filter;
+
+import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.model.EciesCryptogram;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.lang.NonNull;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * HTTP message converter which writes ECIES cryptogram of a response as JSON with the structure of
+ * {@code EciesEncryptedResponse}. The JSON is written directly into the response body and the encrypted data
+ * is Base64 encoded while it is written, so that neither the Base64 encoded String nor the serialized JSON
+ * is allocated.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class EciesEncryptedResponseHttpMessageConverter extends AbstractHttpMessageConverter<EciesCryptogram> {
+
+    private static final byte[] ENCRYPTED_DATA_PREFIX = "{\"encryptedData\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MAC_PREFIX = "\",\"mac\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SUFFIX = "\"}".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Default constructor, the converter supports all media types.
+     */
+    public EciesEncryptedResponseHttpMessageConverter() {
+        super(MediaType.ALL);
+    }
+
+    @Override
+    protected boolean supports(@NonNull Class<?> clazz) {
+        return EciesCryptogram.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(@NonNull Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    @NonNull
+    protected EciesCryptogram readInternal(@NonNull Class<? extends EciesCryptogram> clazz, @NonNull HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Reading of ECIES cryptogram is not supported", inputMessage);
+    }
+
+    @Override
+    protected Long getContentLength(@NonNull EciesCryptogram cryptogram, MediaType contentType) {
+        return (long) ENCRYPTED_DATA_PREFIX.length + base64Length(cryptogram.getEncryptedData().length)
+                + MAC_PREFIX.length + base64Length(cryptogram.getMac().length) + SUFFIX.length;
+    }
+
+    @Override
+    protected void writeInternal(@NonNull EciesCryptogram cryptogram, @NonNull HttpOutputMessage outputMessage) throws IOException {
+        final OutputStream body = outputMessage.getBody();
+        body.write(ENCRYPTED_DATA_PREFIX);
+        writeBase64(cryptogram.getEncryptedData(), body);
+        body.write(MAC_PREFIX);
+        writeBase64(cryptogram.getMac(), body);
+        body.write(SUFFIX);
+    }
+
+    /**
+     * Write Base64 encoded data into output stream without closing the output stream.
+     *
+     * @param data Data to encode.
+     * @param outputStream Output stream.
+     * @throws IOException In case writing fails.
+     */
+    private void writeBase64(byte[] data, OutputStream outputStream) throws IOException {
+        try (final OutputStream base64OutputStream = Base64.getEncoder().wrap(StreamUtils.nonClosing(outputStream))) {
+            base64OutputStream.write(data);
+        }
+    }
+
+    private long base64Length(int dataLength) {
+        return 4L * ((dataLength + 2) / 3);
+    }
+
+}
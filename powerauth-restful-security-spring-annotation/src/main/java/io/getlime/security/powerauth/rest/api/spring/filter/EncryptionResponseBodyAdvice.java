@@ -24,6 +24,7 @@ import com.google.common.io.BaseEncoding;
 import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.EciesDecryptor;
 import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.model.EciesCryptogram;
 import io.getlime.security.powerauth.rest.api.base.encryption.PowerAuthEciesEncryption;
+import io.getlime.security.powerauth.rest.api.base.metrics.PowerAuthMetrics;
 import io.getlime.security.powerauth.rest.api.base.model.PowerAuthRequestObjects;
 import io.getlime.security.powerauth.rest.api.model.response.v3.EciesEncryptedResponse;
 import io.getlime.security.powerauth.rest.api.spring.annotation.PowerAuthEncryption;
@@ -31,8 +32,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.MethodParameter;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpOutputMessage;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.ByteArrayHttpMessageConverter;
 import org.springframework.http.converter.HttpMessageConverter;
@@ -43,15 +42,10 @@ import org.springframework.http.server.ServerHttpResponse;
 import org.springframework.http.server.ServletServerHttpRequest;
 import org.springframework.lang.NonNull;
 import org.springframework.web.bind.annotation.ControllerAdvice;
-import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
 
 import javax.servlet.http.HttpServletRequest;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.nio.charset.StandardCharsets;
-import java.util.List;
 
 /**
  * Controller advice used for encryption of responses of REST endpoints.
@@ -65,16 +59,18 @@ public class EncryptionResponseBodyAdvice implements ResponseBodyAdvice<Object>
 
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    private RequestMappingHandlerAdapter requestMappingHandlerAdapter;
+    private final EciesEncryptedResponseHttpMessageConverter encryptedResponseConverter = new EciesEncryptedResponseHttpMessageConverter();
+
+    private PowerAuthMetrics powerAuthMetrics;
 
     /**
-     * Set request mapping handler adapter via setter injection. Note: Autowiring in constructor cannot be
-     * used due to circular dependency.
-     * @param requestMappingHandlerAdapter Request mapping handler adapter.
+     * Set PowerAuth metrics via setter injection. When metrics are configured, duration of response encryption
+     * is recorded.
+     * @param powerAuthMetrics PowerAuth metrics.
      */
-    @Autowired
-    public void setRequestMappingHandlerAdapter(RequestMappingHandlerAdapter requestMappingHandlerAdapter) {
-        this.requestMappingHandlerAdapter = requestMappingHandlerAdapter;
+    @Autowired(required = false)
+    public void setPowerAuthMetrics(PowerAuthMetrics powerAuthMetrics) {
+        this.powerAuthMetrics = powerAuthMetrics;
     }
 
     /**
@@ -93,7 +89,9 @@ public class EncryptionResponseBodyAdvice implements ResponseBodyAdvice<Object>
     }
 
     /**
-     * Encrypt response before writing body.
+     * Encrypt response before writing body. In case the response is converted to JSON, the encrypted response object
+     * is returned. In case the response is converted to String or byte[], the encrypted response is written directly
+     * into the HTTP response body and null is returned, so that the selected converter writes nothing.
      *
      * @param response Response object.
      * @param methodParameter Method parameter.
@@ -101,7 +99,7 @@ public class EncryptionResponseBodyAdvice implements ResponseBodyAdvice<Object>
      * @param converterClass Selected HTTP message converter class.
      * @param serverHttpRequest HTTP request.
      * @param serverHttpResponse HTTP response.
-     * @return ECIES cryptogram.
+     * @return ECIES cryptogram or null in case the encrypted response was already written.
      */
     @Override
     public Object beforeBodyWrite(Object response, @NonNull MethodParameter methodParameter, @NonNull MediaType mediaType, @NonNull Class<? extends HttpMessageConverter<?>> converterClass, @NonNull ServerHttpRequest serverHttpRequest, @NonNull ServerHttpResponse serverHttpResponse) {
@@ -116,35 +114,56 @@ public class EncryptionResponseBodyAdvice implements ResponseBodyAdvice<Object>
             return null;
         }
 
-        // Convert response to JSON
+        final long startTime = powerAuthMetrics != null ? powerAuthMetrics.startTimer() : 0;
+        boolean success = false;
         try {
-            byte[] responseBytes = serializeResponseObject(response);
-
-            // Encrypt response using decryptor and return ECIES cryptogram
-            final EciesDecryptor eciesDecryptor = eciesEncryption.getEciesDecryptor();
-            final EciesCryptogram cryptogram = eciesDecryptor.encryptResponse(responseBytes);
-            final String encryptedDataBase64 = BaseEncoding.base64().encode(cryptogram.getEncryptedData());
-            final String macBase64 = BaseEncoding.base64().encode(cryptogram.getMac());
-
-            // Return encrypted response with type given by converter class
-            final EciesEncryptedResponse encryptedResponse = new EciesEncryptedResponse(encryptedDataBase64, macBase64);
-            if (converterClass.isAssignableFrom(MappingJackson2HttpMessageConverter.class)) {
-                // Object conversion is done automatically using MappingJackson2HttpMessageConverter
-                return encryptedResponse;
-            } else if (converterClass.isAssignableFrom(StringHttpMessageConverter.class)) {
-                // Conversion to byte[] is done using first applicable configured HTTP message converter, corresponding String is returned
-                return new String(convertEncryptedResponse(encryptedResponse, mediaType), StandardCharsets.UTF_8);
-            } else {
-                // Conversion to byte[] is done using first applicable configured HTTP message converter
-                return convertEncryptedResponse(encryptedResponse, mediaType);
-            }
+            final Object encryptedResponse = encryptResponse(response, eciesEncryption, mediaType, converterClass, serverHttpResponse);
+            success = true;
+            return encryptedResponse;
         } catch (Exception ex) {
             logger.warn("Encryption failed, error: {}", ex.getMessage());
             logger.debug("Error details", ex);
             return null;
+        } finally {
+            if (powerAuthMetrics != null) {
+                powerAuthMetrics.recordEciesEncryption(eciesEncryption.getContext().getEciesScope(), eciesEncryption.getContext().getVersion(),
+                        startTime, success);
+            }
         }
     }
 
+    /**
+     * Encrypt response and either return it or write it into the HTTP response body, based on converter class.
+     *
+     * @param response Response object.
+     * @param eciesEncryption PowerAuth encryption object.
+     * @param mediaType Selected HTTP response media type.
+     * @param converterClass Selected HTTP message converter class.
+     * @param serverHttpResponse HTTP response.
+     * @return ECIES cryptogram or null in case the encrypted response was written into the HTTP response body.
+     * @throws Exception In case encryption or writing of the response fails.
+     */
+    private Object encryptResponse(Object response, PowerAuthEciesEncryption<?> eciesEncryption, MediaType mediaType,
+                                   Class<? extends HttpMessageConverter<?>> converterClass, ServerHttpResponse serverHttpResponse) throws Exception {
+        // Convert response to JSON
+        final byte[] responseBytes = serializeResponseObject(response);
+
+        // Encrypt response using decryptor
+        final EciesDecryptor eciesDecryptor = eciesEncryption.getEciesDecryptor();
+        final EciesCryptogram cryptogram = eciesDecryptor.encryptResponse(responseBytes);
+
+        if (converterClass.isAssignableFrom(MappingJackson2HttpMessageConverter.class)) {
+            // Object conversion is done automatically using MappingJackson2HttpMessageConverter
+            final String encryptedDataBase64 = BaseEncoding.base64().encode(cryptogram.getEncryptedData());
+            final String macBase64 = BaseEncoding.base64().encode(cryptogram.getMac());
+            return new EciesEncryptedResponse(encryptedDataBase64, macBase64);
+        }
+
+        // Encrypted response for String and byte[] converters is written directly into the HTTP response body
+        encryptedResponseConverter.write(cryptogram, mediaType, serverHttpResponse);
+        return null;
+    }
+
     /**
      * Serialize response object to byte[].
      *
@@ -158,54 +177,7 @@ public class EncryptionResponseBodyAdvice implements ResponseBodyAdvice<Object>
             return (byte[]) response;
         } else {
             // Convert response object to byte[] using ObjectMapper
-            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            objectMapper.writeValue(baos, response);
-            return baos.toByteArray();
-        }
-    }
-
-    /**
-     * Convert encrypted response to byte[] using first applicable HTTP message converter.
-     *
-     * @param encryptedResponse Encrypted response to convert.
-     * @param mediaType Selected HTTP response media type.
-     * @return Converted encrypted response.
-     * @throws IOException In case serialization fails.
-     */
-    @SuppressWarnings("unchecked")
-    private byte[] convertEncryptedResponse(EciesEncryptedResponse encryptedResponse, MediaType mediaType) throws IOException {
-        final List<HttpMessageConverter<?>> httpMessageConverters = requestMappingHandlerAdapter.getMessageConverters();
-        // Find the first applicable HTTP message converter for conversion
-        for (HttpMessageConverter<?> converter: httpMessageConverters) {
-            if (converter.canWrite(encryptedResponse.getClass(), mediaType)) {
-                final BasicHttpOutputMessage httpOutputMessage = new BasicHttpOutputMessage();
-                ((HttpMessageConverter<EciesEncryptedResponse>) converter).write(encryptedResponse, mediaType, httpOutputMessage);
-                return httpOutputMessage.getBodyBytes();
-            }
-        }
-        // Could not find any applicable converter, Spring is configured incorrectly
-        throw new IOException("Response message conversion failed, no applicable HTTP message converter found");
-    }
-
-    private static class BasicHttpOutputMessage implements HttpOutputMessage {
-
-        private final ByteArrayOutputStream os = new ByteArrayOutputStream();
-        private final HttpHeaders httpHeaders = new HttpHeaders();
-
-        @Override
-        @NonNull
-        public OutputStream getBody() {
-            return os;
-        }
-
-        public byte[] getBodyBytes() {
-            return os.toByteArray();
-        }
-
-        @Override
-        @NonNull
-        public HttpHeaders getHeaders() {
-            return httpHeaders;
+            return objectMapper.writeValueAsBytes(response);
         }
     }
 
@@ -20,6 +20,8 @@
 package io.getlime.security.powerauth.rest.api.spring.filter;
 
 import io.getlime.security.powerauth.rest.api.base.filter.PowerAuthRequestFilterBase;
+import io.getlime.security.powerauth.rest.api.base.metrics.PowerAuthMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.lang.NonNull;
 import org.springframework.web.filter.OncePerRequestFilter;
 
@@ -38,10 +40,23 @@ import java.io.IOException;
  */
 public class PowerAuthRequestFilter extends OncePerRequestFilter {
 
+    private PowerAuthMetrics powerAuthMetrics;
+
+    /**
+     * Set PowerAuth metrics via setter injection. When metrics are configured, duration of request body buffering
+     * is recorded.
+     *
+     * @param powerAuthMetrics PowerAuth metrics.
+     */
+    @Autowired(required = false)
+    public void setPowerAuthMetrics(PowerAuthMetrics powerAuthMetrics) {
+        this.powerAuthMetrics = powerAuthMetrics;
+    }
+
     @Override
     protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull FilterChain filterChain)
             throws ServletException, IOException {
-        super.doFilter(PowerAuthRequestFilterBase.filterRequest(request), response, filterChain);
+        super.doFilter(PowerAuthRequestFilterBase.filterRequest(request, powerAuthMetrics), response, filterChain);
     }
 
 }
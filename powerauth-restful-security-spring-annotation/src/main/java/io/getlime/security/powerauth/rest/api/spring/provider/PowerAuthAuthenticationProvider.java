@@ -21,7 +21,6 @@ package io.getlime.security.powerauth.rest.api.spring.provider;
 
 import com.google.common.io.BaseEncoding;
 import com.wultra.security.powerauth.client.PowerAuthClient;
-import com.wultra.security.powerauth.client.model.error.PowerAuthClientException;
 import com.wultra.security.powerauth.client.v3.*;
 import io.getlime.security.powerauth.crypto.lib.enums.PowerAuthSignatureTypes;
 import io.getlime.security.powerauth.http.PowerAuthHttpBody;
@@ -31,14 +30,25 @@ import io.getlime.security.powerauth.http.PowerAuthTokenHttpHeader;
 import io.getlime.security.powerauth.http.validator.InvalidPowerAuthHttpHeaderException;
 import io.getlime.security.powerauth.http.validator.PowerAuthSignatureHttpHeaderValidator;
 import io.getlime.security.powerauth.http.validator.PowerAuthTokenHttpHeaderValidator;
+import io.getlime.security.powerauth.rest.api.base.activation.ActivationStatusCache;
 import io.getlime.security.powerauth.rest.api.base.application.PowerAuthApplicationConfiguration;
 import io.getlime.security.powerauth.rest.api.base.authentication.PowerAuthApiAuthentication;
+import io.getlime.security.powerauth.rest.api.base.client.PowerAuthCallRejectedException;
+import io.getlime.security.powerauth.rest.api.base.client.RequestCoalescer;
 import io.getlime.security.powerauth.rest.api.base.exception.PowerAuthAuthenticationException;
 import io.getlime.security.powerauth.rest.api.base.exception.authentication.PowerAuthHeaderMissingException;
+import io.getlime.security.powerauth.rest.api.base.exception.authentication.PowerAuthSignatureErrorException;
 import io.getlime.security.powerauth.rest.api.base.exception.authentication.PowerAuthSignatureInvalidException;
 import io.getlime.security.powerauth.rest.api.base.exception.authentication.PowerAuthSignatureTypeInvalidException;
+import io.getlime.security.powerauth.rest.api.base.exception.authentication.PowerAuthTokenErrorException;
 import io.getlime.security.powerauth.rest.api.base.exception.authentication.PowerAuthTokenInvalidException;
+import io.getlime.security.powerauth.rest.api.base.metrics.PowerAuthMetrics;
+import io.getlime.security.powerauth.rest.api.base.metrics.PowerAuthMetrics.AuthenticationOutcome;
+import io.getlime.security.powerauth.rest.api.base.metrics.PowerAuthMetrics.AuthenticationType;
 import io.getlime.security.powerauth.rest.api.base.provider.PowerAuthAuthenticationProviderBase;
+import io.getlime.security.powerauth.rest.api.base.token.LocalTokenVerifier;
+import io.getlime.security.powerauth.rest.api.base.token.PowerAuthTokenRecord;
+import io.getlime.security.powerauth.rest.api.base.token.TokenValidationResultCache;
 import io.getlime.security.powerauth.rest.api.spring.authentication.PowerAuthApiAuthenticationImpl;
 import io.getlime.security.powerauth.rest.api.spring.authentication.PowerAuthSignatureAuthenticationImpl;
 import io.getlime.security.powerauth.rest.api.spring.authentication.PowerAuthTokenAuthenticationImpl;
@@ -46,12 +56,16 @@ import io.getlime.security.powerauth.rest.api.spring.converter.v3.SignatureTypeC
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.security.authentication.AuthenticationServiceException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Nullable;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * Implementation of PowerAuth authentication provider.
@@ -64,8 +78,17 @@ public class PowerAuthAuthenticationProvider extends PowerAuthAuthenticationProv
 
     private static final Logger logger = LoggerFactory.getLogger(PowerAuthAuthenticationProvider.class);
 
+    private final RequestCoalescer<List<Object>, VerifySignatureResponse> verifySignatureCoalescer = new RequestCoalescer<>();
+    private final RequestCoalescer<List<Object>, ValidateTokenResponse> validateTokenCoalescer = new RequestCoalescer<>();
+
     private PowerAuthClient powerAuthClient;
 
+    private LocalTokenVerifier localTokenVerifier;
+
+    private TokenValidationResultCache tokenValidationResultCache;
+
+    private ActivationStatusCache activationStatusCache;
+
     /**
      * Set PowerAuth service client via setter injection.
      *
@@ -76,6 +99,62 @@ public class PowerAuthAuthenticationProvider extends PowerAuthAuthenticationProv
         this.powerAuthClient = powerAuthClient;
     }
 
+    /**
+     * Set local token verifier via setter injection. When the verifier is configured, token digests are verified
+     * locally for tokens with available token records, other tokens are validated by PowerAuth server.
+     *
+     * @param localTokenVerifier Local token verifier.
+     */
+    @Autowired(required = false)
+    public void setLocalTokenVerifier(LocalTokenVerifier localTokenVerifier) {
+        this.localTokenVerifier = localTokenVerifier;
+    }
+
+    /**
+     * Set token validation result cache via setter injection. When the cache is configured, successful token
+     * validation results are reused for repeated requests with identical token header.
+     *
+     * @param tokenValidationResultCache Token validation result cache.
+     */
+    @Autowired(required = false)
+    public void setTokenValidationResultCache(TokenValidationResultCache tokenValidationResultCache) {
+        this.tokenValidationResultCache = tokenValidationResultCache;
+    }
+
+    /**
+     * Set activation status cache via setter injection. When the cache is configured, cached activation status
+     * is discarded after signature verification, because the verification changes the signature counter.
+     *
+     * @param activationStatusCache Activation status cache.
+     */
+    @Autowired(required = false)
+    public void setActivationStatusCache(ActivationStatusCache activationStatusCache) {
+        this.activationStatusCache = activationStatusCache;
+    }
+
+    /**
+     * Set executor for asynchronous signature and token validation via setter injection. The executor is looked up
+     * as a bean with name "powerAuthAsyncExecutor", default executor is used in case such bean does not exist.
+     *
+     * @param asyncExecutor Executor for asynchronous validation.
+     */
+    @Override
+    @Autowired(required = false)
+    public void setAsyncExecutor(@Qualifier("powerAuthAsyncExecutor") Executor asyncExecutor) {
+        super.setAsyncExecutor(asyncExecutor);
+    }
+
+    /**
+     * Set PowerAuth metrics via setter injection.
+     *
+     * @param powerAuthMetrics PowerAuth metrics.
+     */
+    @Override
+    @Autowired(required = false)
+    public void setPowerAuthMetrics(PowerAuthMetrics powerAuthMetrics) {
+        super.setPowerAuthMetrics(powerAuthMetrics);
+    }
+
     /**
      * Authenticate user using the provided authentication.
      *
@@ -131,14 +210,26 @@ public class PowerAuthAuthenticationProvider extends PowerAuthAuthenticationProv
                 request.setForcedSignatureVersion(authentication.getForcedSignatureVersion().longValue());
             }
 
+            // Concurrent requests with identical signature share single signature verification, the signature
+            // counter is consumed only once and the result is shared only among exact duplicates of the request
+            final List<Object> requestKey = Arrays.asList(request.getActivationId(), request.getApplicationKey(), request.getSignature(),
+                    request.getSignatureType(), request.getSignatureVersion(), request.getData(), request.getForcedSignatureVersion());
+
             final VerifySignatureResponse response;
             try {
-                response = powerAuthClient.verifySignature(request);
-            } catch (PowerAuthClientException ex) {
+                response = verifySignatureCoalescer.execute(requestKey, () -> powerAuthClient.verifySignature(request));
+            } catch (Exception ex) {
+                invalidateActivationStatus(request.getActivationId());
+                if (PowerAuthCallRejectedException.isCausedByRejectedCall(ex)) {
+                    // PowerAuth server call was rejected, the signature could not be verified
+                    throw new AuthenticationServiceException(ex.getMessage(), ex);
+                }
                 logger.warn("Signature validation failed, error: {}", ex.getMessage());
                 logger.debug("Error details", ex);
                 return null;
             }
+            // Signature counter and failed attempt counter have changed, the cached activation status is outdated
+            invalidateActivationStatus(request.getActivationId());
             if (response.isSignatureValid()) {
                 return copyAuthenticationAttributes(response.getActivationId(), response.getUserId(),
                         response.getApplicationId(), response.getApplicationRoles(), response.getActivationFlags(), PowerAuthSignatureTypes.getEnumFromString(response.getSignatureType().value()),
@@ -152,6 +243,17 @@ public class PowerAuthAuthenticationProvider extends PowerAuthAuthenticationProv
         }
     }
 
+    /**
+     * Discard cached status of an activation in case the activation status cache is configured.
+     *
+     * @param activationId Activation ID.
+     */
+    private void invalidateActivationStatus(String activationId) {
+        if (activationStatusCache != null && activationId != null) {
+            activationStatusCache.invalidateActivation(activationId);
+        }
+    }
+
     /**
      * Validate basic token-based authentication.
      *
@@ -160,17 +262,50 @@ public class PowerAuthAuthenticationProvider extends PowerAuthAuthenticationProv
      */
     private PowerAuthApiAuthenticationImpl validateTokenAuthentication(PowerAuthTokenAuthenticationImpl authentication) {
         try {
+            final long timestamp = Long.parseLong(authentication.getTimestamp());
+
+            // Reuse successful validation result of identical token header
+            if (tokenValidationResultCache != null) {
+                final PowerAuthApiAuthentication cachedAuthentication = tokenValidationResultCache.getValidationResult(
+                        authentication.getTokenId(), authentication.getTokenDigest(), authentication.getNonce());
+                if (cachedAuthentication != null) {
+                    return copyAuthenticationAttributes(cachedAuthentication.getActivationId(), cachedAuthentication.getUserId(),
+                            cachedAuthentication.getApplicationId(), cachedAuthentication.getApplicationRoles(), cachedAuthentication.getActivationFlags(), cachedAuthentication.getSignatureFactors(),
+                            authentication.getVersion(), authentication.getHttpHeader());
+                }
+            }
+
+            // Verify the token digest locally in case token record of an active activation is available
+            if (localTokenVerifier != null) {
+                final PowerAuthTokenRecord tokenRecord = localTokenVerifier.findTokenRecord(authentication.getTokenId(), timestamp);
+                if (tokenRecord != null) {
+                    if (localTokenVerifier.verifyTokenDigest(tokenRecord, authentication.getTokenDigest(), authentication.getNonce(), timestamp)) {
+                        return copyAuthenticationAttributes(tokenRecord.getActivationId(), tokenRecord.getUserId(),
+                                tokenRecord.getApplicationId(), tokenRecord.getApplicationRoles(), tokenRecord.getActivationFlags(), tokenRecord.getSignatureType(),
+                                authentication.getVersion(), authentication.getHttpHeader());
+                    } else {
+                        return null;
+                    }
+                }
+            }
+
             final ValidateTokenRequest soapRequest = new ValidateTokenRequest();
             soapRequest.setTokenId(authentication.getTokenId());
             soapRequest.setTokenDigest(authentication.getTokenDigest());
             soapRequest.setNonce(authentication.getNonce());
-            soapRequest.setTimestamp(Long.parseLong(authentication.getTimestamp()));
+            soapRequest.setTimestamp(timestamp);
 
-            final ValidateTokenResponse soapResponse = powerAuthClient.validateToken(soapRequest);
+            // Concurrent requests with identical token header share single token validation
+            final List<Object> requestKey = Arrays.asList(soapRequest.getTokenId(), soapRequest.getTokenDigest(), soapRequest.getNonce(), soapRequest.getTimestamp());
+            final ValidateTokenResponse soapResponse = validateTokenCoalescer.execute(requestKey, () -> powerAuthClient.validateToken(soapRequest));
             if (soapResponse.isTokenValid()) {
-                return copyAuthenticationAttributes(soapResponse.getActivationId(), soapResponse.getUserId(),
+                final PowerAuthApiAuthenticationImpl apiAuthentication = copyAuthenticationAttributes(soapResponse.getActivationId(), soapResponse.getUserId(),
                         soapResponse.getApplicationId(), soapResponse.getApplicationRoles(), soapResponse.getActivationFlags(), PowerAuthSignatureTypes.getEnumFromString(soapResponse.getSignatureType().value()),
                         authentication.getVersion(), authentication.getHttpHeader());
+                if (tokenValidationResultCache != null) {
+                    tokenValidationResultCache.putValidationResult(authentication.getTokenId(), authentication.getTokenDigest(), authentication.getNonce(), apiAuthentication);
+                }
+                return apiAuthentication;
             } else {
                 return null;
             }
@@ -179,6 +314,10 @@ public class PowerAuthAuthenticationProvider extends PowerAuthAuthenticationProv
             logger.debug("Error details", ex);
             return null;
         } catch (Exception ex) {
+            if (PowerAuthCallRejectedException.isCausedByRejectedCall(ex)) {
+                // PowerAuth server call was rejected, the token could not be validated
+                throw new AuthenticationServiceException(ex.getMessage(), ex);
+            }
             logger.warn("Token validation failed, error: {}", ex.getMessage());
             logger.debug("Error details", ex);
             return null;
@@ -219,6 +358,7 @@ public class PowerAuthAuthenticationProvider extends PowerAuthAuthenticationProv
      * @param httpMethod HTTP method (GET, POST, ...)
      * @param httpBody Body of the HTTP request.
      * @param requestUriIdentifier Request URI identifier.
+     * @param resourceIdTemplate Resource ID template before expansion of placeholders, used to identify the endpoint in metrics.
      * @param httpAuthorizationHeader PowerAuth HTTP authorization header.
      * @param allowedSignatureTypes Allowed types of the signature.
      * @param forcedSignatureVersion Forced signature version, optional parameter used during upgrade.
@@ -226,6 +366,33 @@ public class PowerAuthAuthenticationProvider extends PowerAuthAuthenticationProv
      * @throws PowerAuthAuthenticationException In case authorization fails, exception is raised.
      */
     public PowerAuthApiAuthentication validateRequestSignature(
+            String httpMethod,
+            byte[] httpBody,
+            String requestUriIdentifier,
+            String resourceIdTemplate,
+            String httpAuthorizationHeader,
+            List<PowerAuthSignatureTypes> allowedSignatureTypes,
+            @Nullable Integer forcedSignatureVersion
+    ) throws PowerAuthAuthenticationException {
+        final PowerAuthMetrics metrics = getPowerAuthMetrics();
+        if (metrics == null) {
+            return validateRequestSignatureInternal(httpMethod, httpBody, requestUriIdentifier, httpAuthorizationHeader, allowedSignatureTypes, forcedSignatureVersion);
+        }
+        try {
+            final PowerAuthApiAuthentication auth = validateRequestSignatureInternal(httpMethod, httpBody, requestUriIdentifier, httpAuthorizationHeader, allowedSignatureTypes, forcedSignatureVersion);
+            metrics.recordAuthentication(AuthenticationType.SIGNATURE, resourceIdTemplate, auth.getSignatureFactors(), auth.getVersion(), AuthenticationOutcome.VALID);
+            return auth;
+        } catch (PowerAuthAuthenticationException ex) {
+            // Signature type and version are taken from the HTTP header, the values are validated by metrics
+            final PowerAuthSignatureHttpHeader header = httpAuthorizationHeader != null ? new PowerAuthSignatureHttpHeader().fromValue(httpAuthorizationHeader) : null;
+            metrics.recordAuthentication(AuthenticationType.SIGNATURE, resourceIdTemplate,
+                    header != null ? PowerAuthSignatureTypes.getEnumFromString(header.getSignatureType()) : null,
+                    header != null ? header.getVersion() : null, AuthenticationOutcome.fromException(ex));
+            throw ex;
+        }
+    }
+
+    private PowerAuthApiAuthentication validateRequestSignatureInternal(
             String httpMethod,
             byte[] httpBody,
             String requestUriIdentifier,
@@ -274,7 +441,13 @@ public class PowerAuthAuthenticationProvider extends PowerAuthAuthenticationProv
         powerAuthAuthentication.setForcedSignatureVersion(forcedSignatureVersion);
 
         // Call the authentication based on signature authentication object
-        final PowerAuthApiAuthentication auth = (PowerAuthApiAuthentication) this.authenticate(powerAuthAuthentication);
+        final PowerAuthApiAuthentication auth;
+        try {
+            auth = (PowerAuthApiAuthentication) this.authenticate(powerAuthAuthentication);
+        } catch (AuthenticationServiceException ex) {
+            logger.warn("Signature validation failed, error: {}", ex.getMessage());
+            throw new PowerAuthSignatureErrorException();
+        }
 
         // In case authentication is null, throw PowerAuth exception
         if (auth == null) {
@@ -290,10 +463,28 @@ public class PowerAuthAuthenticationProvider extends PowerAuthAuthenticationProv
      *
      * @param tokenHeader Token header.
      * @param allowedSignatureTypes Allowed types of the signature.
+     * @param endpoint Request mapping pattern of the endpoint, used to identify the endpoint in metrics, null in case it is not available.
      * @return Authentication object in case authentication is correctly obtained.
      * @throws PowerAuthAuthenticationException In case of authentication failure.
      */
-    public PowerAuthApiAuthentication validateToken(String tokenHeader, List<PowerAuthSignatureTypes> allowedSignatureTypes) throws PowerAuthAuthenticationException {
+    public PowerAuthApiAuthentication validateToken(String tokenHeader, List<PowerAuthSignatureTypes> allowedSignatureTypes, @Nullable String endpoint) throws PowerAuthAuthenticationException {
+        final PowerAuthMetrics metrics = getPowerAuthMetrics();
+        if (metrics == null) {
+            return validateTokenInternal(tokenHeader, allowedSignatureTypes);
+        }
+        try {
+            final PowerAuthApiAuthentication auth = validateTokenInternal(tokenHeader, allowedSignatureTypes);
+            metrics.recordAuthentication(AuthenticationType.TOKEN, endpoint, auth.getSignatureFactors(), auth.getVersion(), AuthenticationOutcome.VALID);
+            return auth;
+        } catch (PowerAuthAuthenticationException ex) {
+            final PowerAuthTokenHttpHeader header = tokenHeader != null ? new PowerAuthTokenHttpHeader().fromValue(tokenHeader) : null;
+            metrics.recordAuthentication(AuthenticationType.TOKEN, endpoint, null,
+                    header != null ? header.getVersion() : null, AuthenticationOutcome.fromException(ex));
+            throw ex;
+        }
+    }
+
+    private PowerAuthApiAuthentication validateTokenInternal(String tokenHeader, List<PowerAuthSignatureTypes> allowedSignatureTypes) throws PowerAuthAuthenticationException {
 
         // Check for HTTP PowerAuth signature header
         if (tokenHeader == null || tokenHeader.equals("undefined")) {
@@ -323,7 +514,13 @@ public class PowerAuthAuthenticationProvider extends PowerAuthAuthenticationProv
         powerAuthTokenAuthentication.setHttpHeader(header);
 
         // Call the authentication based on token authentication object
-        final PowerAuthApiAuthentication auth = (PowerAuthApiAuthentication) this.authenticate(powerAuthTokenAuthentication);
+        final PowerAuthApiAuthentication auth;
+        try {
+            auth = (PowerAuthApiAuthentication) this.authenticate(powerAuthTokenAuthentication);
+        } catch (AuthenticationServiceException ex) {
+            logger.warn("Token validation failed, error: {}", ex.getMessage());
+            throw new PowerAuthTokenErrorException();
+        }
 
         // In case authentication is null, throw PowerAuth exception
         if (auth == null) {
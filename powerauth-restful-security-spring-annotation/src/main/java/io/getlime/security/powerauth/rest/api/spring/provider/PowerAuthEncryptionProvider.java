@@ -22,14 +22,20 @@ package io.getlime.security.powerauth.rest.api.spring.provider;
 import com.wultra.security.powerauth.client.PowerAuthClient;
 import com.wultra.security.powerauth.client.v3.GetEciesDecryptorRequest;
 import com.wultra.security.powerauth.client.v3.GetEciesDecryptorResponse;
+import io.getlime.security.powerauth.rest.api.base.client.RequestCoalescer;
+import io.getlime.security.powerauth.rest.api.base.encryption.LocalEciesKeyDeriver;
 import io.getlime.security.powerauth.rest.api.base.encryption.PowerAuthEciesDecryptorParameters;
 import io.getlime.security.powerauth.rest.api.base.exception.PowerAuthEncryptionException;
+import io.getlime.security.powerauth.rest.api.base.metrics.PowerAuthMetrics;
 import io.getlime.security.powerauth.rest.api.base.provider.PowerAuthEncryptionProviderBase;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * Implementation of PowerAuth encryption provider.
  *
@@ -41,6 +47,8 @@ public class PowerAuthEncryptionProvider extends PowerAuthEncryptionProviderBase
 
     private static final Logger logger = LoggerFactory.getLogger(PowerAuthEncryptionProvider.class);
 
+    private final RequestCoalescer<List<String>, GetEciesDecryptorResponse> eciesDecryptorCoalescer = new RequestCoalescer<>();
+
     private PowerAuthClient powerAuthClient;
 
     /**
@@ -53,6 +61,28 @@ public class PowerAuthEncryptionProvider extends PowerAuthEncryptionProviderBase
         this.powerAuthClient = powerAuthClient;
     }
 
+    /**
+     * Set PowerAuth metrics via setter injection.
+     *
+     * @param powerAuthMetrics PowerAuth metrics.
+     */
+    @Override
+    @Autowired(required = false)
+    public void setPowerAuthMetrics(PowerAuthMetrics powerAuthMetrics) {
+        super.setPowerAuthMetrics(powerAuthMetrics);
+    }
+
+    /**
+     * Set local ECIES key deriver via setter injection.
+     *
+     * @param localEciesKeyDeriver Local ECIES key deriver.
+     */
+    @Override
+    @Autowired(required = false)
+    public void setLocalEciesKeyDeriver(LocalEciesKeyDeriver localEciesKeyDeriver) {
+        super.setLocalEciesKeyDeriver(localEciesKeyDeriver);
+    }
+
     @Override
     public PowerAuthEciesDecryptorParameters getEciesDecryptorParameters(String activationId, String applicationKey, String ephemeralPublicKey) throws PowerAuthEncryptionException {
         try {
@@ -60,7 +90,9 @@ public class PowerAuthEncryptionProvider extends PowerAuthEncryptionProviderBase
             eciesDecryptorRequest.setActivationId(activationId);
             eciesDecryptorRequest.setApplicationKey(applicationKey);
             eciesDecryptorRequest.setEphemeralPublicKey(ephemeralPublicKey);
-            GetEciesDecryptorResponse eciesDecryptorResponse = powerAuthClient.getEciesDecryptor(eciesDecryptorRequest);
+            // Concurrent requests with identical ephemeral public key share single call of PowerAuth server
+            final List<String> requestKey = Arrays.asList(activationId, applicationKey, ephemeralPublicKey);
+            GetEciesDecryptorResponse eciesDecryptorResponse = eciesDecryptorCoalescer.execute(requestKey, () -> powerAuthClient.getEciesDecryptor(eciesDecryptorRequest));
             return new PowerAuthEciesDecryptorParameters(eciesDecryptorResponse.getSecretKey(), eciesDecryptorResponse.getSharedInfo2());
         } catch (Exception ex) {
             logger.warn("Get ECIES decryptor call failed, error: {}", ex.getMessage());
@@ -0,0 +1,113 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.spring.client;
+
+import com.wultra.security.powerauth.client.PowerAuthClient;
+import io.getlime.security.powerauth.rest.api.base.client.PowerAuthRequestHedging;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for decorators of PowerAuth client.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+class PowerAuthClientDecoratorTest {
+
+    private PowerAuthRequestHedging hedging;
+
+    @BeforeEach
+    void setUp() {
+        hedging = new PowerAuthRequestHedging(Executors.newSingleThreadExecutor());
+    }
+
+    @AfterEach
+    void tearDown() {
+        hedging.close();
+    }
+
+    @Test
+    void testClassifiedMethodsExist() throws Exception {
+        final Set<String> clientMethods = methodNames(PowerAuthClient.class);
+        final Set<String> clientV2Methods = methodNames(PowerAuthClient.class.getMethod("v2").getReturnType());
+        final Set<String> allClientMethods = new HashSet<>(clientMethods);
+        allClientMethods.addAll(clientV2Methods);
+        // Hedging does not decorate the version 2 client, other decorators classify methods of both clients
+        assertMethodsExist(HedgedPowerAuthClient.HEDGED_METHODS, clientMethods);
+        assertMethodsExist(ResilientPowerAuthClient.AUTHENTICATION_METHODS, allClientMethods);
+        assertMethodsExist(ResilientPowerAuthClient.ENCRYPTION_METHODS, allClientMethods);
+        assertMethodsExist(LoadBalancedPowerAuthClient.RETRYABLE_METHODS, allClientMethods);
+    }
+
+    @Test
+    void testHedgedMethodsAreRetryable() {
+        // Only read-only calls may be hedged, the same calls are safe to retry on another node
+        for (String methodName : HedgedPowerAuthClient.HEDGED_METHODS) {
+            assertTrue(LoadBalancedPowerAuthClient.RETRYABLE_METHODS.contains(methodName), "Hedged method is not retryable: " + methodName);
+        }
+    }
+
+    @Test
+    void testObjectMethods() {
+        final PowerAuthClient client = HedgedPowerAuthClient.wrap(unsupportedClient(), hedging);
+        final PowerAuthClient otherClient = HedgedPowerAuthClient.wrap(unsupportedClient(), hedging);
+        assertEquals(client, client);
+        assertNotEquals(client, otherClient);
+        assertNotEquals(client, null);
+        assertEquals(System.identityHashCode(client), client.hashCode());
+        assertTrue(client.toString().startsWith(HedgedPowerAuthClient.class.getSimpleName() + "@"));
+    }
+
+    @Test
+    void testDelegateExceptionIsRethrown() {
+        final PowerAuthClient client = HedgedPowerAuthClient.wrap(unsupportedClient(), hedging);
+        assertThrows(UnsupportedOperationException.class, () -> client.getActivationStatus("activation-id"));
+        assertThrows(UnsupportedOperationException.class, () -> client.removeActivation("activation-id", null));
+    }
+
+    private static void assertMethodsExist(Set<String> classifiedMethods, Set<String> clientMethods) {
+        for (String methodName : classifiedMethods) {
+            assertTrue(clientMethods.contains(methodName), "Method does not exist in PowerAuth client: " + methodName);
+        }
+    }
+
+    private static Set<String> methodNames(Class<?> type) {
+        return Arrays.stream(type.getMethods()).map(Method::getName).collect(Collectors.toSet());
+    }
+
+    private static PowerAuthClient unsupportedClient() {
+        return (PowerAuthClient) Proxy.newProxyInstance(PowerAuthClient.class.getClassLoader(), new Class<?>[]{PowerAuthClient.class},
+                (proxy, method, args) -> {
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+}
@@ -19,17 +19,28 @@
  */
 package io.getlime.security.powerauth.rest.api.spring.service.v3;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.wultra.security.powerauth.client.PowerAuthClient;
 import com.wultra.security.powerauth.client.model.error.PowerAuthClientException;
 import com.wultra.security.powerauth.client.model.error.PowerAuthErrorRecovery;
 import com.wultra.security.powerauth.client.v3.*;
+import io.getlime.security.powerauth.rest.api.base.activation.ActivationResponseCache;
+import io.getlime.security.powerauth.rest.api.base.activation.ActivationStatusCache;
+import io.getlime.security.powerauth.rest.api.base.activation.EncryptedActivationStatus;
 import io.getlime.security.powerauth.rest.api.base.application.PowerAuthApplicationConfiguration;
+import io.getlime.security.powerauth.rest.api.base.application.StatusServiceCustomObjectCache;
 import io.getlime.security.powerauth.rest.api.base.authentication.PowerAuthApiAuthentication;
 import io.getlime.security.powerauth.rest.api.base.encryption.EciesEncryptionContext;
+import io.getlime.security.powerauth.rest.api.base.encryption.LocalEciesKeyDeriver;
 import io.getlime.security.powerauth.rest.api.base.exception.PowerAuthActivationException;
 import io.getlime.security.powerauth.rest.api.base.exception.PowerAuthRecoveryException;
 import io.getlime.security.powerauth.rest.api.base.exception.authentication.PowerAuthInvalidRequestException;
+import io.getlime.security.powerauth.rest.api.base.notification.ActivationNotification;
+import io.getlime.security.powerauth.rest.api.base.notification.ActivationNotificationQueue;
+import io.getlime.security.powerauth.rest.api.base.provider.CustomActivationPipeline;
 import io.getlime.security.powerauth.rest.api.base.provider.CustomActivationProvider;
+import io.getlime.security.powerauth.rest.api.base.token.LocalTokenVerifier;
+import io.getlime.security.powerauth.rest.api.base.token.TokenValidationResultCache;
 import io.getlime.security.powerauth.rest.api.model.entity.ActivationType;
 import io.getlime.security.powerauth.rest.api.model.request.v3.ActivationLayer1Request;
 import io.getlime.security.powerauth.rest.api.model.request.v3.ActivationStatusRequest;
@@ -41,10 +52,12 @@ import io.getlime.security.powerauth.rest.api.model.response.v3.EciesEncryptedRe
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.Executor;
 
 /**
  * Service implementing activation functionality.
@@ -63,8 +76,40 @@ public class ActivationService {
 
     private PowerAuthApplicationConfiguration applicationConfiguration;
 
+    private ObjectMapper objectMapper;
+
+    private StatusServiceCustomObjectCache statusServiceCustomObjectCache;
+
     private CustomActivationProvider activationProvider;
 
+    private LocalTokenVerifier localTokenVerifier;
+
+    private LocalEciesKeyDeriver localEciesKeyDeriver;
+
+    private TokenValidationResultCache tokenValidationResultCache;
+
+    private ActivationStatusCache activationStatusCache;
+
+    private ActivationResponseCache activationResponseCache;
+
+    private Executor activationExecutor;
+
+    private Executor activationNotificationExecutor;
+
+    private ActivationNotificationQueue activationNotificationQueue;
+
+    private final CustomActivationPipeline.ServerCalls pipelineServerCalls = new CustomActivationPipeline.ServerCalls() {
+        @Override
+        public void addActivationFlags(String activationId, List<String> activationFlags) throws PowerAuthClientException {
+            powerAuthClient.addActivationFlags(activationId, activationFlags);
+        }
+
+        @Override
+        public boolean commitActivation(String activationId) throws PowerAuthClientException {
+            return ActivationService.this.commitActivation(activationId);
+        }
+    };
+
     private static final Logger logger = LoggerFactory.getLogger(ActivationService.class);
 
     /**
@@ -83,6 +128,27 @@ public class ActivationService {
     @Autowired(required = false)
     public void setApplicationConfiguration(PowerAuthApplicationConfiguration applicationConfiguration) {
         this.applicationConfiguration = applicationConfiguration;
+        updateStatusServiceCustomObjectCache();
+    }
+
+    /**
+     * Set object mapper used for serialization of the status service custom object via setter injection.
+     * @param objectMapper Object mapper.
+     */
+    @Autowired(required = false)
+    public void setObjectMapper(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        updateStatusServiceCustomObjectCache();
+    }
+
+    private void updateStatusServiceCustomObjectCache() {
+        if (applicationConfiguration == null) {
+            this.statusServiceCustomObjectCache = null;
+        } else if (objectMapper == null) {
+            this.statusServiceCustomObjectCache = new StatusServiceCustomObjectCache(applicationConfiguration);
+        } else {
+            this.statusServiceCustomObjectCache = new StatusServiceCustomObjectCache(applicationConfiguration, objectMapper);
+        }
     }
 
     /**
@@ -94,6 +160,83 @@ public class ActivationService {
         this.activationProvider = activationProvider;
     }
 
+    /**
+     * Set local token verifier via setter injection.
+     * @param localTokenVerifier Local token verifier.
+     */
+    @Autowired(required = false)
+    public void setLocalTokenVerifier(LocalTokenVerifier localTokenVerifier) {
+        this.localTokenVerifier = localTokenVerifier;
+    }
+
+    /**
+     * Set local ECIES key deriver via setter injection.
+     * @param localEciesKeyDeriver Local ECIES key deriver.
+     */
+    @Autowired(required = false)
+    public void setLocalEciesKeyDeriver(LocalEciesKeyDeriver localEciesKeyDeriver) {
+        this.localEciesKeyDeriver = localEciesKeyDeriver;
+    }
+
+    /**
+     * Set token validation result cache via setter injection.
+     * @param tokenValidationResultCache Token validation result cache.
+     */
+    @Autowired(required = false)
+    public void setTokenValidationResultCache(TokenValidationResultCache tokenValidationResultCache) {
+        this.tokenValidationResultCache = tokenValidationResultCache;
+    }
+
+    /**
+     * Set activation status cache via setter injection.
+     * @param activationStatusCache Activation status cache.
+     */
+    @Autowired(required = false)
+    public void setActivationStatusCache(ActivationStatusCache activationStatusCache) {
+        this.activationStatusCache = activationStatusCache;
+    }
+
+    /**
+     * Set activation response cache via setter injection.
+     * @param activationResponseCache Activation response cache.
+     */
+    @Autowired(required = false)
+    public void setActivationResponseCache(ActivationResponseCache activationResponseCache) {
+        this.activationResponseCache = activationResponseCache;
+    }
+
+    /**
+     * Set executor for asynchronous activation provider callbacks via setter injection. The executor is looked up
+     * as a bean with name "powerAuthActivationExecutor", callbacks are called sequentially in case such bean does not exist.
+     * Only asynchronous callbacks overridden by the provider run on the executor, synchronous callbacks are called
+     * in the request thread.
+     * @param activationExecutor Executor for asynchronous activation provider callbacks.
+     */
+    @Autowired(required = false)
+    public void setActivationExecutor(@Qualifier("powerAuthActivationExecutor") Executor activationExecutor) {
+        this.activationExecutor = activationExecutor;
+    }
+
+    /**
+     * Set executor for activation commit notifications via setter injection. The executor is looked up as a bean
+     * with name "powerAuthActivationNotificationExecutor", notifications are sent before the response in case
+     * such bean does not exist.
+     * @param activationNotificationExecutor Executor for activation commit notifications.
+     */
+    @Autowired(required = false)
+    public void setActivationNotificationExecutor(@Qualifier("powerAuthActivationNotificationExecutor") Executor activationNotificationExecutor) {
+        this.activationNotificationExecutor = activationNotificationExecutor;
+    }
+
+    /**
+     * Set activation notification queue via setter injection.
+     * @param activationNotificationQueue Activation notification queue.
+     */
+    @Autowired(required = false)
+    public void setActivationNotificationQueue(ActivationNotificationQueue activationNotificationQueue) {
+        this.activationNotificationQueue = activationNotificationQueue;
+    }
+
     /**
      * Create activation.
      *
@@ -104,6 +247,31 @@ public class ActivationService {
      * @throws PowerAuthRecoveryException In case activation recovery fails.
      */
     public ActivationLayer1Response createActivation(ActivationLayer1Request request, EciesEncryptionContext eciesContext) throws PowerAuthActivationException, PowerAuthRecoveryException {
+        if (activationResponseCache == null) {
+            return processActivation(request, eciesContext);
+        }
+        try {
+            // Repeated requests receive the response of the original request, concurrent repeated requests are processed once
+            return activationResponseCache.execute(eciesContext.getApplicationKey(), request, () -> processActivation(request, eciesContext));
+        } catch (PowerAuthActivationException | PowerAuthRecoveryException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            logger.warn("Creating PowerAuth activation failed, error: {}", ex.getMessage());
+            logger.debug(ex.getMessage(), ex);
+            throw new PowerAuthActivationException();
+        }
+    }
+
+    /**
+     * Process activation request.
+     *
+     * @param request Create activation layer 1 request.
+     * @param eciesContext PowerAuth ECIES encryption context.
+     * @return Create activation layer 1 response.
+     * @throws PowerAuthActivationException In case create activation fails.
+     * @throws PowerAuthRecoveryException In case activation recovery fails.
+     */
+    private ActivationLayer1Response processActivation(ActivationLayer1Request request, EciesEncryptionContext eciesContext) throws PowerAuthActivationException, PowerAuthRecoveryException {
         try {
 
             final String applicationKey = eciesContext.getApplicationKey();
@@ -142,33 +310,15 @@ public class ActivationService {
                     // Call PrepareActivation method on PA server
                     final PrepareActivationResponse response = powerAuthClient.prepareActivation(activationCode, applicationKey, ephemeralPublicKey, encryptedData, mac, nonce);
 
-                    // Create context for passing parameters between activation provider calls
-                    final Map<String, Object> context = new LinkedHashMap<>();
-
                     Map<String, Object> processedCustomAttributes = customAttributes;
-                    // In case a custom activation provider is enabled, process custom attributes and save any flags
+                    // In case a custom activation provider is enabled, process custom attributes, save any flags,
+                    // check if activation should be committed instantly and notify the provider about an activation commit.
+                    // Activation is already committed in case Activation OTP was used.
                     if (activationProvider != null) {
-                        processedCustomAttributes = activationProvider.processCustomActivationAttributes(customAttributes, response.getActivationId(), response.getUserId(), response.getApplicationId(), ActivationType.CODE, context);
-                        List<String> activationFlags = activationProvider.getActivationFlags(identity, processedCustomAttributes, response.getActivationId(), response.getUserId(), response.getApplicationId(), ActivationType.CODE, context);
-                        if (activationFlags != null && !activationFlags.isEmpty()) {
-                            powerAuthClient.addActivationFlags(response.getActivationId(), activationFlags);
-                        }
-                    }
-
-                    boolean notifyActivationCommit = false;
-                    if (response.getActivationStatus() == ActivationStatus.ACTIVE) {
-                        // Activation was committed instantly due to presence of Activation OTP.
-                        notifyActivationCommit = true;
-                    } else {
-                        // Otherwise check if activation should be committed instantly and if yes, perform commit.
-                        if (activationProvider != null && activationProvider.shouldAutoCommitActivation(identity, customAttributes, response.getActivationId(), response.getUserId(), response.getApplicationId(), ActivationType.CODE, context)) {
-                            CommitActivationResponse commitResponse = powerAuthClient.commitActivation(response.getActivationId(), null);
-                            notifyActivationCommit = commitResponse.isActivated();
-                        }
-                    }
-                    // Notify activation provider about an activation commit.
-                    if (activationProvider != null && notifyActivationCommit) {
-                        activationProvider.activationWasCommitted(identity, customAttributes, response.getActivationId(), response.getUserId(), response.getApplicationId(), ActivationType.CODE, context);
+                        final CustomActivationPipeline activationPipeline = createActivationPipeline();
+                        final Map<String, Object> context = activationPipeline.createContext();
+                        final boolean committed = response.getActivationStatus() == ActivationStatus.ACTIVE;
+                        processedCustomAttributes = activationPipeline.execute(identity, customAttributes, response.getActivationId(), response.getUserId(), response.getApplicationId(), ActivationType.CODE, context, committed, pipelineServerCalls);
                     }
 
                     // Prepare and return encrypted response
@@ -190,7 +340,8 @@ public class ActivationService {
                     }
 
                     // Create context for passing parameters between activation provider calls
-                    final Map<String, Object> context = new LinkedHashMap<>();
+                    final CustomActivationPipeline activationPipeline = createActivationPipeline();
+                    final Map<String, Object> context = activationPipeline.createContext();
 
                     // Lookup user ID using a provided identity attributes
                     final String userId = activationProvider.lookupUserIdForAttributes(identity, context);
@@ -224,22 +375,9 @@ public class ActivationService {
                             nonce
                     );
 
-                    // Process custom attributes using a custom logic
-                    final Map<String, Object> processedCustomAttributes = activationProvider.processCustomActivationAttributes(customAttributes, response.getActivationId(), userId, response.getApplicationId(), ActivationType.CUSTOM, context);
-
-                    // Save activation flags in case the provider specified any flags
-                    final List<String> activationFlags = activationProvider.getActivationFlags(identity, processedCustomAttributes, response.getActivationId(), userId, response.getApplicationId(), ActivationType.CUSTOM, context);
-                    if (activationFlags != null && !activationFlags.isEmpty()) {
-                        powerAuthClient.addActivationFlags(response.getActivationId(), activationFlags);
-                    }
-
-                    // Check if activation should be committed instantly and if yes, perform commit
-                    if (activationProvider.shouldAutoCommitActivation(identity, customAttributes, response.getActivationId(), userId, response.getApplicationId(), ActivationType.CUSTOM, context)) {
-                        final CommitActivationResponse commitResponse = powerAuthClient.commitActivation(response.getActivationId(), null);
-                        if (commitResponse.isActivated()) {
-                            activationProvider.activationWasCommitted(identity, customAttributes, response.getActivationId(), userId, response.getApplicationId(), ActivationType.CUSTOM, context);
-                        }
-                    }
+                    // Process custom attributes using a custom logic, save activation flags in case the provider specified
+                    // any flags and check if activation should be committed instantly and if yes, perform commit
+                    final Map<String, Object> processedCustomAttributes = activationPipeline.execute(identity, customAttributes, response.getActivationId(), userId, response.getApplicationId(), ActivationType.CUSTOM, context, false, pipelineServerCalls);
 
                     // Prepare encrypted activation data
                     final EciesEncryptedResponse encryptedActivationData = new EciesEncryptedResponse(response.getEncryptedData(), response.getMac());
@@ -277,7 +415,8 @@ public class ActivationService {
                     }
 
                     // Create context for passing parameters between activation provider calls
-                    final Map<String, Object> context = new LinkedHashMap<>();
+                    final CustomActivationPipeline activationPipeline = createActivationPipeline();
+                    final Map<String, Object> context = activationPipeline.createContext();
 
                     // Resolve maxFailedCount, user ID is not known
                     Long maxFailedCount = null;
@@ -290,21 +429,13 @@ public class ActivationService {
                     final RecoveryCodeActivationResponse response = powerAuthClient.createActivationUsingRecoveryCode(recoveryCode, recoveryPuk, applicationKey, maxFailedCount, ephemeralPublicKey, encryptedData, mac, nonce);
 
                     Map<String, Object> processedCustomAttributes = customAttributes;
-                    // In case a custom activation provider is enabled, process custom attributes and save any flags
                     if (activationProvider != null) {
-                        processedCustomAttributes = activationProvider.processCustomActivationAttributes(customAttributes, response.getActivationId(), response.getUserId(), response.getApplicationId(), ActivationType.RECOVERY, context);
-                        final List<String> activationFlags = activationProvider.getActivationFlags(identity, processedCustomAttributes, response.getActivationId(), response.getUserId(), response.getApplicationId(), ActivationType.RECOVERY, context);
-                        if (activationFlags != null && !activationFlags.isEmpty()) {
-                            powerAuthClient.addActivationFlags(response.getActivationId(), activationFlags);
-                        }
-                    }
-
-                    // Automatically commit activation by default, the optional activation provider can override automatic commit
-                    if (activationProvider == null || activationProvider.shouldAutoCommitActivation(identity, customAttributes, response.getActivationId(), response.getUserId(), response.getApplicationId(), ActivationType.RECOVERY, context)) {
-                        final CommitActivationResponse commitResponse = powerAuthClient.commitActivation(response.getActivationId(), null);
-                        if (activationProvider != null && commitResponse.isActivated()) {
-                            activationProvider.activationWasCommitted(identity, customAttributes, response.getActivationId(), response.getUserId(), response.getApplicationId(), ActivationType.RECOVERY, context);
-                        }
+                        // In case a custom activation provider is enabled, process custom attributes, save any flags
+                        // and let the provider override automatic commit
+                        processedCustomAttributes = activationPipeline.execute(identity, customAttributes, response.getActivationId(), response.getUserId(), response.getApplicationId(), ActivationType.RECOVERY, context, false, pipelineServerCalls);
+                    } else {
+                        // Automatically commit activation by default
+                        commitActivation(response.getActivationId());
                     }
 
                     // Prepare and return encrypted response
@@ -347,13 +478,28 @@ public class ActivationService {
         try {
             final String activationId = request.getActivationId();
             final String challenge = request.getChallenge();
-            final GetActivationStatusResponse paResponse = powerAuthClient.getActivationStatusWithEncryptedStatusBlob(activationId, challenge);
             final ActivationStatusResponse response = new ActivationStatusResponse();
-            response.setActivationId(paResponse.getActivationId());
-            response.setEncryptedStatusBlob(paResponse.getEncryptedStatusBlob());
-            response.setNonce(paResponse.getEncryptedStatusBlobNonce());
-            if (applicationConfiguration != null) {
-                response.setCustomObject(applicationConfiguration.statusServiceCustomObject());
+            // Reuse cached activation status in case it is available, the status is encrypted for the current challenge
+            final boolean statusCacheEnabled = activationStatusCache != null && activationId != null;
+            final byte[] transportKey = statusCacheEnabled ? findTransportKey(activationId, challenge) : null;
+            final EncryptedActivationStatus cachedStatus = statusCacheEnabled ? activationStatusCache.getStatus(activationId, challenge, transportKey) : null;
+            if (cachedStatus != null) {
+                response.setActivationId(activationId);
+                response.setEncryptedStatusBlob(cachedStatus.getEncryptedStatusBlob());
+                response.setNonce(cachedStatus.getEncryptedStatusBlobNonce());
+            } else {
+                final long invalidationStamp = statusCacheEnabled ? activationStatusCache.getInvalidationStamp(activationId) : 0;
+                final GetActivationStatusResponse paResponse = powerAuthClient.getActivationStatusWithEncryptedStatusBlob(activationId, challenge);
+                response.setActivationId(paResponse.getActivationId());
+                response.setEncryptedStatusBlob(paResponse.getEncryptedStatusBlob());
+                response.setNonce(paResponse.getEncryptedStatusBlobNonce());
+                if (statusCacheEnabled && activationId.equals(paResponse.getActivationId())) {
+                    activationStatusCache.putStatus(activationId, invalidationStamp, challenge,
+                            new EncryptedActivationStatus(paResponse.getEncryptedStatusBlob(), paResponse.getEncryptedStatusBlobNonce()), transportKey);
+                }
+            }
+            if (statusServiceCustomObjectCache != null) {
+                response.setCustomObject(statusServiceCustomObjectCache.getCustomObject());
             }
             return response;
         } catch (Exception ex) {
@@ -383,11 +529,35 @@ public class ActivationService {
             if (activationProvider != null) {
                 final boolean revokeCodes = activationProvider.shouldRevokeRecoveryCodeOnRemove(activationId, userId, applicationId);
                 paResponse = powerAuthClient.removeActivation(activationId, null, revokeCodes);
-                activationProvider.activationWasRemoved(activationId, userId, applicationId);
             } else {
                 paResponse = powerAuthClient.removeActivation(activationId, null); // do not revoke recovery codes
             }
 
+            // Discard token records of removed activation used for local token verification
+            if (localTokenVerifier != null) {
+                localTokenVerifier.activationWasRemoved(activationId);
+            }
+
+            // Discard key records of removed activation used for local ECIES key derivation
+            if (localEciesKeyDeriver != null) {
+                localEciesKeyDeriver.activationWasRemoved(activationId);
+            }
+
+            // Discard cached token validation results of removed activation
+            if (tokenValidationResultCache != null) {
+                tokenValidationResultCache.invalidateActivation(activationId);
+            }
+
+            // Discard cached status of removed activation
+            invalidateActivationStatus(activationId);
+
+            // Notify activation provider about activation removal, the notification is delivered directly
+            // in case it is not accepted by the notification queue
+            if (activationProvider != null && (activationNotificationQueue == null
+                    || !activationNotificationQueue.offer(ActivationNotification.activationRemoved(activationId, userId, applicationId)))) {
+                activationProvider.activationWasRemoved(activationId, userId, applicationId);
+            }
+
             // Prepare and return the response
             final ActivationRemoveResponse response = new ActivationRemoveResponse();
             response.setActivationId(paResponse.getActivationId());
@@ -399,6 +569,54 @@ public class ActivationService {
         }
     }
 
+    /**
+     * Find transport key for encryption of cached activation status. The transport key is provided by key records
+     * used for local ECIES key derivation and it is only needed for requests with challenge.
+     *
+     * @param activationId Activation ID.
+     * @param challenge Challenge sent by the mobile client, null for protocol version 3.0.
+     * @return Transport key or null in case it is not needed or not available.
+     */
+    private byte[] findTransportKey(String activationId, String challenge) {
+        if (challenge == null || localEciesKeyDeriver == null) {
+            return null;
+        }
+        return localEciesKeyDeriver.findTransportKey(activationId);
+    }
+
+    /**
+     * Create orchestration of activation provider callbacks.
+     *
+     * @return Activation pipeline.
+     */
+    private CustomActivationPipeline createActivationPipeline() {
+        return new CustomActivationPipeline(activationProvider, activationExecutor, activationNotificationExecutor, activationNotificationQueue);
+    }
+
+    /**
+     * Commit activation and discard its cached status.
+     *
+     * @param activationId Activation ID.
+     * @return Whether the activation was activated.
+     * @throws PowerAuthClientException In case activation commit fails.
+     */
+    private boolean commitActivation(String activationId) throws PowerAuthClientException {
+        final CommitActivationResponse commitResponse = powerAuthClient.commitActivation(activationId, null);
+        invalidateActivationStatus(activationId);
+        return commitResponse.isActivated();
+    }
+
+    /**
+     * Discard cached status of an activation in case the activation status cache is configured.
+     *
+     * @param activationId Activation ID.
+     */
+    private void invalidateActivationStatus(String activationId) {
+        if (activationStatusCache != null) {
+            activationStatusCache.invalidateActivation(activationId);
+        }
+    }
+
     /**
      * Prepare payload for the encrypted response.
      *
@@ -28,6 +28,8 @@ import io.getlime.security.powerauth.rest.api.base.authentication.PowerAuthApiAu
 import io.getlime.security.powerauth.rest.api.base.exception.PowerAuthAuthenticationException;
 import io.getlime.security.powerauth.rest.api.base.exception.authentication.PowerAuthSignatureTypeInvalidException;
 import io.getlime.security.powerauth.rest.api.base.exception.authentication.PowerAuthTokenErrorException;
+import io.getlime.security.powerauth.rest.api.base.token.LocalTokenVerifier;
+import io.getlime.security.powerauth.rest.api.base.token.TokenValidationResultCache;
 import io.getlime.security.powerauth.rest.api.model.request.v3.EciesEncryptedRequest;
 import io.getlime.security.powerauth.rest.api.model.request.v3.TokenRemoveRequest;
 import io.getlime.security.powerauth.rest.api.model.response.v3.EciesEncryptedResponse;
@@ -55,6 +57,10 @@ public class TokenService {
 
     private PowerAuthClient powerAuthClient;
 
+    private LocalTokenVerifier localTokenVerifier;
+
+    private TokenValidationResultCache tokenValidationResultCache;
+
     /**
      * Set PowerAuth service client via setter injection.
      * @param powerAuthClient PowerAuth service client.
@@ -64,6 +70,24 @@ public class TokenService {
         this.powerAuthClient = powerAuthClient;
     }
 
+    /**
+     * Set local token verifier via setter injection.
+     * @param localTokenVerifier Local token verifier.
+     */
+    @Autowired(required = false)
+    public void setLocalTokenVerifier(LocalTokenVerifier localTokenVerifier) {
+        this.localTokenVerifier = localTokenVerifier;
+    }
+
+    /**
+     * Set token validation result cache via setter injection.
+     * @param tokenValidationResultCache Token validation result cache.
+     */
+    @Autowired(required = false)
+    public void setTokenValidationResultCache(TokenValidationResultCache tokenValidationResultCache) {
+        this.tokenValidationResultCache = tokenValidationResultCache;
+    }
+
     /**
      * Create token.
      *
@@ -133,6 +157,16 @@ public class TokenService {
             // Remove a token, ignore response, since the endpoint should quietly return
             powerAuthClient.removeToken(tokenId, activationId);
 
+            // Discard token record used for local token verification
+            if (localTokenVerifier != null) {
+                localTokenVerifier.tokenWasRemoved(tokenId);
+            }
+
+            // Discard cached token validation results
+            if (tokenValidationResultCache != null) {
+                tokenValidationResultCache.invalidateToken(tokenId);
+            }
+
             // Prepare a response
             final TokenRemoveResponse response = new TokenRemoveResponse();
             response.setTokenId(tokenId);
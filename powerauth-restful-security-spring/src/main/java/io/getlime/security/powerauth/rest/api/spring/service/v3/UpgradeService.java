@@ -26,6 +26,7 @@ import io.getlime.core.rest.model.base.response.Response;
 import io.getlime.security.powerauth.crypto.lib.enums.PowerAuthSignatureTypes;
 import io.getlime.security.powerauth.http.PowerAuthEncryptionHttpHeader;
 import io.getlime.security.powerauth.http.PowerAuthSignatureHttpHeader;
+import io.getlime.security.powerauth.rest.api.base.activation.ActivationStatusCache;
 import io.getlime.security.powerauth.rest.api.base.authentication.PowerAuthApiAuthentication;
 import io.getlime.security.powerauth.rest.api.base.exception.PowerAuthAuthenticationException;
 import io.getlime.security.powerauth.rest.api.base.exception.PowerAuthUpgradeException;
@@ -61,6 +62,7 @@ public class UpgradeService {
 
     private PowerAuthClient powerAuthClient;
     private PowerAuthAuthenticationProvider authenticationProvider;
+    private ActivationStatusCache activationStatusCache;
 
     /**
      * Set PowerAuth service client via setter injection.
@@ -80,6 +82,15 @@ public class UpgradeService {
         this.authenticationProvider = authenticationProvider;
     }
 
+    /**
+     * Set activation status cache via setter injection.
+     * @param activationStatusCache Activation status cache.
+     */
+    @Autowired(required = false)
+    public void setActivationStatusCache(ActivationStatusCache activationStatusCache) {
+        this.activationStatusCache = activationStatusCache;
+    }
+
     /**
      * Start upgrade of activation to version 3.
      * @param request ECIES encrypted upgrade start request.
@@ -104,6 +115,11 @@ public class UpgradeService {
             // Start upgrade on PowerAuth server
             final StartUpgradeResponse upgradeResponse = powerAuthClient.startUpgrade(activationId, applicationKey, ephemeralPublicKey, encryptedData, mac, nonce);
 
+            // Discard cached activation status, the upgrade version has changed
+            if (activationStatusCache != null) {
+                activationStatusCache.invalidateActivation(activationId);
+            }
+
             // Prepare a response
             final EciesEncryptedResponse response = new EciesEncryptedResponse();
             response.setMac(upgradeResponse.getMac());
@@ -155,6 +171,11 @@ public class UpgradeService {
             // Commit upgrade on PowerAuth server
             final CommitUpgradeResponse upgradeResponse = powerAuthClient.commitUpgrade(activationId, applicationKey);
 
+            // Discard cached activation status, the activation version has changed
+            if (activationStatusCache != null) {
+                activationStatusCache.invalidateActivation(activationId);
+            }
+
             if (upgradeResponse.isCommitted()) {
                 return new Response();
             } else {
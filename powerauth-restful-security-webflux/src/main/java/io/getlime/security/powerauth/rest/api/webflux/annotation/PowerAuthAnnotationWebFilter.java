@@ -0,0 +1,301 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.webflux.annotation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.getlime.security.powerauth.crypto.lib.enums.PowerAuthSignatureTypes;
+import io.getlime.security.powerauth.http.PowerAuthSignatureHttpHeader;
+import io.getlime.security.powerauth.http.PowerAuthTokenHttpHeader;
+import io.getlime.security.powerauth.rest.api.base.encryption.PowerAuthEciesEncryption;
+import io.getlime.security.powerauth.rest.api.base.model.PowerAuthRequestObjects;
+import io.getlime.security.powerauth.rest.api.model.response.v3.EciesEncryptedResponse;
+import io.getlime.security.powerauth.rest.api.spring.annotation.PowerAuth;
+import io.getlime.security.powerauth.rest.api.spring.annotation.PowerAuthEncryption;
+import io.getlime.security.powerauth.rest.api.spring.annotation.PowerAuthHandlerMethodDescriptor;
+import io.getlime.security.powerauth.rest.api.spring.annotation.PowerAuthResourceIdTemplate;
+import io.getlime.security.powerauth.rest.api.spring.annotation.PowerAuthToken;
+import io.getlime.security.powerauth.rest.api.webflux.provider.PowerAuthReactiveAuthenticationProvider;
+import io.getlime.security.powerauth.rest.api.webflux.provider.PowerAuthReactiveEncryptionProvider;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.lang.NonNull;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.reactive.result.method.annotation.RequestMappingHandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reactive filter for the PowerAuth related annotations: @PowerAuth, @PowerAuthToken and @PowerAuthEncryption.
+ * The filter resolves the handler method of the request, validates the signature or token, decrypts the request
+ * and stores the results in exchange attributes. Responses of handlers annotated by @PowerAuthEncryption
+ * are encrypted, a response with a body exceeding the maximum response body size is not encrypted and the 500 HTTP
+ * status code is returned instead.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class PowerAuthAnnotationWebFilter implements WebFilter, Ordered {
+
+    private static final Logger logger = LoggerFactory.getLogger(PowerAuthAnnotationWebFilter.class);
+
+    /**
+     * Default maximum size of encrypted response body in bytes.
+     */
+    public static final int DEFAULT_MAX_RESPONSE_BODY_SIZE = 1024 * 1024;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private PowerAuthReactiveAuthenticationProvider authenticationProvider;
+    private PowerAuthReactiveEncryptionProvider encryptionProvider;
+    private RequestMappingHandlerMapping handlerMapping;
+    private int maxResponseBodySize = DEFAULT_MAX_RESPONSE_BODY_SIZE;
+
+    /**
+     * Set authentication provider via setter injection.
+     * @param authenticationProvider Authentication provider.
+     */
+    @Autowired
+    public void setAuthenticationProvider(PowerAuthReactiveAuthenticationProvider authenticationProvider) {
+        this.authenticationProvider = authenticationProvider;
+    }
+
+    /**
+     * Set encryption provider via setter injection.
+     * @param encryptionProvider Encryption provider.
+     */
+    @Autowired
+    public void setEncryptionProvider(PowerAuthReactiveEncryptionProvider encryptionProvider) {
+        this.encryptionProvider = encryptionProvider;
+    }
+
+    /**
+     * Set handler mapping used for resolving handler methods via setter injection.
+     * @param handlerMapping Request mapping handler mapping.
+     */
+    @Autowired
+    public void setHandlerMapping(@Qualifier("requestMappingHandlerMapping") RequestMappingHandlerMapping handlerMapping) {
+        this.handlerMapping = handlerMapping;
+    }
+
+    /**
+     * Set maximum size of response body which is encrypted in bytes, the default size
+     * is {@link #DEFAULT_MAX_RESPONSE_BODY_SIZE}.
+     * @param maxResponseBodySize Maximum size of response body in bytes.
+     */
+    public void setMaxResponseBodySize(int maxResponseBodySize) {
+        if (maxResponseBodySize < 1) {
+            throw new IllegalArgumentException("Invalid maximum response body size: " + maxResponseBodySize);
+        }
+        this.maxResponseBodySize = maxResponseBodySize;
+    }
+
+    @Override
+    @NonNull
+    public Mono<Void> filter(@NonNull ServerWebExchange exchange, @NonNull WebFilterChain chain) {
+        // Only handler methods are processed, this is to avoid issues with CORS "pre-flight" requests
+        return handlerMapping.getHandler(exchange)
+                .filter(handler -> handler instanceof HandlerMethod)
+                .flatMap(handler -> processAnnotations(exchange, (HandlerMethod) handler))
+                .defaultIfEmpty(exchange)
+                .flatMap(chain::filter);
+    }
+
+    @Override
+    public int getOrder() {
+        // Process annotations after all other filters, including Spring Security
+        return Ordered.LOWEST_PRECEDENCE;
+    }
+
+    /**
+     * Process PowerAuth annotations of the handler method.
+     *
+     * @param exchange Server web exchange.
+     * @param handlerMethod Handler method.
+     * @return Mono with exchange which should be used by the rest of the filter chain.
+     */
+    private Mono<ServerWebExchange> processAnnotations(ServerWebExchange exchange, HandlerMethod handlerMethod) {
+        // Obtain annotations and method metadata resolved once per handler method
+        final PowerAuthHandlerMethodDescriptor descriptor = PowerAuthHandlerMethodDescriptor.forHandlerMethod(handlerMethod);
+        final PowerAuth powerAuthSignatureAnnotation = descriptor.getPowerAuthSignatureAnnotation();
+        final PowerAuthToken powerAuthTokenAnnotation = descriptor.getPowerAuthTokenAnnotation();
+        final PowerAuthEncryption powerAuthEncryptionAnnotation = descriptor.getPowerAuthEncryptionAnnotation();
+
+        // Resolve @PowerAuthEncryption annotation. The order of processing is important, PowerAuth expects
+        // sign-then-encrypt sequence in case both authorization and encryption are used.
+        Mono<?> processing = Mono.empty();
+        if (powerAuthEncryptionAnnotation != null) {
+            final Type requestType = descriptor.getEciesRequestType();
+            processing = encryptionProvider.decryptRequest(exchange, requestType, powerAuthEncryptionAnnotation.scope())
+                    .onErrorResume(ex -> {
+                        logger.warn("Decryption failed, error: {}", ex.getMessage());
+                        logger.debug("Error details", ex);
+                        return Mono.empty();
+                    });
+        }
+
+        // Resolve @PowerAuth annotation
+        if (powerAuthSignatureAnnotation != null) {
+            final String resourceId = expandResourceId(descriptor.getResourceIdTemplate(), exchange);
+            final String header = exchange.getRequest().getHeaders().getFirst(PowerAuthSignatureHttpHeader.HEADER_NAME);
+            final List<PowerAuthSignatureTypes> signatureTypes = descriptor.getSignatureTypes();
+            processing = processing.then(Mono.defer(() -> authenticationProvider.validateRequestSignature(exchange, resourceId, descriptor.getResourceIdTemplate().getTemplate(), header, signatureTypes, null)
+                    .doOnNext(authentication -> exchange.getAttributes().put(PowerAuthRequestObjects.AUTHENTICATION_OBJECT, authentication))
+                    .onErrorResume(ex -> {
+                        logger.warn("Invalid request signature, authentication object was removed");
+                        exchange.getAttributes().remove(PowerAuthRequestObjects.AUTHENTICATION_OBJECT);
+                        return Mono.empty();
+                    })));
+        }
+
+        // Resolve @PowerAuthToken annotation
+        if (powerAuthTokenAnnotation != null) {
+            final String header = exchange.getRequest().getHeaders().getFirst(PowerAuthTokenHttpHeader.HEADER_NAME);
+            final List<PowerAuthSignatureTypes> signatureTypes = descriptor.getSignatureTypes();
+            // Request mapping pattern identifies the endpoint in metrics, values from the request are not included
+            final Object bestMatchingPattern = exchange.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            final String endpoint = bestMatchingPattern instanceof PathPattern ? ((PathPattern) bestMatchingPattern).getPatternString() : null;
+            processing = processing.then(Mono.defer(() -> authenticationProvider.validateToken(header, signatureTypes, endpoint)
+                    .doOnNext(authentication -> exchange.getAttributes().put(PowerAuthRequestObjects.AUTHENTICATION_OBJECT, authentication))
+                    .onErrorResume(ex -> {
+                        logger.warn("Invalid token, authentication object was removed");
+                        exchange.getAttributes().remove(PowerAuthRequestObjects.AUTHENTICATION_OBJECT);
+                        return Mono.empty();
+                    })));
+        }
+
+        // Responses of handlers annotated by @PowerAuthEncryption are encrypted
+        final ServerWebExchange resultExchange = powerAuthEncryptionAnnotation != null
+                ? exchange.mutate().response(new EncryptedResponseDecorator(exchange)).build()
+                : exchange;
+        return processing.then(Mono.just(resultExchange));
+    }
+
+    /**
+     * The method substitutes placeholders (marked via "${placeholder}") in resourceID attribute value by
+     * the actual parameters of the handler method. The implementation takes into account all method parameters
+     * that are annotated via @RequestParam or @PathVariable annotations and extracts values from the request.
+     * In case both @RequestParam and @PathVariable with the same name exist, the value of @RequestParam
+     * takes precedence.
+     *
+     * @param resourceIdTemplate Compiled resource ID template.
+     * @param exchange Server web exchange for the current execution.
+     * @return Resource ID with substituted placeholders.
+     */
+    private String expandResourceId(PowerAuthResourceIdTemplate resourceIdTemplate, ServerWebExchange exchange) {
+        final Map<String, String> pathVariableMap = exchange.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        return resourceIdTemplate.expand(new PowerAuthResourceIdTemplate.ParameterValues() {
+            @Override
+            public String getRequestParameter(String name) {
+                return exchange.getRequest().getQueryParams().getFirst(name);
+            }
+
+            @Override
+            public String getPathVariable(String name) {
+                return pathVariableMap != null ? pathVariableMap.get(name) : null;
+            }
+        });
+    }
+
+    /**
+     * Response decorator which encrypts the response body using ECIES. Error responses are not encrypted.
+     */
+    private class EncryptedResponseDecorator extends ServerHttpResponseDecorator {
+
+        private final ServerWebExchange exchange;
+
+        EncryptedResponseDecorator(ServerWebExchange exchange) {
+            super(exchange.getResponse());
+            this.exchange = exchange;
+        }
+
+        @Override
+        @NonNull
+        public Mono<Void> writeWith(@NonNull Publisher<? extends DataBuffer> body) {
+            final HttpStatus status = getStatusCode();
+            if (status != null && status.isError()) {
+                return super.writeWith(body);
+            }
+            return DataBufferUtils.join(Flux.from(body), maxResponseBodySize)
+                    .flatMap(dataBuffer -> {
+                        final byte[] responseBytes = new byte[dataBuffer.readableByteCount()];
+                        dataBuffer.read(responseBytes);
+                        DataBufferUtils.release(dataBuffer);
+                        final byte[] encryptedResponseBytes = encryptResponse(responseBytes);
+                        if (encryptedResponseBytes == null) {
+                            return setComplete();
+                        }
+                        final ServerHttpResponse response = getDelegate();
+                        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                        response.getHeaders().setContentLength(encryptedResponseBytes.length);
+                        return super.writeWith(Mono.just(response.bufferFactory().wrap(encryptedResponseBytes)));
+                    })
+                    .onErrorResume(DataBufferLimitException.class, ex -> {
+                        logger.warn("Response body exceeds maximum size for encryption: {} bytes", maxResponseBodySize);
+                        final ServerHttpResponse response = getDelegate();
+                        response.setStatusCode(HttpStatus.INTERNAL_SERVER_ERROR);
+                        return response.setComplete();
+                    });
+        }
+
+        /**
+         * Encrypt response bytes and serialize the ECIES cryptogram to JSON.
+         *
+         * @param responseBytes Response bytes.
+         * @return Encrypted response bytes or null in case encryption fails.
+         */
+        private byte[] encryptResponse(byte[] responseBytes) {
+            final PowerAuthEciesEncryption<?> eciesEncryption = exchange.getAttribute(PowerAuthRequestObjects.ENCRYPTION_OBJECT);
+            if (eciesEncryption == null) {
+                return null;
+            }
+            try {
+                final EciesEncryptedResponse encryptedResponse = encryptionProvider.encryptResponse(responseBytes, eciesEncryption);
+                if (encryptedResponse == null) {
+                    return null;
+                }
+                return objectMapper.writeValueAsBytes(encryptedResponse);
+            } catch (Exception ex) {
+                logger.warn("Encryption failed, error: {}", ex.getMessage());
+                logger.debug("Error details", ex);
+                return null;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.webflux.annotation;
+
+import io.getlime.security.powerauth.rest.api.base.encryption.EciesEncryptionContext;
+import io.getlime.security.powerauth.rest.api.base.encryption.PowerAuthEciesEncryption;
+import io.getlime.security.powerauth.rest.api.base.model.PowerAuthRequestObjects;
+import io.getlime.security.powerauth.rest.api.spring.annotation.EncryptedRequestBody;
+import io.getlime.security.powerauth.rest.api.spring.annotation.PowerAuthEncryption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.MethodParameter;
+import org.springframework.lang.NonNull;
+import org.springframework.web.reactive.BindingContext;
+import org.springframework.web.reactive.result.method.HandlerMethodArgumentResolver;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive argument resolver for {@link PowerAuthEciesEncryption} objects. It enables automatic
+ * parameter resolution for reactive handler methods that are annotated via {@link PowerAuthEncryption} annotation.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class PowerAuthEncryptionArgumentResolver implements HandlerMethodArgumentResolver {
+
+    private static final Logger logger = LoggerFactory.getLogger(PowerAuthEncryptionArgumentResolver.class);
+
+    @Override
+    public boolean supportsParameter(@NonNull MethodParameter parameter) {
+        return parameter.hasMethodAnnotation(PowerAuthEncryption.class)
+                && (parameter.hasParameterAnnotation(EncryptedRequestBody.class) || EciesEncryptionContext.class.isAssignableFrom(parameter.getParameterType()));
+    }
+
+    @Override
+    @NonNull
+    public Mono<Object> resolveArgument(@NonNull MethodParameter parameter, @NonNull BindingContext bindingContext, @NonNull ServerWebExchange exchange) {
+        final PowerAuthEciesEncryption<?> eciesObject = exchange.getAttribute(PowerAuthRequestObjects.ENCRYPTION_OBJECT);
+        if (eciesObject == null) {
+            return Mono.empty();
+        }
+        // Decrypted object is inserted into parameter annotated by @EncryptedRequestBody annotation, the request
+        // object was already deserialized during decryption using the parameter type
+        if (parameter.hasParameterAnnotation(EncryptedRequestBody.class) && eciesObject.getDecryptedRequest() != null) {
+            if (parameter.getParameterType().equals(byte[].class)) {
+                return Mono.just(eciesObject.getDecryptedRequest());
+            }
+            return Mono.justOrEmpty(eciesObject.getRequestObject());
+        }
+        // Ecies encryption object is inserted into parameter which is of type PowerAuthEciesEncryption
+        if (EciesEncryptionContext.class.isAssignableFrom(parameter.getParameterType())) {
+            final EciesEncryptionContext eciesContext = eciesObject.getContext();
+            if (validateEciesScope(eciesContext)) {
+                return Mono.just(eciesContext);
+            }
+        }
+        return Mono.empty();
+    }
+
+    /**
+     * Validate that encryption HTTP header contains correct values for given ECIES scope.
+     * @param eciesContext ECIES context.
+     */
+    private boolean validateEciesScope(EciesEncryptionContext eciesContext) {
+        switch (eciesContext.getEciesScope()) {
+            case ACTIVATION_SCOPE:
+                if (eciesContext.getApplicationKey() == null || eciesContext.getApplicationKey().isEmpty()) {
+                    logger.warn("ECIES activation scope is invalid because of missing application key");
+                    return false;
+                }
+                if (eciesContext.getActivationId() == null || eciesContext.getActivationId().isEmpty()) {
+                    logger.warn("ECIES activation scope is invalid because of missing activation ID");
+                    return false;
+                }
+                break;
+
+            case APPLICATION_SCOPE:
+                if (eciesContext.getApplicationKey() == null || eciesContext.getApplicationKey().isEmpty()) {
+                    logger.warn("ECIES application scope is invalid because of missing application key");
+                    return false;
+                }
+                break;
+
+            default:
+                logger.warn("Unsupported ECIES scope: {}", eciesContext.getEciesScope());
+                return false;
+        }
+        return true;
+    }
+
+}
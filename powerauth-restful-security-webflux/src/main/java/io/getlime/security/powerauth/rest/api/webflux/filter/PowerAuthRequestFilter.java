@@ -0,0 +1,160 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.webflux.filter;
+
+import io.getlime.security.powerauth.http.PowerAuthEncryptionHttpHeader;
+import io.getlime.security.powerauth.http.PowerAuthRequestCanonizationUtils;
+import io.getlime.security.powerauth.http.PowerAuthSignatureHttpHeader;
+import io.getlime.security.powerauth.rest.api.base.model.PowerAuthRequestBody;
+import io.getlime.security.powerauth.rest.api.base.model.PowerAuthRequestObjects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.lang.NonNull;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reactive filter for extracting request body from the HTTP request. The request body is joined into a single
+ * {@link DataBuffer}, stored as the request body attribute of the exchange for signature validation and decryption,
+ * and replayed to the handler from the cached buffer. Requests with a body exceeding the maximum request body size
+ * are rejected with the 413 HTTP status code, so that the whole body is never buffered in memory.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+public class PowerAuthRequestFilter implements WebFilter, Ordered {
+
+    private static final Logger logger = LoggerFactory.getLogger(PowerAuthRequestFilter.class);
+
+    /**
+     * Default maximum size of request body in bytes.
+     */
+    public static final int DEFAULT_MAX_REQUEST_BODY_SIZE = 1024 * 1024;
+
+    private int maxRequestBodySize = DEFAULT_MAX_REQUEST_BODY_SIZE;
+
+    /**
+     * Set maximum size of request body in bytes, the default size is {@link #DEFAULT_MAX_REQUEST_BODY_SIZE}.
+     * @param maxRequestBodySize Maximum size of request body in bytes.
+     */
+    public void setMaxRequestBodySize(int maxRequestBodySize) {
+        if (maxRequestBodySize < 1) {
+            throw new IllegalArgumentException("Invalid maximum request body size: " + maxRequestBodySize);
+        }
+        this.maxRequestBodySize = maxRequestBodySize;
+    }
+
+    @Override
+    @NonNull
+    public Mono<Void> filter(@NonNull ServerWebExchange exchange, @NonNull WebFilterChain chain) {
+        final ServerHttpRequest request = exchange.getRequest();
+
+        if (request.getHeaders().getFirst(PowerAuthSignatureHttpHeader.HEADER_NAME) == null && request.getHeaders().getFirst(PowerAuthEncryptionHttpHeader.HEADER_NAME) == null) {
+            // PowerAuth HTTP headers are not present, store empty request body in exchange attribute
+            exchange.getAttributes().put(PowerAuthRequestObjects.REQUEST_BODY, new PowerAuthRequestBody());
+            return chain.filter(exchange);
+        }
+
+        if (HttpMethod.GET.equals(request.getMethod())) {
+            // Pass the canonized query parameters as the signature base string in exchange attribute
+            exchange.getAttributes().put(PowerAuthRequestObjects.REQUEST_BODY, new PowerAuthRequestBody(canonizeQueryString(request)));
+            return chain.filter(exchange);
+        }
+
+        // ... handle POST, PUT, DELETE, ... method
+        return DataBufferUtils.join(request.getBody(), maxRequestBodySize)
+                .map(dataBuffer -> {
+                    // Copy the joined body and release the buffer obtained from the server
+                    final byte[] body = new byte[dataBuffer.readableByteCount()];
+                    dataBuffer.read(body);
+                    DataBufferUtils.release(dataBuffer);
+                    return body;
+                })
+                .defaultIfEmpty(new byte[0])
+                .map(body -> {
+                    // Get the request body and pass it as the signature base string in exchange attribute
+                    final ServerHttpRequest cachedBodyRequest = new ServerHttpRequestDecorator(request) {
+                        @Override
+                        @NonNull
+                        public Flux<DataBuffer> getBody() {
+                            if (body.length == 0) {
+                                return Flux.empty();
+                            }
+                            return Flux.defer(() -> Flux.just(exchange.getResponse().bufferFactory().wrap(body)));
+                        }
+                    };
+                    final ServerWebExchange cachedBodyExchange = exchange.mutate().request(cachedBodyRequest).build();
+                    cachedBodyExchange.getAttributes().put(PowerAuthRequestObjects.REQUEST_BODY, new PowerAuthRequestBody(body));
+                    return cachedBodyExchange;
+                })
+                .onErrorResume(DataBufferLimitException.class, ex -> {
+                    logger.warn("Request body exceeds maximum size: {} bytes", maxRequestBodySize);
+                    exchange.getResponse().setStatusCode(HttpStatus.PAYLOAD_TOO_LARGE);
+                    return exchange.getResponse().setComplete().then(Mono.empty());
+                })
+                .flatMap(chain::filter);
+    }
+
+    @Override
+    public int getOrder() {
+        // The request body needs to be available for all following filters
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    /**
+     * Canonize query parameters of GET request for signature validation.
+     *
+     * @param request HTTP request.
+     * @return Canonized query parameters or empty byte array in case there are no query parameters.
+     */
+    private byte[] canonizeQueryString(ServerHttpRequest request) {
+        final String queryString = request.getURI().getRawQuery();
+        if (queryString == null || queryString.isEmpty()) {
+            return new byte[0];
+        }
+        try {
+            // Decode the query string and get the canonized form
+            final String decodedQueryString = URLDecoder.decode(queryString, "UTF-8");
+            final String signatureBaseStringData = PowerAuthRequestCanonizationUtils.canonizeGetParameters(decodedQueryString);
+            if (signatureBaseStringData == null) {
+                return new byte[0];
+            }
+            return signatureBaseStringData.getBytes(StandardCharsets.UTF_8);
+        } catch (UnsupportedEncodingException ex) {
+            // UTF-8 encoding is always supported
+            throw new IllegalStateException(ex);
+        }
+    }
+
+}
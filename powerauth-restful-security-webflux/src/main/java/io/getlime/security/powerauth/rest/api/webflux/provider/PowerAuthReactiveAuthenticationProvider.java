@@ -0,0 +1,148 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.webflux.provider;
+
+import io.getlime.security.powerauth.crypto.lib.enums.PowerAuthSignatureTypes;
+import io.getlime.security.powerauth.rest.api.base.authentication.PowerAuthApiAuthentication;
+import io.getlime.security.powerauth.rest.api.base.encryption.PowerAuthEciesEncryption;
+import io.getlime.security.powerauth.rest.api.base.exception.authentication.PowerAuthRequestFilterException;
+import io.getlime.security.powerauth.rest.api.base.model.PowerAuthRequestBody;
+import io.getlime.security.powerauth.rest.api.base.model.PowerAuthRequestObjects;
+import io.getlime.security.powerauth.rest.api.base.provider.PowerAuthAuthenticationProviderBase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Reactive variant of PowerAuth authentication provider. The signature and token validation is delegated to
+ * the standard authentication provider and it is executed using its asynchronous API, so that the validation
+ * never blocks the event loop.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+@Component
+public class PowerAuthReactiveAuthenticationProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(PowerAuthReactiveAuthenticationProvider.class);
+
+    private PowerAuthAuthenticationProviderBase authenticationProvider;
+
+    /**
+     * Set authentication provider via setter injection.
+     *
+     * @param authenticationProvider Authentication provider.
+     */
+    @Autowired
+    public void setAuthenticationProvider(PowerAuthAuthenticationProviderBase authenticationProvider) {
+        this.authenticationProvider = authenticationProvider;
+    }
+
+    /**
+     * Validate the signature from the PowerAuth HTTP header against the provided exchange data.
+     *
+     * @param exchange Server web exchange with signed data.
+     * @param requestUriIdentifier Request URI identifier.
+     * @param httpAuthorizationHeader PowerAuth HTTP authorization header.
+     * @param allowedSignatureTypes Allowed types of signatures.
+     * @return Mono with PowerAuthApiAuthentication on successful authorization, or with PowerAuthAuthenticationException
+     * error in case authorization fails.
+     */
+    public Mono<PowerAuthApiAuthentication> validateRequestSignature(ServerWebExchange exchange, String requestUriIdentifier, String httpAuthorizationHeader, List<PowerAuthSignatureTypes> allowedSignatureTypes) {
+        return validateRequestSignature(exchange, requestUriIdentifier, httpAuthorizationHeader, allowedSignatureTypes, null);
+    }
+
+    /**
+     * Validate the signature from the PowerAuth HTTP header against the provided exchange data.
+     *
+     * @param exchange Server web exchange with signed data.
+     * @param requestUriIdentifier Request URI identifier.
+     * @param httpAuthorizationHeader PowerAuth HTTP authorization header.
+     * @param allowedSignatureTypes Allowed types of signatures.
+     * @param forcedSignatureVersion Forced signature version during upgrade.
+     * @return Mono with PowerAuthApiAuthentication on successful authorization, or with PowerAuthAuthenticationException
+     * error in case authorization fails.
+     */
+    public Mono<PowerAuthApiAuthentication> validateRequestSignature(ServerWebExchange exchange, String requestUriIdentifier, String httpAuthorizationHeader, List<PowerAuthSignatureTypes> allowedSignatureTypes, @Nullable Integer forcedSignatureVersion) {
+        return validateRequestSignature(exchange, requestUriIdentifier, requestUriIdentifier, httpAuthorizationHeader, allowedSignatureTypes, forcedSignatureVersion);
+    }
+
+    /**
+     * Validate the signature from the PowerAuth HTTP header against the provided exchange data.
+     *
+     * @param exchange Server web exchange with signed data.
+     * @param requestUriIdentifier Request URI identifier.
+     * @param resourceIdTemplate Resource ID template before expansion of placeholders, used to identify the endpoint in metrics.
+     * @param httpAuthorizationHeader PowerAuth HTTP authorization header.
+     * @param allowedSignatureTypes Allowed types of signatures.
+     * @param forcedSignatureVersion Forced signature version during upgrade.
+     * @return Mono with PowerAuthApiAuthentication on successful authorization, or with PowerAuthAuthenticationException
+     * error in case authorization fails.
+     */
+    public Mono<PowerAuthApiAuthentication> validateRequestSignature(ServerWebExchange exchange, String requestUriIdentifier, String resourceIdTemplate, String httpAuthorizationHeader, List<PowerAuthSignatureTypes> allowedSignatureTypes, @Nullable Integer forcedSignatureVersion) {
+        final String requestMethod = exchange.getRequest().getMethodValue().toUpperCase();
+        final byte[] requestBodyBytes;
+        final PowerAuthEciesEncryption<?> eciesEncryption = exchange.getAttribute(PowerAuthRequestObjects.ENCRYPTION_OBJECT);
+        if (eciesEncryption != null) {
+            // Implementation of sign-then-encrypt - in case the encryption object is present and signature is validate, use decrypted request data
+            requestBodyBytes = eciesEncryption.getDecryptedRequest();
+        } else {
+            // Request data was not encrypted - use regular PowerAuth request body for signature validation
+            final PowerAuthRequestBody requestBody = exchange.getAttribute(PowerAuthRequestObjects.REQUEST_BODY);
+            if (requestBody == null) {
+                logger.warn("The X-PowerAuth-Request-Body exchange attribute is missing. Register the PowerAuthRequestFilter to fix this error.");
+                return Mono.error(new PowerAuthRequestFilterException());
+            }
+            requestBodyBytes = requestBody.getRequestBytes();
+        }
+        return Mono.defer(() -> Mono.fromFuture(authenticationProvider.validateRequestSignatureAsync(requestMethod, requestBodyBytes, requestUriIdentifier, resourceIdTemplate, httpAuthorizationHeader, allowedSignatureTypes, forcedSignatureVersion)));
+    }
+
+    /**
+     * Validate token header for simple token-based authentication.
+     *
+     * @param httpAuthorizationHeader Token header.
+     * @param allowedSignatureTypes Allowed types of the signature.
+     * @return Mono with PowerAuthApiAuthentication on successful authorization, or with PowerAuthAuthenticationException
+     * error in case authorization fails.
+     */
+    public Mono<PowerAuthApiAuthentication> validateToken(String httpAuthorizationHeader, List<PowerAuthSignatureTypes> allowedSignatureTypes) {
+        return validateToken(httpAuthorizationHeader, allowedSignatureTypes, null);
+    }
+
+    /**
+     * Validate token header for simple token-based authentication.
+     *
+     * @param httpAuthorizationHeader Token header.
+     * @param allowedSignatureTypes Allowed types of the signature.
+     * @param endpoint Request mapping pattern of the endpoint, used to identify the endpoint in metrics, null in case it is not available.
+     * @return Mono with PowerAuthApiAuthentication on successful authorization, or with PowerAuthAuthenticationException
+     * error in case authorization fails.
+     */
+    public Mono<PowerAuthApiAuthentication> validateToken(String httpAuthorizationHeader, List<PowerAuthSignatureTypes> allowedSignatureTypes, String endpoint) {
+        return Mono.defer(() -> Mono.fromFuture(authenticationProvider.validateTokenAsync(httpAuthorizationHeader, allowedSignatureTypes, endpoint)));
+    }
+
+}
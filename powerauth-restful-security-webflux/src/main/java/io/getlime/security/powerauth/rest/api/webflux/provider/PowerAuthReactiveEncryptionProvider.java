@@ -0,0 +1,114 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.rest.api.webflux.provider;
+
+import io.getlime.security.powerauth.crypto.lib.encryptor.ecies.model.EciesScope;
+import io.getlime.security.powerauth.http.PowerAuthEncryptionHttpHeader;
+import io.getlime.security.powerauth.http.PowerAuthSignatureHttpHeader;
+import io.getlime.security.powerauth.rest.api.base.encryption.PowerAuthEciesEncryption;
+import io.getlime.security.powerauth.rest.api.base.exception.PowerAuthEncryptionException;
+import io.getlime.security.powerauth.rest.api.base.model.PowerAuthRequestBody;
+import io.getlime.security.powerauth.rest.api.base.model.PowerAuthRequestObjects;
+import io.getlime.security.powerauth.rest.api.base.provider.PowerAuthEncryptionProviderBase;
+import io.getlime.security.powerauth.rest.api.model.response.v3.EciesEncryptedResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.lang.reflect.Type;
+
+/**
+ * Reactive variant of PowerAuth encryption provider. The request decryption is delegated to the standard encryption
+ * provider and it is executed on a scheduler which supports blocking calls, because obtaining the ECIES decryptor
+ * parameters requires a call of PowerAuth server.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+@Component
+public class PowerAuthReactiveEncryptionProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(PowerAuthReactiveEncryptionProvider.class);
+
+    private PowerAuthEncryptionProviderBase encryptionProvider;
+
+    private Scheduler scheduler = Schedulers.boundedElastic();
+
+    /**
+     * Set encryption provider via setter injection.
+     *
+     * @param encryptionProvider Encryption provider.
+     */
+    @Autowired
+    public void setEncryptionProvider(PowerAuthEncryptionProviderBase encryptionProvider) {
+        this.encryptionProvider = encryptionProvider;
+    }
+
+    /**
+     * Set scheduler used for request decryption. By default, the bounded elastic scheduler is used.
+     *
+     * @param scheduler Scheduler for request decryption.
+     */
+    public void setScheduler(Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Decrypt HTTP request body and construct object with ECIES data. The encryption object is stored in exchange
+     * attributes for later encryption of the response.
+     *
+     * @param <T> Generic request object type.
+     * @param exchange Server web exchange.
+     * @param requestType Type of request object.
+     * @param eciesScope ECIES scope.
+     * @return Mono with object with ECIES data, or with PowerAuthEncryptionException error in case decryption fails.
+     */
+    public <T> Mono<PowerAuthEciesEncryption<T>> decryptRequest(ServerWebExchange exchange, Type requestType, EciesScope eciesScope) {
+        final PowerAuthRequestBody requestBody = exchange.getAttribute(PowerAuthRequestObjects.REQUEST_BODY);
+        if (requestBody == null) {
+            logger.warn("The X-PowerAuth-Request-Body exchange attribute is missing. Register the PowerAuthRequestFilter to fix this error.");
+            return Mono.error(new PowerAuthEncryptionException());
+        }
+        final String httpMethod = exchange.getRequest().getMethodValue();
+        final HttpHeaders headers = exchange.getRequest().getHeaders();
+        final String encryptionHttpHeader = headers.getFirst(PowerAuthEncryptionHttpHeader.HEADER_NAME);
+        final String signatureHttpHeader = headers.getFirst(PowerAuthSignatureHttpHeader.HEADER_NAME);
+        return Mono.fromCallable(() -> encryptionProvider.<T>decryptRequest(httpMethod, encryptionHttpHeader, signatureHttpHeader, requestBody.getRequestBytes(), requestType, eciesScope))
+                .subscribeOn(scheduler)
+                .doOnNext(eciesEncryption -> exchange.getAttributes().put(PowerAuthRequestObjects.ENCRYPTION_OBJECT, eciesEncryption));
+    }
+
+    /**
+     * Encrypt response using ECIES.
+     *
+     * @param responseObject Response object which should be encrypted.
+     * @param eciesEncryption PowerAuth encryption object.
+     * @return ECIES encrypted response.
+     */
+    public EciesEncryptedResponse encryptResponse(Object responseObject, PowerAuthEciesEncryption<?> eciesEncryption) {
+        return encryptionProvider.encryptResponse(responseObject, eciesEncryption);
+    }
+
+}
@@ -19,9 +19,12 @@
  */
 package io.getlime.security.powerauth.app.rest.api.spring;
 
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
+import java.security.Security;
+
 /**
  * Spring Boot main class
  */
@@ -33,6 +36,8 @@ public class PowerAuthApiJavaApplication {
      * @param args Arguments
      */
     public static void main(String[] args) {
+        // Register BC provider when the application is started standalone
+        Security.addProvider(new BouncyCastleProvider());
         SpringApplication.run(PowerAuthApiJavaApplication.class, args);
     }
 }
@@ -0,0 +1,84 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.app.rest.api.spring.configuration;
+
+import io.getlime.security.powerauth.rest.api.base.client.PowerAuthExecutors;
+import io.getlime.security.powerauth.rest.api.base.metrics.PowerAuthMetrics;
+import io.getlime.security.powerauth.rest.api.base.notification.ActivationNotificationQueue;
+import io.getlime.security.powerauth.rest.api.base.notification.ActivationNotificationType;
+import io.getlime.security.powerauth.rest.api.base.notification.FileActivationNotificationJournal;
+import io.getlime.security.powerauth.rest.api.base.provider.CustomActivationProvider;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Configuration of activation notification queue. When enabled, notifications about committed and removed activations
+ * are delivered to the custom activation provider outside of request processing.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+@Configuration
+@ConditionalOnProperty(name = "powerauth.service.activationNotifications.enabled", havingValue = "true")
+public class ActivationNotificationConfiguration {
+
+    @Value("${powerauth.service.activationNotifications.types:ACTIVATION_COMMITTED,ACTIVATION_REMOVED}")
+    private Set<ActivationNotificationType> notificationTypes;
+
+    @Value("${powerauth.service.activationNotifications.workerCount:4}")
+    private int workerCount;
+
+    @Value("${powerauth.service.activationNotifications.capacity:10000}")
+    private int capacity;
+
+    @Value("${powerauth.service.activationNotifications.maxAttempts:10}")
+    private int maxAttempts;
+
+    @Value("${powerauth.service.activationNotifications.initialBackoffMillis:1000}")
+    private long initialBackoffMillis;
+
+    @Value("${powerauth.service.activationNotifications.maxBackoffMillis:300000}")
+    private long maxBackoffMillis;
+
+    @Value("${powerauth.service.activationNotifications.journalFile:}")
+    private String journalFile;
+
+    @Bean(destroyMethod = "close")
+    public ActivationNotificationQueue activationNotificationQueue(CustomActivationProvider activationProvider, ObjectProvider<PowerAuthMetrics> powerAuthMetrics) throws IOException {
+        final ActivationNotificationQueue notificationQueue = new ActivationNotificationQueue(activationProvider,
+                PowerAuthExecutors.newPlatformThreadExecutor(workerCount, "powerauth-notification-"), workerCount, capacity,
+                ActivationNotificationQueue.DEFAULT_BATCH_SIZE, maxAttempts, Duration.ofMillis(initialBackoffMillis), Duration.ofMillis(maxBackoffMillis));
+        notificationQueue.setNotificationTypes(notificationTypes);
+        if (!journalFile.isEmpty()) {
+            notificationQueue.setJournal(new FileActivationNotificationJournal(Paths.get(journalFile)));
+        }
+        notificationQueue.setPowerAuthMetrics(powerAuthMetrics.getIfAvailable());
+        notificationQueue.start();
+        return notificationQueue;
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.app.rest.api.spring.configuration;
+
+import io.getlime.security.powerauth.rest.api.base.client.PowerAuthExecutors;
+import io.getlime.security.powerauth.rest.api.base.client.PowerAuthRequestHedging;
+import io.getlime.security.powerauth.rest.api.base.metrics.PowerAuthMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuration of hedged PowerAuth server calls. When enabled, activation status and ECIES decryptor calls which
+ * do not respond within a percentile of recent call durations are sent again and the first response wins.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+@Configuration
+@ConditionalOnProperty(name = "powerauth.service.hedging.enabled", havingValue = "true")
+public class ClientHedgingConfiguration {
+
+    private static final int PLATFORM_THREAD_COUNT = 200;
+
+    @Value("${powerauth.service.hedging.delayPercentile:0.95}")
+    private double delayPercentile;
+
+    @Value("${powerauth.service.hedging.minDelayMillis:10}")
+    private long minDelayMillis;
+
+    @Value("${powerauth.service.hedging.initialDelayMillis:200}")
+    private long initialDelayMillis;
+
+    @Value("${powerauth.service.hedging.maxHedgeRatio:0.1}")
+    private double maxHedgeRatio;
+
+    @Value("${powerauth.service.virtualThreads.enabled:false}")
+    private boolean virtualThreads;
+
+    @Bean(destroyMethod = "close")
+    public PowerAuthRequestHedging powerAuthRequestHedging(ObjectProvider<PowerAuthMetrics> powerAuthMetrics) {
+        final PowerAuthRequestHedging hedging = new PowerAuthRequestHedging(
+                PowerAuthExecutors.newExecutor(virtualThreads, PLATFORM_THREAD_COUNT, "powerauth-hedging-"),
+                delayPercentile, Duration.ofMillis(minDelayMillis), Duration.ofMillis(initialDelayMillis), maxHedgeRatio);
+        hedging.setPowerAuthMetrics(powerAuthMetrics.getIfAvailable());
+        return hedging;
+    }
+
+}
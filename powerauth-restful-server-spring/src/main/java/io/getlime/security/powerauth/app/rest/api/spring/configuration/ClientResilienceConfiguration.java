@@ -0,0 +1,73 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.app.rest.api.spring.configuration;
+
+import io.getlime.security.powerauth.rest.api.base.client.PowerAuthClientResilience;
+import io.getlime.security.powerauth.rest.api.base.client.PowerAuthClientResilienceConfiguration;
+import io.getlime.security.powerauth.rest.api.base.client.PowerAuthOperationClass;
+import io.getlime.security.powerauth.rest.api.base.metrics.PowerAuthMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuration of bulkheads and circuit breakers of PowerAuth server calls. When enabled, the number of concurrent
+ * calls of PowerAuth server is limited per operation class and calls fail fast while PowerAuth server is failing
+ * or responding slowly.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+@Configuration
+@ConditionalOnProperty(name = "powerauth.service.resilience.enabled", havingValue = "true")
+public class ClientResilienceConfiguration {
+
+    @Value("${powerauth.service.resilience.maxConcurrentCalls.authentication:50}")
+    private int maxConcurrentAuthenticationCalls;
+
+    @Value("${powerauth.service.resilience.maxConcurrentCalls.encryption:50}")
+    private int maxConcurrentEncryptionCalls;
+
+    @Value("${powerauth.service.resilience.maxConcurrentCalls.activation:20}")
+    private int maxConcurrentActivationCalls;
+
+    @Value("${powerauth.service.resilience.slowCallDurationMillis:5000}")
+    private long slowCallDurationMillis;
+
+    @Value("${powerauth.service.resilience.openDurationMillis:10000}")
+    private long openDurationMillis;
+
+    @Bean
+    public PowerAuthClientResilience powerAuthClientResilience(ObjectProvider<PowerAuthMetrics> powerAuthMetrics) {
+        final PowerAuthClientResilienceConfiguration configuration = new PowerAuthClientResilienceConfiguration();
+        configuration.setMaxConcurrentCalls(PowerAuthOperationClass.AUTHENTICATION, maxConcurrentAuthenticationCalls);
+        configuration.setMaxConcurrentCalls(PowerAuthOperationClass.ENCRYPTION, maxConcurrentEncryptionCalls);
+        configuration.setMaxConcurrentCalls(PowerAuthOperationClass.ACTIVATION, maxConcurrentActivationCalls);
+        configuration.setSlowCallDuration(Duration.ofMillis(slowCallDurationMillis));
+        configuration.setOpenDuration(Duration.ofMillis(openDurationMillis));
+        final PowerAuthClientResilience resilience = new PowerAuthClientResilience(configuration);
+        resilience.setPowerAuthMetrics(powerAuthMetrics.getIfAvailable());
+        return resilience;
+    }
+
+}
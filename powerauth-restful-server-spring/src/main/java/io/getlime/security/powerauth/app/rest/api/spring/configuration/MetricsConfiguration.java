@@ -0,0 +1,46 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.app.rest.api.spring.configuration;
+
+import io.getlime.security.powerauth.rest.api.base.metrics.PowerAuthMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration of PowerAuth metrics. When enabled, PowerAuth server calls, request body buffering, ECIES
+ * encryption and authentication outcomes are recorded using Micrometer. The application meter registry is used
+ * when available, e.g. with Spring Boot Actuator, the global registry is used otherwise.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+@Configuration
+@ConditionalOnProperty(name = "powerauth.service.metrics.enabled", havingValue = "true")
+public class MetricsConfiguration {
+
+    @Bean
+    public PowerAuthMetrics powerAuthMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new PowerAuthMetrics(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+
+}
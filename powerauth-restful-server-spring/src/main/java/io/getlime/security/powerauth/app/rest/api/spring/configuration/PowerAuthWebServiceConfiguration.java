@@ -23,13 +23,27 @@ import com.wultra.security.powerauth.client.PowerAuthClient;
 import com.wultra.security.powerauth.client.model.error.PowerAuthClientException;
 import com.wultra.security.powerauth.rest.client.PowerAuthRestClient;
 import com.wultra.security.powerauth.rest.client.PowerAuthRestClientConfiguration;
+import io.getlime.security.powerauth.rest.api.base.client.PowerAuthClientResilience;
+import io.getlime.security.powerauth.rest.api.base.client.PowerAuthLoadBalancer;
+import io.getlime.security.powerauth.rest.api.base.client.PowerAuthRequestHedging;
+import io.getlime.security.powerauth.rest.api.base.client.PowerAuthServerNode;
+import io.getlime.security.powerauth.rest.api.base.metrics.PowerAuthMetrics;
+import io.getlime.security.powerauth.rest.api.spring.client.HedgedPowerAuthClient;
+import io.getlime.security.powerauth.rest.api.spring.client.LoadBalancedPowerAuthClient;
+import io.getlime.security.powerauth.rest.api.spring.client.MeteredPowerAuthClient;
+import io.getlime.security.powerauth.rest.api.spring.client.ResilientPowerAuthClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Default PowerAuth Service configuration.
  *
@@ -45,6 +59,12 @@ public class PowerAuthWebServiceConfiguration {
     @Value("${powerauth.service.url}")
     private String powerAuthRestUrl;
 
+    @Value("${powerauth.service.loadBalancing.ejectionDurationMillis:30000}")
+    private long ejectionDurationMillis;
+
+    @Value("${powerauth.service.loadBalancing.healthCheckIntervalMillis:10000}")
+    private long healthCheckIntervalMillis;
+
     @Value("${powerauth.service.security.clientToken}")
     private String clientToken;
 
@@ -60,13 +80,77 @@ public class PowerAuthWebServiceConfiguration {
     @Value("${powerauth.integration.service.applicationEnvironment}")
     private String applicationEnvironment;
 
+    /**
+     * Load balancer of PowerAuth server nodes, which is created in case multiple comma separated PowerAuth
+     * server URLs are configured.
+     *
+     * @return Load balancer of PowerAuth server nodes or null in case a single PowerAuth server is configured.
+     */
+    @Bean(destroyMethod = "close")
+    public PowerAuthLoadBalancer<PowerAuthClient> powerAuthLoadBalancer() {
+        final List<String> powerAuthRestUrls = getPowerAuthRestUrls();
+        if (powerAuthRestUrls.size() < 2) {
+            return null;
+        }
+        try {
+            final List<PowerAuthServerNode<PowerAuthClient>> nodes = new ArrayList<>();
+            for (String url : powerAuthRestUrls) {
+                nodes.add(new PowerAuthServerNode<>(url, new PowerAuthRestClient(url, createRestClientConfiguration())));
+            }
+            final PowerAuthLoadBalancer<PowerAuthClient> loadBalancer = new PowerAuthLoadBalancer<>(nodes,
+                    PowerAuthLoadBalancer.DEFAULT_FAILURES_TO_EJECT, Duration.ofMillis(ejectionDurationMillis), PowerAuthLoadBalancer.DEFAULT_MAX_ATTEMPTS);
+            if (healthCheckIntervalMillis > 0) {
+                loadBalancer.startHealthChecks(client -> {
+                    try {
+                        return client.getSystemStatus() != null;
+                    } catch (PowerAuthClientException ex) {
+                        return false;
+                    }
+                }, Duration.ofMillis(healthCheckIntervalMillis));
+            }
+            return loadBalancer;
+        } catch (PowerAuthClientException ex) {
+            // Log the error in case Rest client initialization failed
+            logger.error(ex.getMessage(), ex);
+            return null;
+        }
+    }
+
     @Bean
-    public PowerAuthClient powerAuthClient() {
-        PowerAuthRestClientConfiguration config = new PowerAuthRestClientConfiguration();
-        config.setPowerAuthClientToken(clientToken);
-        config.setPowerAuthClientSecret(clientSecret);
+    public PowerAuthClient powerAuthClient(ObjectProvider<PowerAuthMetrics> powerAuthMetrics, ObjectProvider<PowerAuthClientResilience> powerAuthClientResilience,
+                                           ObjectProvider<PowerAuthLoadBalancer<PowerAuthClient>> powerAuthLoadBalancer,
+                                           ObjectProvider<PowerAuthRequestHedging> powerAuthRequestHedging) {
         try {
-            return new PowerAuthRestClient(powerAuthRestUrl, config);
+            // Distribute calls across PowerAuth server nodes in case multiple PowerAuth server URLs are configured
+            final PowerAuthLoadBalancer<PowerAuthClient> loadBalancer = powerAuthLoadBalancer.getIfAvailable();
+            PowerAuthClient powerAuthClient;
+            if (loadBalancer != null) {
+                powerAuthClient = LoadBalancedPowerAuthClient.wrap(loadBalancer);
+            } else {
+                // Use the single configured URL, the property value may contain a trailing comma or empty entries
+                final List<String> powerAuthRestUrls = getPowerAuthRestUrls();
+                final String url = powerAuthRestUrls.isEmpty() ? powerAuthRestUrl.trim() : powerAuthRestUrls.get(0);
+                powerAuthClient = new PowerAuthRestClient(url, createRestClientConfiguration());
+            }
+            // Record PowerAuth server calls in case metrics are enabled
+            final PowerAuthMetrics metrics = powerAuthMetrics.getIfAvailable();
+            if (metrics != null) {
+                powerAuthClient = MeteredPowerAuthClient.wrap(powerAuthClient, metrics);
+            }
+            // Protect PowerAuth server calls using bulkheads and circuit breakers in case they are enabled, rejected
+            // calls are not performed, so they are not recorded as PowerAuth server calls
+            final PowerAuthClientResilience resilience = powerAuthClientResilience.getIfAvailable();
+            if (resilience != null) {
+                powerAuthClient = ResilientPowerAuthClient.wrap(powerAuthClient, resilience);
+            }
+            // Hedge slow read-only calls in case hedging is enabled, each attempt of a hedged call passes through
+            // the bulkheads and circuit breakers. With load balancing the hedged call is likely sent to another
+            // PowerAuth server node, because the node of the primary call has more outstanding requests
+            final PowerAuthRequestHedging hedging = powerAuthRequestHedging.getIfAvailable();
+            if (hedging != null) {
+                powerAuthClient = HedgedPowerAuthClient.wrap(powerAuthClient, hedging);
+            }
+            return powerAuthClient;
         } catch (PowerAuthClientException ex) {
             // Log the error in case Rest client initialization failed
             logger.error(ex.getMessage(), ex);
@@ -74,6 +158,23 @@ public class PowerAuthWebServiceConfiguration {
         }
     }
 
+    private PowerAuthRestClientConfiguration createRestClientConfiguration() {
+        PowerAuthRestClientConfiguration config = new PowerAuthRestClientConfiguration();
+        config.setPowerAuthClientToken(clientToken);
+        config.setPowerAuthClientSecret(clientSecret);
+        return config;
+    }
+
+    private List<String> getPowerAuthRestUrls() {
+        final List<String> urls = new ArrayList<>();
+        for (String url : powerAuthRestUrl.split(",")) {
+            if (!url.trim().isEmpty()) {
+                urls.add(url.trim());
+            }
+        }
+        return urls;
+    }
+
     public String getApplicationName() {
         return applicationName;
     }
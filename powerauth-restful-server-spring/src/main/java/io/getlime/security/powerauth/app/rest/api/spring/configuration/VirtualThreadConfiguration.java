@@ -0,0 +1,77 @@
+/*
+ * PowerAuth integration libraries for RESTful API applications, examples and
+ * related software components
+ *
+ * Copyright (C) 2021 Wultra s.r.o.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.getlime.security.powerauth.app.rest.api.spring.configuration;
+
+import io.getlime.security.powerauth.rest.api.base.client.PowerAuthExecutors;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Configuration of virtual thread execution mode. When enabled, the embedded Tomcat handles requests on virtual
+ * threads and PowerAuth server calls executed asynchronously run on virtual threads, too. The mode requires
+ * a JDK with virtual thread support, platform threads are used otherwise. Executors are registered as beans, so that
+ * they are shut down together with the application context.
+ *
+ * @author Roman Strobl, roman.strobl@wultra.com
+ */
+@Configuration
+@ConditionalOnProperty(name = "powerauth.service.virtualThreads.enabled", havingValue = "true")
+public class VirtualThreadConfiguration {
+
+    private static final int PLATFORM_THREAD_COUNT = 200;
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService powerAuthAsyncExecutor() {
+        return PowerAuthExecutors.newExecutor(true, PLATFORM_THREAD_COUNT, "powerauth-async-");
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    @Conditional(VirtualThreadSupportedCondition.class)
+    public ExecutorService tomcatVirtualThreadExecutor() {
+        return PowerAuthExecutors.newVirtualThreadExecutor();
+    }
+
+    @Bean
+    @Conditional(VirtualThreadSupportedCondition.class)
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer(@Qualifier("tomcatVirtualThreadExecutor") ExecutorService tomcatVirtualThreadExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(tomcatVirtualThreadExecutor);
+    }
+
+    /**
+     * Condition which matches in case virtual threads are supported by the current JDK.
+     */
+    static class VirtualThreadSupportedCondition implements Condition {
+
+        @Override
+        public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+            return PowerAuthExecutors.isVirtualThreadSupported();
+        }
+    }
+
+}
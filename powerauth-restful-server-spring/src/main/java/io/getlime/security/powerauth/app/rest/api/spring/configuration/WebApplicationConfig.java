@@ -19,10 +19,12 @@
  */
 package io.getlime.security.powerauth.app.rest.api.spring.configuration;
 
+import io.getlime.security.powerauth.rest.api.base.metrics.PowerAuthMetrics;
 import io.getlime.security.powerauth.rest.api.spring.annotation.PowerAuthAnnotationInterceptor;
 import io.getlime.security.powerauth.rest.api.spring.annotation.PowerAuthEncryptionArgumentResolver;
 import io.getlime.security.powerauth.rest.api.spring.annotation.PowerAuthWebArgumentResolver;
 import io.getlime.security.powerauth.rest.api.spring.filter.PowerAuthRequestFilter;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -72,12 +74,15 @@ public class WebApplicationConfig implements WebMvcConfigurer {
 
     /**
      * Register a new PowerAuthRequestFilter and map it to /* end-point.
+     * @param powerAuthMetrics PowerAuth metrics, available in case metrics are enabled.
      * @return PowerAuthRequestFilter instance.
      */
     @Bean
-    public FilterRegistrationBean<PowerAuthRequestFilter> powerAuthFilterRegistration() {
+    public FilterRegistrationBean<PowerAuthRequestFilter> powerAuthFilterRegistration(ObjectProvider<PowerAuthMetrics> powerAuthMetrics) {
         FilterRegistrationBean<PowerAuthRequestFilter> registrationBean = new FilterRegistrationBean<>();
-        registrationBean.setFilter(new PowerAuthRequestFilter());
+        final PowerAuthRequestFilter requestFilter = new PowerAuthRequestFilter();
+        requestFilter.setPowerAuthMetrics(powerAuthMetrics.getIfAvailable());
+        registrationBean.setFilter(requestFilter);
         registrationBean.setMatchAfter(true);
         return registrationBean;
     }
@@ -23,7 +23,9 @@ import io.getlime.core.rest.model.base.response.ObjectResponse;
 import io.getlime.security.powerauth.rest.api.base.authentication.PowerAuthApiAuthentication;
 import io.getlime.security.powerauth.rest.api.base.exception.PowerAuthAuthenticationException;
 import io.getlime.security.powerauth.rest.api.base.exception.authentication.PowerAuthSignatureInvalidException;
+import io.getlime.security.powerauth.rest.api.base.exception.authentication.PowerAuthTokenInvalidException;
 import io.getlime.security.powerauth.rest.api.spring.annotation.PowerAuth;
+import io.getlime.security.powerauth.rest.api.spring.annotation.PowerAuthToken;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 
@@ -86,6 +88,21 @@ public class AuthenticationController {
         return new ObjectResponse<>("Hooray! User: " + auth.getUserId());
     }
 
+    /**
+     * Validate token sent to this end-point.
+     * @param auth Automatically injected PowerAuth authentication object.
+     * @return API response with success.
+     * @throws PowerAuthAuthenticationException In case any error occurs, including during token validation.
+     */
+    @RequestMapping(value = "token/authorize", method = RequestMethod.POST)
+    @PowerAuthToken
+    public @ResponseBody ObjectResponse<String> authorizeToken(PowerAuthApiAuthentication auth) throws PowerAuthAuthenticationException {
+        if (auth == null || auth.getUserId() == null) {
+            throw new PowerAuthTokenInvalidException();
+        }
+        return new ObjectResponse<>("Hooray! User: " + auth.getUserId());
+    }
+
     /**
      * Validate any data sent to this end-point, uses substitutes in resource ID.
      * @param id Identifier - testing object for @PathVariable annotation.